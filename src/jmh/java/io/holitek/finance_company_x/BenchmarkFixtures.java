@@ -0,0 +1,171 @@
+package io.holitek.finance_company_x;
+
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.impl.DefaultCamelContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+
+/**
+ * generates the data directories, data files and camel wiring the benchmarks run against. everything is generated so
+ * benchmark runs don't depend on files checked into the repo and can be scaled up to any number of entries.
+ */
+final class BenchmarkFixtures {
+
+    static final String BUILD_ID = "1234";
+    static final String BUILD_ID_FILENAME = "buildID.txt";
+    static final String DATA_FILENAME = "20201010-0000.txt";
+
+    // same jvm options for every benchmark fork
+    static final String LOG_CONFIG_JVM_ARG = "-Dlog4j.configurationFile=log4j2-benchmark.properties";
+
+    private static final int LETTERS = 26;
+    private static final int CURRENCY_CODES = LETTERS * LETTERS * LETTERS;
+
+    private BenchmarkFixtures() { }
+
+
+    /**
+     * three letter code for an index, eg: 0 -> AAA, 1 -> AAB
+     *
+     * @param index
+     * @return
+     */
+    static String currencyCode(int index) {
+        int code = index % CURRENCY_CODES;
+        return new String(new char[] {
+                (char)('A' + code / (LETTERS * LETTERS)),
+                (char)('A' + code / LETTERS % LETTERS),
+                (char)('A' + code % LETTERS)
+        });
+    }
+
+    /**
+     * distinct, currency pair shaped key for each index up to a few hundred million
+     *
+     * @param index
+     * @return
+     */
+    static String pairKey(int index) {
+        return currencyCode(index) + "_" + currencyCode(index / CURRENCY_CODES);
+    }
+
+    /**
+     *
+     * @param entries
+     * @return
+     */
+    static Map<String, Double> exchangeRateMap(int entries) {
+        Map<String, Double> exchangeRateMap = new LinkedHashMap<>();
+        for (int i = 0; i < entries; i++) {
+            exchangeRateMap.put(pairKey(i), 0.5 + (i % 1000) / 1000.0);
+        }
+
+        return exchangeRateMap;
+    }
+
+    /**
+     *
+     * @param entries
+     * @return
+     */
+    static String exchangeRateJson(int entries) {
+        return ExchangeRateRenderings.of(exchangeRateMap(entries)).getJson();
+    }
+
+    /**
+     *
+     * @param buildID
+     * @return
+     */
+    static String buildIdJson(String buildID) {
+        return "{\"buildID\":\"" + buildID + "\",\"FileName\":\"" + DATA_FILENAME + "\",\"Version\":\"v1\"}";
+    }
+
+    /**
+     * temp directory laid out the way the provider lays out the real one - a buildID file pointing at a data file
+     *
+     * @param entries
+     * @return
+     */
+    static Path dataDirectory(int entries) {
+        try {
+            Path dataDirectory = Files.createTempDirectory("fcx-benchmark-");
+            dataDirectory.toFile().deleteOnExit();
+
+            Path buildIdFile = Files.writeString(dataDirectory.resolve(BUILD_ID_FILENAME), buildIdJson(BUILD_ID));
+            buildIdFile.toFile().deleteOnExit();
+
+            Path dataFile = Files.writeString(dataDirectory.resolve(DATA_FILENAME), exchangeRateJson(entries));
+            dataFile.toFile().deleteOnExit();
+
+            return dataDirectory;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * spins until the bean holds the buildID and the main pipeline's loader has finished with it. loads run on the
+     * loader pool, not the thread that fired the route, and one that's still finishing up takes in any request for the
+     * buildID it's loading - so resetting the bean any sooner would leave the next pass with nothing to wait for.
+     *
+     * @param camelContext
+     * @param exchangeRateBean
+     * @param buildID
+     */
+    static void awaitLoad(CamelContext camelContext, ExchangeRateBean exchangeRateBean, String buildID) {
+        SingleFlightLoader singleFlightLoader = camelContext.getRegistry().lookupByNameAndType(
+                CurrencyDataPollingConsumerRoute.LOADER_ROUTE_ID,
+                SingleFlightLoader.class
+        );
+
+        while (buildID.equals(exchangeRateBean.getBuildID()) == false ||
+               singleFlightLoader.getLoadingBuildID() != null ||
+               singleFlightLoader.getPendingBuildID() != null) {
+
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * camel context wired up the same way the route tests wire it - route fired through direct:start rather than by
+     * the timer, directory watching off.
+     *
+     * @param dataDirectory
+     * @param exchangeRateBean
+     * @return started context
+     * @throws Exception
+     */
+    static CamelContext routeContext(Path dataDirectory, ExchangeRateBean exchangeRateBean) throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("polling_consumer_uri_template", "direct:");
+        properties.setProperty("route_from_period", "start");
+        properties.setProperty("data_directory", dataDirectory.toString());
+        properties.setProperty("buildID_filename", BUILD_ID_FILENAME);
+        properties.setProperty("buildID_file_processor", "bean:io.holitek.finance_company_x.BuildIdFileProcessor");
+        properties.setProperty("datafile_processor", "bean:io.holitek.finance_company_x.DataFileProcessor");
+        properties.setProperty("watch_enabled", "false");
+
+        // a reload of data the cache has seen is a buildID swap, so caching would leave nothing of a reload to measure
+        properties.setProperty("snapshot_cache_size", "0");
+
+        CamelContext camelContext = new DefaultCamelContext();
+        camelContext.getPropertiesComponent().setInitialProperties(properties);
+        camelContext.getRegistry().bind(ExchangeRateBean.NAMESPACE_KEY, exchangeRateBean);
+        camelContext.getRegistry().bind(TimeSeriesStore.NAMESPACE_KEY, new TimeSeriesStore());
+        camelContext.addRoutes(new CurrencyDataPollingConsumerRoute());
+        camelContext.start();
+        return camelContext;
+    }
+
+}
@@ -0,0 +1,58 @@
+package io.holitek.finance_company_x;
+
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * loading rates into the bean and rendering them back out, from tiny to very large data files
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {BenchmarkFixtures.LOG_CONFIG_JVM_ARG, "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ExchangeRateLoadBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int entries;
+
+    private ExchangeRateBean exchangeRateBean;
+    private String exchangeRateJson;
+    private Map<String, Double> exchangeRateMap;
+
+
+    @Setup(Level.Trial)
+    public void setup() {
+        exchangeRateMap = BenchmarkFixtures.exchangeRateMap(entries);
+        exchangeRateJson = ExchangeRateRenderings.of(exchangeRateMap).getJson();
+        exchangeRateBean = new ExchangeRateBean();
+        exchangeRateBean.setExchangeRates(BenchmarkFixtures.BUILD_ID, exchangeRateJson);
+    }
+
+
+    @Benchmark
+    public boolean setExchangeRateMap() {
+        return exchangeRateBean.setExchangeRateMap(exchangeRateJson);
+    }
+
+    @Benchmark
+    public boolean setExchangeRatesFromJson() {
+        return exchangeRateBean.setExchangeRates(BenchmarkFixtures.BUILD_ID, exchangeRateJson);
+    }
+
+    @Benchmark
+    public boolean setExchangeRatesFromMap() {
+        return exchangeRateBean.setExchangeRates(BenchmarkFixtures.BUILD_ID, exchangeRateMap);
+    }
+
+    @Benchmark
+    public String getExchangeRatesAsJson() {
+        return exchangeRateBean.getExchangeRatesAsJson();
+    }
+
+}
@@ -0,0 +1,75 @@
+package io.holitek.finance_company_x;
+
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * rate lookups against a loaded bean from one reader thread and from as many reader threads as there are cores
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = BenchmarkFixtures.LOG_CONFIG_JVM_ARG)
+@State(Scope.Benchmark)
+public class ExchangeRateLookupBenchmark {
+
+    @Param({"1000", "100000"})
+    public int entries;
+
+    private ExchangeRateBean exchangeRateBean;
+    private String[] keys;
+
+
+    @Setup(Level.Trial)
+    public void setup() {
+        exchangeRateBean = new ExchangeRateBean();
+        exchangeRateBean.setExchangeRates(BenchmarkFixtures.BUILD_ID, BenchmarkFixtures.exchangeRateMap(entries));
+
+        // every 8th key is a miss
+        keys = new String[1024];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i % 8 == 0 ? "NOT_HERE" : BenchmarkFixtures.pairKey(i * 7919 % entries);
+        }
+    }
+
+    /**
+     * per thread cursor so readers don't contend on a shared counter
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index;
+
+        int next(int length) { return index = (index + 1) & (length - 1); }
+    }
+
+
+    @Benchmark
+    @Threads(1)
+    public Optional<Double> getExchangeRateForOneReader(Cursor cursor) {
+        return exchangeRateBean.getExchangeRateFor(keys[cursor.next(keys.length)]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Optional<Double> getExchangeRateForAllCores(Cursor cursor) {
+        return exchangeRateBean.getExchangeRateFor(keys[cursor.next(keys.length)]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public double getRateOneReader(Cursor cursor) {
+        return exchangeRateBean.getRate(keys[cursor.next(keys.length)]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public double getRateAllCores(Cursor cursor) {
+        return exchangeRateBean.getRate(keys[cursor.next(keys.length)]);
+    }
+
+}
@@ -0,0 +1,69 @@
+package io.holitek.finance_company_x;
+
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.support.DefaultExchange;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * the two file processors on their own, outside of the route
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {BenchmarkFixtures.LOG_CONFIG_JVM_ARG, "-Xmx4g"})
+@State(Scope.Benchmark)
+public class FileProcessorBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int entries;
+
+    private CamelContext camelContext;
+    private BuildIdFileProcessor buildIdFileProcessor;
+    private DataFileProcessor dataFileProcessor;
+    private Exchange exchange;
+
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Path dataDirectory = BenchmarkFixtures.dataDirectory(entries);
+        camelContext = BenchmarkFixtures.routeContext(dataDirectory, new ExchangeRateBean());
+
+        buildIdFileProcessor = new BuildIdFileProcessor();
+        dataFileProcessor = new DataFileProcessor();
+
+        exchange = new DefaultExchange(camelContext);
+        exchange.getMessage().setHeader(CurrencyDataPollingConsumerRoute.DATA_DIRECTORY_HEADER_KEY, dataDirectory.toString());
+        buildIdFileProcessor.process(exchange);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() { camelContext.stop(); }
+
+
+    /**
+     * the buildID file hasn't changed, which is what almost every poll sees
+     *
+     * @return
+     * @throws Exception
+     */
+    @Benchmark
+    public Exchange buildIdFileProcessorUnchanged() throws Exception {
+        buildIdFileProcessor.process(exchange);
+        return exchange;
+    }
+
+    @Benchmark
+    public Exchange dataFileProcessor() throws Exception {
+        dataFileProcessor.process(exchange);
+        return exchange;
+    }
+
+}
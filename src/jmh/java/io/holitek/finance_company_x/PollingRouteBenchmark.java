@@ -0,0 +1,70 @@
+package io.holitek.finance_company_x;
+
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.ProducerTemplate;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * one full pass of the polling route, fired through the same direct:start wiring the route tests use
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {BenchmarkFixtures.LOG_CONFIG_JVM_ARG, "-Xmx4g"})
+@State(Scope.Benchmark)
+public class PollingRouteBenchmark {
+
+    private static final String START_URI = "direct:start";
+
+    @Param({"10", "1000", "100000"})
+    public int entries;
+
+    private CamelContext camelContext;
+    private ProducerTemplate producerTemplate;
+    private ExchangeRateBean exchangeRateBean;
+
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        exchangeRateBean = new ExchangeRateBean();
+        camelContext = BenchmarkFixtures.routeContext(BenchmarkFixtures.dataDirectory(entries), exchangeRateBean);
+        producerTemplate = camelContext.createProducerTemplate();
+        producerTemplate.sendBody(START_URI, "");
+        BenchmarkFixtures.awaitLoad(camelContext, exchangeRateBean, BenchmarkFixtures.BUILD_ID);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() { camelContext.stop(); }
+
+
+    /**
+     * buildID hasn't changed - the route should take no action
+     */
+    @Benchmark
+    public void unchangedPass() {
+        producerTemplate.sendBody(START_URI, "");
+    }
+
+    /**
+     * bean is reset before each pass so every pass reads, parses and swaps in the data file. the load runs on the
+     * loader pool, so the pass isn't over until the loader is done with it
+     */
+    @Benchmark
+    public void reloadPass(ResetBean resetBean) {
+        producerTemplate.sendBody(START_URI, "");
+        BenchmarkFixtures.awaitLoad(camelContext, exchangeRateBean, BenchmarkFixtures.BUILD_ID);
+    }
+
+    @State(Scope.Thread)
+    public static class ResetBean {
+        @Setup(Level.Invocation)
+        public void reset(PollingRouteBenchmark benchmark) { benchmark.exchangeRateBean.resetBean(); }
+    }
+
+}
@@ -0,0 +1,157 @@
+package io.holitek.finance_company_x;
+
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.LoggingLevel;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static io.holitek.finance_company_x.BuildIdFileProcessor.NEW_BUILD_ID_HEADER_KEY;
+import static io.holitek.finance_company_x.ExchangeRateBean.CURRENT_BUILD_ID_HEADER_KEY;
+
+
+/**
+ * what it costs the loader route to get a data file it has read into the bean - looking up the current buildID, then
+ * handing the data file over to be loaded. every pass loads the rates into a new snapshot, as the route does.
+ *
+ * headerBeanUri is how the route used to do it: the data file's raw contents in a header, a bean endpoint to read the
+ * buildID - which also sets the json of the current rates as the body - the headers logged at debug, then buildID and
+ * contents bound to setExchangeRates(String, String) by the simple language, which parsed them with jackson databind.
+ * typedBody is how it does it now: the data file arrives already streamed into a rate map, the bean is called directly
+ * and the rates travel in a {@link DataFileLoad}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {BenchmarkFixtures.LOG_CONFIG_JVM_ARG, "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ReloadHandoffBenchmark {
+
+    private static final String HEADER_BEAN_NAME = "headerBean";
+    private static final String TYPED_BODY_BEAN_NAME = "typedBodyBean";
+    private static final String HEADER_BEAN_URI = "direct:headerBeanUri";
+    private static final String TYPED_BODY_URI = "direct:typedBody";
+    private static final String DATA_FILE_CONTENTS_HEADER_KEY = "dataFileContents";
+
+    @Param({"10", "1000", "100000"})
+    public int entries;
+
+    private CamelContext camelContext;
+    private ProducerTemplate producerTemplate;
+    private String exchangeRateJson;
+    private DataFileLoad dataFileLoad;
+
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        exchangeRateJson = BenchmarkFixtures.exchangeRateJson(entries);
+
+        // read-only from here on, so every pass can hand the same map over as the backing store of its snapshot
+        Map<String, Double> exchangeRateMap = BenchmarkFixtures.exchangeRateMap(entries);
+        dataFileLoad = DataFileLoad.ofRates(
+                BenchmarkFixtures.BUILD_ID,
+                BenchmarkFixtures.DATA_FILENAME,
+                exchangeRateMap
+        );
+
+        // each holds the full rates from the start, so the bean endpoint's default handler sets a body the size of a
+        //   reload
+        DatabindExchangeRateBean headerBean = new DatabindExchangeRateBean();
+        headerBean.setExchangeRates("0000", exchangeRateJson);
+        ExchangeRateBean typedBodyBean = new ExchangeRateBean();
+        typedBodyBean.setExchangeRates("0000", exchangeRateMap, BenchmarkFixtures.DATA_FILENAME);
+
+        camelContext = new DefaultCamelContext();
+        camelContext.getRegistry().bind(HEADER_BEAN_NAME, headerBean);
+        camelContext.getRegistry().bind(TYPED_BODY_BEAN_NAME, typedBodyBean);
+        camelContext.addRoutes(new RouteBuilder() {
+            @Override
+            public void configure() {
+                from(HEADER_BEAN_URI)
+                    .to("bean:" + HEADER_BEAN_NAME)
+                    .log(LoggingLevel.DEBUG, "exchange headers are ${headers}")
+                    .to("bean:" + HEADER_BEAN_NAME +
+                            "?method=setExchangeRates(" +
+                                "${headers." + NEW_BUILD_ID_HEADER_KEY + "}," +
+                                "${headers." + DATA_FILE_CONTENTS_HEADER_KEY + "}" +
+                            ")"
+                    );
+
+                from(TYPED_BODY_URI)
+                    .process(exchange -> exchange.getMessage().setHeader(
+                            CURRENT_BUILD_ID_HEADER_KEY,
+                            exchange.getContext()
+                                    .getRegistry()
+                                    .lookupByNameAndType(TYPED_BODY_BEAN_NAME, ExchangeRateBean.class)
+                                    .getBuildID()
+                    ))
+                    .process(exchange -> exchange.getMessage().setBody(
+                            exchange.getMessage()
+                                    .getBody(DataFileLoad.class)
+                                    .loadInto(exchange.getContext()
+                                                      .getRegistry()
+                                                      .lookupByNameAndType(TYPED_BODY_BEAN_NAME,
+                                                                           ExchangeRateBean.class))
+                    ));
+            }
+        });
+
+        camelContext.start();
+        producerTemplate = camelContext.createProducerTemplate();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() { camelContext.stop(); }
+
+
+    @Benchmark
+    public Object headerBeanUri() {
+        return producerTemplate.send(HEADER_BEAN_URI, exchange -> {
+            exchange.getMessage().setBody("");
+            exchange.getMessage().setHeader(NEW_BUILD_ID_HEADER_KEY, BenchmarkFixtures.BUILD_ID);
+            exchange.getMessage().setHeader(DATA_FILE_CONTENTS_HEADER_KEY, exchangeRateJson);
+        }).getMessage().getBody();
+    }
+
+    @Benchmark
+    public Object typedBody() {
+        return producerTemplate.send(TYPED_BODY_URI, exchange -> {
+            exchange.getMessage().setBody(dataFileLoad);
+            exchange.getMessage().setHeader(NEW_BUILD_ID_HEADER_KEY, BenchmarkFixtures.BUILD_ID);
+        }).getMessage().getBody();
+    }
+
+
+    /**
+     * parses json handed to it as a string the way the bean used to - into a map, by way of jackson databind - rather
+     * than streaming it with {@link ExchangeRateFileReader}
+     */
+    public static class DatabindExchangeRateBean extends ExchangeRateBean {
+
+        private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+        private static final TypeReference<LinkedHashMap<String, Double>> RATE_MAP_TYPE = new TypeReference<>() { };
+
+        @Override
+        public boolean setExchangeRates(String buildID, String exchangeRateJson) {
+            try {
+                return setExchangeRates(buildID, OBJECT_MAPPER.readValue(exchangeRateJson, RATE_MAP_TYPE), "");
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("exchange rate json can't be parsed", e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,189 @@
+package io.holitek.finance_company_x;
+
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.Random;
+
+
+/**
+ * works out how long to wait before the next poll from when the buildID has changed so far. providers publish on a
+ * cadence, so the gaps between changes are learned and the next change is expected one typical gap - the median of the
+ * last few - after the one before. around that time polls run at the minimum interval. the rest of the time every poll
+ * that finds nothing new doubles the interval, up to the maximum, though never so far as to sleep through the start of
+ * the next expected change. until two changes have been seen there's no cadence, and the interval just backs off.
+ *
+ * every interval is jittered by up to the jitter fraction either way, so a fleet of instances that started together, or
+ * that all expect the same publish time, drift apart rather than poll the same directory in lockstep.
+ *
+ * not thread safe - meant to be driven by one scheduler thread.
+ */
+public final class AdaptivePollInterval {
+
+    // changes remembered to learn the cadence from
+    static final int CHANGE_HISTORY_SIZE = 8;
+
+    // polls run fast from a cadence / this before the expected change to as long after it
+    private static final int WINDOW_DIVISOR = 8;
+
+    private final long minInterval;
+    private final long maxInterval;
+    private final double jitter;
+    private final Random random;
+
+    private final Deque<Long> changeTimes = new ArrayDeque<>();
+    private long backoffInterval;
+    private boolean changeRecorded;
+
+
+    /**
+     *
+     * @param minInterval millis between polls around an expected change
+     * @param maxInterval millis between polls at most
+     * @param jitter fraction of each interval, between 0 and 1, it may be moved by either way
+     * @param random jitter source. seeded differently on every instance so that instances don't jitter alike
+     */
+    public AdaptivePollInterval(long minInterval, long maxInterval, double jitter, Random random) {
+        if (minInterval < 1 || maxInterval < minInterval) {
+            throw new IllegalArgumentException(
+                    "poll intervals must be at least 1 and min no more than max: " + minInterval + ", " + maxInterval
+            );
+        }
+
+        if (jitter < 0 || jitter >= 1) {
+            throw new IllegalArgumentException("poll jitter must be at least 0 and less than 1: " + jitter);
+        }
+
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.jitter = jitter;
+        this.random = random;
+        this.backoffInterval = minInterval;
+    }
+
+
+    // PUBLIC
+    //
+
+    /**
+     *
+     * @param now millis, when the poll ran
+     * @param changed whether or not the poll found a new buildID
+     * @return millis to wait before the next poll
+     */
+    public long next(long now, boolean changed) {
+        if (changed) {
+            recordChange(now);
+        }
+
+        return next(now);
+    }
+
+    /**
+     * for changes found other than by a poll, eg: by watching the data directory. changes are expected in the order
+     * they happened.
+     *
+     * @param changedAt millis, when the buildID changed
+     */
+    public void recordChange(long changedAt) {
+        changeTimes.addLast(changedAt);
+        if (changeTimes.size() > CHANGE_HISTORY_SIZE) {
+            changeTimes.removeFirst();
+        }
+
+        backoffInterval = minInterval;
+        changeRecorded = true;
+    }
+
+    /**
+     * backs off unless a change has been recorded since the last poll
+     *
+     * @param now millis, when the poll ran
+     * @return millis to wait before the next poll
+     */
+    public long next(long now) {
+        if (changeRecorded) {
+            changeRecorded = false;
+        } else {
+            backoffInterval = Math.min(maxInterval, backoffInterval * 2);
+        }
+
+        long interval = backoffInterval;
+        Optional<Long> cadenceOptional = getCadence();
+        if (cadenceOptional.isPresent()) {
+            long window = Math.max(minInterval, cadenceOptional.get() / WINDOW_DIVISOR);
+            long expected = expectedChangeAt(now, cadenceOptional.get(), window);
+            if (now >= expected - window) {
+                interval = minInterval;
+            } else {
+                interval = Math.min(interval, expected - window - now);
+            }
+        }
+
+        return jitter(Math.max(minInterval, interval));
+    }
+
+    /**
+     *
+     * @return millis, the median gap between the changes seen lately - or empty if fewer than two have been seen
+     */
+    public Optional<Long> getCadence() {
+        if (changeTimes.size() < 2) {
+            return Optional.empty();
+        }
+
+        long[] gaps = new long[changeTimes.size() - 1];
+        Long previous = null;
+        int i = 0;
+        for (Long changeTime : changeTimes) {
+            if (previous != null) {
+                gaps[i++] = changeTime - previous;
+            }
+
+            previous = changeTime;
+        }
+
+        Arrays.sort(gaps);
+        return Optional.of(Math.max(1, gaps[gaps.length / 2]));
+    }
+
+    public long getMinInterval() { return minInterval; }
+
+    public long getMaxInterval() { return maxInterval; }
+
+
+    // PRIVATE
+    //
+
+    /**
+     * a provider that skipped a publish is expected a whole cadence later, rather than polled fast until it catches up
+     *
+     * @param now
+     * @param cadence
+     * @param window
+     * @return millis, when the next change is expected - the first cadence step after the last change whose window
+     *         hasn't passed
+     */
+    private long expectedChangeAt(long now, long cadence, long window) {
+        long lastChange = changeTimes.getLast();
+        long steps = Math.max(1, (now - lastChange - window) / cadence + 1);
+        return lastChange + steps * cadence;
+    }
+
+    /**
+     *
+     * @param interval
+     * @return interval moved by up to the jitter fraction either way, kept within the min and max intervals
+     */
+    private long jitter(long interval) {
+        if (jitter == 0) {
+            return interval;
+        }
+
+        double factor = 1 + jitter * (2 * random.nextDouble() - 1);
+        return Math.min(maxInterval, Math.max(minInterval, Math.round(interval * factor)));
+    }
+
+}
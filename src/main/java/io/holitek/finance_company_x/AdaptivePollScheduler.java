@@ -0,0 +1,276 @@
+package io.holitek.finance_company_x;
+
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.CamelContextAware;
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.support.service.ServiceSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.beans.Introspector;
+
+import java.security.SecureRandom;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.holitek.finance_company_x.BuildIdFileProcessor.NEW_BUILD_ID_HEADER_KEY;
+
+
+/**
+ * takes the place of the fixed rate polling timer. each poll fires the main update pipeline, and queues polls of any
+ * other sources, then waits as long as the {@link AdaptivePollInterval} says before the next - fast around the times
+ * the main provider's buildID usually changes, backing off when nothing does. the interval is learned from the main
+ * data directory alone, and other sources are polled on the same schedule.
+ *
+ * changes are learned from when the main bean swaps them in, whether a poll or the {@link DataDirectoryWatcher} found
+ * them, so watching doesn't skew the cadence by however long the next poll was still to wait. without a bean in the
+ * registry they're learned from the polls that find them instead.
+ *
+ * the first poll is put off by a random part of the minimum interval, so instances that start together don't poll
+ * together either. the interval the next poll is waiting out is published as a metric.
+ */
+public class AdaptivePollScheduler extends ServiceSupport implements CamelContextAware {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptivePollScheduler.class);
+
+    public static final String NAMESPACE_KEY = Introspector.decapitalize(AdaptivePollScheduler.class.getSimpleName());
+
+    public static final long DEFAULT_MIN_INTERVAL = 5000;
+    public static final long DEFAULT_MAX_INTERVAL = 300000;
+    public static final double DEFAULT_JITTER = 0.1;
+
+    private final String pipelineUri;
+    private final List<String> dispatchUris;
+    private final String exchangeRateBeanName;
+    private final AdaptivePollInterval adaptivePollInterval;
+    private final SecureRandom random = new SecureRandom();
+    private final AtomicLong pollCount = new AtomicLong();
+    private final AtomicLong changeCount = new AtomicLong();
+
+    // millis, when the bean swapped in each change the scheduler thread hasn't learned from yet
+    private final Queue<Long> changeTimes = new ConcurrentLinkedQueue<>();
+    private volatile boolean learningFromSwaps;
+    private volatile Flow.Subscription swapSubscription;
+
+    private CamelContext camelContext;
+    private ProducerTemplate producerTemplate;
+    private volatile ScheduledExecutorService scheduledExecutorService;
+
+    // only touched on the scheduler thread
+    private String lastBuildID;
+
+
+    /**
+     *
+     * @param pipelineUri endpoint that runs the main update pipeline
+     * @param dispatchUris endpoints that queue a poll of each other source
+     * @param exchangeRateBeanName registry name of the bean the pipeline loads into
+     * @param adaptivePollInterval
+     */
+    public AdaptivePollScheduler(String pipelineUri,
+                                 List<String> dispatchUris,
+                                 String exchangeRateBeanName,
+                                 AdaptivePollInterval adaptivePollInterval) {
+
+        this.pipelineUri = pipelineUri;
+        this.dispatchUris = List.copyOf(dispatchUris);
+        this.exchangeRateBeanName = exchangeRateBeanName;
+        this.adaptivePollInterval = adaptivePollInterval;
+    }
+
+
+    // PUBLIC
+    //
+
+    @Override
+    public CamelContext getCamelContext() { return camelContext; }
+
+    @Override
+    public void setCamelContext(CamelContext camelContext) { this.camelContext = camelContext; }
+
+    /**
+     *
+     * @return number of polls run
+     */
+    public long getPollCount() { return pollCount.get(); }
+
+    /**
+     *
+     * @return number of buildID changes seen to learn the cadence from
+     */
+    public long getChangeCount() { return changeCount.get(); }
+
+
+    // PROTECTED
+    //
+
+    @Override
+    protected void doStart() throws Exception {
+        ExchangeRateBean exchangeRateBean =
+                camelContext.getRegistry().lookupByNameAndType(exchangeRateBeanName, ExchangeRateBean.class);
+
+        if (exchangeRateBean == null) {
+            LOG.warn("no {} named {} in the registry - learning from polls alone",
+                     ExchangeRateBean.class.getSimpleName(),
+                     exchangeRateBeanName);
+        } else {
+            learningFromSwaps = true;
+            exchangeRateBean.getSnapshotPublisher().subscribe(new SwapSubscriber());
+        }
+
+        producerTemplate = camelContext.createProducerTemplate();
+        scheduledExecutorService = camelContext.getExecutorServiceManager()
+                                               .newSingleThreadScheduledExecutor(this, NAMESPACE_KEY);
+
+        long initialDelay = (long)(random.nextDouble() * adaptivePollInterval.getMinInterval());
+        schedule(initialDelay);
+        LOG.info("polling adaptively every {} to {} millis, starting in {} millis",
+                 adaptivePollInterval.getMinInterval(),
+                 adaptivePollInterval.getMaxInterval(),
+                 initialDelay);
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        learningFromSwaps = false;
+        if (swapSubscription != null) {
+            swapSubscription.cancel();
+            swapSubscription = null;
+        }
+
+        if (scheduledExecutorService != null) {
+            camelContext.getExecutorServiceManager().shutdownNow(scheduledExecutorService);
+            scheduledExecutorService = null;
+        }
+
+        if (producerTemplate != null) {
+            producerTemplate.stop();
+            producerTemplate = null;
+        }
+    }
+
+
+    // PRIVATE
+    //
+
+    /**
+     *
+     * @param delay millis
+     */
+    private void schedule(long delay) {
+        ScheduledExecutorService scheduledExecutorService = this.scheduledExecutorService;
+        if (scheduledExecutorService == null) {
+            return;
+        }
+
+        ExchangeRateMetrics.INSTANCE.recordPollInterval(delay);
+        try {
+            scheduledExecutorService.schedule(this::poll, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOG.info("stopped polling adaptively");
+        }
+    }
+
+    /**
+     * runs on the scheduler thread. whatever goes wrong, the next poll is scheduled
+     */
+    private void poll() {
+        boolean changed = false;
+        try {
+            pollCount.incrementAndGet();
+            dispatchUris.forEach(dispatchUri -> producerTemplate.sendBody(dispatchUri, ""));
+
+            Exchange exchange = producerTemplate.send(
+                    pipelineUri,
+                    pollExchange -> pollExchange.getMessage().setBody("")
+            );
+
+            if (exchange.getException() != null) {
+                LOG.error("something went wrong polling {}", pipelineUri, exchange.getException());
+            }
+
+            String buildID = exchange.getMessage().getHeader(NEW_BUILD_ID_HEADER_KEY, String.class);
+
+            // the first buildID seen is only where learning starts - it may have been published any time before
+            changed = buildID != null && lastBuildID != null && Objects.equals(buildID, lastBuildID) == false;
+            lastBuildID = buildID == null ? lastBuildID : buildID;
+        } catch (RuntimeException e) {
+            LOG.error("something went wrong polling {}", pipelineUri, e);
+        }
+
+        long now = System.currentTimeMillis();
+        if (learningFromSwaps) {
+            // a change this poll found is learned from once the loader has swapped it in, like any other
+            changed = false;
+            for (Long changeTime = changeTimes.poll(); changeTime != null; changeTime = changeTimes.poll()) {
+                adaptivePollInterval.recordChange(changeTime);
+                changed = true;
+            }
+        } else if (changed) {
+            adaptivePollInterval.recordChange(now);
+            changeCount.incrementAndGet();
+        }
+
+        long delay = adaptivePollInterval.next(now);
+        if (changed) {
+            LOG.info("buildID changed - next poll in {} millis", delay);
+        } else {
+            LOG.debug("next poll in {} millis", delay);
+        }
+
+        schedule(delay);
+    }
+
+
+    /**
+     * hands when the bean swapped in each change over to the scheduler thread. a snapshot loaded or restored into an
+     * empty bean, a reset, and a swap that only stamps the same buildID afresh aren't changes the provider published
+     * then, so aren't learned from.
+     */
+    private final class SwapSubscriber implements Flow.Subscriber<SnapshotChange> {
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            swapSubscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(SnapshotChange snapshotChange) {
+            ExchangeRateSnapshot previousSnapshot = snapshotChange.getPreviousSnapshot();
+            ExchangeRateSnapshot snapshot = snapshotChange.getSnapshot();
+            if (previousSnapshot == ExchangeRateSnapshot.EMPTY ||
+                snapshot == ExchangeRateSnapshot.EMPTY ||
+                previousSnapshot.getBuildID().equals(snapshot.getBuildID())) {
+
+                return;
+            }
+
+            // when it was swapped in rather than when it's delivered, which may be later
+            changeTimes.add(snapshot.getLoadedAt().toEpochMilli());
+            changeCount.incrementAndGet();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            LOG.warn("stopped following {}'s swaps - learning from polls alone", exchangeRateBeanName, throwable);
+            learningFromSwaps = false;
+        }
+
+        @Override
+        public void onComplete() { }
+
+    }
+
+}
@@ -2,6 +2,9 @@ package io.holitek.finance_company_x;
 
 
 import org.apache.camel.BindToRegistry;
+import org.apache.camel.PropertyInject;
+
+import java.nio.file.Paths;
 
 
 /**
@@ -14,9 +17,36 @@ public class AppConfig {
      * bean will need the ability dynamically alter the contents of the exchange message and, when defined by classname,
      * that doesn't seem to be possible as all of that gets resolved and set in stone at runetime. womp womp.
      *
+     * the last good snapshot is restored here, before any route starts, so the app has rates to answer with from the
+     * moment it's up rather than from its first poll.
+     *
+     * @param historySize number of recently loaded snapshots the bean keeps for version pinned lookups
+     * @param stateFile where to persist the last good snapshot, or empty to not persist it
+     * @return
+     */
+    @BindToRegistry
+    public ExchangeRateBean exchangeRateBean(
+            @PropertyInject(value = "history_size", defaultValue = "" + ExchangeRateBean.DEFAULT_HISTORY_SIZE)
+            int historySize,
+            @PropertyInject(value = "state_file", defaultValue = "") String stateFile) {
+
+        SnapshotStateFile snapshotStateFile = stateFile.isBlank() ? null : new SnapshotStateFile(Paths.get(stateFile));
+        ExchangeRateBean exchangeRateBean = new ExchangeRateBean(historySize, snapshotStateFile);
+        exchangeRateBean.restoreSnapshot();
+        return exchangeRateBean;
+    }
+
+    /**
+     * rate history for every data file in the data directory - kept up to date by the polling route
+     *
+     * @param backfillThreads number of threads to parse data files with when backfilling, zero for one per core
      * @return
      */
     @BindToRegistry
-    public ExchangeRateBean exchangeRateBean() { return new ExchangeRateBean(); }
+    public TimeSeriesStore timeSeriesStore(
+            @PropertyInject(value = "time_series_backfill_threads", defaultValue = "0") int backfillThreads) {
+
+        return new TimeSeriesStore(backfillThreads);
+    }
 
 }
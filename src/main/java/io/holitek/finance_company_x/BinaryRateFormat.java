@@ -0,0 +1,254 @@
+package io.holitek.finance_company_x;
+
+
+import java.io.IOException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.security.MessageDigest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * compact binary rendering of a set of exchange rates. everything is little-endian:
+ *
+ * <pre>
+ *   magic             4 bytes   'F' 'C' 'X' 'R'
+ *   version           u16       {@link #VERSION}
+ *   reserved          u16       zero
+ *   entry count       i32
+ *   dictionary length i32       size in bytes of the key dictionary that follows
+ *   key dictionary              per key, sorted: u16 length + UTF-8 bytes
+ *   padding                     zero bytes up to the next 8 byte boundary
+ *   rate block                  entry count doubles, in dictionary order
+ * </pre>
+ *
+ * besides being one of a snapshot's {@link ExchangeRateRenderings}, it's an alternative to json for data files. a
+ * binary data file is picked out either by a {@link #BUILD_ID_VERSION} Version field in the buildID file or by a
+ * {@link #FILE_EXTENSION} extension, and is read through a memory mapped buffer. loading one is a walk over the key
+ * dictionary and a bulk read of the rate block - no text is parsed. see {@link DataFileConverter} for turning existing
+ * json data files into binary ones.
+ */
+public final class BinaryRateFormat {
+
+    public static final byte[] MAGIC = {'F', 'C', 'X', 'R'};
+    public static final short VERSION = 1;
+
+    public static final String FILE_EXTENSION = ".fcxr";
+    public static final String BUILD_ID_VERSION = "v2";
+
+    static final int HEADER_LENGTH = MAGIC.length + Short.BYTES + Short.BYTES + Integer.BYTES + Integer.BYTES;
+
+    private BinaryRateFormat() { }
+
+
+    // PUBLIC
+    //
+
+    /**
+     * null rates are skipped.
+     *
+     * @param exchangeRateMap
+     * @return
+     */
+    public static byte[] encode(Map<String, Double> exchangeRateMap) {
+        List<String> keys = new ArrayList<>(exchangeRateMap.size());
+        exchangeRateMap.forEach((key, rate) -> { if (rate != null) { keys.add(key); } });
+        Collections.sort(keys);
+
+        List<byte[]> encodedKeys = new ArrayList<>(keys.size());
+        int dictionaryLength = 0;
+        for (String key : keys) {
+            byte[] encodedKey = key.getBytes(StandardCharsets.UTF_8);
+            if (encodedKey.length > 0xFFFF) {
+                throw new IllegalArgumentException("key too long for binary rate format: " + key);
+            }
+
+            encodedKeys.add(encodedKey);
+            dictionaryLength += Short.BYTES + encodedKey.length;
+        }
+
+        int rateBlockOffset = rateBlockOffset(dictionaryLength);
+        ByteBuffer buffer = ByteBuffer.allocate(rateBlockOffset + keys.size() * Double.BYTES)
+                                      .order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.put(MAGIC)
+              .putShort(VERSION)
+              .putShort((short)0)
+              .putInt(keys.size())
+              .putInt(dictionaryLength);
+
+        for (byte[] encodedKey : encodedKeys) {
+            buffer.putShort((short)encodedKey.length).put(encodedKey);
+        }
+
+        buffer.position(rateBlockOffset);
+        for (String key : keys) {
+            buffer.putDouble(exchangeRateMap.get(key));
+        }
+
+        return buffer.array();
+    }
+
+    /**
+     *
+     * @param buffer positioned at the start of an encoded set of rates. its position and byte order aren't changed
+     * @return read-only map of the rates, in key order
+     * @throws IOException if the buffer doesn't hold a well formed set of rates in a version this class understands
+     */
+    public static Map<String, Double> decode(ByteBuffer buffer) throws IOException {
+        ByteBuffer input = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            input.get(magic);
+            if (Arrays.equals(MAGIC, magic) == false) {
+                throw new IOException("not binary exchange rate data - bad magic number");
+            }
+
+            short version = input.getShort();
+            if (version != VERSION) {
+                throw new IOException("unsupported binary exchange rate data version: " + version);
+            }
+
+            input.getShort();
+            int count = input.getInt();
+            int dictionaryLength = input.getInt();
+            if (count < 0 || dictionaryLength < 0 || dictionaryLength > input.remaining()) {
+                throw new IOException("corrupt binary exchange rate header");
+            }
+
+            int rateBlockOffset = rateBlockOffset(dictionaryLength);
+            if ((long)rateBlockOffset + (long)count * Double.BYTES > input.limit()) {
+                throw new IOException("binary exchange rate data is truncated");
+            }
+
+            DoubleBuffer rates = input.duplicate()
+                                      .position(rateBlockOffset)
+                                      .slice()
+                                      .order(ByteOrder.LITTLE_ENDIAN)
+                                      .asDoubleBuffer();
+
+            // sized up front so it never rehashes while being filled. the rate block check above keeps this from
+            //   overflowing
+            Map<String, Double> exchangeRateMap = new LinkedHashMap<>(count * 4 / 3 + 1);
+            byte[] keyBytes = new byte[64];
+            for (int i = 0; i < count; i++) {
+                int keyLength = Short.toUnsignedInt(input.getShort());
+                if (input.position() + keyLength > HEADER_LENGTH + dictionaryLength) {
+                    throw new IOException("binary exchange rate key dictionary is corrupt");
+                }
+
+                if (keyLength > keyBytes.length) {
+                    keyBytes = new byte[Math.max(keyLength, keyBytes.length * 2)];
+                }
+
+                input.get(keyBytes, 0, keyLength);
+                exchangeRateMap.put(new String(keyBytes, 0, keyLength, StandardCharsets.UTF_8), rates.get(i));
+            }
+
+            return Collections.unmodifiableMap(exchangeRateMap);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("binary exchange rate data is truncated or corrupt", e);
+        }
+    }
+
+    /**
+     * maps the file into memory rather than reading it through a stream.
+     *
+     * @param dataFilePath
+     * @return read-only map of the rates, in key order
+     * @throws IOException if the file can't be read or isn't well formed binary rate data
+     */
+    public static Map<String, Double> read(Path dataFilePath) throws IOException {
+        return read(dataFilePath, null);
+    }
+
+    /**
+     * as {@link #read(Path)}, feeding the mapped bytes through a digest on the way.
+     *
+     * @param dataFilePath
+     * @param contentDigest updated with every byte of the file, or null
+     * @return read-only map of the rates, in key order
+     * @throws IOException if the file can't be read or isn't well formed binary rate data
+     */
+    public static Map<String, Double> read(Path dataFilePath, MessageDigest contentDigest) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(dataFilePath, StandardOpenOption.READ)) {
+            MappedByteBuffer mappedByteBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+            if (contentDigest != null) {
+                contentDigest.update(mappedByteBuffer.duplicate());
+            }
+
+            return decode(mappedByteBuffer);
+        }
+    }
+
+    /**
+     *
+     * @param dataFileName
+     * @param buildIdVersion Version field from the buildID file, if there was one
+     * @return whether or not the data file should be read as binary rather than json
+     */
+    public static boolean isBinaryDataFile(String dataFileName, String buildIdVersion) {
+        return BUILD_ID_VERSION.equals(buildIdVersion) || dataFileName.endsWith(FILE_EXTENSION);
+    }
+
+    /**
+     * reads a data file in whichever format it's in.
+     *
+     * @param dataFilePath
+     * @param buildIdVersion Version field from the buildID file, or null if there isn't one
+     * @return read-only map of the rates
+     * @throws IOException if the file can't be read or isn't well formed
+     */
+    public static Map<String, Double> readDataFile(Path dataFilePath, String buildIdVersion) throws IOException {
+        return readDataFile(dataFilePath, buildIdVersion, null);
+    }
+
+    /**
+     * reads a data file in whichever format it's in, hashing its contents in the same pass so the file is only read
+     * once.
+     *
+     * @param dataFilePath
+     * @param buildIdVersion Version field from the buildID file, or null if there isn't one
+     * @param contentDigest updated with every byte of the file, or null
+     * @return read-only map of the rates
+     * @throws IOException if the file can't be read or isn't well formed
+     */
+    public static Map<String, Double> readDataFile(Path dataFilePath,
+                                                   String buildIdVersion,
+                                                   MessageDigest contentDigest) throws IOException {
+
+        return isBinaryDataFile(dataFilePath.getFileName().toString(), buildIdVersion) ?
+                read(dataFilePath, contentDigest) :
+                ExchangeRateFileReader.read(dataFilePath, contentDigest);
+    }
+
+
+    // PACKAGE PROTECTED
+    //
+
+    /**
+     *
+     * @param dictionaryLength
+     * @return offset of the 8 byte aligned rate block
+     */
+    static int rateBlockOffset(int dictionaryLength) {
+        int unaligned = HEADER_LENGTH + dictionaryLength;
+        return (unaligned + Double.BYTES - 1) & -Double.BYTES;
+    }
+
+}
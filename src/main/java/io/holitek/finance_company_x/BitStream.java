@@ -0,0 +1,123 @@
+package io.holitek.finance_company_x;
+
+
+import java.util.Arrays;
+
+
+/**
+ * append-only sequence of bits packed most significant bit first into a long[]. used by {@link RateSeries} to hold
+ * compressed points - values are written with however many bits they need rather than rounded up to a byte or a word.
+ */
+final class BitStream {
+
+    private long[] words;
+    private int bitLength;
+
+
+    BitStream(int initialWords) {
+        this.words = new long[Math.max(1, initialWords)];
+    }
+
+    private BitStream(long[] words, int bitLength) {
+        this.words = words;
+        this.bitLength = bitLength;
+    }
+
+
+    // PACKAGE PROTECTED
+    //
+
+    /**
+     * appends the low order bits of the value
+     *
+     * @param value
+     * @param bits number of bits to write, 1 - 64
+     */
+    void write(long value, int bits) {
+        if (bitLength + bits > (long)words.length * Long.SIZE) {
+            words = Arrays.copyOf(words, words.length * 2);
+        }
+
+        if (bits < Long.SIZE) {
+            value &= (1L << bits) - 1;
+        }
+
+        int wordIndex = bitLength >>> 6;
+        int free = Long.SIZE - (bitLength & 63);
+        if (bits <= free) {
+            words[wordIndex] |= value << (free - bits);
+        } else {
+            int overflow = bits - free;
+            words[wordIndex] |= value >>> overflow;
+            words[wordIndex + 1] |= value << (Long.SIZE - overflow);
+        }
+
+        bitLength += bits;
+    }
+
+    /**
+     *
+     * @return number of bits written
+     */
+    int bitLength() { return bitLength; }
+
+    /**
+     *
+     * @return copy of the stream trimmed to the words actually in use - for streams that won't be written to again
+     */
+    BitStream trimmed() {
+        return new BitStream(Arrays.copyOf(words, (bitLength + 63) >>> 6), bitLength);
+    }
+
+    /**
+     *
+     * @return rough heap footprint, see {@link Helpers#estimatedArrayBytes(long, int)}
+     */
+    long getEstimatedBytes() { return Helpers.estimatedArrayBytes(words.length, Long.BYTES); }
+
+    /**
+     * the reader sees the bits written so far. it must not be used concurrently with writes.
+     *
+     * @return reader positioned on the first bit
+     */
+    Reader reader() { return new Reader(words); }
+
+
+    /**
+     * reads the stream back in the order it was written
+     */
+    static final class Reader {
+
+        private final long[] words;
+        private int position;
+
+        private Reader(long[] words) { this.words = words; }
+
+        /**
+         *
+         * @param bits number of bits to read, 1 - 64
+         * @return the bits as the low order bits of the result
+         */
+        long read(int bits) {
+            int wordIndex = position >>> 6;
+            int bitOffset = position & 63;
+            int available = Long.SIZE - bitOffset;
+
+            long value = (words[wordIndex] << bitOffset) >>> (Long.SIZE - bits);
+            if (bits > available) {
+                value |= words[wordIndex + 1] >>> (Long.SIZE - (bits - available));
+            }
+
+            position += bits;
+            return value;
+        }
+
+        /**
+         *
+         * @return
+         */
+        boolean readBit() { return read(1) != 0; }
+
+    }
+
+}
@@ -4,6 +4,7 @@ package io.holitek.finance_company_x;
 import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.Option;
+import com.jayway.jsonpath.ParseContext;
 
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
@@ -14,18 +15,27 @@ import org.slf4j.LoggerFactory;
 import java.beans.Introspector;
 
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-
-
-import static io.holitek.finance_company_x.Helpers.fileExists;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
  * if present - will load the json contents of the buildID file into the message body. will except if build file
  * property is not specified. if specified file is not found, message body will be returned with empty json string
+ *
+ * the file's key, size and last modified time are remembered from a single stat call. if none of them have changed
+ * since the last poll, the file is neither read nor parsed and the headers are set from what was parsed last time.
+ * everything a poll needs - parser, compiled json path, resolved filename and file path - is created once and reused,
+ * so a poll that finds nothing new allocates next to nothing.
  */
 public class BuildIdFileProcessor implements Processor {
 
@@ -37,6 +47,22 @@ public class BuildIdFileProcessor implements Processor {
 
     public static final String NEW_BUILD_ID_HEADER_KEY = "newBuildID";
 
+    // this to prevent the json parser from going boom when a key isn't found. parser and path are thread safe.
+    private static final ParseContext JSON_PARSER =
+            JsonPath.using(Configuration.defaultConfiguration().addOptions(Option.SUPPRESS_EXCEPTIONS));
+
+    private static final JsonPath BUILD_ID_JSON_PATH = JsonPath.compile("$.buildID");
+
+    // keyed by data directory and buildID file path so one processor can serve any number of data directories
+    private final Map<String, Path> buildIdFilePathMap = new ConcurrentHashMap<>();
+    private final Map<Path, BuildIdFileState> buildIdFileStateMap = new ConcurrentHashMap<>();
+
+    // resolved on first use rather than on every poll
+    private volatile String buildIdFilename;
+
+    private final AtomicLong skippedPollCount = new AtomicLong();
+    private final AtomicLong fullPollCount = new AtomicLong();
+
 
     /**
      *
@@ -46,32 +72,141 @@ public class BuildIdFileProcessor implements Processor {
     @Override
     public void process(Exchange exchange) throws Exception {
 
-        // this to prevent the json parser from going boom when a key isn't found
-        Configuration jsonPathConf = Configuration.defaultConfiguration().addOptions(Option.SUPPRESS_EXCEPTIONS);
-
         String directory = (String)exchange.getMessage()
                                            .getHeader(CurrencyDataPollingConsumerRoute.DATA_DIRECTORY_HEADER_KEY);
 
-        Optional<String> buildFileNameOptional = exchange.getContext()
-                                                         .getPropertiesComponent()
-                                                         .resolveProperty("buildID_filename");
-
         // update message body iff buildID can be found and is valid JSON
         // TODO add more validation of buildID contents as needed...
-        if (buildFileNameOptional.isEmpty() || fileExists(directory, buildFileNameOptional.get()) == false) {
+        Path filePath = resolveBuildIdFilePath(exchange, directory);
+        if (filePath == null) {
             LOG.error("buildID_filename property can't be resolved");
-        } else {
-            Path filePath = Paths.get(directory, buildFileNameOptional.get());
-            String buildIdJson = new String(Files.readAllBytes(filePath));
+            return;
+        }
 
-            Optional<String> buildIdOptional = Optional.ofNullable(
-                    JsonPath.using(jsonPathConf).parse(buildIdJson).read( "$.buildID")
-            );
+        BuildIdFileState buildIdFileState;
+        long startNanos = System.nanoTime();
+        try {
+            BasicFileAttributes fileAttributes;
+            try {
+                fileAttributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                LOG.error("buildID file {} can't be found", filePath);
+                return;
+            }
+
+            buildIdFileState = buildIdFileStateMap.get(filePath);
+            if (buildIdFileState != null && buildIdFileState.isUnchanged(fileAttributes)) {
+                skippedPollCount.incrementAndGet();
+            } else {
+                fullPollCount.incrementAndGet();
+                FlightRecorderEvents.BuildIdRead event = new FlightRecorderEvents.BuildIdRead();
+                event.begin();
+
+                byte[] buildIdBytes = Files.readAllBytes(filePath);
+                String buildIdJson = new String(buildIdBytes);
+
+                Optional<String> buildIdOptional = Optional.ofNullable(
+                        JSON_PARSER.parse(buildIdJson).read(BUILD_ID_JSON_PATH)
+                );
+
+                String buildID = buildIdOptional.isEmpty() ? ExchangeRateBean.DEFAULT_BUILD_ID : buildIdOptional.get();
+                buildIdFileState = new BuildIdFileState(fileAttributes, buildID, buildIdJson);
+                buildIdFileStateMap.put(filePath, buildIdFileState);
+
+                if (event.shouldCommit()) {
+                    event.buildID = buildID;
+                    event.fileName = filePath.getFileName().toString();
+                    event.bytes = buildIdBytes.length;
+                    event.commit();
+                }
+            }
+        } finally {
+            ExchangeRateMetrics.INSTANCE.getBuildIdFileReadLatency().recordSince(startNanos);
+        }
+
+        exchange.getMessage().setHeader(NEW_BUILD_ID_HEADER_KEY, buildIdFileState.buildID);
+        exchange.getMessage().setHeader(BUILD_ID_FILE_CONTENTS_HEADER_KEY, buildIdFileState.buildIdJson);
+    }
+
+    /**
+     *
+     * @return number of polls that found the buildID file unchanged and skipped reading and parsing it
+     */
+    public long getSkippedPollCount() { return skippedPollCount.get(); }
 
-            String buildID = buildIdOptional.isEmpty() ? ExchangeRateBean.DEFAULT_BUILD_ID : buildIdOptional.get();
-            exchange.getMessage().setHeader(NEW_BUILD_ID_HEADER_KEY, buildID);
-            exchange.getMessage().setHeader(BUILD_ID_FILE_CONTENTS_HEADER_KEY, buildIdJson);
+    /**
+     *
+     * @return number of polls that read and parsed the buildID file
+     */
+    public long getFullPollCount() { return fullPollCount.get(); }
+
+
+    // PRIVATE
+    //
+
+    /**
+     *
+     * @param exchange
+     * @param directory
+     * @return path of the buildID file in the directory, or null if the buildID filename can't be resolved
+     */
+    private Path resolveBuildIdFilePath(Exchange exchange, String directory) {
+        String buildIdFilename = this.buildIdFilename;
+        if (buildIdFilename == null) {
+            Optional<String> buildFileNameOptional = exchange.getContext()
+                                                             .getPropertiesComponent()
+                                                             .resolveProperty("buildID_filename");
+
+            if (buildFileNameOptional.isEmpty()) {
+                return null;
+            }
+
+            buildIdFilename = buildFileNameOptional.get();
+            this.buildIdFilename = buildIdFilename;
         }
+
+        Path filePath = buildIdFilePathMap.get(directory);
+        if (filePath == null) {
+            filePath = Paths.get(directory, buildIdFilename);
+            buildIdFilePathMap.put(directory, filePath);
+        }
+
+        return filePath;
+    }
+
+
+    /**
+     * what was parsed from a buildID file, along with the file attributes it was parsed at
+     */
+    private static final class BuildIdFileState {
+
+        private final Object fileKey;
+        private final long size;
+        private final FileTime lastModifiedTime;
+        private final String buildID;
+        private final String buildIdJson;
+
+        private BuildIdFileState(BasicFileAttributes fileAttributes, String buildID, String buildIdJson) {
+            this.fileKey = fileAttributes.fileKey();
+            this.size = fileAttributes.size();
+            this.lastModifiedTime = fileAttributes.lastModifiedTime();
+            this.buildID = buildID;
+            this.buildIdJson = buildIdJson;
+        }
+
+        /**
+         * the file key (inode on unix) changes when the file is replaced, size and modified time catch in-place
+         * rewrites. fileKey may be null on file systems that don't have one.
+         *
+         * @param fileAttributes
+         * @return
+         */
+        private boolean isUnchanged(BasicFileAttributes fileAttributes) {
+            return Objects.equals(fileKey, fileAttributes.fileKey()) &&
+                   size == fileAttributes.size() &&
+                   lastModifiedTime.equals(fileAttributes.lastModifiedTime());
+        }
+
     }
 
 }
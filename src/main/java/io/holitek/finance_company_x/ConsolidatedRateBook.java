@@ -0,0 +1,338 @@
+package io.holitek.finance_company_x;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.beans.Introspector;
+
+import java.nio.charset.StandardCharsets;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * one merged view over every provider's rates. when more than one provider quotes a pair, the book's rate for it comes
+ * from a {@link Policy} - the best quote, the median quote, or the quote of the highest priority provider that has one.
+ *
+ * each pair's quotes are kept by provider, so when a provider's snapshot changes only the pairs whose quotes it added,
+ * changed or dropped are worked out again. the rest of the book is left as it was. the result is published as an
+ * {@link ExchangeRateSnapshot} of its own, swapped in whole, so readers see the book before an update or after it and
+ * never part of one. each is built from the last as a delta of the pairs whose rate moved, so it shares the last one's
+ * rates and has its cross rates patched rather than rebuilt - publishing costs what the update touched, not the
+ * size of the book. its buildID is a digest of the providers' buildIDs as of the last update that changed a rate, so
+ * it stays put for as long as the book's rates do.
+ */
+public final class ConsolidatedRateBook {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConsolidatedRateBook.class);
+
+    public static final String NAMESPACE_KEY = Introspector.decapitalize(ConsolidatedRateBook.class.getSimpleName());
+
+    /**
+     * how a pair's rate is picked when more than one provider quotes it
+     */
+    public enum Policy {
+
+        /**
+         * the highest quote - the most of the quote currency one of the base currency buys
+         */
+        BEST,
+
+        /**
+         * the middle quote, or the mean of the middle two when there's an even number of them
+         */
+        MEDIAN,
+
+        /**
+         * the quote of the first provider, in priority order, that has one
+         */
+        PRIORITY;
+
+        /**
+         *
+         * @param name eg: "best", case doesn't matter
+         * @return
+         */
+        public static Policy of(String name) { return valueOf(name.strip().toUpperCase(Locale.ROOT)); }
+
+    }
+
+    private final Policy policy;
+    private final List<String> providers;
+    private final Map<String, Integer> providerIndexMap = new HashMap<>();
+
+    // guarded by this. each pair's quotes are indexed by provider, with NO_RATE where a provider doesn't quote it
+    private final Map<String, double[]> quotesMap = new HashMap<>();
+    private final Map<String, Double> consolidatedRateMap = new LinkedHashMap<>();
+
+    // guarded by this. pairs whose consolidated rate has moved or gone since the snapshot was last published
+    private final Map<String, Double> pendingUpserts = new LinkedHashMap<>();
+    private final Set<String> pendingRemovals = new LinkedHashSet<>();
+    private final ExchangeRateSnapshot[] providerSnapshots;
+    private final double[] scratch;
+
+    private volatile ExchangeRateSnapshot snapshot = ExchangeRateSnapshot.EMPTY;
+
+
+    /**
+     *
+     * @param policy
+     * @param providers names of the providers that make up the book, highest priority first
+     */
+    public ConsolidatedRateBook(Policy policy, List<String> providers) {
+        this.policy = policy;
+        this.providers = List.copyOf(providers);
+        for (int i = 0; i < this.providers.size(); i++) {
+            if (providerIndexMap.put(this.providers.get(i), i) != null) {
+                throw new IllegalArgumentException("provider listed more than once: " + this.providers.get(i));
+            }
+        }
+
+        this.providerSnapshots = new ExchangeRateSnapshot[this.providers.size()];
+        Arrays.fill(providerSnapshots, ExchangeRateSnapshot.EMPTY);
+        this.scratch = new double[this.providers.size()];
+    }
+
+
+    // PUBLIC
+    //
+
+    /**
+     * brings the book up to date with a provider's latest snapshot. cheap to call when nothing has changed - handing
+     * over the snapshot the book already has from that provider returns straight away.
+     *
+     * @param provider
+     * @param providerSnapshot
+     * @return number of pairs that were worked out again
+     */
+    public synchronized int update(String provider, ExchangeRateSnapshot providerSnapshot) {
+        Integer providerIndex = providerIndexMap.get(provider);
+        if (providerIndex == null) {
+            throw new IllegalArgumentException("not a provider in this book: " + provider);
+        }
+
+        ExchangeRateSnapshot previousSnapshot = providerSnapshots[providerIndex];
+        if (providerSnapshot == previousSnapshot) {
+            return 0;
+        }
+
+        // derived snapshots share their rates with the one they came from, eg: a buildID bump. null rates, which a
+        //   data file may hold, are no quote at all
+        Map<String, Double> previousRates = previousSnapshot.getExchangeRateMap();
+        Map<String, Double> rates = providerSnapshot.getExchangeRateMap();
+        int recomputed = 0;
+        boolean changed = false;
+        if (previousRates != rates) {
+            for (Map.Entry<String, Double> entry : rates.entrySet()) {
+                double previousRate = rateOf(previousRates.get(entry.getKey()));
+                double rate = rateOf(entry.getValue());
+                if (Double.compare(previousRate, rate) != 0) {
+                    changed |= setQuote(entry.getKey(), providerIndex, rate);
+                    recomputed++;
+                }
+            }
+
+            for (Map.Entry<String, Double> entry : previousRates.entrySet()) {
+                if (entry.getValue() != null && rates.containsKey(entry.getKey()) == false) {
+                    changed |= setQuote(entry.getKey(), providerIndex, RateTable.NO_RATE);
+                    recomputed++;
+                }
+            }
+        }
+
+        // only once every quote has been taken in, so a failed update is worked out afresh by the next one
+        providerSnapshots[providerIndex] = providerSnapshot;
+        if (changed) {
+            publish();
+        }
+
+        LOG.debug("{} moved to buildID {} - {} of {} pairs in the book worked out again",
+                  provider,
+                  providerSnapshot.getBuildID(),
+                  recomputed,
+                  quotesMap.size());
+
+        return recomputed;
+    }
+
+    /**
+     *
+     * @return the book as of the last update that changed it
+     */
+    public ExchangeRateSnapshot getSnapshot() { return snapshot; }
+
+    /**
+     * allocation free lookup.
+     *
+     * @param pair
+     * @return the consolidated rate, or {@link RateTable#NO_RATE} if no provider quotes the pair
+     */
+    public double getRate(String pair) { return snapshot.getRate(pair); }
+
+    /**
+     *
+     * @param pair
+     * @return every provider's quote for the pair, highest priority first. providers that don't quote it are left out
+     */
+    public synchronized Map<String, Double> getQuotes(String pair) {
+        Map<String, Double> quotes = new LinkedHashMap<>();
+        double[] pairQuotes = quotesMap.get(pair);
+        if (pairQuotes == null) {
+            return quotes;
+        }
+
+        for (int i = 0; i < pairQuotes.length; i++) {
+            if (Double.isNaN(pairQuotes[i]) == false) {
+                quotes.put(providers.get(i), pairQuotes[i]);
+            }
+        }
+
+        return quotes;
+    }
+
+    public Policy getPolicy() { return policy; }
+
+    /**
+     *
+     * @return highest priority first
+     */
+    public List<String> getProviders() { return providers; }
+
+
+    // PRIVATE
+    //
+
+    /**
+     *
+     * @param rate
+     * @return the rate, or {@link RateTable#NO_RATE} if it's null
+     */
+    private static double rateOf(Double rate) { return rate == null ? RateTable.NO_RATE : rate; }
+
+    /**
+     *
+     * @param pair
+     * @param providerIndex
+     * @param rate or {@link RateTable#NO_RATE} if the provider no longer quotes the pair
+     * @return whether or not the pair's consolidated rate changed
+     */
+    private boolean setQuote(String pair, int providerIndex, double rate) {
+        double[] pairQuotes = quotesMap.get(pair);
+        if (pairQuotes == null) {
+            if (Double.isNaN(rate)) {
+                return false;
+            }
+
+            pairQuotes = new double[providers.size()];
+            Arrays.fill(pairQuotes, RateTable.NO_RATE);
+            quotesMap.put(pair, pairQuotes);
+        }
+
+        pairQuotes[providerIndex] = rate;
+        double consolidatedRate = consolidate(pairQuotes);
+        if (Double.isNaN(consolidatedRate)) {
+            quotesMap.remove(pair);
+            if (consolidatedRateMap.remove(pair) == null) {
+                return false;
+            }
+
+            pendingUpserts.remove(pair);
+            pendingRemovals.add(pair);
+            return true;
+        }
+
+        Double previousRate = consolidatedRateMap.put(pair, consolidatedRate);
+        if (previousRate != null && Double.compare(previousRate, consolidatedRate) == 0) {
+            return false;
+        }
+
+        pendingRemovals.remove(pair);
+        pendingUpserts.put(pair, consolidatedRate);
+        return true;
+    }
+
+    /**
+     *
+     * @param pairQuotes
+     * @return the pair's rate under the book's policy, or {@link RateTable#NO_RATE} if nobody quotes it
+     */
+    private double consolidate(double[] pairQuotes) {
+        int count = 0;
+        for (double quote : pairQuotes) {
+            if (Double.isNaN(quote) == false) {
+                if (policy == Policy.PRIORITY) {
+                    return quote;
+                }
+
+                scratch[count++] = quote;
+            }
+        }
+
+        if (count == 0) {
+            return RateTable.NO_RATE;
+        }
+
+        if (policy == Policy.BEST) {
+            double best = scratch[0];
+            for (int i = 1; i < count; i++) {
+                best = Math.max(best, scratch[i]);
+            }
+
+            return best;
+        }
+
+        Arrays.sort(scratch, 0, count);
+        int middle = count / 2;
+        return count % 2 == 1 ? scratch[middle] : (scratch[middle - 1] + scratch[middle]) / 2;
+    }
+
+    /**
+     * the pairs that moved since the last snapshot are applied to it as a delta, rather than the whole book being
+     * copied into a new one
+     */
+    private void publish() {
+        RateDelta rateDelta = new RateDelta(pendingUpserts, pendingRemovals);
+        pendingUpserts.clear();
+        pendingRemovals.clear();
+        snapshot = snapshot.withDelta(buildID(), rateDelta, "");
+    }
+
+    /**
+     *
+     * @return digest of the policy and every provider's buildID
+     */
+    private String buildID() {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            messageDigest.update(policy.name().getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < providers.size(); i++) {
+                messageDigest.update((byte)0);
+                messageDigest.update(providers.get(i).getBytes(StandardCharsets.UTF_8));
+                messageDigest.update((byte)0);
+                messageDigest.update(providerSnapshots[i].getBuildID().getBytes(StandardCharsets.UTF_8));
+            }
+
+            StringBuilder buildID = new StringBuilder(16);
+            for (byte b : Arrays.copyOf(messageDigest.digest(), 8)) {
+                buildID.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+
+            return buildID.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,389 @@
+package io.holitek.finance_company_x;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * dense matrix of conversion rates between every pair of currencies that appear in a snapshot's data. a key like
+ * "CAD_USD" with rate r reads as 1 CAD = r USD, so convert("CAD", "USD") is r and convert("USD", "CAD") is 1 / r.
+ * pairs that aren't in the data file but share a common currency with both sides - eg: CAD_USD and FR_USD give CAD to
+ * FR - are triangulated through it. everything is worked out once when a snapshot is created, so a conversion is two
+ * ordinal lookups and an array read no matter how the rate was derived.
+ *
+ * rates in the data file always win over reciprocals, and both win over triangulated rates. when more than one common
+ * currency could be used, the one that first appears in the data file is.
+ *
+ * a snapshot built from a delta gets its matrix from {@link #withChanges(Map, RateDelta, RateTable)}, which only works
+ * out the rows and columns of the currencies the delta touches again. the data file's own rates are kept alongside the
+ * derived ones for that, so a matrix takes twice the doubles it reads from.
+ *
+ * the matrix needs (currencies * currencies) doubles, so data with more than {@link #MAX_CURRENCIES} distinct
+ * currencies gets no matrix and {@link #convert(String, String)} falls back to direct and reciprocal lookups against
+ * the snapshot's {@link RateTable}.
+ */
+public final class CrossRateMatrix {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CrossRateMatrix.class);
+
+    /**
+     * returned by {@link #ordinalOf(String)} for currencies the matrix doesn't know about
+     */
+    public static final int NO_ORDINAL = -1;
+
+    // 512 * 512 doubles is 2MB - several times the currencies in use world wide
+    public static final int MAX_CURRENCIES = 512;
+
+    public static final CrossRateMatrix EMPTY = CrossRateMatrix.of(Map.of(), RateTable.EMPTY);
+
+    private static final char PAIR_SEPARATOR = '_';
+
+    private final Map<String, Integer> ordinalMap;
+    private final String[] currencies;
+    // rates as they are in the data file, NO_RATE for pairs it doesn't have
+    private final double[] directRates;
+    private final double[] rates;
+    private final RateTable fallbackRateTable;
+
+
+    private CrossRateMatrix(Map<String, Integer> ordinalMap,
+                            String[] currencies,
+                            double[] directRates,
+                            double[] rates,
+                            RateTable fallbackRateTable) {
+
+        this.ordinalMap = ordinalMap;
+        this.currencies = currencies;
+        this.directRates = directRates;
+        this.rates = rates;
+        this.fallbackRateTable = fallbackRateTable;
+    }
+
+
+    // PUBLIC
+    //
+
+    /**
+     * null, zero, negative and non-finite rates are skipped, as are keys that aren't two currencies joined by an
+     * underscore.
+     *
+     * @param exchangeRateMap
+     * @param rateTable table built from the same rates, used when there are too many currencies for a matrix
+     * @return
+     */
+    public static CrossRateMatrix of(Map<String, Double> exchangeRateMap, RateTable rateTable) {
+        Map<String, Integer> ordinalMap = new HashMap<>();
+        for (String key : exchangeRateMap.keySet()) {
+            int separatorIndex = key.indexOf(PAIR_SEPARATOR);
+            if (separatorIndex > 0 && separatorIndex < key.length() - 1 && isUsable(exchangeRateMap.get(key))) {
+                ordinalMap.putIfAbsent(key.substring(0, separatorIndex), ordinalMap.size());
+                ordinalMap.putIfAbsent(key.substring(separatorIndex + 1), ordinalMap.size());
+            }
+        }
+
+        if (ordinalMap.size() > MAX_CURRENCIES) {
+            LOG.warn("{} currencies is more than the {} a cross rate matrix is built for - only direct and reciprocal " +
+                     "rates will be available",
+                     ordinalMap.size(),
+                     MAX_CURRENCIES);
+
+            return new CrossRateMatrix(Map.of(), new String[0], new double[0], new double[0], rateTable);
+        }
+
+        int n = ordinalMap.size();
+        String[] currencies = new String[n];
+        ordinalMap.forEach((currency, ordinal) -> currencies[ordinal] = currency);
+
+        double[] directRates = new double[n * n];
+        Arrays.fill(directRates, RateTable.NO_RATE);
+        exchangeRateMap.forEach((key, rate) -> {
+            int separatorIndex = key.indexOf(PAIR_SEPARATOR);
+            if (separatorIndex > 0 && separatorIndex < key.length() - 1 && isUsable(rate)) {
+                int from = ordinalMap.get(key.substring(0, separatorIndex));
+                int to = ordinalMap.get(key.substring(separatorIndex + 1));
+                directRates[from * n + to] = rate;
+            }
+        });
+
+        // data file rates and reciprocals first, noting which currencies are one step from which as we go
+        double[] rates = new double[n * n];
+        List<List<Integer>> neighbours = new ArrayList<>(n);
+        for (int from = 0; from < n; from++) {
+            List<Integer> fromNeighbours = new ArrayList<>();
+            for (int to = 0; to < n; to++) {
+                rates[from * n + to] = directOrReciprocal(directRates, n, from, to);
+                if (from != to && Double.isNaN(rates[from * n + to]) == false) {
+                    fromNeighbours.add(to);
+                }
+            }
+
+            neighbours.add(fromNeighbours);
+        }
+
+        // and finally one hop through a currency both sides have a rate against. reads only ever see direct and
+        // reciprocal rates, and common currencies are tried in ordinal order, so each cross rate comes out the same as
+        // it would from the row and column rebuilds in withChanges.
+        double[] oneStepRates = rates.clone();
+        for (int from = 0; from < n; from++) {
+            for (int via : neighbours.get(from)) {
+                double fromVia = oneStepRates[from * n + via];
+                for (int to : neighbours.get(via)) {
+                    if (Double.isNaN(rates[from * n + to])) {
+                        rates[from * n + to] = fromVia * oneStepRates[via * n + to];
+                    }
+                }
+            }
+        }
+
+        return new CrossRateMatrix(ordinalMap, currencies, directRates, rates, rateTable);
+    }
+
+    /**
+     * the matrix for this one's rates with a delta applied, in time proportional to the currencies the delta touches
+     * times the currencies in the matrix. only the rows and columns of touched currencies can move - any other pair's
+     * direct rates, reciprocals and common currencies are all the same as they were - so only those are worked out
+     * again. falls back to {@link #of(Map, RateTable)} when the delta brings in a currency the matrix doesn't have,
+     * takes the last rate away from one, or there's no matrix to patch.
+     *
+     * @param exchangeRateMap rates with the delta applied
+     * @param rateDelta
+     * @param rateTable table built from the same rates, used when there are too many currencies for a matrix
+     * @return
+     */
+    public CrossRateMatrix withChanges(Map<String, Double> exchangeRateMap, RateDelta rateDelta, RateTable rateTable) {
+        int n = currencies.length;
+        if (n == 0) {
+            return of(exchangeRateMap, rateTable);
+        }
+
+        double[] patchedDirectRates = directRates.clone();
+        boolean[] touched = new boolean[n];
+        for (Map.Entry<String, Double> upsert : rateDelta.getUpserts().entrySet()) {
+            boolean usable = isUsable(upsert.getValue());
+            double rate = usable ? upsert.getValue() : RateTable.NO_RATE;
+            if (patchDirectRate(patchedDirectRates, touched, upsert.getKey(), rate) == false && usable) {
+                return of(exchangeRateMap, rateTable);
+            }
+        }
+
+        for (String removal : rateDelta.getRemovals()) {
+            patchDirectRate(patchedDirectRates, touched, removal, RateTable.NO_RATE);
+        }
+
+        List<Integer> touchedOrdinals = new ArrayList<>();
+        for (int ordinal = 0; ordinal < n; ordinal++) {
+            if (touched[ordinal]) {
+                touchedOrdinals.add(ordinal);
+            }
+        }
+
+        if (touchedOrdinals.isEmpty()) {
+            return new CrossRateMatrix(ordinalMap, currencies, directRates, rates, rateTable);
+        }
+
+        double[] patchedRates = rates.clone();
+        for (int currency : touchedOrdinals) {
+            List<Integer> currencyNeighbours = new ArrayList<>();
+            for (int other = 0; other < n; other++) {
+                double rate = directOrReciprocal(patchedDirectRates, n, currency, other);
+                if (other != currency && Double.isNaN(rate) == false) {
+                    currencyNeighbours.add(other);
+                }
+            }
+
+            // a currency with no rates left wouldn't be in a matrix built from scratch
+            if (currencyNeighbours.isEmpty() && Double.isNaN(patchedDirectRates[currency * n + currency])) {
+                return of(exchangeRateMap, rateTable);
+            }
+
+            for (int other = 0; other < n; other++) {
+                patchedRates[currency * n + other] =
+                        crossRate(patchedDirectRates, n, currency, other, currencyNeighbours);
+
+                patchedRates[other * n + currency] =
+                        crossRate(patchedDirectRates, n, other, currency, currencyNeighbours);
+            }
+        }
+
+        return new CrossRateMatrix(ordinalMap, currencies, patchedDirectRates, patchedRates, rateTable);
+    }
+
+    /**
+     *
+     * @param currency eg: "CAD"
+     * @return the currency's row and column in the matrix, or {@link #NO_ORDINAL} if it isn't in the matrix
+     */
+    public int ordinalOf(String currency) {
+        Integer ordinal = ordinalMap.get(currency);
+        return ordinal == null ? NO_ORDINAL : ordinal;
+    }
+
+    /**
+     *
+     * @param ordinal
+     * @return the currency at the given ordinal
+     */
+    public String currencyAt(int ordinal) { return currencies[ordinal]; }
+
+    /**
+     *
+     * @return number of currencies in the matrix
+     */
+    public int size() { return currencies.length; }
+
+    /**
+     *
+     * @return rough heap footprint of the matrix, see {@link Helpers#estimatedArrayBytes(long, int)}
+     */
+    public long getEstimatedBytes() {
+        long currencyBytes = 0;
+        for (String currency : currencies) {
+            // hash map node + boxed ordinal + currency code
+            currencyBytes += 32 + 16 + Helpers.estimatedStringBytes(currency.length());
+        }
+
+        return Helpers.estimatedArrayBytes(rates.length, Double.BYTES) * 2 +
+               Helpers.estimatedArrayBytes(currencies.length, Integer.BYTES) +
+               currencyBytes;
+    }
+
+    /**
+     * array read - for callers that look ordinals up once and convert many times.
+     *
+     * @param fromOrdinal
+     * @param toOrdinal
+     * @return how many of the 'to' currency one of the 'from' currency buys, or {@link RateTable#NO_RATE}
+     */
+    public double convert(int fromOrdinal, int toOrdinal) {
+        int n = currencies.length;
+        if (fromOrdinal < 0 || fromOrdinal >= n || toOrdinal < 0 || toOrdinal >= n) {
+            return RateTable.NO_RATE;
+        }
+
+        return rates[fromOrdinal * n + toOrdinal];
+    }
+
+    /**
+     *
+     * @param from eg: "CAD"
+     * @param to eg: "USD"
+     * @return how many of the 'to' currency one of the 'from' currency buys, or {@link RateTable#NO_RATE} if there is
+     *         no direct, reciprocal or one hop rate between them
+     */
+    public double convert(String from, String to) {
+        if (currencies.length == 0 && fallbackRateTable.size() > 0) {
+            return convertWithoutMatrix(from, to);
+        }
+
+        return convert(ordinalOf(from), ordinalOf(to));
+    }
+
+
+    // PRIVATE
+    //
+
+    /**
+     *
+     * @param rate
+     * @return
+     */
+    private static boolean isUsable(Double rate) {
+        return rate != null && rate > 0 && Double.isFinite(rate);
+    }
+
+    /**
+     * the data file's rate for the pair, or else one over its rate for the reverse pair
+     *
+     * @param directRates
+     * @param n
+     * @param from
+     * @param to
+     * @return
+     */
+    private static double directOrReciprocal(double[] directRates, int n, int from, int to) {
+        double rate = directRates[from * n + to];
+        if (from == to) {
+            return Double.isNaN(rate) ? 1.0 : rate;
+        }
+
+        if (Double.isNaN(rate)) {
+            double inverseRate = directRates[to * n + from];
+            rate = Double.isNaN(inverseRate) ? RateTable.NO_RATE : 1.0 / inverseRate;
+        }
+
+        return rate;
+    }
+
+    /**
+     * the rate {@link #of(Map, RateTable)} would work out for a pair with one side in common with the neighbours given
+     *
+     * @param directRates
+     * @param n
+     * @param from
+     * @param to
+     * @param neighbours currencies one step from either from or to, in ordinal order
+     * @return
+     */
+    private static double crossRate(double[] directRates, int n, int from, int to, List<Integer> neighbours) {
+        double rate = directOrReciprocal(directRates, n, from, to);
+        for (int i = 0; i < neighbours.size() && Double.isNaN(rate); i++) {
+            int via = neighbours.get(i);
+            if (via != from && via != to) {
+                rate = directOrReciprocal(directRates, n, from, via) * directOrReciprocal(directRates, n, via, to);
+            }
+        }
+
+        return rate;
+    }
+
+    /**
+     *
+     * @param directRates
+     * @param touched flagged for both currencies of the pair
+     * @param key
+     * @param rate
+     * @return false if the key isn't a pair of currencies the matrix has
+     */
+    private boolean patchDirectRate(double[] directRates, boolean[] touched, String key, double rate) {
+        int separatorIndex = key.indexOf(PAIR_SEPARATOR);
+        if (separatorIndex <= 0 || separatorIndex == key.length() - 1) {
+            return true;
+        }
+
+        int from = ordinalOf(key.substring(0, separatorIndex));
+        int to = ordinalOf(key.substring(separatorIndex + 1));
+        if (from == NO_ORDINAL || to == NO_ORDINAL) {
+            return false;
+        }
+
+        directRates[from * currencies.length + to] = rate;
+        touched[from] = true;
+        touched[to] = true;
+        return true;
+    }
+
+    /**
+     * for data with too many currencies to build a matrix for
+     *
+     * @param from
+     * @param to
+     * @return
+     */
+    private double convertWithoutMatrix(String from, String to) {
+        double rate = fallbackRateTable.getRate(from + PAIR_SEPARATOR + to);
+        if (Double.isNaN(rate)) {
+            double inverseRate = fallbackRateTable.getRate(to + PAIR_SEPARATOR + from);
+            rate = inverseRate > 0 ? 1.0 / inverseRate : RateTable.NO_RATE;
+        }
+
+        return rate;
+    }
+
+}
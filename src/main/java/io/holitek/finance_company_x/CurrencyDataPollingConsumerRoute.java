@@ -1,79 +1,636 @@
 package io.holitek.finance_company_x;
 
 
+import org.apache.camel.Exchange;
 import org.apache.camel.LoggingLevel;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.PredicateBuilder;
 import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.model.RouteDefinition;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.beans.Introspector;
 
+import java.nio.file.Paths;
+
+import java.security.SecureRandom;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+
 import static io.holitek.finance_company_x.BuildIdFileProcessor.NEW_BUILD_ID_HEADER_KEY;
-import static io.holitek.finance_company_x.DataFileProcessor.DATA_FILE_CONTENTS_HEADER_KEY;
 import static io.holitek.finance_company_x.ExchangeRateBean.CURRENT_BUILD_ID_HEADER_KEY;
 
 
 /**
  * business logic that polls a given directory for exchange rate files and, on delta, updates exchange rate data
- * stored in memory
+ * stored in memory. the update pipeline lives in its own route so it can be fired both by the polling timer and by
+ * the {@link DataDirectoryWatcher} when the buildID file changes. either only checks the buildID file - loading a new
+ * buildID is left to a {@link SingleFlightLoader}, on a pool of its own. the first run after a warm start reconciles
+ * the snapshot the {@link ExchangeRateBean} restored from its state file against the live buildID like any other run.
+ *
+ * any {@link RateSource}s listed in the sources property get a pipeline of their own, built the same way. their polls
+ * are run on a bounded worker pool rather than on the timer or watcher thread, and every poll leaves the
+ * {@link ConsolidatedRateBook} up to date with whatever its bean then holds.
  */
 public class CurrencyDataPollingConsumerRoute extends RouteBuilder {
 
+    private static final Logger LOG = LoggerFactory.getLogger(CurrencyDataPollingConsumerRoute.class);
+
     // property placeholders that will be resolved by camel when the route is created
     private static final String POLLING_CONSUMER = "{{polling_consumer_uri_template}}" + "{{route_from_period}}";
     private static final String DATA_DIRECTORY = "{{data_directory}}";
     private static final String BUILD_ID_FILE_PROCESSOR = "{{buildID_file_processor}}";
     private static final String DATA_FILE_PROCESSOR = "{{datafile_processor}}";
-    private static final String EXCHANGE_RATE_BEAN = "{{exchange_rate_bean}}";
+
+    private static final ExchangeRateMetrics METRICS = ExchangeRateMetrics.INSTANCE;
 
     public static final String NAMESPACE_KEY =
             Introspector.decapitalize(CurrencyDataPollingConsumerRoute.class.getSimpleName());
 
     public static final String DATA_DIRECTORY_HEADER_KEY = "dataDirectory";
 
+    public static final String UPDATE_PIPELINE_URI = "direct:" + NAMESPACE_KEY;
+    public static final String POLLING_CONSUMER_ROUTE_ID = NAMESPACE_KEY + "Timer";
+
+    // each pipeline's loads run in a route of their own, named after the pipeline's with this on the end
+    public static final String LOADER_ROUTE_ID_SUFFIX = "Loader";
+    public static final String LOADER_ROUTE_ID = NAMESPACE_KEY + LOADER_ROUTE_ID_SUFFIX;
+
     @Override
     public void configure() throws Exception {
 
-        from(POLLING_CONSUMER)
-            .id(NAMESPACE_KEY)
-            .log(LoggingLevel.INFO, "checking for exchange rate updates...")
+        // fires the pipeline as soon as the buildID file changes. resolves its own settings, and does nothing if
+        //   watching is disabled, when the camel context starts
+        getContext().addService(new DataDirectoryWatcher(UPDATE_PIPELINE_URI));
+
+        // serves whatever the bean currently holds over http. resolves its own settings, and does nothing if the api
+        //   is disabled, when the camel context starts
+        getContext().addService(new RateQueryServer(ExchangeRateBean.NAMESPACE_KEY));
+
+        // publishes update and lookup metrics over jmx. does nothing if jmx metrics are disabled
+        getContext().addService(new ExchangeRateMetricsExporter(ExchangeRateBean.NAMESPACE_KEY));
+
+        // builds new data files into snapshots as the watchers see them land, ahead of the buildID file flipping
+        configureDataFileStager();
+
+        // keeps the snapshots of the last few data files loaded, so data that comes round again isn't parsed again
+        configureSnapshotCache();
+
+        // any other provider directories, each with its own pipeline and bean, polled on a shared worker pool and
+        //   merged with the main data directory into one consolidated book
+        List<RateSource> rateSources = RateSource.parse(resolveProperty("sources").orElse(""));
+        ConsolidatedRateBook consolidatedRateBook = configureConsolidatedRateBook(rateSources);
+
+        // every pipeline loads one buildID at a time, so a thread each is as many as they can use
+        ExecutorService loaderExecutorService = getContext().getExecutorServiceManager().newFixedThreadPool(
+                this,
+                SingleFlightLoader.NAMESPACE_KEY,
+                rateSources.size() + 1
+        );
+
+        // rate history backfills and ingests run on a thread of their own, so a long backfill never holds up a load
+        ExecutorService timeSeriesExecutorService = getContext().getExecutorServiceManager().newSingleThreadExecutor(
+                this,
+                TimeSeriesStore.NAMESPACE_KEY
+        );
+
+        configureRateSources(rateSources, consolidatedRateBook, loaderExecutorService, timeSeriesExecutorService);
+
+        // safety net for when file watch events are lost or not supported. polls of other sources are only queued
+        //   here, so they don't hold up the main data directory's
+        List<String> dispatchUris = new ArrayList<>();
+        rateSources.forEach(rateSource -> dispatchUris.add(rateSource.getDispatchUri()));
+        if (resolveProperty("adaptive_polling_enabled").map(Boolean::parseBoolean).orElse(false)) {
+            configureAdaptivePolling(dispatchUris);
+        } else {
+            RouteDefinition pollingConsumerRoute = from(POLLING_CONSUMER).id(POLLING_CONSUMER_ROUTE_ID);
+            dispatchUris.forEach(pollingConsumerRoute::to);
+            pollingConsumerRoute.to(UPDATE_PIPELINE_URI);
+
+            // only a timer has a period to report
+            resolveProperty("route_from_period").filter(period -> period.chars().allMatch(Character::isDigit))
+                                                .map(Long::parseLong)
+                                                .ifPresent(ExchangeRateMetrics.INSTANCE::recordPollInterval);
+        }
+
+        configureUpdatePipeline(
+                UPDATE_PIPELINE_URI,
+                NAMESPACE_KEY,
+                DATA_DIRECTORY,
+                ExchangeRateBean.NAMESPACE_KEY,
+                TimeSeriesStore.NAMESPACE_KEY,
+                updateBook(consolidatedRateBook, RateSource.MAIN_SOURCE_NAME, ExchangeRateBean.NAMESPACE_KEY),
+                loaderExecutorService,
+                timeSeriesExecutorService
+        );
+    }
+
+
+    // PRIVATE
+    //
+
+    /**
+     * the stager is only told about new files by the watchers, so there's only one when watching is enabled
+     */
+    private void configureDataFileStager() {
+        boolean watchEnabled = resolveProperty("watch_enabled").map(Boolean::parseBoolean).orElse(false);
+        int capacity = resolveProperty("staging_capacity").map(Integer::parseInt)
+                                                          .orElse(DataFileStager.DEFAULT_CAPACITY);
+
+        if (watchEnabled && capacity > 0) {
+            ExecutorService executorService = getContext().getExecutorServiceManager()
+                                                          .newSingleThreadExecutor(this, DataFileStager.NAMESPACE_KEY);
+
+            DataFileStager dataFileStager = new DataFileStager(capacity, executorService);
+            getContext().getRegistry().bind(DataFileStager.NAMESPACE_KEY, dataFileStager);
+            LOG.info("staging up to {} new data files ahead of the buildID file", capacity);
+        }
+    }
+
+    /**
+     * polls on a schedule learned from when the main data directory's buildID changes, in place of the fixed timer
+     *
+     * @param dispatchUris endpoints that queue a poll of each other source
+     */
+    private void configureAdaptivePolling(List<String> dispatchUris) throws Exception {
+        long minInterval = resolveProperty("poll_min_interval").map(Long::parseLong)
+                                                               .orElse(AdaptivePollScheduler.DEFAULT_MIN_INTERVAL);
+        long maxInterval = resolveProperty("poll_max_interval").map(Long::parseLong)
+                                                               .orElse(AdaptivePollScheduler.DEFAULT_MAX_INTERVAL);
+        double jitter = resolveProperty("poll_jitter").map(Double::parseDouble)
+                                                      .orElse(AdaptivePollScheduler.DEFAULT_JITTER);
+
+        AdaptivePollInterval adaptivePollInterval =
+                new AdaptivePollInterval(minInterval, maxInterval, jitter, new SecureRandom());
+        getContext().addService(new AdaptivePollScheduler(
+                UPDATE_PIPELINE_URI,
+                dispatchUris,
+                ExchangeRateBean.NAMESPACE_KEY,
+                adaptivePollInterval
+        ));
+    }
+
+    /**
+     * one cache for every pipeline, as it's keyed by what's in the data files rather than where they are
+     */
+    private void configureSnapshotCache() {
+        int capacity = resolveProperty("snapshot_cache_size").map(Integer::parseInt)
+                                                             .orElse(SnapshotCache.DEFAULT_CAPACITY);
+
+        if (capacity > 0) {
+            getContext().getRegistry().bind(SnapshotCache.NAMESPACE_KEY, new SnapshotCache(capacity));
+            LOG.info("caching snapshots of the last {} data files loaded", capacity);
+        }
+    }
+
+    /**
+     * providers are ranked by the consolidation_priority list. any it leaves out follow in the order they were
+     * configured in, the main data directory first.
+     *
+     * @param rateSources
+     * @return book over the main data directory and every source, or null if there are no sources to merge
+     */
+    private ConsolidatedRateBook configureConsolidatedRateBook(List<RateSource> rateSources) {
+        if (rateSources.isEmpty()) {
+            return null;
+        }
+
+        Set<String> configuredProviders = new LinkedHashSet<>();
+        configuredProviders.add(RateSource.MAIN_SOURCE_NAME);
+        rateSources.forEach(rateSource -> configuredProviders.add(rateSource.getName()));
+
+        Set<String> providers = new LinkedHashSet<>();
+        for (String provider : resolveProperty("consolidation_priority").orElse("").split(",")) {
+            if (configuredProviders.contains(provider.strip())) {
+                providers.add(provider.strip());
+            } else if (provider.isBlank() == false) {
+                LOG.error("ignoring {} in consolidation_priority - there's no source by that name", provider.strip());
+            }
+        }
+
+        providers.addAll(configuredProviders);
+
+        ConsolidatedRateBook.Policy policy = resolveProperty("consolidation_policy")
+                .map(ConsolidatedRateBook.Policy::of)
+                .orElse(ConsolidatedRateBook.Policy.BEST);
+
+        ConsolidatedRateBook consolidatedRateBook = new ConsolidatedRateBook(policy, List.copyOf(providers));
+        getContext().getRegistry().bind(ConsolidatedRateBook.NAMESPACE_KEY, consolidatedRateBook);
+        LOG.info("consolidating {} by {}", consolidatedRateBook.getProviders(), policy);
+        return consolidatedRateBook;
+    }
+
+    /**
+     * registers a bean and rate history for each source, and adds the routes that poll it. settings are resolved now
+     * rather than when the context starts as they decide which routes there are.
+     *
+     * @param rateSources
+     * @param consolidatedRateBook to keep up to date with each source, or null
+     * @param loaderExecutorService runs each source's loads
+     * @param timeSeriesExecutorService brings each source's rate history up to date
+     */
+    private void configureRateSources(List<RateSource> rateSources,
+                                      ConsolidatedRateBook consolidatedRateBook,
+                                      ExecutorService loaderExecutorService,
+                                      ExecutorService timeSeriesExecutorService) throws Exception {
+
+        if (rateSources.isEmpty()) {
+            return;
+        }
+
+        int threads = resolveProperty("source_threads").map(Integer::parseInt).orElse(0);
+        threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ExecutorService executorService =
+                getContext().getExecutorServiceManager().newFixedThreadPool(this, RateSource.NAMESPACE_KEY, threads);
+
+        int historySize = resolveProperty("history_size").map(Integer::parseInt)
+                                                         .orElse(ExchangeRateBean.DEFAULT_HISTORY_SIZE);
+        String stateFile = resolveProperty("state_file").orElse("");
+        int backfillThreads = resolveProperty("time_series_backfill_threads").map(Integer::parseInt).orElse(0);
+        boolean watchEnabled = resolveProperty("watch_enabled").map(Boolean::parseBoolean).orElse(false);
+
+        AppConfig appConfig = new AppConfig();
+        for (RateSource rateSource : rateSources) {
+            String sourceStateFile =
+                    stateFile.isBlank() ? "" : rateSource.getStateFilePath(Paths.get(stateFile)).toString();
+            getContext().getRegistry().bind(
+                    rateSource.getExchangeRateBeanName(),
+                    appConfig.exchangeRateBean(historySize, sourceStateFile)
+            );
+            getContext().getRegistry().bind(
+                    rateSource.getTimeSeriesStoreName(),
+                    appConfig.timeSeriesStore(backfillThreads)
+            );
+
+            // the timer and the watcher only queue a poll, so neither waits on a slow source
+            from(rateSource.getDispatchUri())
+                .id(rateSource.getDispatchRouteId())
+                .filter(exchange -> rateSource.tryStartPoll())
+                    .wireTap(rateSource.getPipelineUri())
+                        .executorService(executorService)
+                        .onPrepare(rateSource::finishPollOnCompletion)
+                .end();
+
+            configureUpdatePipeline(
+                    rateSource.getPipelineUri(),
+                    rateSource.getPipelineRouteId(),
+                    rateSource.getDataDirectory(),
+                    rateSource.getExchangeRateBeanName(),
+                    rateSource.getTimeSeriesStoreName(),
+                    updateBook(consolidatedRateBook, rateSource.getName(), rateSource.getExchangeRateBeanName()),
+                    loaderExecutorService,
+                    timeSeriesExecutorService
+            );
+
+            if (watchEnabled) {
+                getContext().addService(new DataDirectoryWatcher(
+                        rateSource.getDispatchUri(),
+                        rateSource.getDataDirectory(),
+                        resolveProperty("buildID_filename").orElse(""),
+                        resolveProperty("watch_debounce_period").map(Long::parseLong)
+                                                                .orElse(DataDirectoryWatcher.DEFAULT_DEBOUNCE_PERIOD)
+                ));
+            }
+
+            getContext().addService(new ExchangeRateMetricsExporter(rateSource.getExchangeRateBeanName()));
+            LOG.info("polling source {} on the {} pool", rateSource, RateSource.NAMESPACE_KEY);
+        }
+    }
+
+    /**
+     * the pipeline is split in two. the first route runs on whichever thread fired it and only works out whether the
+     * buildID file names a new buildID. if it does, the load is handed to the pipeline's {@link SingleFlightLoader},
+     * which runs the second route on the loader pool - so reading and parsing a large data file never holds up the
+     * timer, and loads for buildIDs that were superseded while they waited are never run.
+     *
+     * neither route goes through a bean endpoint. the bean and the time series store are looked up and called directly,
+     * and the data file travels to the bean as a {@link DataFileLoad} in the message body - so nothing is bound by
+     * reflection or the simple language, and no json rendering of the current rates is dragged through the route to
+     * read its buildID.
+     *
+     * the rate history is brought up to date after each load. a snapshot restored on a warm start is usually still
+     * current, so no load comes to backfill it - the first rates the bean holds, restored or loaded, queue a one off
+     * backfill instead. both are queued on the time series executor, so the loader is free for the next buildID as
+     * soon as the bean has swapped the rates in, however long the history takes.
+     *
+     * @param pipelineUri
+     * @param routeId
+     * @param dataDirectory
+     * @param exchangeRateBeanName
+     * @param timeSeriesStoreName
+     * @param bookUpdater run once the bean holds whatever the poll left it with
+     * @param loaderExecutorService runs the pipeline's loads
+     * @param timeSeriesExecutorService backfills and ingests the pipeline's rate history
+     */
+    private void configureUpdatePipeline(String pipelineUri,
+                                         String routeId,
+                                         String dataDirectory,
+                                         String exchangeRateBeanName,
+                                         String timeSeriesStoreName,
+                                         Processor bookUpdater,
+                                         ExecutorService loaderExecutorService,
+                                         ExecutorService timeSeriesExecutorService) throws Exception {
+
+        String loaderRouteId = routeId + LOADER_ROUTE_ID_SUFFIX;
+        String loaderUri = "direct:" + loaderRouteId;
+        SingleFlightLoader singleFlightLoader = new SingleFlightLoader(routeId, loaderExecutorService);
+
+        // bound by the loader route's id, so whatever needs to know whether a load is still running can look it up
+        getContext().getRegistry().bind(loaderRouteId, singleFlightLoader);
+        ProducerTemplate producerTemplate = getContext().createProducerTemplate();
+        Processor currentBuildIdSetter = exchange -> exchange.getMessage().setHeader(
+                CURRENT_BUILD_ID_HEADER_KEY,
+                lookupExchangeRateBean(exchange, exchangeRateBeanName).getBuildID()
+        );
+
+        // only queues the ingest. with nothing else having landed since the last, it's the loaded data file alone
+        Processor timeSeriesStoreUpdater = exchange -> {
+            TimeSeriesStore timeSeriesStore = exchange.getContext()
+                                                      .getRegistry()
+                                                      .lookupByNameAndType(timeSeriesStoreName, TimeSeriesStore.class);
+
+            String directory = exchange.getMessage().getHeader(DATA_DIRECTORY_HEADER_KEY, String.class);
+            try {
+                timeSeriesExecutorService.execute(() -> timeSeriesStore.ingestNewFiles(directory));
+            } catch (RejectedExecutionException e) {
+                LOG.warn("couldn't queue the rate history update of {} - shutting down", directory);
+            }
+        };
+
+        // subscribed once the beans have been bound. a snapshot restored before then is the first thing sent
+        getContext().addStartupListener((camelContext, alreadyStarted) -> {
+            ExchangeRateBean exchangeRateBean = camelContext.getRegistry()
+                                                            .lookupByNameAndType(exchangeRateBeanName,
+                                                                                 ExchangeRateBean.class);
+            TimeSeriesStore timeSeriesStore = camelContext.getRegistry()
+                                                          .lookupByNameAndType(timeSeriesStoreName,
+                                                                               TimeSeriesStore.class);
+
+            if (exchangeRateBean != null && timeSeriesStore != null) {
+                exchangeRateBean.getSnapshotPublisher().subscribe(new BackfillSubscriber(
+                        timeSeriesStore,
+                        camelContext.resolvePropertyPlaceholders(dataDirectory),
+                        timeSeriesExecutorService
+                ));
+            }
+        });
 
-            // attempt to load buildID file
-            .setHeader(DATA_DIRECTORY_HEADER_KEY, simple(DATA_DIRECTORY))
+        // idle polls - the common case - log at DEBUG so that short polling periods don't flood the log
+        from(pipelineUri)
+            .id(routeId)
+            .log(LoggingLevel.DEBUG, LOG, "checking for exchange rate updates...")
+            .process(exchange -> METRICS.recordPoll())
+
+            // attempt to load buildID file. the directory is a constant so it isn't re-evaluated on every poll
+            .setHeader(DATA_DIRECTORY_HEADER_KEY, constant(dataDirectory))
             .to(BUILD_ID_FILE_PROCESSOR)
 
             // if no buildID was found - no need to keep going
             .choice()
-                .when(header(NEW_BUILD_ID_HEADER_KEY).isNull())
+                .when(exchange -> exchange.getMessage().getHeader(NEW_BUILD_ID_HEADER_KEY) == null)
                     .log(LoggingLevel.WARN, "halting message due to missing buildID in message header...")
+                    .process(exchange -> METRICS.recordPollHalted())
                     .stop()
             .end()
 
-            // grab the current exchange rate data from the container bean
-            .to(EXCHANGE_RATE_BEAN)
-            .log(LoggingLevel.DEBUG, "exchange headers are ${headers}")
+            // grab the current buildID from the container bean
+            .process(currentBuildIdSetter)
+            .process(CurrencyDataPollingConsumerRoute::logHeaders)
 
-            // compare new to current buildID, taking action only on delta
+            // compare new to current buildID, taking action only on delta. plain predicates rather than camel's header
+            //   comparisons, which build a description of themselves on every poll
             .choice()
-                .when(header(NEW_BUILD_ID_HEADER_KEY).isNotEqualTo(header(CURRENT_BUILD_ID_HEADER_KEY)))
-                    .log(LoggingLevel.INFO, "new buildID does not equal current buildID, updating bean...")
-                    .to(DATA_FILE_PROCESSOR)
-
-                    // if no dataFileContents found - eject
-                    .choice()
-                        .when(header(DATA_FILE_CONTENTS_HEADER_KEY).isNull())
-                            .log(LoggingLevel.WARN, "halting message due to missing dataFile in header...")
-                            .stop()
-                    .end()
-
-                    // update bean with new exchange rate data
-                    .to(EXCHANGE_RATE_BEAN +
-                            "?method=setExchangeRates(" +
-                                "${headers." + NEW_BUILD_ID_HEADER_KEY + "}," +
-                                "${headers." + DATA_FILE_CONTENTS_HEADER_KEY + "}" +
-                            ")"
-                    )
+                .when(CurrencyDataPollingConsumerRoute::isNewBuildID)
+                    .log(LoggingLevel.INFO, "new buildID does not equal current buildID, queueing load...")
+                    .process(exchange -> queueLoad(singleFlightLoader, producerTemplate, loaderUri, exchange))
                 .endChoice()
             .otherwise()
-                .log(LoggingLevel.INFO, "taking no action, build IDs are same")
+                .log(LoggingLevel.DEBUG, LOG, "taking no action, build IDs are same")
+                .process(exchange -> METRICS.recordPollSkipped())
+
+                // a snapshot restored on a warm start hasn't been through the book yet
+                .process(bookUpdater)
             .end();
+
+        // the bean may have moved on while the load waited its turn, so the current buildID is looked up again. it's
+        //   also what a delta has to have been made against
+        from(loaderUri)
+            .id(loaderRouteId)
+            .process(currentBuildIdSetter)
+            .filter(CurrencyDataPollingConsumerRoute::isNewBuildID)
+                .log(LoggingLevel.INFO, "new buildID does not equal current buildID, updating bean...")
+                .to(DATA_FILE_PROCESSOR)
+
+                // if no data file, delta or staged snapshot could be read - eject
+                .choice()
+                    .when(PredicateBuilder.not(body().isInstanceOf(DataFileLoad.class)))
+                        .log(LoggingLevel.WARN, "halting message due to missing dataFile in body...")
+                        .process(exchange -> METRICS.recordPollHalted())
+                        .stop()
+                .end()
+
+                // update bean with new exchange rate data. should the bean have moved off the delta's base in the
+                //   meantime the delta is dropped, and the next poll reads the full data file instead
+                .process(exchange -> load(exchange, exchangeRateBeanName))
+                .process(CurrencyDataPollingConsumerRoute::recordReload)
+                .process(bookUpdater)
+
+                // a new data file has landed, so bring the rate history up to date. the first run after startup
+                //   backfills every data file in the directory, unless the first rates' backfill got there first
+                .process(timeSeriesStoreUpdater)
+            .end();
+    }
+
+    /**
+     * hands the load of the exchange's new buildID to the loader, along with everything the poll found out about it
+     *
+     * @param singleFlightLoader
+     * @param producerTemplate
+     * @param loaderUri
+     * @param exchange
+     */
+    private static void queueLoad(SingleFlightLoader singleFlightLoader,
+                                  ProducerTemplate producerTemplate,
+                                  String loaderUri,
+                                  Exchange exchange) {
+
+        String buildID = exchange.getMessage().getHeader(NEW_BUILD_ID_HEADER_KEY, String.class);
+        Map<String, Object> headers = new HashMap<>(exchange.getMessage().getHeaders());
+        singleFlightLoader.submit(buildID, () -> producerTemplate.sendBodyAndHeaders(loaderUri, "", headers));
+    }
+
+    /**
+     * hands the exchange's {@link DataFileLoad} to the bean, and caches the snapshot a whole data file was loaded into.
+     * the bean reports whether or not it took the new rates in the message body.
+     *
+     * @param exchange
+     * @param exchangeRateBeanName
+     */
+    private static void load(Exchange exchange, String exchangeRateBeanName) {
+        DataFileLoad dataFileLoad = exchange.getMessage().getBody(DataFileLoad.class);
+        ExchangeRateBean exchangeRateBean = lookupExchangeRateBean(exchange, exchangeRateBeanName);
+        boolean successFlag = dataFileLoad.loadInto(exchangeRateBean);
+
+        // only this pipeline's loader swaps snapshots into its bean, so the current one is the one just loaded
+        SnapshotCache snapshotCache = exchange.getContext().getRegistry().lookupByNameAndType(
+                SnapshotCache.NAMESPACE_KEY,
+                SnapshotCache.class
+        );
+
+        if (successFlag && snapshotCache != null && dataFileLoad.getContentHash() != null) {
+            snapshotCache.put(dataFileLoad.getContentHash(), exchangeRateBean.getSnapshot());
+        }
+
+        exchange.getMessage().setBody(successFlag);
     }
+
+    /**
+     * the book skips snapshots it has already seen, so this is cheap on polls that didn't change anything
+     *
+     * @param consolidatedRateBook or null if there isn't one
+     * @param provider
+     * @param exchangeRateBeanName the provider's bean
+     * @return
+     */
+    private static Processor updateBook(ConsolidatedRateBook consolidatedRateBook,
+                                        String provider,
+                                        String exchangeRateBeanName) {
+
+        if (consolidatedRateBook == null) {
+            return exchange -> { };
+        }
+
+        return exchange -> consolidatedRateBook.update(
+                provider,
+                lookupExchangeRateBean(exchange, exchangeRateBeanName).getSnapshot()
+        );
+    }
+
+    /**
+     * looked up per message rather than once, as tests and benchmarks rebind the bean after the routes are built
+     *
+     * @param exchange
+     * @param exchangeRateBeanName
+     * @return
+     */
+    private static ExchangeRateBean lookupExchangeRateBean(Exchange exchange, String exchangeRateBeanName) {
+        return exchange.getContext()
+                       .getRegistry()
+                       .lookupByNameAndType(exchangeRateBeanName, ExchangeRateBean.class);
+    }
+
+    /**
+     *
+     * @param key
+     * @return
+     */
+    private Optional<String> resolveProperty(String key) {
+        return getContext().getPropertiesComponent().resolveProperty(key).filter(value -> value.isBlank() == false);
+    }
+
+    /**
+     * the bean reports whether or not it took the new rates in the message body. if it didn't, it has reset itself and
+     * the poll counts as halted rather than reloaded.
+     *
+     * @param exchange
+     */
+    private static void recordReload(Exchange exchange) {
+        if (Boolean.TRUE.equals(exchange.getMessage().getBody(Boolean.class))) {
+            METRICS.recordPollReloaded();
+        } else {
+            METRICS.recordPollHalted();
+        }
+    }
+
+    /**
+     *
+     * @param exchange
+     * @return whether or not the buildID file names a different buildID to the one the bean holds
+     */
+    private static boolean isNewBuildID(Exchange exchange) {
+        Message message = exchange.getMessage();
+        return Objects.equals(
+                message.getHeader(NEW_BUILD_ID_HEADER_KEY),
+                message.getHeader(CURRENT_BUILD_ID_HEADER_KEY)
+        ) == false;
+    }
+
+    /**
+     * only renders the headers if someone is going to read them
+     *
+     * @param exchange
+     */
+    private static void logHeaders(Exchange exchange) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("exchange headers are {}", exchange.getMessage().getHeaders());
+        }
+    }
+
+
+    /**
+     * backfills the rate history the first time it's sent rates, then cancels itself. the backfill is queued on the
+     * time series executor rather than run on the thread the change arrived on, and is a no-op if a load has filled
+     * the history first.
+     */
+    private static final class BackfillSubscriber implements Flow.Subscriber<SnapshotChange> {
+
+        private final TimeSeriesStore timeSeriesStore;
+        private final String dataDirectory;
+        private final ExecutorService executorService;
+        private Flow.Subscription subscription;
+
+        private BackfillSubscriber(TimeSeriesStore timeSeriesStore,
+                                   String dataDirectory,
+                                   ExecutorService executorService) {
+
+            this.timeSeriesStore = timeSeriesStore;
+            this.dataDirectory = dataDirectory;
+            this.executorService = executorService;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(SnapshotChange snapshotChange) {
+            if (snapshotChange.getSnapshot() == ExchangeRateSnapshot.EMPTY) {
+                subscription.request(1);
+                return;
+            }
+
+            subscription.cancel();
+            try {
+                executorService.execute(() -> timeSeriesStore.backfill(dataDirectory));
+            } catch (RejectedExecutionException e) {
+                LOG.warn("couldn't queue the rate history backfill of {} - shutting down", dataDirectory);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            LOG.warn("rate history backfill of {} won't be run", dataDirectory, throwable);
+        }
+
+        @Override
+        public void onComplete() { }
+
+    }
+
 }
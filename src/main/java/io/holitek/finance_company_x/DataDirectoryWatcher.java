@@ -0,0 +1,269 @@
+package io.holitek.finance_company_x;
+
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.CamelContextAware;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.spi.PropertiesComponent;
+import org.apache.camel.support.service.ServiceSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.beans.Introspector;
+
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * event driven alternative to waiting on the polling timer. watches the data directory with the OS file watch
+ * facility and fires the buildID -> data file -> bean pipeline as soon as the buildID file is created or replaced. the
+ * timer keeps running as a low frequency safety net for file systems where watch events aren't delivered (eg: NFS).
+ *
+ * events that arrive close together - a replace usually shows up as a create followed by one or more modifies - are
+ * coalesced into a single pipeline run. a burst is cut off after {@link #MAX_DEBOUNCE_MULTIPLIER} debounce periods,
+ * so a steady stream of events - eg: a large data file being written - can't put the pipeline off indefinitely.
+ *
+ * if a {@link DataFileStager} is registered, every other file that changes in the burst is handed to it, so that new
+ * data files are built into snapshots before the buildID file is pointed at them.
+ */
+public class DataDirectoryWatcher extends ServiceSupport implements CamelContextAware {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DataDirectoryWatcher.class);
+
+    public static final String NAMESPACE_KEY = Introspector.decapitalize(DataDirectoryWatcher.class.getSimpleName());
+
+    public static final long DEFAULT_DEBOUNCE_PERIOD = 10;
+
+    // a burst is drained for at most this many debounce periods before the pipeline is fired
+    public static final int MAX_DEBOUNCE_MULTIPLIER = 10;
+
+    private final String targetUri;
+    private final AtomicLong triggerCount = new AtomicLong();
+
+    private CamelContext camelContext;
+    private boolean enabled;
+    private Path directory;
+    private String buildIdFilename;
+    private long debouncePeriod;
+
+    private DataFileStager dataFileStager;
+    private WatchService watchService;
+    private ProducerTemplate producerTemplate;
+    private Thread watchThread;
+
+
+    /**
+     * settings are resolved from app properties when the service starts.
+     *
+     * @param targetUri endpoint that runs the update pipeline
+     */
+    public DataDirectoryWatcher(String targetUri) {
+        this.targetUri = targetUri;
+    }
+
+    /**
+     * for when settings are known up front and shouldn't come from app properties.
+     *
+     * @param targetUri
+     * @param directory
+     * @param buildIdFilename
+     * @param debouncePeriod millis to wait for further events before firing the pipeline
+     */
+    public DataDirectoryWatcher(String targetUri, String directory, String buildIdFilename, long debouncePeriod) {
+        this.targetUri = targetUri;
+        this.enabled = true;
+        this.directory = Paths.get(directory);
+        this.buildIdFilename = buildIdFilename;
+        this.debouncePeriod = debouncePeriod;
+    }
+
+
+    // PUBLIC
+    //
+
+    @Override
+    public CamelContext getCamelContext() { return camelContext; }
+
+    @Override
+    public void setCamelContext(CamelContext camelContext) { this.camelContext = camelContext; }
+
+    /**
+     *
+     * @return number of times a buildID file change has fired the pipeline
+     */
+    public long getTriggerCount() { return triggerCount.get(); }
+
+
+    // PROTECTED
+    //
+
+    @Override
+    protected void doStart() throws Exception {
+        if (directory == null) {
+            resolveSettings();
+        }
+
+        if (enabled == false) {
+            LOG.info("data directory watching is disabled - relying on the polling timer alone");
+            return;
+        }
+
+        if (Files.isDirectory(directory) == false) {
+            LOG.warn("can't watch {} as it isn't a directory - relying on the polling timer alone", directory);
+            return;
+        }
+
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.register(
+                watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY
+        );
+
+        producerTemplate = camelContext.createProducerTemplate();
+        dataFileStager = camelContext.getRegistry()
+                                     .lookupByNameAndType(DataFileStager.NAMESPACE_KEY, DataFileStager.class);
+
+        watchThread = new Thread(this::watch, NAMESPACE_KEY);
+        watchThread.setDaemon(true);
+        watchThread.start();
+        LOG.info("watching {} for changes to {}", directory, buildIdFilename);
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+        }
+
+        if (watchThread != null) {
+            watchThread.join(TimeUnit.SECONDS.toMillis(5));
+            watchThread = null;
+        }
+
+        if (producerTemplate != null) {
+            producerTemplate.stop();
+            producerTemplate = null;
+        }
+    }
+
+
+    // PRIVATE
+    //
+
+    /**
+     *
+     */
+    private void resolveSettings() {
+        PropertiesComponent propertiesComponent = camelContext.getPropertiesComponent();
+
+        Optional<String> directoryOptional = propertiesComponent.resolveProperty("data_directory");
+        Optional<String> buildFileNameOptional = propertiesComponent.resolveProperty("buildID_filename");
+
+        enabled = propertiesComponent.resolveProperty("watch_enabled").map(Boolean::parseBoolean).orElse(false);
+        if (enabled && (directoryOptional.isEmpty() || buildFileNameOptional.isEmpty())) {
+            LOG.error("data_directory and buildID_filename properties are needed to watch for changes");
+            enabled = false;
+        }
+
+        if (enabled) {
+            directory = Paths.get(directoryOptional.get());
+            buildIdFilename = buildFileNameOptional.get();
+            debouncePeriod = propertiesComponent.resolveProperty("watch_debounce_period")
+                                                .map(Long::parseLong)
+                                                .orElse(DEFAULT_DEBOUNCE_PERIOD);
+        }
+    }
+
+    /**
+     * runs on the watch thread until the watch service is closed
+     */
+    private void watch() {
+        WatchService watchService = this.watchService;
+        try {
+            while (true) {
+                Set<Path> changedFiles = new LinkedHashSet<>();
+                boolean buildIdFileChanged = drainEvents(watchService.take(), changedFiles);
+
+                // give the rest of a burst of events a moment to land so we only run the pipeline once. whatever
+                //   lands after the cut off is picked up as the next burst
+                long debounceNanos = TimeUnit.MILLISECONDS.toNanos(debouncePeriod);
+                long deadline = System.nanoTime() + debounceNanos * MAX_DEBOUNCE_MULTIPLIER;
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    WatchKey watchKey = watchService.poll(Math.min(debounceNanos, remaining), TimeUnit.NANOSECONDS);
+                    if (watchKey == null) {
+                        break;
+                    }
+
+                    buildIdFileChanged |= drainEvents(watchKey, changedFiles);
+                }
+
+                // staged first, so a data file that lands along with the buildID file can still be promoted
+                if (dataFileStager != null) {
+                    changedFiles.forEach(changedFile -> dataFileStager.stage(directory.resolve(changedFile)));
+                }
+
+                if (buildIdFileChanged) {
+                    trigger();
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            LOG.info("stopped watching {}", directory);
+        }
+    }
+
+    /**
+     *
+     * @param watchKey
+     * @param changedFiles collects the other files the events were for
+     * @return whether or not any of the events were for the buildID file
+     */
+    private boolean drainEvents(WatchKey watchKey, Set<Path> changedFiles) {
+        boolean buildIdFileChanged = false;
+        for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+            if (watchEvent.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // events were lost - we can't know whether one of them was ours so assume it was
+                buildIdFileChanged = true;
+            } else if (((Path)watchEvent.context()).toString().equals(buildIdFilename)) {
+                buildIdFileChanged = true;
+            } else {
+                changedFiles.add((Path)watchEvent.context());
+            }
+        }
+
+        watchKey.reset();
+        return buildIdFileChanged;
+    }
+
+    /**
+     *
+     */
+    private void trigger() {
+        LOG.info("{} changed - checking for exchange rate updates", buildIdFilename);
+        triggerCount.incrementAndGet();
+        try {
+            producerTemplate.sendBody(targetUri, "");
+        } catch (RuntimeException e) {
+            // don't let one bad run kill the watch thread
+            LOG.error("something went wrong running the update pipeline after a buildID file change", e);
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+package io.holitek.finance_company_x;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import java.util.Map;
+
+
+/**
+ * turns json data files into {@link BinaryRateFormat} ones, eg: on a relay in front of the provider so the app never has
+ * to parse json at all. run with the paths of the json files to convert:
+ *
+ * <pre>
+ *   java -cp ... io.holitek.finance_company_x.DataFileConverter /tmp/exchange/20201010-0000.txt
+ * </pre>
+ *
+ * each file is written next to its source with a {@link BinaryRateFormat#FILE_EXTENSION} extension in place of the
+ * json one. the buildID file then needs to name the binary file, or carry a Version of
+ * {@link BinaryRateFormat#BUILD_ID_VERSION}, for the app to pick it up.
+ */
+public final class DataFileConverter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DataFileConverter.class);
+
+    private DataFileConverter() { }
+
+
+    // PUBLIC
+    //
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: DataFileConverter <json data file> [<json data file> ...]");
+            System.exit(1);
+        }
+
+        for (String arg : args) {
+            Path binaryDataFilePath = convert(Paths.get(arg));
+            LOG.info("converted {} to {}", arg, binaryDataFilePath);
+        }
+    }
+
+    /**
+     *
+     * @param jsonDataFilePath
+     * @return path of the binary data file written next to the json one
+     * @throws IOException if the json data file can't be read or the binary one can't be written
+     */
+    public static Path convert(Path jsonDataFilePath) throws IOException {
+        String fileName = jsonDataFilePath.getFileName().toString();
+        int extensionIndex = fileName.lastIndexOf('.');
+        String baseName = extensionIndex > 0 ? fileName.substring(0, extensionIndex) : fileName;
+
+        Path binaryDataFilePath = jsonDataFilePath.resolveSibling(baseName + BinaryRateFormat.FILE_EXTENSION);
+        convert(jsonDataFilePath, binaryDataFilePath);
+        return binaryDataFilePath;
+    }
+
+    /**
+     * the binary file is written under a temporary name and moved into place, so anything watching the directory
+     * never sees it half written.
+     *
+     * @param jsonDataFilePath
+     * @param binaryDataFilePath
+     * @throws IOException if the json data file can't be read or the binary one can't be written
+     */
+    public static void convert(Path jsonDataFilePath, Path binaryDataFilePath) throws IOException {
+        Map<String, Double> exchangeRateMap = ExchangeRateFileReader.read(jsonDataFilePath);
+
+        Path stagedPath = binaryDataFilePath.resolveSibling(binaryDataFilePath.getFileName() + ".tmp");
+        Files.write(stagedPath, BinaryRateFormat.encode(exchangeRateMap));
+        Files.move(stagedPath, binaryDataFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
@@ -0,0 +1,216 @@
+package io.holitek.finance_company_x;
+
+
+import java.util.Map;
+import java.util.Objects;
+
+
+/**
+ * what {@link DataFileProcessor} read for a new buildID, carried to the bean in the message body. exactly one of full
+ * rates, a delta or a staged snapshot is set, and {@link #loadInto(ExchangeRateBean)} hands it to the bean method that
+ * takes it - so the route calls the bean directly rather than binding headers to a bean method by reflection.
+ *
+ * whole data files may also carry a hash of their contents, so that the snapshot they're loaded into can be kept in the
+ * {@link SnapshotCache}.
+ *
+ * {@link #toString()} only gives the sizes, so logging a message never renders a whole data file.
+ */
+public final class DataFileLoad {
+
+    private final String buildID;
+    private final String dataFileName;
+    private final Map<String, Double> exchangeRateMap;
+    private final RateDelta rateDelta;
+    private final String baseBuildID;
+    private final ExchangeRateSnapshot stagedSnapshot;
+    private final String contentHash;
+
+
+    /**
+     *
+     * @param buildID
+     * @param dataFileName
+     * @param exchangeRateMap
+     * @param rateDelta
+     * @param baseBuildID
+     * @param stagedSnapshot
+     * @param contentHash
+     */
+    private DataFileLoad(String buildID,
+                         String dataFileName,
+                         Map<String, Double> exchangeRateMap,
+                         RateDelta rateDelta,
+                         String baseBuildID,
+                         ExchangeRateSnapshot stagedSnapshot,
+                         String contentHash) {
+
+        this.buildID = buildID;
+        this.dataFileName = Objects.requireNonNull(dataFileName, "dataFileName");
+        this.exchangeRateMap = exchangeRateMap;
+        this.rateDelta = rateDelta;
+        this.baseBuildID = baseBuildID;
+        this.stagedSnapshot = stagedSnapshot;
+        this.contentHash = contentHash;
+    }
+
+
+    // PUBLIC
+    //
+
+    /**
+     *
+     * @param buildID
+     * @param dataFileName
+     * @param exchangeRateMap read-only rates from the whole data file. becomes the snapshot's backing store uncopied
+     * @return
+     */
+    public static DataFileLoad ofRates(String buildID, String dataFileName, Map<String, Double> exchangeRateMap) {
+        return ofRates(buildID, dataFileName, exchangeRateMap, null);
+    }
+
+    /**
+     *
+     * @param buildID
+     * @param dataFileName
+     * @param exchangeRateMap read-only rates from the whole data file. becomes the snapshot's backing store uncopied
+     * @param contentHash of the data file, or null if it wasn't hashed
+     * @return
+     */
+    public static DataFileLoad ofRates(String buildID,
+                                       String dataFileName,
+                                       Map<String, Double> exchangeRateMap,
+                                       String contentHash) {
+
+        return new DataFileLoad(
+                buildID,
+                dataFileName,
+                Objects.requireNonNull(exchangeRateMap, "exchangeRateMap"),
+                null,
+                null,
+                null,
+                contentHash
+        );
+    }
+
+    /**
+     *
+     * @param buildID
+     * @param baseBuildID the delta was made against
+     * @param deltaFileName
+     * @param rateDelta
+     * @return
+     */
+    public static DataFileLoad ofDelta(String buildID, String baseBuildID, String deltaFileName, RateDelta rateDelta) {
+        return new DataFileLoad(
+                buildID,
+                deltaFileName,
+                null,
+                Objects.requireNonNull(rateDelta, "rateDelta"),
+                Objects.requireNonNull(baseBuildID, "baseBuildID"),
+                null,
+                null
+        );
+    }
+
+    /**
+     *
+     * @param buildID
+     * @param stagedSnapshot built by the {@link DataFileStager}, or kept by the {@link SnapshotCache}
+     * @return
+     */
+    public static DataFileLoad ofStagedSnapshot(String buildID, ExchangeRateSnapshot stagedSnapshot) {
+        return ofStagedSnapshot(buildID, stagedSnapshot, null);
+    }
+
+    /**
+     *
+     * @param buildID
+     * @param stagedSnapshot built by the {@link DataFileStager}, or kept by the {@link SnapshotCache}
+     * @param contentHash of the data file the snapshot was built from, or null if it wasn't hashed
+     * @return
+     */
+    public static DataFileLoad ofStagedSnapshot(String buildID,
+                                                ExchangeRateSnapshot stagedSnapshot,
+                                                String contentHash) {
+
+        return new DataFileLoad(
+                buildID,
+                stagedSnapshot.getDataFileName(),
+                null,
+                null,
+                null,
+                stagedSnapshot,
+                contentHash
+        );
+    }
+
+    /**
+     *
+     * @param exchangeRateBean
+     * @return whether or not the bean took the new rates
+     */
+    public boolean loadInto(ExchangeRateBean exchangeRateBean) {
+        if (rateDelta != null) {
+            return exchangeRateBean.applyDelta(buildID, baseBuildID, rateDelta, dataFileName);
+        }
+
+        if (stagedSnapshot != null) {
+            return exchangeRateBean.promoteSnapshot(buildID, stagedSnapshot);
+        }
+
+        return exchangeRateBean.setExchangeRates(buildID, exchangeRateMap, dataFileName);
+    }
+
+    public String getBuildID() { return buildID; }
+
+    /**
+     *
+     * @return name of the data, delta or staged file the rates came from
+     */
+    public String getDataFileName() { return dataFileName; }
+
+    /**
+     *
+     * @return rates from a whole data file, or null if this is a delta or a staged snapshot
+     */
+    public Map<String, Double> getExchangeRateMap() { return exchangeRateMap; }
+
+    /**
+     *
+     * @return null unless this is a delta
+     */
+    public RateDelta getRateDelta() { return rateDelta; }
+
+    /**
+     *
+     * @return null unless this is a delta
+     */
+    public String getBaseBuildID() { return baseBuildID; }
+
+    /**
+     *
+     * @return null unless this is a staged snapshot
+     */
+    public ExchangeRateSnapshot getStagedSnapshot() { return stagedSnapshot; }
+
+    /**
+     *
+     * @return hash of the whole data file's contents, or null if it wasn't hashed - eg: for a delta
+     */
+    public String getContentHash() { return contentHash; }
+
+    @Override
+    public String toString() {
+        String contents;
+        if (rateDelta != null) {
+            contents = rateDelta + " against buildID " + baseBuildID;
+        } else if (stagedSnapshot != null) {
+            contents = "staged snapshot of " + stagedSnapshot.size() + " rates";
+        } else {
+            contents = exchangeRateMap.size() + " rates";
+        }
+
+        return "DataFileLoad{buildID='" + buildID + "', dataFileName='" + dataFileName + "', " + contents + "}";
+    }
+
+}
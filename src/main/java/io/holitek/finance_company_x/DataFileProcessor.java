@@ -2,9 +2,11 @@ package io.holitek.finance_company_x;
 
 
 import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.JsonPath;
 
 import com.jayway.jsonpath.Option;
+import com.jayway.jsonpath.ParseContext;
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
 import org.slf4j.Logger;
@@ -12,19 +14,38 @@ import org.slf4j.LoggerFactory;
 
 import java.beans.Introspector;
 
+import java.io.IOException;
+
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+
+import java.util.Map;
 import java.util.Optional;
 
 
 import static io.holitek.finance_company_x.Helpers.fileExists;
 
 import static io.holitek.finance_company_x.BuildIdFileProcessor.BUILD_ID_FILE_CONTENTS_HEADER_KEY;
+import static io.holitek.finance_company_x.BuildIdFileProcessor.NEW_BUILD_ID_HEADER_KEY;
+import static io.holitek.finance_company_x.ExchangeRateBean.CURRENT_BUILD_ID_HEADER_KEY;
 
 
 /**
- * handles parsing of data files into exchange header
+ * handles parsing of data files into a {@link DataFileLoad}, set as the message body for the route to hand to the bean.
+ * the body is left as it was if nothing could be read. json data files are streamed straight into a rate map by
+ * {@link ExchangeRateFileReader} - their raw contents are never held in memory. data files the buildID file marks as
+ * binary, by Version or by file extension, are memory mapped and decoded by {@link BinaryRateFormat} instead.
+ *
+ * a buildID file may also name a DeltaFileName, holding only what changed since the BaseBuildID it names. when the
+ * bean currently holds that base, the delta is read in place of the data file and handed on for the bean to apply. in
+ * any other case - or if the delta can't be read - the full data file is read as usual, unless the
+ * {@link DataFileStager} has already built it into a snapshot, which is handed on instead.
+ *
+ * with a {@link SnapshotCache} in the registry, full data files are hashed before they're read - one sequential pass
+ * over the bytes, which costs far less than parsing them. staged files were hashed when they were staged, so promoting
+ * one hashes nothing. when the cache holds a snapshot of the contents - the same data under a bumped buildID, or a
+ * buildID file rolled back to an earlier data file - the cached snapshot is handed on and the file is never parsed.
  */
 public class DataFileProcessor implements Processor {
 
@@ -32,7 +53,14 @@ public class DataFileProcessor implements Processor {
 
     public static final String NAMESPACE_KEY = Introspector.decapitalize(DataFileProcessor.class.getSimpleName());
 
-    public static final String DATA_FILE_CONTENTS_HEADER_KEY = "dataFileContents";
+    // this to prevent the json parser from going boom when a key isn't found. parser and path are thread safe.
+    private static final ParseContext JSON_PARSER =
+            JsonPath.using(Configuration.defaultConfiguration().addOptions(Option.SUPPRESS_EXCEPTIONS));
+
+    private static final JsonPath FILE_NAME_JSON_PATH = JsonPath.compile("$.FileName");
+    private static final JsonPath VERSION_JSON_PATH = JsonPath.compile("$.Version");
+    private static final JsonPath DELTA_FILE_NAME_JSON_PATH = JsonPath.compile("$.DeltaFileName");
+    private static final JsonPath BASE_BUILD_ID_JSON_PATH = JsonPath.compile("$.BaseBuildID");
 
     /**
      *
@@ -42,28 +70,215 @@ public class DataFileProcessor implements Processor {
     @Override
     public void process(Exchange exchange) throws Exception {
 
-        // this to prevent the json parser from going boom when a key isn't found
-        Configuration jsonPathConf = Configuration.defaultConfiguration().addOptions(Option.SUPPRESS_EXCEPTIONS);
-
         String directory = (String)exchange.getMessage()
                                            .getHeader(CurrencyDataPollingConsumerRoute.DATA_DIRECTORY_HEADER_KEY);
 
         String buildIdFileAsJson = (String)exchange.getMessage().getHeader(BUILD_ID_FILE_CONTENTS_HEADER_KEY);
 
-        Optional<String> dataFileNameOptional = Optional.ofNullable(
-                JsonPath.using(jsonPathConf).parse(buildIdFileAsJson).read("$.FileName")
-        );
+        DocumentContext buildIdFileDocument = JSON_PARSER.parse(buildIdFileAsJson);
+        Optional<String> dataFileNameOptional = Optional.ofNullable(buildIdFileDocument.read(FILE_NAME_JSON_PATH));
+        // Version may be written as a number as well as a string
+        Object versionObject = buildIdFileDocument.read(VERSION_JSON_PATH);
+        String version = versionObject == null ? null : String.valueOf(versionObject);
 
         // update exchange rates iff data file exists and is valid json
-        // TODO add more validation of dataFileContentsJson as needed...
+        // TODO add more validation of data file contents as needed...
+        String buildID = (String)exchange.getMessage().getHeader(NEW_BUILD_ID_HEADER_KEY);
+        if (readDelta(exchange, directory, buildIdFileDocument, buildID)) {
+            return;
+        }
+
         if (dataFileNameOptional.isEmpty() || fileExists(directory, dataFileNameOptional.get()) == false) {
             LOG.error("data file can't can't be parsed from buildID file contents");
+            FlightRecorderEvents.loadFailed(buildID, dataFileNameOptional.orElse(""), "data file can't be found");
+        } else {
+            String dataFileName = dataFileNameOptional.get();
+            Path dataFilePath = Paths.get(directory, dataFileName);
+            boolean binary = BinaryRateFormat.isBinaryDataFile(dataFileName, version);
+            SnapshotCache snapshotCache = exchange.getContext().getRegistry().lookupByNameAndType(
+                    SnapshotCache.NAMESPACE_KEY,
+                    SnapshotCache.class
+            );
+
+            if (promoteStaged(exchange, dataFilePath, binary, buildID)) {
+                return;
+            }
+
+            FlightRecorderEvents.DataFileRead event = new FlightRecorderEvents.DataFileRead();
+            event.begin();
+            long startNanos = System.nanoTime();
+            try {
+                // there's only any point hashing the contents if there's a cache to look them up in
+                String contentHash = snapshotCache == null ? null : SnapshotCache.contentHashOf(dataFilePath);
+                if (promoteCached(exchange, snapshotCache, contentHash, buildID)) {
+                    return;
+                }
+
+                Map<String, Double> exchangeRateMap = BinaryRateFormat.readDataFile(dataFilePath, version);
+                exchange.getMessage().setBody(
+                        DataFileLoad.ofRates(buildID, dataFileName, exchangeRateMap, contentHash)
+                );
+
+                if (event.shouldCommit()) {
+                    event.buildID = buildID;
+                    event.fileName = dataFileName;
+                    event.format = binary ? "binary" : "json";
+                    event.bytes = Files.size(dataFilePath);
+                    event.entries = exchangeRateMap.size();
+                    event.commit();
+                }
+            } catch (IOException e) {
+                LOG.error("data file {} can't be parsed as exchange rate data", dataFilePath, e);
+                FlightRecorderEvents.loadFailed(buildID, dataFileName, e.getMessage());
+            } finally {
+                ExchangeRateMetrics.INSTANCE.getDataFileParseLatency().recordSince(startNanos);
+            }
+        }
+
+    }
+
+    /**
+     * reads the delta the buildID file names, if there is one and it was made against the buildID the bean holds
+     *
+     * @param exchange
+     * @param directory
+     * @param buildIdFileDocument
+     * @param buildID
+     * @return whether or not the delta was read and set as the message body
+     */
+    private boolean readDelta(Exchange exchange,
+                              String directory,
+                              DocumentContext buildIdFileDocument,
+                              String buildID) {
+
+        String deltaFileName = buildIdFileDocument.read(DELTA_FILE_NAME_JSON_PATH);
+        String baseBuildID = buildIdFileDocument.read(BASE_BUILD_ID_JSON_PATH);
+        String currentBuildID = (String)exchange.getMessage().getHeader(CURRENT_BUILD_ID_HEADER_KEY);
+        if (deltaFileName == null || baseBuildID == null) {
+            return false;
+        }
+
+        if (baseBuildID.equals(currentBuildID) == false || fileExists(directory, deltaFileName) == false) {
+            LOG.info("delta file {} doesn't apply to current buildID {} - reading the full data file",
+                     deltaFileName,
+                     currentBuildID);
+
+            return false;
+        }
+
+        Path deltaFilePath = Paths.get(directory, deltaFileName);
+        FlightRecorderEvents.DataFileRead event = new FlightRecorderEvents.DataFileRead();
+        event.begin();
+        long startNanos = System.nanoTime();
+        try {
+            RateDelta rateDelta = ExchangeRateFileReader.readDelta(deltaFilePath);
+            exchange.getMessage().setBody(DataFileLoad.ofDelta(buildID, baseBuildID, deltaFileName, rateDelta));
+
+            if (event.shouldCommit()) {
+                event.buildID = buildID;
+                event.fileName = deltaFileName;
+                event.format = "delta";
+                event.bytes = Files.size(deltaFilePath);
+                event.entries = rateDelta.size();
+                event.commit();
+            }
+
+            return true;
+        } catch (IOException e) {
+            LOG.error("delta file {} can't be parsed - reading the full data file", deltaFilePath, e);
+            return false;
+        } finally {
+            ExchangeRateMetrics.INSTANCE.getDataFileParseLatency().recordSince(startNanos);
+        }
+    }
+
+    /**
+     * hands on the cached snapshot of the data file's contents, if the cache has one
+     *
+     * @param exchange
+     * @param snapshotCache or null if there isn't one
+     * @param contentHash or null if the data file wasn't hashed
+     * @param buildID
+     * @return whether or not a cached snapshot was set as the message body
+     */
+    private boolean promoteCached(Exchange exchange, SnapshotCache snapshotCache, String contentHash, String buildID) {
+        if (contentHash == null) {
+            return false;
+        }
+
+        FlightRecorderEvents.DataFileRead event = new FlightRecorderEvents.DataFileRead();
+        event.begin();
+        Optional<ExchangeRateSnapshot> snapshotOptional = snapshotCache.get(contentHash);
+        if (snapshotOptional.isEmpty()) {
+            return false;
+        }
+
+        ExchangeRateSnapshot snapshot = snapshotOptional.get();
+        if (snapshot.getBuildID().equals(exchange.getMessage().getHeader(CURRENT_BUILD_ID_HEADER_KEY))) {
+            LOG.info("buildID {} has the same data as current buildID {} - only the buildID changes",
+                     buildID,
+                     snapshot.getBuildID());
         } else {
-            Path dataFilePath = Paths.get(directory, dataFileNameOptional.get());
-            String dataFileContentsJson = new String(Files.readAllBytes(dataFilePath));
-            exchange.getMessage().setHeader(DATA_FILE_CONTENTS_HEADER_KEY, dataFileContentsJson);
+            LOG.info("buildID {} has the same data as earlier buildID {} - reusing its snapshot",
+                     buildID,
+                     snapshot.getBuildID());
+        }
+
+        exchange.getMessage().setBody(DataFileLoad.ofStagedSnapshot(buildID, snapshot, contentHash));
+        if (event.shouldCommit()) {
+            event.buildID = buildID;
+            event.fileName = snapshot.getDataFileName();
+            event.format = "cached";
+            event.entries = snapshot.size();
+            event.commit();
+        }
+
+        return true;
+    }
+
+    /**
+     * hands on the staged snapshot of the data file, if the stager has one
+     *
+     * @param exchange
+     * @param dataFilePath
+     * @param binary whether or not the buildID file says the data file is binary
+     * @param buildID
+     * @return whether or not a staged snapshot was set as the message body
+     */
+    private boolean promoteStaged(Exchange exchange, Path dataFilePath, boolean binary, String buildID) {
+
+        DataFileStager dataFileStager = exchange.getContext().getRegistry().lookupByNameAndType(
+                DataFileStager.NAMESPACE_KEY,
+                DataFileStager.class
+        );
+
+        // files are staged by what their name says they are. a buildID file that says otherwise wins
+        String dataFileName = dataFilePath.getFileName().toString();
+        if (dataFileStager == null || binary != BinaryRateFormat.isBinaryDataFile(dataFileName, null)) {
+            return false;
+        }
+
+        FlightRecorderEvents.DataFileRead event = new FlightRecorderEvents.DataFileRead();
+        event.begin();
+        Optional<DataFileStager.StagedFile> stagedFileOptional = dataFileStager.promote(dataFilePath);
+        if (stagedFileOptional.isEmpty()) {
+            return false;
+        }
+
+        DataFileStager.StagedFile stagedFile = stagedFileOptional.get();
+        exchange.getMessage().setBody(
+                DataFileLoad.ofStagedSnapshot(buildID, stagedFile.getSnapshot(), stagedFile.getContentHash())
+        );
+
+        if (event.shouldCommit()) {
+            event.buildID = buildID;
+            event.fileName = dataFileName;
+            event.format = "staged";
+            event.entries = stagedFile.getSnapshot().size();
+            event.commit();
         }
 
+        return true;
     }
 
 }
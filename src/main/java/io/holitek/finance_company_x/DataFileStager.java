@@ -0,0 +1,302 @@
+package io.holitek.finance_company_x;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.beans.Introspector;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import java.security.MessageDigest;
+
+import java.time.Instant;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * providers write a new data file some seconds before they point the buildID file at it. the stager reads data files
+ * as they land, on a background thread, and builds them into snapshots ahead of time - rate table and cross rates
+ * included - so that when the buildID file does flip, {@link DataFileProcessor} hands the staged snapshot over and the
+ * bean only has to stamp it with the new buildID and swap it in. each file is hashed in the same pass that reads it, so
+ * the {@link SnapshotCache} can take in a promoted snapshot without the file being read again.
+ *
+ * the staging area only holds so many files. those that are never promoted, eg: because the provider skipped them, are
+ * evicted oldest first. a staged file that has changed on disk since it was read isn't promoted - it's read afresh as
+ * though it had never been staged.
+ *
+ * one stager serves every data directory, as files are staged by their full path. it learns of new files from the
+ * {@link DataDirectoryWatcher}s, so does nothing unless watching is enabled.
+ */
+public final class DataFileStager {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DataFileStager.class);
+
+    public static final String NAMESPACE_KEY = Introspector.decapitalize(DataFileStager.class.getSimpleName());
+
+    public static final int DEFAULT_CAPACITY = 2;
+
+    private final int capacity;
+    private final Executor executor;
+
+    // staged and still staging files, oldest first. guarded by this
+    private final Map<Path, CompletableFuture<StagedFile>> stagedFiles = new LinkedHashMap<>();
+
+    private final AtomicLong promotedCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+
+
+    /**
+     *
+     * @param capacity number of files to hold at most, staged or still staging
+     * @param executor reads and builds the staged snapshots
+     */
+    public DataFileStager(int capacity, Executor executor) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("staging capacity must be at least 1: " + capacity);
+        }
+
+        this.capacity = capacity;
+        this.executor = executor;
+    }
+
+
+    // PUBLIC
+    //
+
+    /**
+     * queues the file to be read and built into a snapshot. files that aren't timestamped data files, and files that
+     * are already staged as they are now, are left alone.
+     *
+     * @param dataFilePath
+     * @return completes with whether or not the file is staged
+     */
+    public CompletableFuture<Boolean> stage(Path dataFilePath) {
+        Path path = dataFilePath.toAbsolutePath().normalize();
+        if (TimeSeriesStore.timestampOf(path.getFileName().toString()).isEmpty()) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        Optional<FileVersion> fileVersionOptional = FileVersion.of(path);
+        if (fileVersionOptional.isEmpty()) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        CompletableFuture<StagedFile> stagedFileFuture;
+        synchronized (this) {
+            CompletableFuture<StagedFile> existingFuture = stagedFiles.get(path);
+            if (existingFuture != null && isCurrent(existingFuture, fileVersionOptional.get())) {
+                return existingFuture.thenApply(stagedFile -> stagedFile != null);
+            }
+
+            // re-inserted rather than replaced so that the file counts as the newest
+            stagedFiles.remove(path);
+            stagedFileFuture = CompletableFuture.supplyAsync(() -> read(path), executor);
+            stagedFiles.put(path, stagedFileFuture);
+            evict();
+        }
+
+        return stagedFileFuture.handle((stagedFile, throwable) -> stagedFile != null);
+    }
+
+    /**
+     * takes the file out of the staging area. a file still being staged is waited for.
+     *
+     * @param dataFilePath
+     * @return the file's staged snapshot and content hash, or empty if it isn't staged, couldn't be read, or has changed
+     *         since
+     */
+    public Optional<StagedFile> promote(Path dataFilePath) {
+        Path path = dataFilePath.toAbsolutePath().normalize();
+        CompletableFuture<StagedFile> stagedFileFuture;
+        synchronized (this) {
+            stagedFileFuture = stagedFiles.remove(path);
+        }
+
+        if (stagedFileFuture == null) {
+            return Optional.empty();
+        }
+
+        StagedFile stagedFile;
+        try {
+            stagedFile = stagedFileFuture.join();
+        } catch (CompletionException e) {
+            return Optional.empty();
+        }
+
+        if (stagedFile == null || FileVersion.of(path).filter(stagedFile.fileVersion::equals).isEmpty()) {
+            LOG.info("staged {} is out of date - it will be read afresh", path);
+            return Optional.empty();
+        }
+
+        promotedCount.incrementAndGet();
+        return Optional.of(stagedFile);
+    }
+
+    /**
+     *
+     * @return number of files staged or still staging
+     */
+    public synchronized int size() { return stagedFiles.size(); }
+
+    public int getCapacity() { return capacity; }
+
+    /**
+     *
+     * @return number of staged snapshots handed over by {@link #promote(Path)}
+     */
+    public long getPromotedCount() { return promotedCount.get(); }
+
+    /**
+     *
+     * @return number of files dropped from the staging area without being promoted
+     */
+    public long getEvictedCount() { return evictedCount.get(); }
+
+
+    // PRIVATE
+    //
+
+    /**
+     * runs on the executor
+     *
+     * @param path
+     * @return the staged file, or null if it can't be read - eg: because the provider is still writing it
+     */
+    private static StagedFile read(Path path) {
+        Optional<FileVersion> fileVersionOptional = FileVersion.of(path);
+        try {
+            MessageDigest contentDigest = SnapshotCache.newContentDigest();
+            Map<String, Double> exchangeRateMap = BinaryRateFormat.readDataFile(path, null, contentDigest);
+            ExchangeRateSnapshot snapshot = ExchangeRateSnapshot.wrap(
+                    "",
+                    Instant.now(),
+                    exchangeRateMap,
+                    path.getFileName().toString()
+            );
+
+            // if it moved while it was being read, the next change event will stage it again
+            if (fileVersionOptional.isEmpty() || fileVersionOptional.equals(FileVersion.of(path)) == false) {
+                LOG.debug("{} changed while it was being staged", path);
+                return null;
+            }
+
+            LOG.info("staged {} with {} rates", path, snapshot.size());
+            return new StagedFile(snapshot, SnapshotCache.contentHashOf(contentDigest), fileVersionOptional.get());
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("{} can't be staged yet", path, e);
+            return null;
+        }
+    }
+
+    /**
+     *
+     * @param stagedFileFuture
+     * @param fileVersion
+     * @return whether or not the future is staging, or has staged, the given version of its file
+     */
+    private static boolean isCurrent(CompletableFuture<StagedFile> stagedFileFuture, FileVersion fileVersion) {
+        if (stagedFileFuture.isDone() == false) {
+            return true;
+        }
+
+        StagedFile stagedFile = stagedFileFuture.getNow(null);
+        return stagedFile != null && stagedFile.fileVersion.equals(fileVersion);
+    }
+
+    /**
+     * guarded by this
+     */
+    private void evict() {
+        Iterator<Map.Entry<Path, CompletableFuture<StagedFile>>> iterator = stagedFiles.entrySet().iterator();
+        while (stagedFiles.size() > capacity) {
+            Map.Entry<Path, CompletableFuture<StagedFile>> eldest = iterator.next();
+            iterator.remove();
+            evictedCount.incrementAndGet();
+            LOG.info("evicted staged {} - it was never promoted", eldest.getKey());
+        }
+    }
+
+
+    /**
+     * size and modification time of a file, to tell whether it has changed since it was staged
+     */
+    private static final class FileVersion {
+
+        private final long size;
+        private final long lastModified;
+
+        private FileVersion(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         *
+         * @param path
+         * @return empty if the file isn't there
+         */
+        static Optional<FileVersion> of(Path path) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                return attributes.isRegularFile() ?
+                        Optional.of(new FileVersion(attributes.size(), attributes.lastModifiedTime().toMillis())) :
+                        Optional.empty();
+            } catch (IOException e) {
+                return Optional.empty();
+            }
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other instanceof FileVersion == false) {
+                return false;
+            }
+
+            FileVersion fileVersion = (FileVersion)other;
+            return size == fileVersion.size && lastModified == fileVersion.lastModified;
+        }
+
+        @Override
+        public int hashCode() { return Long.hashCode(size) * 31 + Long.hashCode(lastModified); }
+
+    }
+
+    /**
+     * a data file read and built into a snapshot ahead of time
+     */
+    public static final class StagedFile {
+
+        private final ExchangeRateSnapshot snapshot;
+        private final String contentHash;
+        private final FileVersion fileVersion;
+
+        private StagedFile(ExchangeRateSnapshot snapshot, String contentHash, FileVersion fileVersion) {
+            this.snapshot = snapshot;
+            this.contentHash = contentHash;
+            this.fileVersion = fileVersion;
+        }
+
+        public ExchangeRateSnapshot getSnapshot() { return snapshot; }
+
+        /**
+         *
+         * @return hex SHA-256 of the file's contents, as {@link SnapshotCache#contentHashOf(Path)} would give
+         */
+        public String getContentHash() { return contentHash; }
+
+    }
+
+}
@@ -0,0 +1,187 @@
+package io.holitek.finance_company_x;
+
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+
+/**
+ * read-only rate map made of a base map it shares with earlier snapshots and the changes made since. applying a delta
+ * costs time and memory in proportion to the changes rather than to the rates, so a reload that moves a few pairs out
+ * of hundreds of thousands doesn't copy the lot.
+ *
+ * changes from successive deltas are folded into one set over the same base rather than stacked, so lookups are never
+ * more than two hash probes deep. once the changes outgrow a quarter of the base they're folded into a new, plain map,
+ * which keeps the overhead of the overlay bounded.
+ *
+ * iterates in the base map's order with changed rates in place and added pairs at the end.
+ */
+final class DeltaRateMap extends AbstractMap<String, Double> {
+
+    // changes beyond base size / this are folded into a plain map
+    private static final int FLATTEN_DIVISOR = 4;
+
+    private final Map<String, Double> base;
+
+    // upserts may hold pairs that are in the base or not. removals only ever hold pairs that are in the base
+    private final Map<String, Double> upserts;
+    private final Set<String> removals;
+    private final int size;
+
+    private Set<Map.Entry<String, Double>> entrySet;
+
+
+    /**
+     *
+     * @param base
+     * @param upserts disjoint from removals
+     * @param removals keys of base
+     */
+    private DeltaRateMap(Map<String, Double> base, Map<String, Double> upserts, Set<String> removals) {
+        this.base = base;
+        this.upserts = upserts;
+        this.removals = removals;
+
+        int added = 0;
+        for (String key : upserts.keySet()) {
+            if (base.containsKey(key) == false) {
+                added++;
+            }
+        }
+
+        this.size = base.size() - removals.size() + added;
+    }
+
+
+    // PUBLIC
+    //
+
+    @Override
+    public int size() { return size; }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return upserts.containsKey(key) || (removals.contains(key) == false && base.containsKey(key));
+    }
+
+    @Override
+    public Double get(Object key) {
+        if (upserts.containsKey(key)) {
+            return upserts.get(key);
+        }
+
+        return removals.contains(key) ? null : base.get(key);
+    }
+
+    @Override
+    public Set<Map.Entry<String, Double>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<String, Double>> iterator() { return new EntryIterator(); }
+
+                @Override
+                public int size() { return size; }
+            };
+        }
+
+        return entrySet;
+    }
+
+
+    // PACKAGE PROTECTED
+    //
+
+    /**
+     *
+     * @param exchangeRateMap read-only rates to apply the delta to. left as they are
+     * @param rateDelta
+     * @return read-only rates with the delta applied
+     */
+    static Map<String, Double> apply(Map<String, Double> exchangeRateMap, RateDelta rateDelta) {
+        Map<String, Double> base;
+        Map<String, Double> upserts;
+        Set<String> removals;
+        if (exchangeRateMap instanceof DeltaRateMap) {
+            DeltaRateMap deltaRateMap = (DeltaRateMap)exchangeRateMap;
+            base = deltaRateMap.base;
+            upserts = new LinkedHashMap<>(deltaRateMap.upserts);
+            removals = new HashSet<>(deltaRateMap.removals);
+        } else {
+            base = exchangeRateMap;
+            upserts = new LinkedHashMap<>();
+            removals = new HashSet<>();
+        }
+
+        for (Map.Entry<String, Double> entry : rateDelta.getUpserts().entrySet()) {
+            removals.remove(entry.getKey());
+            upserts.put(entry.getKey(), entry.getValue());
+        }
+
+        for (String key : rateDelta.getRemovals()) {
+            upserts.remove(key);
+            if (base.containsKey(key)) {
+                removals.add(key);
+            }
+        }
+
+        DeltaRateMap deltaRateMap = new DeltaRateMap(base, upserts, removals);
+        if (upserts.size() + removals.size() > base.size() / FLATTEN_DIVISOR) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(deltaRateMap));
+        }
+
+        return deltaRateMap;
+    }
+
+
+    /**
+     * walks the base, skipping removals and swapping in upserted rates, then the upserts the base doesn't have
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<String, Double>> {
+
+        private final Iterator<Map.Entry<String, Double>> baseIterator = base.entrySet().iterator();
+        private final Iterator<Map.Entry<String, Double>> upsertIterator = upserts.entrySet().iterator();
+        private Map.Entry<String, Double> next;
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && baseIterator.hasNext()) {
+                Map.Entry<String, Double> entry = baseIterator.next();
+                if (upserts.containsKey(entry.getKey())) {
+                    next = new SimpleImmutableEntry<>(entry.getKey(), upserts.get(entry.getKey()));
+                } else if (removals.contains(entry.getKey()) == false) {
+                    next = entry;
+                }
+            }
+
+            while (next == null && upsertIterator.hasNext()) {
+                Map.Entry<String, Double> entry = upsertIterator.next();
+                if (base.containsKey(entry.getKey()) == false) {
+                    next = new SimpleImmutableEntry<>(entry);
+                }
+            }
+
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, Double> next() {
+            if (hasNext() == false) {
+                throw new NoSuchElementException();
+            }
+
+            Map.Entry<String, Double> entry = next;
+            next = null;
+            return entry;
+        }
+
+    }
+
+}
@@ -3,13 +3,23 @@ package io.holitek.finance_company_x;
 
 import java.beans.Introspector;
 
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import java.time.Instant;
+
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import org.apache.camel.Exchange;
 
@@ -18,7 +28,29 @@ import org.slf4j.LoggerFactory;
 
 
 /**
- * cache bean that stores and provides means to access current exchange rates
+ * cache bean that stores and provides means to access current exchange rates. the bean's state lives in a single
+ * immutable {@link ExchangeRateSnapshot} that is published through an atomic reference - writers build a whole new
+ * snapshot and swap it in, readers never take a lock and never see a half-applied update.
+ *
+ * the last few loaded snapshots are also kept in a {@link SnapshotHistory} so that rates for a buildID can still be
+ * looked up for a while after newer data has replaced it.
+ *
+ * given a {@link SnapshotStateFile}, every snapshot loaded is also saved to disk and {@link #restoreSnapshot()} puts
+ * the last one back on startup. saves run in the background rather than on the thread that loaded the snapshot, and a
+ * snapshot that's been replaced before its save got started is skipped for the one that replaced it. the polling route
+ * then treats the restored buildID like any other current one - if it's still what the buildID file says nothing is
+ * reloaded, otherwise the new data file is.
+ *
+ * a provider that publishes a delta alongside its data file lets {@link #applyDelta(String, String, RateDelta, String)}
+ * patch the current snapshot instead, sharing its rates rather than building every one of them again. and a data file
+ * the {@link DataFileStager} got to before the buildID file flipped is promoted by
+ * {@link #promoteSnapshot(String, ExchangeRateSnapshot)} without being read or built at all.
+ *
+ * lookups through the bean, and the stages of each update, are recorded in {@link ExchangeRateMetrics}. lookups made
+ * against a snapshot the caller holds on to aren't.
+ *
+ * components that need to know when the rates change subscribe to {@link #getSnapshotPublisher()} rather than polling
+ * the bean - every swap, reset and restore is pushed to them with the pairs it added, removed or moved.
  */
 public class ExchangeRateBean {
 
@@ -27,10 +59,81 @@ public class ExchangeRateBean {
     public static final String NAMESPACE_KEY = Introspector.decapitalize(ExchangeRateBean.class.getSimpleName());
     public static final String DEFAULT_BUILD_ID = "";
     public static final String CURRENT_BUILD_ID_HEADER_KEY = "currentBuildId";
+    public static final int DEFAULT_HISTORY_SIZE = 4;
+
+    private static final ExchangeRateMetrics METRICS = ExchangeRateMetrics.INSTANCE;
+
+    private final AtomicReference<ExchangeRateSnapshot> snapshotReference =
+            new AtomicReference<>(ExchangeRateSnapshot.EMPTY);
+
+    private final SnapshotHistory snapshotHistory;
+
+    // swaps are published holding its lock, so subscribers see them in the order they happened
+    private final SnapshotPublisher snapshotPublisher;
 
-    private String buildID = DEFAULT_BUILD_ID;
-    private Map<String, Double> exchangeRateMap = new HashMap<>();
-    private ObjectMapper objectMapper = new ObjectMapper();
+    // null when snapshots aren't persisted
+    private final SnapshotStateFile snapshotStateFile;
+
+    // saves snapshots to the state file. subscribers are called on the publisher's own executor, so neither a slow
+    //   save nor a slow subscriber holds up the other
+    private final Executor saveExecutor;
+
+    // the newest snapshot waiting to be saved, null once it's been picked up. picked up holding its lock, so a save
+    //   never overwrites a newer one
+    private final AtomicReference<ExchangeRateSnapshot> unsavedSnapshotReference = new AtomicReference<>();
+
+
+    public ExchangeRateBean() { this(DEFAULT_HISTORY_SIZE); }
+
+    /**
+     *
+     * @param historySize number of loaded snapshots, the current one included, to keep for version pinned lookups
+     */
+    public ExchangeRateBean(int historySize) { this(historySize, null); }
+
+    /**
+     * snapshots are saved on a thread of the bean's own, and subscribers told of them on another, each started when
+     * there's something to do and let go again once it's been idle for a while.
+     *
+     * @param historySize number of loaded snapshots, the current one included, to keep for version pinned lookups
+     * @param snapshotStateFile where to persist each loaded snapshot, or null to not persist them
+     */
+    public ExchangeRateBean(int historySize, SnapshotStateFile snapshotStateFile) {
+        this(historySize, snapshotStateFile, newBackgroundExecutor(NAMESPACE_KEY + "Save"));
+    }
+
+    /**
+     * subscribers are told of snapshots on a thread of the bean's own.
+     *
+     * @param historySize number of loaded snapshots, the current one included, to keep for version pinned lookups
+     * @param snapshotStateFile where to persist each loaded snapshot, or null to not persist them
+     * @param saveExecutor saves snapshots to the state file
+     */
+    public ExchangeRateBean(int historySize, SnapshotStateFile snapshotStateFile, Executor saveExecutor) {
+        this(historySize, snapshotStateFile, saveExecutor, newBackgroundExecutor(NAMESPACE_KEY + "Publisher"));
+    }
+
+    /**
+     * saves are coalesced, so the save executor is never handed more than one at a time. the publisher executor works
+     * out each change and calls subscribers with it, one call at a time per subscriber - subscribers that share a
+     * thread wait on one another, so anything slow they do should be handed on. neither executor should be shared
+     * with work that can hold it up for long.
+     *
+     * @param historySize number of loaded snapshots, the current one included, to keep for version pinned lookups
+     * @param snapshotStateFile where to persist each loaded snapshot, or null to not persist them
+     * @param saveExecutor saves snapshots to the state file
+     * @param publisherExecutor calls {@link #getSnapshotPublisher()}'s subscribers
+     */
+    public ExchangeRateBean(int historySize,
+                            SnapshotStateFile snapshotStateFile,
+                            Executor saveExecutor,
+                            Executor publisherExecutor) {
+
+        this.snapshotHistory = new SnapshotHistory(historySize);
+        this.snapshotStateFile = snapshotStateFile;
+        this.saveExecutor = Objects.requireNonNull(saveExecutor, "saveExecutor");
+        this.snapshotPublisher = new SnapshotPublisher(publisherExecutor);
+    }
 
 
     // PUBLIC
@@ -38,46 +141,226 @@ public class ExchangeRateBean {
 
     /**
      * will attempt to set exchange rates given buildID and json payload. on fault, bean will reset itself to prevent
-     * risk of reporting corrupted or malformed data.
+     * risk of reporting corrupted or malformed data. buildID and rates are published together in one swap, so readers
+     * see either the old snapshot or the new one and nothing in between.
      *
      * @param buildID
      * @return
      */
     public boolean setExchangeRates(String buildID, String exchangeRateJson) {
-        LOG.info("attempting to update ExchangeRateBean values...");
-        boolean setBuildIdSuccessFlag = setBuildID(buildID);
-        boolean setExchangeRateMapSuccessFlag = setExchangeRateMap(exchangeRateJson);
-        boolean successFlag = setBuildIdSuccessFlag && setExchangeRateMapSuccessFlag;
-        if (successFlag == false) {
-            LOG.error("something went wrong setting exchange rates. " +
-                      "setBuildIdSuccessFlag was: {}  setExchangeRateMapSuccessFlag was: {}",
-                    setBuildIdSuccessFlag,
-                    setExchangeRateMapSuccessFlag
-            );
+        return setExchangeRates(buildID, parseExchangeRateJson(exchangeRateJson), "");
+    }
+
+    /**
+     * same as {@link #setExchangeRates(String, String)} for rates that have already been parsed, eg: streamed straight
+     * out of a data file by {@link ExchangeRateFileReader}. the map becomes the backing store of the new snapshot
+     * without being copied, so callers must not modify it after handing it over.
+     *
+     * @param buildID
+     * @param exchangeRateMap
+     * @return
+     */
+    public boolean setExchangeRates(String buildID, Map<String, Double> exchangeRateMap) {
+        return setExchangeRates(buildID, exchangeRateMap, "");
+    }
 
+    /**
+     * same as {@link #setExchangeRates(String, Map)} for rates known to have come from a particular data file. the
+     * file name is carried by the snapshot, and the flight recorder events about it, so they can be traced back.
+     *
+     * @param buildID
+     * @param exchangeRateMap
+     * @param dataFileName
+     * @return
+     */
+    public boolean setExchangeRates(String buildID, Map<String, Double> exchangeRateMap, String dataFileName) {
+        return setExchangeRates(
+                buildID,
+                Optional.ofNullable(exchangeRateMap),
+                dataFileName == null ? "" : dataFileName
+        );
+    }
+
+    /**
+     * swaps in a snapshot the {@link DataFileStager} built before the buildID file pointed at its data file, or one
+     * the {@link SnapshotCache} kept from an earlier load of the same data. only the buildID is stamped on it here -
+     * its rates, lookup table, renderings and cross rates are all used as they are. as with any other load, an invalid
+     * buildID resets the bean.
+     *
+     * @param buildID
+     * @param stagedSnapshot
+     * @return
+     */
+    public boolean promoteSnapshot(String buildID, ExchangeRateSnapshot stagedSnapshot) {
+        if (isValidBuildID(buildID) == false || stagedSnapshot == null) {
+            String dataFileName = stagedSnapshot == null ? "" : stagedSnapshot.getDataFileName();
+            LOG.error("can't promote staged snapshot of {} - buildID or snapshot missing", dataFileName);
             LOG.info("bean may be corrupted - resetting ...");
             resetBean();
+            FlightRecorderEvents.loadFailed(buildID, dataFileName, "buildID or staged snapshot missing");
+            return false;
+        }
+
+        ExchangeRateSnapshot snapshot = buildSnapshot(
+                buildID,
+                stagedSnapshot.getDataFileName(),
+                () -> stagedSnapshot.withBuildID(buildID)
+        );
+
+        swapSnapshot(null, snapshot, null);
+        LOG.info("promoted prebuilt snapshot of {} - buildID is now: {}", snapshot.getDataFileName(), buildID);
+        return true;
+    }
+
+    /**
+     * builds the next snapshot from the current one and the changes in a delta file, rather than from a full data file.
+     * the delta only applies to the buildID it was made against - if the bean holds any other, nothing changes and the
+     * caller should load the full data file instead. unlike a failed full load, a mismatched delta doesn't reset the
+     * bean, as the rates it holds are still good.
+     *
+     * @param buildID of the rates the delta leads to
+     * @param baseBuildID of the rates the delta was made against
+     * @param rateDelta
+     * @param dataFileName name of the delta file
+     * @return whether or not the delta was applied
+     */
+    public boolean applyDelta(String buildID, String baseBuildID, RateDelta rateDelta, String dataFileName) {
+        String fileName = dataFileName == null ? "" : dataFileName;
+        ExchangeRateSnapshot baseSnapshot = getSnapshot();
+        if (isValidBuildID(buildID) == false || rateDelta == null) {
+            LOG.error("can't apply delta {} - buildID or changes missing", fileName);
+            FlightRecorderEvents.loadFailed(buildID, fileName, "delta buildID or changes missing");
+            return false;
+        }
+
+        if (baseSnapshot == ExchangeRateSnapshot.EMPTY || baseSnapshot.getBuildID().equals(baseBuildID) == false) {
+            LOG.warn("can't apply delta {} - it was made against buildID {} but the bean holds {}",
+                     fileName,
+                     baseBuildID,
+                     baseSnapshot.getBuildID());
+
+            FlightRecorderEvents.loadFailed(buildID, fileName, "delta base buildID doesn't match");
+            return false;
+        }
+
+        ExchangeRateSnapshot snapshot = buildSnapshot(
+                buildID,
+                fileName,
+                () -> baseSnapshot.withDelta(buildID, rateDelta, fileName)
+        );
+
+        // someone else swapped in a snapshot since we read the base - it's not ours to replace
+        if (swapSnapshot(baseSnapshot, snapshot, rateDelta) == false) {
+            LOG.warn("can't apply delta {} - the bean moved on from buildID {} while it was being applied",
+                     fileName,
+                     baseBuildID);
+
+            FlightRecorderEvents.loadFailed(buildID, fileName, "delta base replaced while applying");
+            return false;
+        }
+
+        LOG.info("applied delta {} of {} changes to buildID {} - buildID is now: {} with {} rates",
+                 fileName,
+                 rateDelta.size(),
+                 baseBuildID,
+                 buildID,
+                 snapshot.size());
+
+        return true;
+    }
+
+    /**
+     * loads the last snapshot saved to the state file, if there is one, as though it had just been loaded from the data
+     * directory. meant to be called once, before anything polls for new data - a snapshot that's already been loaded
+     * is never replaced by the restored one.
+     *
+     * @return whether or not a snapshot was restored
+     */
+    public boolean restoreSnapshot() {
+        if (snapshotStateFile == null) {
+            return false;
+        }
+
+        Optional<ExchangeRateSnapshot> snapshotOptional = snapshotStateFile.load()
+                .filter(snapshot -> isValidBuildID(snapshot.getBuildID()));
+
+        boolean successFlag;
+        synchronized (snapshotPublisher) {
+            successFlag = snapshotOptional.isPresent() &&
+                    snapshotReference.compareAndSet(ExchangeRateSnapshot.EMPTY, snapshotOptional.get());
+
+            if (successFlag) {
+                snapshotPublisher.publish(ExchangeRateSnapshot.EMPTY, snapshotOptional.get(), null);
+            }
+        }
+
+        if (successFlag) {
+            ExchangeRateSnapshot snapshot = snapshotOptional.get();
+            snapshotHistory.record(snapshot);
+            LOG.info("restored buildID {} with {} rates, loaded at {}, from {}",
+                     snapshot.getBuildID(),
+                     snapshot.size(),
+                     snapshot.getLoadedAt(),
+                     snapshotStateFile.getPath());
         }
 
-        LOG.info("buildID is now: {}", getBuildID());
-        LOG.info("exchange rates as json is now: {}", getExchangeRatesAsJson());
-        LOG.info("returning successFlag: {}", successFlag);
         return successFlag;
     }
 
     /**
-     * resets all bean variables to their default values
+     * resets all bean variables to their default values. the snapshot history is left alone - everything in it was
+     * loaded successfully, and callers pinned to an earlier buildID still need it.
      */
     public void resetBean() {
-        buildID = DEFAULT_BUILD_ID; // purposefully not using the setter...
-        exchangeRateMap.clear();
+        synchronized (snapshotPublisher) {
+            // purposefully not using the setters...
+            ExchangeRateSnapshot previousSnapshot = snapshotReference.getAndSet(ExchangeRateSnapshot.EMPTY);
+            if (previousSnapshot != ExchangeRateSnapshot.EMPTY) {
+                snapshotPublisher.publish(previousSnapshot, ExchangeRateSnapshot.EMPTY, null);
+            }
+        }
     }
 
     /**
+     * the snapshot that is live right now. callers making more than one lookup should hold onto the returned snapshot
+     * rather than going back to the bean for each lookup - the bean may swap in a new snapshot at any point.
      *
      * @return
      */
-    public String getBuildID() { return this.buildID; }
+    public ExchangeRateSnapshot getSnapshot() { return snapshotReference.get(); }
+
+    /**
+     * version pinned alternative to {@link #getSnapshot()} for callers that need the rates a particular buildID had,
+     * eg: to reconcile against prices worked out before newer data was loaded.
+     *
+     * @param buildID
+     * @return the snapshot for the buildID, or empty if it's neither current nor still in the history
+     */
+    public Optional<ExchangeRateSnapshot> getSnapshot(String buildID) {
+        ExchangeRateSnapshot snapshot = getSnapshot();
+        return snapshot.getBuildID().equals(buildID) ? Optional.of(snapshot) : snapshotHistory.get(buildID);
+    }
+
+    /**
+     *
+     * @return the last few loaded snapshots, newest first
+     */
+    public SnapshotHistory getSnapshotHistory() { return snapshotHistory; }
+
+    /**
+     * pushes a {@link SnapshotChange} for every snapshot swapped in from here on, starting with the current one - the
+     * push alternative to calling {@link #getExchangeRateMap()} in a loop, which copies every rate on each call.
+     * subscribers that fall behind get the changes they missed folded into one.
+     *
+     * @return
+     */
+    public SnapshotPublisher getSnapshotPublisher() { return snapshotPublisher; }
+
+    /**
+     *
+     * @return
+     */
+    public String getBuildID() { return getSnapshot().getBuildID(); }
 
     /**
      *
@@ -85,7 +368,7 @@ public class ExchangeRateBean {
      */
     public Map<String, Double> getExchangeRateMap() {
         Map<String, Double> exchangeRateMapClone = new HashMap<>();
-        exchangeRateMapClone.putAll(this.exchangeRateMap);
+        exchangeRateMapClone.putAll(getSnapshot().getExchangeRateMap());
         return exchangeRateMapClone;
     }
 
@@ -96,8 +379,9 @@ public class ExchangeRateBean {
      * @param exchange
      */
     public void getExchangeRatesAsJson(Exchange exchange) {
-        String buildID = getBuildID();
-        String exchangeRatesAsJson = getExchangeRatesAsJson();
+        ExchangeRateSnapshot snapshot = getSnapshot();
+        String buildID = snapshot.getBuildID();
+        String exchangeRatesAsJson = snapshot.getRenderings().getJson();
 
         // there should never be a case where we have exchange data absent a buildID
         assert (buildID.equals("") && exchangeRatesAsJson.equals("{}") == false) == false;
@@ -107,20 +391,18 @@ public class ExchangeRateBean {
     }
 
     /**
+     * the json the current snapshot rendered the first time it was asked for - nothing is serialized or decoded per
+     * call.
      *
      * @return
      */
-    public String getExchangeRatesAsJson() {
-        String rv = new String();
-
-        try {
-            rv = objectMapper.writeValueAsString(exchangeRateMap);
-        } catch (JsonProcessingException e) {
-            LOG.error("something went wrong serializing cached exchange data into json", e);
-        }
+    public String getExchangeRatesAsJson() { return getSnapshot().getRenderings().getJson(); }
 
-        return rv;
-    }
+    /**
+     *
+     * @return cached json, csv and binary forms of the current rates
+     */
+    public ExchangeRateRenderings getRenderings() { return getSnapshot().getRenderings(); }
 
     /**
      *
@@ -128,16 +410,56 @@ public class ExchangeRateBean {
      * @return
      */
     public Optional<Double> getExchangeRateFor(String key) {
-        Optional<Double> returnOptional;
+        ExchangeRateSnapshot snapshot = getSnapshot();
+        Optional<Double> rateOptional = snapshot.getExchangeRateFor(key);
+        METRICS.recordLookup(rateOptional.isPresent());
+        FlightRecorderEvents.rateLookup(snapshot, key, rateOptional.isPresent());
+        return rateOptional;
+    }
 
-        if (exchangeRateMap.containsKey(key)) {
-            Double exchangeRate = exchangeRateMap.get(key);
-            returnOptional = Optional.of(exchangeRate);
-        } else {
-            returnOptional = Optional.empty();
-        }
+    /**
+     *
+     * @param buildID
+     * @param key
+     * @return the rate the key had under the buildID, or empty if there wasn't one or the buildID isn't retained
+     */
+    public Optional<Double> getExchangeRateFor(String buildID, String key) {
+        Optional<Double> rateOptional = getSnapshot(buildID).flatMap(snapshot -> snapshot.getExchangeRateFor(key));
+        METRICS.recordLookup(rateOptional.isPresent());
+        return rateOptional;
+    }
 
-        return returnOptional;
+    /**
+     * allocation free alternative to {@link #getExchangeRateFor(String)} for hot paths.
+     *
+     * @param key
+     * @return the rate, or {@link RateTable#NO_RATE} if there isn't one
+     */
+    public double getRate(String key) {
+        double rate = getSnapshot().getRate(key);
+        METRICS.recordLookup(Double.isNaN(rate) == false);
+        return rate;
+    }
+
+    /**
+     *
+     * @param key
+     * @return
+     */
+    public boolean hasRate(String key) { return getSnapshot().hasRate(key); }
+
+    /**
+     * cross rate between any two currencies linked by a rate in the data file, its reciprocal, or one hop through a
+     * currency both have a rate against - eg: CAD to FR when the data file only has CAD_USD and FR_USD.
+     *
+     * @param from eg: "CAD"
+     * @param to eg: "FR"
+     * @return how many of the 'to' currency one of the 'from' currency buys, or {@link RateTable#NO_RATE}
+     */
+    public double convert(String from, String to) {
+        double rate = getSnapshot().convert(from, to);
+        METRICS.recordLookup(Double.isNaN(rate) == false);
+        return rate;
     }
 
 
@@ -152,11 +474,9 @@ public class ExchangeRateBean {
      * @param buildID
      */
     boolean setBuildID(String buildID) {
-        boolean successFlag = true;
-        if (buildID == null || buildID.isEmpty()) {
-            successFlag = false;
-        } else {
-            this.buildID = buildID;
+        boolean successFlag = isValidBuildID(buildID);
+        if (successFlag) {
+            snapshotReference.updateAndGet(snapshot -> snapshot.withBuildID(buildID));
         }
 
         return successFlag;
@@ -169,21 +489,271 @@ public class ExchangeRateBean {
      * @return boolean indicating whether or not import was successful
      */
     boolean setExchangeRateMap(String exchangeRateJson) {
-        boolean successFlag = true;
+        Optional<Map<String, Double>> exchangeRateMapOptional = parseExchangeRateJson(exchangeRateJson);
+        exchangeRateMapOptional.ifPresent(
+                exchangeRateMap -> snapshotReference.updateAndGet(
+                        snapshot -> snapshot.withExchangeRateMap(exchangeRateMap)
+                )
+        );
+
+        return exchangeRateMapOptional.isPresent();
+    }
 
+    /**
+     * same as {@link #setExchangeRateMap(String)} for rates in {@link BinaryRateFormat}.
+     *
+     * @param exchangeRateBinary
+     * @return boolean indicating whether or not import was successful
+     */
+    boolean setExchangeRateMap(ByteBuffer exchangeRateBinary) {
+        Optional<Map<String, Double>> exchangeRateMapOptional = Optional.empty();
         try {
-            Map<String, Double> result = objectMapper.readValue(
-                        exchangeRateJson,
-                        new TypeReference<Map<String, Double>>() {}
-                    );
+            exchangeRateMapOptional = Optional.of(BinaryRateFormat.decode(exchangeRateBinary));
+        } catch (IOException e) {
+            LOG.error("something went wrong importing binary exchange rates", e);
+        }
 
-            exchangeRateMap = result;
-        } catch (JsonProcessingException e) {
-            LOG.error("something went wrong importing exchangeRateJson", e);
-            successFlag = false;
+        exchangeRateMapOptional.ifPresent(
+                exchangeRateMap -> snapshotReference.updateAndGet(
+                        snapshot -> snapshot.withExchangeRateMap(exchangeRateMap)
+                )
+        );
+
+        return exchangeRateMapOptional.isPresent();
+    }
+
+
+    // PRIVATE
+    //
+
+    /**
+     *
+     * @param buildID
+     * @param exchangeRateMapOptional
+     * @param dataFileName
+     * @return
+     */
+    private boolean setExchangeRates(String buildID,
+                                     Optional<Map<String, Double>> exchangeRateMapOptional,
+                                     String dataFileName) {
+
+        LOG.info("attempting to update ExchangeRateBean values...");
+        boolean setBuildIdSuccessFlag = isValidBuildID(buildID);
+        boolean setExchangeRateMapSuccessFlag = exchangeRateMapOptional.isPresent();
+        boolean successFlag = setBuildIdSuccessFlag && setExchangeRateMapSuccessFlag;
+        if (successFlag == false) {
+            LOG.error("something went wrong setting exchange rates. " +
+                      "setBuildIdSuccessFlag was: {}  setExchangeRateMapSuccessFlag was: {}",
+                    setBuildIdSuccessFlag,
+                    setExchangeRateMapSuccessFlag
+            );
+
+            LOG.info("bean may be corrupted - resetting ...");
+            resetBean();
+            FlightRecorderEvents.loadFailed(
+                    buildID,
+                    dataFileName,
+                    setBuildIdSuccessFlag ? "exchange rates missing or malformed" : "buildID missing or empty"
+            );
+        } else {
+            ExchangeRateSnapshot snapshot = buildSnapshot(
+                    buildID,
+                    dataFileName,
+                    () -> ExchangeRateSnapshot.wrap(buildID, Instant.now(), exchangeRateMapOptional.get(), dataFileName)
+            );
+
+            swapSnapshot(null, snapshot, null);
         }
 
+        ExchangeRateSnapshot currentSnapshot = getSnapshot();
+        LOG.info("buildID is now: {} with {} rates from {}",
+                 currentSnapshot.getBuildID(),
+                 currentSnapshot.size(),
+                 currentSnapshot.getDataFileName());
+
+        // a large data file renders to tens of megabytes
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("exchange rates as json is now: {}", currentSnapshot.getRenderings().getJson());
+        }
+
+        LOG.info("returning successFlag: {}", successFlag);
         return successFlag;
     }
 
+    /**
+     *
+     * @param buildID
+     * @param dataFileName
+     * @param snapshotSupplier builds the new snapshot
+     * @return
+     */
+    private ExchangeRateSnapshot buildSnapshot(String buildID,
+                                               String dataFileName,
+                                               Supplier<ExchangeRateSnapshot> snapshotSupplier) {
+
+        FlightRecorderEvents.SnapshotBuild buildEvent = new FlightRecorderEvents.SnapshotBuild();
+        buildEvent.begin();
+        long startNanos = System.nanoTime();
+        ExchangeRateSnapshot snapshot = snapshotSupplier.get();
+
+        METRICS.getSnapshotBuildLatency().recordSince(startNanos);
+        if (buildEvent.shouldCommit()) {
+            buildEvent.buildID = buildID;
+            buildEvent.fileName = dataFileName;
+            buildEvent.entries = snapshot.size();
+            buildEvent.commit();
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * publishes the snapshot, records it in the history and queues it to be saved to the state file. subscribers are
+     * told about it on the way - the change itself is worked out later, on the publisher's executor
+     *
+     * @param expectedSnapshot the snapshot the new one replaces, or null to replace whatever is there
+     * @param snapshot
+     * @param rateDelta the delta the snapshot was built from, or null if it's a whole new set of rates
+     * @return false if expectedSnapshot was given and is no longer the current snapshot
+     */
+    private boolean swapSnapshot(ExchangeRateSnapshot expectedSnapshot,
+                                 ExchangeRateSnapshot snapshot,
+                                 RateDelta rateDelta) {
+
+        FlightRecorderEvents.SnapshotSwap swapEvent = new FlightRecorderEvents.SnapshotSwap();
+        swapEvent.begin();
+        long startNanos = System.nanoTime();
+        ExchangeRateSnapshot previousSnapshot;
+        synchronized (snapshotPublisher) {
+            if (expectedSnapshot == null) {
+                previousSnapshot = snapshotReference.getAndSet(snapshot);
+            } else if (snapshotReference.compareAndSet(expectedSnapshot, snapshot)) {
+                previousSnapshot = expectedSnapshot;
+            } else {
+                return false;
+            }
+
+            METRICS.getSnapshotSwapLatency().recordSince(startNanos);
+            snapshotPublisher.publish(previousSnapshot, snapshot, rateDelta);
+        }
+
+        snapshotHistory.record(snapshot);
+        if (swapEvent.shouldCommit()) {
+            swapEvent.buildID = snapshot.getBuildID();
+            swapEvent.fileName = snapshot.getDataFileName();
+            swapEvent.previousBuildID = previousSnapshot.getBuildID();
+            swapEvent.entries = snapshot.size();
+            swapEvent.commit();
+        }
+
+        LOG.info("snapshot history holds {} of {} snapshots, roughly {} bytes",
+                 snapshotHistory.size(),
+                 snapshotHistory.getCapacity(),
+                 snapshotHistory.getEstimatedBytes());
+
+        queueSave(snapshot);
+        return true;
+    }
+
+    /**
+     * a save is only handed to the save executor if there isn't one waiting already - one that is will pick up this
+     * snapshot in place of the one it was queued for, so a burst of loads costs one save rather than one each.
+     *
+     * @param snapshot
+     */
+    private void queueSave(ExchangeRateSnapshot snapshot) {
+        if (snapshotStateFile == null || unsavedSnapshotReference.getAndSet(snapshot) != null) {
+            return;
+        }
+
+        try {
+            saveExecutor.execute(this::saveSnapshot);
+        } catch (RejectedExecutionException e) {
+            unsavedSnapshotReference.set(null);
+            LOG.warn("couldn't queue buildID {} to be saved to snapshot state file {}",
+                     snapshot.getBuildID(),
+                     snapshotStateFile.getPath(),
+                     e);
+        }
+    }
+
+    /**
+     * the new snapshot is already live by the time it's saved, so failing to save it is logged rather than treated
+     * as a failed update - the next restart just won't have it to restore.
+     */
+    private void saveSnapshot() {
+        synchronized (unsavedSnapshotReference) {
+            ExchangeRateSnapshot snapshot = unsavedSnapshotReference.getAndSet(null);
+            if (snapshot != null) {
+                saveSnapshot(snapshot);
+            }
+        }
+    }
+
+    /**
+     *
+     * @param snapshot
+     */
+    private void saveSnapshot(ExchangeRateSnapshot snapshot) {
+        long startNanos = System.nanoTime();
+        try {
+            snapshotStateFile.save(snapshot);
+        } catch (IOException e) {
+            LOG.warn("couldn't save buildID {} to snapshot state file {}",
+                     snapshot.getBuildID(),
+                     snapshotStateFile.getPath(),
+                     e);
+        } finally {
+            METRICS.getSnapshotSaveLatency().recordSince(startNanos);
+        }
+    }
+
+    /**
+     * a single daemon thread, as with {@link TimeSeriesStore}'s backfill, that doesn't outlive the work it's given
+     *
+     * @param threadName
+     * @return
+     */
+    private static Executor newBackgroundExecutor(String threadName) {
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(
+                1,
+                1,
+                1,
+                TimeUnit.MINUTES,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, threadName);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        return threadPoolExecutor;
+    }
+
+    /**
+     *
+     * @param buildID
+     * @return
+     */
+    private boolean isValidBuildID(String buildID) { return buildID != null && buildID.isEmpty() == false; }
+
+    /**
+     *
+     * @param exchangeRateJson
+     * @return parsed rates, or empty optional if the json couldn't be parsed
+     */
+    private Optional<Map<String, Double>> parseExchangeRateJson(String exchangeRateJson) {
+        Optional<Map<String, Double>> returnOptional = Optional.empty();
+
+        try {
+            returnOptional = Optional.of(ExchangeRateFileReader.read(exchangeRateJson));
+        } catch (IOException e) {
+            LOG.error("something went wrong importing exchangeRateJson", e);
+        }
+
+        return returnOptional;
+    }
+
 }
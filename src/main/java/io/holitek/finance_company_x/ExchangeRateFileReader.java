@@ -0,0 +1,231 @@
+package io.holitek.finance_company_x;
+
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * streams a json data file straight into a rate map, one token at a time. nothing but the parser's small read buffer
+ * and the resulting map is ever held in memory - the file is never read into a byte[] or String first - so memory used
+ * during a reload grows with the number of rates rather than with the size of the file.
+ */
+public final class ExchangeRateFileReader {
+
+    // thread safe and expensive-ish to create, so there is only one
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    public static final String DELTA_UPSERTS_FIELD = "upserts";
+    public static final String DELTA_REMOVALS_FIELD = "removals";
+
+    private ExchangeRateFileReader() { }
+
+
+    // PUBLIC
+    //
+
+    /**
+     *
+     * @param dataFilePath
+     * @return read-only map of rates in file order
+     * @throws IOException if the file can't be read or isn't a json object of pair to rate
+     */
+    public static Map<String, Double> read(Path dataFilePath) throws IOException {
+        return read(dataFilePath, null);
+    }
+
+    /**
+     * as {@link #read(Path)}, feeding the bytes through a digest as they're parsed. anything after the closing brace
+     * is read too, so the digest covers the whole file.
+     *
+     * @param dataFilePath
+     * @param contentDigest updated with every byte of the file, or null
+     * @return read-only map of rates in file order
+     * @throws IOException if the file can't be read or isn't a json object of pair to rate
+     */
+    public static Map<String, Double> read(Path dataFilePath, MessageDigest contentDigest) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(dataFilePath, StandardOpenOption.READ);
+             InputStream inputStream = contentDigest == null ?
+                     Channels.newInputStream(fileChannel) :
+                     new DigestInputStream(Channels.newInputStream(fileChannel), contentDigest)) {
+
+            Map<String, Double> exchangeRateMap = read(inputStream);
+            if (contentDigest != null) {
+                inputStream.transferTo(OutputStream.nullOutputStream());
+            }
+
+            return exchangeRateMap;
+        }
+    }
+
+    /**
+     * caller is responsible for closing the stream.
+     *
+     * @param inputStream
+     * @return read-only map of rates in stream order
+     * @throws IOException if the stream can't be read or isn't a json object of pair to rate
+     */
+    public static Map<String, Double> read(InputStream inputStream) throws IOException {
+        try (JsonParser jsonParser = JSON_FACTORY.createParser(inputStream)) {
+            jsonParser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            return read(jsonParser);
+        }
+    }
+
+    /**
+     *
+     * @param exchangeRateJson
+     * @return read-only map of rates in document order
+     * @throws IOException if the string isn't a json object of pair to rate
+     */
+    public static Map<String, Double> read(String exchangeRateJson) throws IOException {
+        try (JsonParser jsonParser = JSON_FACTORY.createParser(exchangeRateJson)) {
+            return read(jsonParser);
+        }
+    }
+
+    /**
+     * a delta file is a json object holding an object of pairs to add or move and an array of pairs to drop, eg:
+     * {"upserts":{"CAD_USD":0.97},"removals":["FR_USD"]}. either may be left out. anything else in the object is
+     * skipped.
+     *
+     * @param deltaFilePath
+     * @return
+     * @throws IOException if the file can't be read or isn't shaped like a delta
+     */
+    public static RateDelta readDelta(Path deltaFilePath) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(deltaFilePath, StandardOpenOption.READ);
+             InputStream inputStream = Channels.newInputStream(fileChannel);
+             JsonParser jsonParser = JSON_FACTORY.createParser(inputStream)) {
+
+            return readDelta(jsonParser);
+        }
+    }
+
+    /**
+     *
+     * @param deltaJson
+     * @return
+     * @throws IOException if the string isn't shaped like a delta
+     */
+    public static RateDelta readDelta(String deltaJson) throws IOException {
+        try (JsonParser jsonParser = JSON_FACTORY.createParser(deltaJson)) {
+            return readDelta(jsonParser);
+        }
+    }
+
+
+    // PRIVATE
+    //
+
+    /**
+     *
+     * @param jsonParser positioned before the first token
+     * @return
+     * @throws IOException
+     */
+    private static Map<String, Double> read(JsonParser jsonParser) throws IOException {
+        if (jsonParser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(jsonParser, "expected exchange rate data to be a json object");
+        }
+
+        Map<String, Double> exchangeRateMap = new LinkedHashMap<>();
+        while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = jsonParser.getCurrentName();
+            exchangeRateMap.put(key, readRate(jsonParser));
+        }
+
+        if (jsonParser.currentToken() != JsonToken.END_OBJECT) {
+            throw new JsonParseException(jsonParser, "unexpected end of exchange rate data");
+        }
+
+        return Collections.unmodifiableMap(exchangeRateMap);
+    }
+
+    /**
+     *
+     * @param jsonParser positioned before the first token
+     * @return
+     * @throws IOException
+     */
+    private static RateDelta readDelta(JsonParser jsonParser) throws IOException {
+        if (jsonParser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(jsonParser, "expected delta to be a json object");
+        }
+
+        Map<String, Double> upserts = Map.of();
+        Set<String> removals = new LinkedHashSet<>();
+        while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = jsonParser.getCurrentName();
+            if (DELTA_UPSERTS_FIELD.equals(fieldName)) {
+                upserts = read(jsonParser);
+            } else if (DELTA_REMOVALS_FIELD.equals(fieldName)) {
+                if (jsonParser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new JsonParseException(jsonParser, "expected delta removals to be a json array");
+                }
+
+                while (jsonParser.nextToken() == JsonToken.VALUE_STRING) {
+                    removals.add(jsonParser.getText());
+                }
+
+                if (jsonParser.currentToken() != JsonToken.END_ARRAY) {
+                    throw new JsonParseException(jsonParser, "expected delta removals to be pair names");
+                }
+            } else {
+                jsonParser.nextToken();
+                jsonParser.skipChildren();
+            }
+        }
+
+        if (jsonParser.currentToken() != JsonToken.END_OBJECT) {
+            throw new JsonParseException(jsonParser, "unexpected end of delta");
+        }
+
+        return new RateDelta(upserts, removals);
+    }
+
+    /**
+     * accepts the same values jackson databind would when mapping to Double - numbers, numeric strings and null.
+     *
+     * @param jsonParser positioned on a field name
+     * @return
+     * @throws IOException
+     */
+    private static Double readRate(JsonParser jsonParser) throws IOException {
+        JsonToken valueToken = jsonParser.nextToken();
+        if (valueToken == JsonToken.VALUE_NUMBER_FLOAT || valueToken == JsonToken.VALUE_NUMBER_INT) {
+            return jsonParser.getDoubleValue();
+        } else if (valueToken == JsonToken.VALUE_NULL) {
+            return null;
+        } else if (valueToken == JsonToken.VALUE_STRING) {
+            try {
+                return Double.valueOf(jsonParser.getText());
+            } catch (NumberFormatException e) {
+                throw new JsonParseException(jsonParser, "rate is not a number: " + jsonParser.getText(), e);
+            }
+        }
+
+        throw new JsonParseException(jsonParser, "expected a numeric rate but found: " + valueToken);
+    }
+
+}
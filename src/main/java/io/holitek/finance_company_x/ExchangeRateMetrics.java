@@ -0,0 +1,318 @@
+package io.holitek.finance_company_x;
+
+
+import java.time.Duration;
+import java.time.Instant;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * counters and latency histograms for each stage of an update - reading the buildID file, reading and parsing the data
+ * file, building the new snapshot, swapping it in and saving it - along with how polls end and how rate lookups go.
+ * between them they say whether a slow reload is down to the disk, the parser or the swap.
+ *
+ * there is one set of metrics per app, shared by the route, the processors and the bean, so recording is a static field
+ * read and a {@link LongAdder} or {@link LatencyHistogram} update - nothing is looked up on the way. it's exported over
+ * JMX by {@link ExchangeRateMetricsExporter} and as prometheus text by the {@link RateQueryServer}.
+ */
+public final class ExchangeRateMetrics {
+
+    public static final ExchangeRateMetrics INSTANCE = new ExchangeRateMetrics();
+
+    public static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final String PREFIX = "finance_company_x_";
+
+    // histogram buckets written out for prometheus, 2^10 (~1 micro) to 2^36 (~69 seconds) nanos
+    private static final int FIRST_PROMETHEUS_BUCKET = 10;
+    private static final int LAST_PROMETHEUS_BUCKET = 36;
+
+    private final LongAdder polls = new LongAdder();
+    private final LongAdder pollsSkipped = new LongAdder();
+    private final LongAdder pollsReloaded = new LongAdder();
+    private final LongAdder pollsHalted = new LongAdder();
+    private final LongAdder pollsSuperseded = new LongAdder();
+    private final LongAdder lookupHits = new LongAdder();
+    private final LongAdder lookupMisses = new LongAdder();
+    private final LongAdder snapshotCacheHits = new LongAdder();
+    private final LongAdder snapshotCacheMisses = new LongAdder();
+
+    // millis, whatever the timer or adaptive scheduler is waiting between polls
+    private volatile long pollInterval;
+
+    private final LatencyHistogram buildIdFileReadLatency = new LatencyHistogram();
+    private final LatencyHistogram dataFileParseLatency = new LatencyHistogram();
+    private final LatencyHistogram snapshotBuildLatency = new LatencyHistogram();
+    private final LatencyHistogram snapshotSwapLatency = new LatencyHistogram();
+    private final LatencyHistogram snapshotSaveLatency = new LatencyHistogram();
+
+
+    ExchangeRateMetrics() { }
+
+
+    // PUBLIC
+    //
+
+    /**
+     * the update pipeline has started
+     */
+    public void recordPoll() { polls.increment(); }
+
+    /**
+     * the buildID file named the buildID the bean already holds
+     */
+    public void recordPollSkipped() { pollsSkipped.increment(); }
+
+    /**
+     * the bean was handed a new snapshot
+     */
+    public void recordPollReloaded() { pollsReloaded.increment(); }
+
+    /**
+     * the pipeline stopped early - no buildID, or no readable data file
+     */
+    public void recordPollHalted() { pollsHalted.increment(); }
+
+    /**
+     * a queued load was dropped because a newer buildID was seen before it started
+     */
+    public void recordPollSuperseded() { pollsSuperseded.increment(); }
+
+    /**
+     *
+     * @param pollInterval millis until the next poll
+     */
+    public void recordPollInterval(long pollInterval) { this.pollInterval = pollInterval; }
+
+    /**
+     *
+     * @param hit whether or not the lookup found a rate
+     */
+    public void recordLookup(boolean hit) {
+        if (hit) {
+            lookupHits.increment();
+        } else {
+            lookupMisses.increment();
+        }
+    }
+
+    /**
+     *
+     * @param hit whether or not the {@link SnapshotCache} held a snapshot of the data file's contents
+     */
+    public void recordSnapshotCacheLookup(boolean hit) {
+        if (hit) {
+            snapshotCacheHits.increment();
+        } else {
+            snapshotCacheMisses.increment();
+        }
+    }
+
+    public long getPolls() { return polls.sum(); }
+
+    public long getPollsSkipped() { return pollsSkipped.sum(); }
+
+    public long getPollsReloaded() { return pollsReloaded.sum(); }
+
+    public long getPollsHalted() { return pollsHalted.sum(); }
+
+    public long getPollsSuperseded() { return pollsSuperseded.sum(); }
+
+    /**
+     *
+     * @return millis between polls - fixed, or the one the adaptive scheduler is waiting out now. zero if unknown
+     */
+    public long getPollInterval() { return pollInterval; }
+
+    public long getLookupHits() { return lookupHits.sum(); }
+
+    public long getLookupMisses() { return lookupMisses.sum(); }
+
+    public long getSnapshotCacheHits() { return snapshotCacheHits.sum(); }
+
+    public long getSnapshotCacheMisses() { return snapshotCacheMisses.sum(); }
+
+    /**
+     *
+     * @return stat, and when it has changed read and parse, of the buildID file
+     */
+    public LatencyHistogram getBuildIdFileReadLatency() { return buildIdFileReadLatency; }
+
+    /**
+     * json data files are parsed as they're streamed off disk, so this is read and parse together
+     *
+     * @return reading and parsing the data file into a rate map
+     */
+    public LatencyHistogram getDataFileParseLatency() { return dataFileParseLatency; }
+
+    /**
+     *
+     * @return building the new snapshot's lookup table, cross rates and renderings
+     */
+    public LatencyHistogram getSnapshotBuildLatency() { return snapshotBuildLatency; }
+
+    /**
+     *
+     * @return publishing the new snapshot and recording it in the history - the only part of an update that locks
+     */
+    public LatencyHistogram getSnapshotSwapLatency() { return snapshotSwapLatency; }
+
+    /**
+     *
+     * @return saving the new snapshot to the state file
+     */
+    public LatencyHistogram getSnapshotSaveLatency() { return snapshotSaveLatency; }
+
+    /**
+     * renders every metric in the prometheus text exposition format, along with gauges for the snapshot that is live
+     * right now.
+     *
+     * @param snapshot
+     * @return
+     */
+    public String toPrometheusText(ExchangeRateSnapshot snapshot) {
+        StringBuilder text = new StringBuilder(4096);
+
+        appendCounter(text, "polls_total", "update pipeline runs", getPolls());
+        appendCounter(text, "polls_skipped_total", "runs that found the current buildID", getPollsSkipped());
+        appendCounter(text, "polls_reloaded_total", "runs that loaded a new snapshot", getPollsReloaded());
+        appendCounter(text, "polls_halted_total", "runs stopped by a missing buildID or data file", getPollsHalted());
+        appendCounter(text, "polls_superseded_total", "loads dropped for a newer buildID", getPollsSuperseded());
+        appendGauge(text, "poll_interval_seconds", "time between polls right now", getPollInterval() / 1000.0);
+
+        appendHeader(text, "rate_lookups_total", "rate lookups through the bean or the http api", "counter");
+        appendSample(text, "rate_lookups_total{result=\"hit\"}", getLookupHits());
+        appendSample(text, "rate_lookups_total{result=\"miss\"}", getLookupMisses());
+
+        appendHeader(text, "snapshot_cache_lookups_total", "data file contents looked up in the cache", "counter");
+        appendSample(text, "snapshot_cache_lookups_total{result=\"hit\"}", getSnapshotCacheHits());
+        appendSample(text, "snapshot_cache_lookups_total{result=\"miss\"}", getSnapshotCacheMisses());
+
+        appendHistogram(text, "buildid_file_read_seconds", "buildID file stat, read and parse", buildIdFileReadLatency);
+        appendHistogram(text, "data_file_parse_seconds", "data file read and parse", dataFileParseLatency);
+        appendHistogram(text, "snapshot_build_seconds", "new snapshot build", snapshotBuildLatency);
+        appendHistogram(text, "snapshot_swap_seconds", "new snapshot publish", snapshotSwapLatency);
+        appendHistogram(text, "snapshot_save_seconds", "new snapshot save to the state file", snapshotSaveLatency);
+
+        appendHeader(text, "snapshot_info", "buildID of the live snapshot", "gauge");
+        appendSample(text, "snapshot_info{build_id=\"" + escapeLabel(snapshot.getBuildID()) + "\"}", 1);
+        appendGauge(text, "snapshot_entries", "rates in the live snapshot", snapshot.size());
+        appendGauge(text, "snapshot_bytes", "rough heap footprint of the live snapshot", snapshot.getEstimatedBytes());
+        appendGauge(text,
+                    "snapshot_age_seconds",
+                    "time since the live snapshot was loaded",
+                    snapshotAgeSeconds(snapshot));
+
+        return text.toString();
+    }
+
+    /**
+     *
+     * @param snapshot
+     * @return time since the snapshot was loaded, or zero for the empty snapshot
+     */
+    public static double snapshotAgeSeconds(ExchangeRateSnapshot snapshot) {
+        if (snapshot == ExchangeRateSnapshot.EMPTY) {
+            return 0;
+        }
+
+        return Duration.between(snapshot.getLoadedAt(), Instant.now()).toMillis() / 1000.0;
+    }
+
+
+    // PRIVATE
+    //
+
+    /**
+     *
+     * @param text
+     * @param name
+     * @param help
+     * @param value
+     */
+    private static void appendCounter(StringBuilder text, String name, String help, long value) {
+        appendHeader(text, name, help, "counter");
+        appendSample(text, name, value);
+    }
+
+    /**
+     *
+     * @param text
+     * @param name
+     * @param help
+     * @param value
+     */
+    private static void appendGauge(StringBuilder text, String name, String help, double value) {
+        appendHeader(text, name, help, "gauge");
+        appendSample(text, name, value);
+    }
+
+    /**
+     * buckets are cumulative, as prometheus expects
+     *
+     * @param text
+     * @param name
+     * @param help
+     * @param histogram
+     */
+    private static void appendHistogram(StringBuilder text, String name, String help, LatencyHistogram histogram) {
+        appendHeader(text, name, help, "histogram");
+
+        long[] counts = histogram.getBucketCounts();
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (i >= FIRST_PROMETHEUS_BUCKET && i <= LAST_PROMETHEUS_BUCKET) {
+                double le = (LatencyHistogram.upperBoundNanos(i) + 1) / 1e9;
+                appendSample(text, name + "_bucket{le=\"" + le + "\"}", cumulative);
+            }
+        }
+
+        appendSample(text, name + "_bucket{le=\"+Inf\"}", cumulative);
+        appendSample(text, name + "_sum", histogram.getTotalNanos() / 1e9);
+        appendSample(text, name + "_count", cumulative);
+    }
+
+    /**
+     *
+     * @param text
+     * @param name
+     * @param help
+     * @param type eg: counter
+     */
+    private static void appendHeader(StringBuilder text, String name, String help, String type) {
+        text.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     *
+     * @param text
+     * @param name
+     * @param value
+     */
+    private static void appendSample(StringBuilder text, String name, long value) {
+        text.append(PREFIX).append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     *
+     * @param text
+     * @param name
+     * @param value
+     */
+    private static void appendSample(StringBuilder text, String name, double value) {
+        text.append(PREFIX).append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     *
+     * @param value
+     * @return value with backslashes, quotes and newlines escaped for use as a label value
+     */
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+}
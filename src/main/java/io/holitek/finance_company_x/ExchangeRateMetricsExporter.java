@@ -0,0 +1,182 @@
+package io.holitek.finance_company_x;
+
+
+import io.holitek.finance_company_x.LatencyHistogram.LatencySummary;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.CamelContextAware;
+import org.apache.camel.support.service.ServiceSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+
+/**
+ * registers the app's {@link ExchangeRateMetrics}, along with gauges over the snapshot the {@link ExchangeRateBean} has
+ * live, as an MXBean on the platform MBean server. it's independent of camel's own JMX support, so it works with
+ * camel.main.jmx-enabled left off.
+ */
+public class ExchangeRateMetricsExporter extends ServiceSupport
+                                         implements CamelContextAware, ExchangeRateMetricsMXBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExchangeRateMetricsExporter.class);
+
+    public static final String OBJECT_NAME_TEMPLATE = "io.holitek.finance_company_x:type=ExchangeRateMetrics,name=%s";
+
+    private final String exchangeRateBeanName;
+    private final ExchangeRateMetrics metrics;
+
+    private CamelContext camelContext;
+    private ExchangeRateBean exchangeRateBean;
+    private ObjectName objectName;
+
+
+    /**
+     * whether or not to register is resolved from app properties when the service starts.
+     *
+     * @param exchangeRateBeanName registry name of the bean to report on
+     */
+    public ExchangeRateMetricsExporter(String exchangeRateBeanName) {
+        this.exchangeRateBeanName = exchangeRateBeanName;
+        this.metrics = ExchangeRateMetrics.INSTANCE;
+    }
+
+
+    // PUBLIC
+    //
+
+    @Override
+    public CamelContext getCamelContext() { return camelContext; }
+
+    @Override
+    public void setCamelContext(CamelContext camelContext) { this.camelContext = camelContext; }
+
+    @Override
+    public long getPolls() { return metrics.getPolls(); }
+
+    @Override
+    public long getPollsSkipped() { return metrics.getPollsSkipped(); }
+
+    @Override
+    public long getPollsReloaded() { return metrics.getPollsReloaded(); }
+
+    @Override
+    public long getPollsHalted() { return metrics.getPollsHalted(); }
+
+    @Override
+    public long getPollsSuperseded() { return metrics.getPollsSuperseded(); }
+
+    @Override
+    public long getPollInterval() { return metrics.getPollInterval(); }
+
+    @Override
+    public long getLookupHits() { return metrics.getLookupHits(); }
+
+    @Override
+    public long getLookupMisses() { return metrics.getLookupMisses(); }
+
+    @Override
+    public long getSnapshotCacheHits() { return metrics.getSnapshotCacheHits(); }
+
+    @Override
+    public long getSnapshotCacheMisses() { return metrics.getSnapshotCacheMisses(); }
+
+    @Override
+    public LatencySummary getBuildIdFileReadLatency() { return metrics.getBuildIdFileReadLatency().getSummary(); }
+
+    @Override
+    public LatencySummary getDataFileParseLatency() { return metrics.getDataFileParseLatency().getSummary(); }
+
+    @Override
+    public LatencySummary getSnapshotBuildLatency() { return metrics.getSnapshotBuildLatency().getSummary(); }
+
+    @Override
+    public LatencySummary getSnapshotSwapLatency() { return metrics.getSnapshotSwapLatency().getSummary(); }
+
+    @Override
+    public LatencySummary getSnapshotSaveLatency() { return metrics.getSnapshotSaveLatency().getSummary(); }
+
+    @Override
+    public String getBuildID() { return getSnapshot().getBuildID(); }
+
+    @Override
+    public int getSnapshotEntries() { return getSnapshot().size(); }
+
+    @Override
+    public long getSnapshotBytes() { return getSnapshot().getEstimatedBytes(); }
+
+    @Override
+    public double getSnapshotAgeSeconds() { return ExchangeRateMetrics.snapshotAgeSeconds(getSnapshot()); }
+
+    /**
+     *
+     * @return name the MXBean is registered under, or null if it isn't registered
+     */
+    public ObjectName getObjectName() { return objectName; }
+
+
+    // PROTECTED
+    //
+
+    @Override
+    protected void doStart() throws Exception {
+        boolean enabled = camelContext.getPropertiesComponent()
+                                      .resolveProperty("metrics_jmx_enabled")
+                                      .map(Boolean::parseBoolean)
+                                      .orElse(false);
+
+        if (enabled == false) {
+            LOG.info("jmx metrics are disabled");
+            return;
+        }
+
+        exchangeRateBean = camelContext.getRegistry().lookupByNameAndType(exchangeRateBeanName, ExchangeRateBean.class);
+        if (exchangeRateBean == null) {
+            LOG.error("no {} named {} in the registry - jmx metrics won't be registered",
+                      ExchangeRateBean.class.getSimpleName(),
+                      exchangeRateBeanName);
+
+            return;
+        }
+
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName(String.format(OBJECT_NAME_TEMPLATE, exchangeRateBeanName));
+        if (mBeanServer.isRegistered(objectName)) {
+            mBeanServer.unregisterMBean(objectName);
+        }
+
+        mBeanServer.registerMBean(this, objectName);
+        this.objectName = objectName;
+        LOG.info("registered exchange rate metrics with jmx as {}", objectName);
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        if (objectName != null) {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+
+            objectName = null;
+        }
+    }
+
+
+    // PRIVATE
+    //
+
+    /**
+     *
+     * @return
+     */
+    private ExchangeRateSnapshot getSnapshot() {
+        return exchangeRateBean == null ? ExchangeRateSnapshot.EMPTY : exchangeRateBean.getSnapshot();
+    }
+
+}
@@ -0,0 +1,51 @@
+package io.holitek.finance_company_x;
+
+
+import io.holitek.finance_company_x.LatencyHistogram.LatencySummary;
+
+
+/**
+ * what {@link ExchangeRateMetricsExporter} registers with the platform MBean server. every attribute is read when it's
+ * asked for, so a JMX console always shows the live values.
+ */
+public interface ExchangeRateMetricsMXBean {
+
+    long getPolls();
+
+    long getPollsSkipped();
+
+    long getPollsReloaded();
+
+    long getPollsHalted();
+
+    long getPollsSuperseded();
+
+    long getPollInterval();
+
+    long getLookupHits();
+
+    long getLookupMisses();
+
+    long getSnapshotCacheHits();
+
+    long getSnapshotCacheMisses();
+
+    LatencySummary getBuildIdFileReadLatency();
+
+    LatencySummary getDataFileParseLatency();
+
+    LatencySummary getSnapshotBuildLatency();
+
+    LatencySummary getSnapshotSwapLatency();
+
+    LatencySummary getSnapshotSaveLatency();
+
+    String getBuildID();
+
+    int getSnapshotEntries();
+
+    long getSnapshotBytes();
+
+    double getSnapshotAgeSeconds();
+
+}
@@ -0,0 +1,219 @@
+package io.holitek.finance_company_x;
+
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+
+/**
+ * serialized forms of a snapshot's rates. rates only change when the buildID does, so each form is rendered the first
+ * time it's asked for and every reader after that gets the cached result - a snapshot nobody asks for json or csv never
+ * pays for them, which matters when the history, snapshot cache and staging area hold several large snapshots at once.
+ * the json string is kept alongside its bytes, as the bean's handlers hand it out per request. the csv string is
+ * decoded from its bytes per call. null rates are no rate at all, and are left out of every form.
+ *
+ * byte forms are handed out as read-only buffers so they can be written straight to a channel or message body without
+ * copying and without risk of a caller scribbling over the cached bytes.
+ */
+public final class ExchangeRateRenderings {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExchangeRateRenderings.class);
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    public static final String CSV_HEADER = "pair,rate";
+
+    private final Map<String, Double> exchangeRateMap;
+
+    // rendered on first use - racy but idempotent, the same as String's hash
+    private volatile byte[] jsonBytes;
+    private volatile String json;
+    private volatile byte[] csvBytes;
+    private volatile byte[] binary;
+
+
+    private ExchangeRateRenderings(Map<String, Double> exchangeRateMap) {
+        this.exchangeRateMap = exchangeRateMap;
+    }
+
+
+    // PUBLIC
+    //
+
+    /**
+     * nothing is rendered until it's asked for
+     *
+     * @param exchangeRateMap read-only - renderings are of the map as it is when they're first asked for
+     * @return
+     */
+    public static ExchangeRateRenderings of(Map<String, Double> exchangeRateMap) {
+        return new ExchangeRateRenderings(exchangeRateMap);
+    }
+
+    /**
+     *
+     * @return rates as a json object, in data file order
+     */
+    public String getJson() {
+        String json = this.json;
+        if (json == null) {
+            json = new String(jsonBytes(), StandardCharsets.UTF_8);
+            this.json = json;
+        }
+
+        return json;
+    }
+
+    /**
+     *
+     * @return read-only view of the UTF-8 encoded json
+     */
+    public ByteBuffer getJsonBytes() { return ByteBuffer.wrap(jsonBytes()).asReadOnlyBuffer(); }
+
+    /**
+     *
+     * @return length in bytes of the UTF-8 encoded json
+     */
+    public int getJsonLength() { return jsonBytes().length; }
+
+    /**
+     * writes the cached bytes straight to the stream - no intermediate copy.
+     *
+     * @param outputStream
+     * @throws IOException
+     */
+    public void writeJsonTo(OutputStream outputStream) throws IOException { outputStream.write(jsonBytes()); }
+
+    /**
+     *
+     * @return rates as csv with a {@link #CSV_HEADER} header line, in data file order
+     */
+    public String getCsv() { return new String(csvBytes(), StandardCharsets.UTF_8); }
+
+    /**
+     *
+     * @return read-only view of the UTF-8 encoded csv
+     */
+    public ByteBuffer getCsvBytes() { return ByteBuffer.wrap(csvBytes()).asReadOnlyBuffer(); }
+
+    /**
+     *
+     * @return read-only view of the rates in {@link BinaryRateFormat}
+     */
+    public ByteBuffer getBinary() {
+        byte[] binary = this.binary;
+        if (binary == null) {
+            binary = BinaryRateFormat.encode(exchangeRateMap);
+            this.binary = binary;
+        }
+
+        return ByteBuffer.wrap(binary).asReadOnlyBuffer();
+    }
+
+    /**
+     *
+     * @return rough heap footprint of the renderings made so far, see {@link Helpers#estimatedArrayBytes(long, int)}
+     */
+    public long getEstimatedBytes() {
+        // the json is ascii, so its string is stored a byte per char
+        String json = this.json;
+        long jsonStringBytes = json == null ? 0 : Helpers.estimatedArrayBytes(json.length(), 1);
+        return estimatedBytesOf(jsonBytes) + jsonStringBytes + estimatedBytesOf(csvBytes) + estimatedBytesOf(binary);
+    }
+
+
+    // PRIVATE
+    //
+
+    /**
+     *
+     * @return
+     */
+    private byte[] jsonBytes() {
+        byte[] jsonBytes = this.jsonBytes;
+        if (jsonBytes == null) {
+            jsonBytes = renderJson(exchangeRateMap);
+            this.jsonBytes = jsonBytes;
+        }
+
+        return jsonBytes;
+    }
+
+    /**
+     *
+     * @return
+     */
+    private byte[] csvBytes() {
+        byte[] csvBytes = this.csvBytes;
+        if (csvBytes == null) {
+            csvBytes = renderCsv(exchangeRateMap).getBytes(StandardCharsets.UTF_8);
+            this.csvBytes = csvBytes;
+        }
+
+        return csvBytes;
+    }
+
+    /**
+     *
+     * @param bytes
+     * @return
+     */
+    private static long estimatedBytesOf(byte[] bytes) {
+        return bytes == null ? 0 : Helpers.estimatedArrayBytes(bytes.length, 1);
+    }
+
+    /**
+     *
+     * @param exchangeRateMap
+     * @return UTF-8 encoded json, or an empty array if the rates couldn't be serialized
+     */
+    private static byte[] renderJson(Map<String, Double> exchangeRateMap) {
+        byte[] rv = new byte[0];
+
+        // only copied on the rare occasion there's a null to leave out
+        Map<String, Double> renderedRateMap = exchangeRateMap;
+        if (exchangeRateMap.containsValue(null)) {
+            renderedRateMap = new LinkedHashMap<>(exchangeRateMap);
+            renderedRateMap.values().removeIf(Objects::isNull);
+        }
+
+        try {
+            rv = OBJECT_MAPPER.writeValueAsBytes(renderedRateMap);
+        } catch (JsonProcessingException e) {
+            LOG.error("something went wrong serializing cached exchange data into json", e);
+        }
+
+        return rv;
+    }
+
+    /**
+     *
+     * @param exchangeRateMap
+     * @return
+     */
+    private static String renderCsv(Map<String, Double> exchangeRateMap) {
+        StringBuilder csvBuilder = new StringBuilder(CSV_HEADER.length() + 1 + exchangeRateMap.size() * 24);
+        csvBuilder.append(CSV_HEADER).append('\n');
+        exchangeRateMap.forEach((key, rate) -> {
+            if (rate != null) {
+                csvBuilder.append(key).append(',').append(rate.doubleValue()).append('\n');
+            }
+        });
+
+        return csvBuilder.toString();
+    }
+
+}
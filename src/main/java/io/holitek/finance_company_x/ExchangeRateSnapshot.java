@@ -0,0 +1,296 @@
+package io.holitek.finance_company_x;
+
+
+import java.time.Instant;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+
+/**
+ * immutable, point-in-time view of the exchange rate data held by {@link ExchangeRateBean}. buildID, load timestamp and
+ * rates travel together so a reader holding a snapshot can never see the buildID from one load and the rates from
+ * another. callers that need to make several lookups against one consistent version should grab a snapshot once and
+ * make all of their lookups against it.
+ *
+ * each snapshot also carries a {@link RateTable} built from its rates, which backs the allocation free
+ * {@link #getRate(String)} and {@link #hasRate(String)} lookups, and the {@link ExchangeRateRenderings} of its rates so
+ * nothing has to be re-serialized per request - each form is rendered the first time it's asked for. cross rates
+ * between any two currencies the data links, directly or through a common currency, come from the snapshot's
+ * {@link CrossRateMatrix} via {@link #convert(String, String)}.
+ */
+public final class ExchangeRateSnapshot {
+
+    /**
+     * what the bean holds before anything has been loaded and after it's been reset
+     */
+    public static final ExchangeRateSnapshot EMPTY =
+            new ExchangeRateSnapshot(ExchangeRateBean.DEFAULT_BUILD_ID, Instant.EPOCH, Map.of());
+
+    private final String buildID;
+    private final Instant loadedAt;
+    private final String dataFileName;
+    private final Map<String, Double> exchangeRateMap;
+    private final RateTable rateTable;
+    private final ExchangeRateRenderings renderings;
+    private final CrossRateMatrix crossRateMatrix;
+
+    // worked out on first use - racy but idempotent, the same as String's hash. renderings are left out as they're
+    //   made as they're asked for
+    private volatile long estimatedBytes = -1;
+
+
+    /**
+     * rates are defensively copied. iteration order of the provided map is preserved so that anything rendered from the
+     * snapshot comes out in the same order as the data file it was loaded from.
+     *
+     * @param buildID
+     * @param loadedAt
+     * @param exchangeRateMap
+     */
+    public ExchangeRateSnapshot(String buildID, Instant loadedAt, Map<String, Double> exchangeRateMap) {
+        this(
+                buildID,
+                loadedAt,
+                Collections.unmodifiableMap(
+                        new LinkedHashMap<>(Objects.requireNonNull(exchangeRateMap, "exchangeRateMap"))
+                ),
+                "",
+                null,
+                null,
+                null
+        );
+    }
+
+    /**
+     * builds a snapshot directly on top of the provided map rather than copying it. only for maps nobody else holds a
+     * writable reference to, eg: those produced by {@link ExchangeRateFileReader}, where a copy would just double the
+     * memory a reload needs.
+     *
+     * @param buildID
+     * @param loadedAt
+     * @param exchangeRateMap
+     * @param dataFileName name of the file the rates were read from
+     * @return
+     */
+    static ExchangeRateSnapshot wrap(String buildID,
+                                     Instant loadedAt,
+                                     Map<String, Double> exchangeRateMap,
+                                     String dataFileName) {
+
+        return new ExchangeRateSnapshot(
+                buildID,
+                loadedAt,
+                Collections.unmodifiableMap(Objects.requireNonNull(exchangeRateMap, "exchangeRateMap")),
+                Objects.requireNonNull(dataFileName, "dataFileName"),
+                null,
+                null,
+                null
+        );
+    }
+
+    /**
+     * builds the next snapshot by applying a delta to this one. the rates are an overlay on this snapshot's (see
+     * {@link DeltaRateMap}), and the lookup table and cross rates are patched copies of this one's, so none of them is
+     * rebuilt from every pair. the renderings are made afresh from the new rates, as they're asked for.
+     *
+     * @param buildID
+     * @param rateDelta
+     * @param dataFileName name of the delta file
+     * @return
+     */
+    ExchangeRateSnapshot withDelta(String buildID, RateDelta rateDelta, String dataFileName) {
+        Map<String, Double> patchedRateMap = DeltaRateMap.apply(exchangeRateMap, rateDelta);
+        RateTable patchedRateTable = rateTable.withChanges(rateDelta.getUpserts(), rateDelta.getRemovals());
+        return new ExchangeRateSnapshot(
+                buildID,
+                Instant.now(),
+                patchedRateMap,
+                Objects.requireNonNull(dataFileName, "dataFileName"),
+                patchedRateTable,
+                null,
+                crossRateMatrix.withChanges(patchedRateMap, rateDelta, patchedRateTable)
+        );
+    }
+
+    /**
+     * lets derived snapshots share the (immutable) rates, lookup table, renderings and cross rates of the snapshot they
+     * came from
+     *
+     * @param buildID
+     * @param loadedAt
+     * @param exchangeRateMap already copied and wrapped read-only
+     * @param dataFileName
+     * @param rateTable table built from exchangeRateMap, or null to build one
+     * @param renderings renderings of exchangeRateMap, or null to render them
+     * @param crossRateMatrix matrix built from exchangeRateMap, or null to build one
+     */
+    private ExchangeRateSnapshot(String buildID,
+                                 Instant loadedAt,
+                                 Map<String, Double> exchangeRateMap,
+                                 String dataFileName,
+                                 RateTable rateTable,
+                                 ExchangeRateRenderings renderings,
+                                 CrossRateMatrix crossRateMatrix) {
+
+        this.buildID = Objects.requireNonNull(buildID, "buildID");
+        this.loadedAt = Objects.requireNonNull(loadedAt, "loadedAt");
+        this.exchangeRateMap = exchangeRateMap;
+        this.dataFileName = dataFileName;
+        this.rateTable = rateTable == null ? RateTable.of(exchangeRateMap) : rateTable;
+        this.renderings = renderings == null ? ExchangeRateRenderings.of(exchangeRateMap) : renderings;
+        this.crossRateMatrix =
+                crossRateMatrix == null ? CrossRateMatrix.of(exchangeRateMap, this.rateTable) : crossRateMatrix;
+    }
+
+
+    // PUBLIC
+    //
+
+    /**
+     *
+     * @return
+     */
+    public String getBuildID() { return buildID; }
+
+    /**
+     *
+     * @return when this snapshot was created. {@link Instant#EPOCH} for the empty snapshot.
+     */
+    public Instant getLoadedAt() { return loadedAt; }
+
+    /**
+     *
+     * @return name of the data file, or state file, the rates were read from - or empty if they weren't read from one
+     */
+    public String getDataFileName() { return dataFileName; }
+
+    /**
+     *
+     * @return read-only view of the rates in this snapshot
+     */
+    public Map<String, Double> getExchangeRateMap() { return exchangeRateMap; }
+
+    /**
+     *
+     * @param key
+     * @return
+     */
+    public Optional<Double> getExchangeRateFor(String key) {
+        return Optional.ofNullable(exchangeRateMap.get(key));
+    }
+
+    /**
+     * allocation free lookup.
+     *
+     * @param key
+     * @return the rate, or {@link RateTable#NO_RATE} if there isn't one
+     */
+    public double getRate(String key) { return rateTable.getRate(key); }
+
+    /**
+     *
+     * @param key
+     * @return
+     */
+    public boolean hasRate(String key) { return rateTable.hasRate(key); }
+
+    /**
+     *
+     * @return
+     */
+    public RateTable getRateTable() { return rateTable; }
+
+    /**
+     *
+     * @return cached json, csv and binary forms of this snapshot's rates
+     */
+    public ExchangeRateRenderings getRenderings() { return renderings; }
+
+    /**
+     * allocation free conversion between any two currencies linked by a rate in the data file, its reciprocal, or one
+     * hop through a currency both have a rate against.
+     *
+     * @param from eg: "CAD"
+     * @param to eg: "USD"
+     * @return how many of the 'to' currency one of the 'from' currency buys, or {@link RateTable#NO_RATE}
+     */
+    public double convert(String from, String to) { return crossRateMatrix.convert(from, to); }
+
+    /**
+     *
+     * @return
+     */
+    public CrossRateMatrix getCrossRateMatrix() { return crossRateMatrix; }
+
+    /**
+     * rough heap footprint of this snapshot - rates, lookup table, renderings made so far and cross rates - for sizing
+     * how many snapshots the bean's history can hold. assumes a 64 bit JVM with compressed oops and ascii keys.
+     * derived snapshots share structures with the one they came from, so their estimates don't add up.
+     *
+     * @return
+     */
+    public long getEstimatedBytes() {
+        long estimatedBytes = this.estimatedBytes;
+        if (estimatedBytes < 0) {
+            // linked hash map entry + its share of the bucket array + boxed rate, plus the key
+            estimatedBytes = exchangeRateMap.size() * (40L + 8 + 16);
+            for (String key : exchangeRateMap.keySet()) {
+                estimatedBytes += Helpers.estimatedStringBytes(key.length());
+            }
+
+            estimatedBytes += rateTable.getEstimatedBytes() + crossRateMatrix.getEstimatedBytes();
+            this.estimatedBytes = estimatedBytes;
+        }
+
+        return estimatedBytes + renderings.getEstimatedBytes();
+    }
+
+    /**
+     *
+     * @return
+     */
+    public int size() { return exchangeRateMap.size(); }
+
+    /**
+     *
+     * @return
+     */
+    public boolean isEmpty() { return exchangeRateMap.isEmpty(); }
+
+    /**
+     *
+     * @param buildID
+     * @return copy of this snapshot with the rates left as is and the buildID replaced
+     */
+    public ExchangeRateSnapshot withBuildID(String buildID) {
+        return new ExchangeRateSnapshot(
+                buildID,
+                Instant.now(),
+                exchangeRateMap,
+                dataFileName,
+                rateTable,
+                renderings,
+                crossRateMatrix
+        );
+    }
+
+    /**
+     *
+     * @param exchangeRateMap
+     * @return copy of this snapshot with the buildID left as is and the rates replaced
+     */
+    public ExchangeRateSnapshot withExchangeRateMap(Map<String, Double> exchangeRateMap) {
+        return new ExchangeRateSnapshot(buildID, Instant.now(), exchangeRateMap);
+    }
+
+    @Override
+    public String toString() {
+        return "ExchangeRateSnapshot{buildID='" + buildID + "', loadedAt=" + loadedAt +
+               ", dataFileName='" + dataFileName + "', size=" + exchangeRateMap.size() + "}";
+    }
+
+}
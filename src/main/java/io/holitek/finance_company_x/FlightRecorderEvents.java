@@ -0,0 +1,213 @@
+package io.holitek.finance_company_x;
+
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * java flight recorder events for each step of a reload, and a sampled one for rate lookups, so reload pauses can be
+ * lined up with GC and safepoint data in the same recording. every event carries the buildID and data file it's about.
+ *
+ * events follow the usual JFR pattern - create, begin, do the work, then fill in and commit only if
+ * {@link Event#shouldCommit()} says the event is wanted. when nothing is recording that's a couple of branches on a
+ * flag JFR flips, and the JIT does away with the allocation. the reload events are on by default in any recording; the
+ * lookup event has to be turned on, eg: with -XX:StartFlightRecording:settings=... or in JDK Mission Control, and even
+ * then only one lookup in {@link #DEFAULT_LOOKUP_SAMPLE_INTERVAL} is recorded.
+ */
+public final class FlightRecorderEvents {
+
+    public static final String CATEGORY = "Finance Company X";
+
+    public static final int DEFAULT_LOOKUP_SAMPLE_INTERVAL = 1024;
+
+    // settable for tests, which want every lookup
+    static volatile int lookupSampleInterval = DEFAULT_LOOKUP_SAMPLE_INTERVAL;
+
+    private FlightRecorderEvents() { }
+
+
+    // PACKAGE PROTECTED
+    //
+
+    /**
+     *
+     * @param buildID the load was for, or null if it isn't known
+     * @param fileName of the data file, or empty if it isn't known
+     * @param reason
+     */
+    static void loadFailed(String buildID, String fileName, String reason) {
+        LoadFailed event = new LoadFailed();
+        if (event.shouldCommit()) {
+            event.buildID = buildID;
+            event.fileName = fileName;
+            event.reason = reason;
+            event.commit();
+        }
+    }
+
+    /**
+     * records the lookup if lookup events are enabled and this one is sampled. costs a flag check when they aren't.
+     *
+     * @param snapshot the lookup was made against
+     * @param key
+     * @param hit whether or not a rate was found
+     */
+    static void rateLookup(ExchangeRateSnapshot snapshot, String key, boolean hit) {
+        RateLookup event = new RateLookup();
+        if (event.isEnabled() && ThreadLocalRandom.current().nextInt(lookupSampleInterval) == 0) {
+            event.buildID = snapshot.getBuildID();
+            event.fileName = snapshot.getDataFileName();
+            event.key = key;
+            event.hit = hit;
+            event.commit();
+        }
+    }
+
+
+    /**
+     * the buildID file was read and parsed - its key, size or modified time had changed since the last poll
+     */
+    @Name("io.holitek.finance_company_x.BuildIdRead")
+    @Label("BuildID File Read")
+    @Category({CATEGORY, "Reload"})
+    @StackTrace(false)
+    public static final class BuildIdRead extends Event {
+
+        @Label("BuildID")
+        String buildID;
+
+        @Label("File Name")
+        String fileName;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+    }
+
+    /**
+     * the data file was read into a rate map. json is parsed as it streams off disk and binary files are decoded
+     * straight out of a memory mapping, so reading and parsing are one pass and this event covers both.
+     */
+    @Name("io.holitek.finance_company_x.DataFileRead")
+    @Label("Data File Read")
+    @Category({CATEGORY, "Reload"})
+    @StackTrace(false)
+    public static final class DataFileRead extends Event {
+
+        @Label("BuildID")
+        String buildID;
+
+        @Label("File Name")
+        String fileName;
+
+        @Label("Format")
+        @Description("json, binary, delta, staged or cached")
+        String format;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Entries")
+        int entries;
+
+    }
+
+    /**
+     * the new snapshot's lookup table, cross rates and renderings were built from the rate map
+     */
+    @Name("io.holitek.finance_company_x.SnapshotBuild")
+    @Label("Snapshot Build")
+    @Category({CATEGORY, "Reload"})
+    @StackTrace(false)
+    public static final class SnapshotBuild extends Event {
+
+        @Label("BuildID")
+        String buildID;
+
+        @Label("File Name")
+        String fileName;
+
+        @Label("Entries")
+        int entries;
+
+    }
+
+    /**
+     * the new snapshot was published and recorded in the snapshot history
+     */
+    @Name("io.holitek.finance_company_x.SnapshotSwap")
+    @Label("Snapshot Swap")
+    @Category({CATEGORY, "Reload"})
+    @StackTrace(false)
+    public static final class SnapshotSwap extends Event {
+
+        @Label("BuildID")
+        String buildID;
+
+        @Label("File Name")
+        String fileName;
+
+        @Label("Previous BuildID")
+        String previousBuildID;
+
+        @Label("Entries")
+        int entries;
+
+    }
+
+    /**
+     * a reload failed - the data file couldn't be read, or the bean was handed a bad buildID or no rates and reset
+     * itself
+     */
+    @Name("io.holitek.finance_company_x.LoadFailed")
+    @Label("Load Failed")
+    @Category({CATEGORY, "Reload"})
+    public static final class LoadFailed extends Event {
+
+        @Label("BuildID")
+        String buildID;
+
+        @Label("File Name")
+        String fileName;
+
+        @Label("Reason")
+        String reason;
+
+    }
+
+    /**
+     * a sampled lookup through the bean. off unless turned on in the recording's settings
+     */
+    @Name("io.holitek.finance_company_x.RateLookup")
+    @Label("Rate Lookup")
+    @Category({CATEGORY, "Lookup"})
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class RateLookup extends Event {
+
+        @Label("BuildID")
+        String buildID;
+
+        @Label("File Name")
+        String fileName;
+
+        @Label("Key")
+        String key;
+
+        @Label("Hit")
+        boolean hit;
+
+    }
+
+}
@@ -22,4 +22,34 @@ public class Helpers {
         return Files.exists(path);
     }
 
+    /**
+     * rough heap footprint of an array, assuming a 64 bit JVM with compressed oops (16 byte array header, objects
+     * padded to 8 bytes). good enough for sizing caches - not an exact measurement.
+     *
+     * @param length
+     * @param bytesPerElement
+     * @return
+     */
+    public static long estimatedArrayBytes(long length, int bytesPerElement) {
+        return align(16 + length * bytesPerElement);
+    }
+
+    /**
+     * rough heap footprint of a String holding only latin-1 characters (which compact strings store a byte per
+     * character), its backing array included.
+     *
+     * @param length
+     * @return
+     */
+    public static long estimatedStringBytes(int length) {
+        return 24 + estimatedArrayBytes(length, 1);
+    }
+
+    /**
+     *
+     * @param bytes
+     * @return bytes rounded up to the 8 byte object alignment
+     */
+    private static long align(long bytes) { return (bytes + 7) & ~7L; }
+
 }
@@ -0,0 +1,184 @@
+package io.holitek.finance_company_x;
+
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * lock free histogram of durations with power of two buckets - bucket i counts durations of at least 2^(i-1) and less
+ * than 2^i nanoseconds. recording is a leading zeros count and a couple of atomic adds, so it's cheap enough to leave
+ * on in production. quantiles are only as precise as the bucket they land in, which is plenty to tell a
+ * millisecond from a second.
+ */
+public final class LatencyHistogram {
+
+    // bucket 0 holds zero, bucket 63 everything from 2^62 nanos (146 years) up
+    static final int BUCKETS = Long.SIZE;
+
+    private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+
+    // PUBLIC
+    //
+
+    /**
+     *
+     * @param nanos negative durations, eg: from a clock that went backwards, are recorded as zero
+     */
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        bucketCounts.incrementAndGet(bucketOf(nanos));
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    /**
+     *
+     * @param startNanos from {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) { record(System.nanoTime() - startNanos); }
+
+    /**
+     *
+     * @return number of durations recorded
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += bucketCounts.get(i);
+        }
+
+        return count;
+    }
+
+    /**
+     *
+     * @return sum of every duration recorded
+     */
+    public long getTotalNanos() { return totalNanos.sum(); }
+
+    /**
+     *
+     * @return longest duration recorded
+     */
+    public long getMaxNanos() { return maxNanos.get(); }
+
+    /**
+     *
+     * @param quantile 0 - 1, eg: 0.99
+     * @return upper bound of the bucket the quantile falls in, or zero if nothing has been recorded
+     */
+    public long getQuantileNanos(double quantile) {
+        long[] counts = getBucketCounts();
+        long count = 0;
+        for (long bucketCount : counts) {
+            count += bucketCount;
+        }
+
+        long rank = (long)Math.ceil(quantile * count);
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank && counts[i] > 0) {
+                return Math.min(upperBoundNanos(i), getMaxNanos());
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     *
+     * @return point in time copy of the bucket counts
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = bucketCounts.get(i);
+        }
+
+        return counts;
+    }
+
+    /**
+     *
+     * @return count, mean, median, p99 and max in milliseconds
+     */
+    public LatencySummary getSummary() {
+        long count = getCount();
+        return new LatencySummary(
+                count,
+                count == 0 ? 0 : toMillis(getTotalNanos()) / count,
+                toMillis(getQuantileNanos(0.5)),
+                toMillis(getQuantileNanos(0.99)),
+                toMillis(getMaxNanos())
+        );
+    }
+
+
+    // PACKAGE PROTECTED
+    //
+
+    /**
+     *
+     * @param nanos
+     * @return
+     */
+    static int bucketOf(long nanos) { return Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(nanos)); }
+
+    /**
+     *
+     * @param bucket
+     * @return largest duration the bucket counts
+     */
+    static long upperBoundNanos(int bucket) { return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1; }
+
+
+    // PRIVATE
+    //
+
+    /**
+     *
+     * @param nanos
+     * @return
+     */
+    private static double toMillis(long nanos) { return nanos / (double)TimeUnit.MILLISECONDS.toNanos(1); }
+
+
+    /**
+     * what {@link ExchangeRateMetricsMXBean} hands out for each histogram - JMX consoles show it as a composite
+     */
+    public static final class LatencySummary {
+
+        private final long count;
+        private final double meanMillis;
+        private final double medianMillis;
+        private final double p99Millis;
+        private final double maxMillis;
+
+        LatencySummary(long count, double meanMillis, double medianMillis, double p99Millis, double maxMillis) {
+            this.count = count;
+            this.meanMillis = meanMillis;
+            this.medianMillis = medianMillis;
+            this.p99Millis = p99Millis;
+            this.maxMillis = maxMillis;
+        }
+
+        public long getCount() { return count; }
+
+        public double getMeanMillis() { return meanMillis; }
+
+        public double getMedianMillis() { return medianMillis; }
+
+        public double getP99Millis() { return p99Millis; }
+
+        public double getMaxMillis() { return maxMillis; }
+
+    }
+
+}
@@ -0,0 +1,60 @@
+package io.holitek.finance_company_x;
+
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * the changes between one buildID's rates and the next - pairs that were added or moved, and pairs that were dropped.
+ * read from a delta file by {@link ExchangeRateFileReader#readDelta(java.nio.file.Path)} and applied to the snapshot of
+ * the buildID it was made against by {@link ExchangeRateBean#applyDelta(String, String, RateDelta, String)}.
+ */
+public final class RateDelta {
+
+    private final Map<String, Double> upserts;
+    private final Set<String> removals;
+
+
+    /**
+     * a pair that is both upserted and removed ends up removed
+     *
+     * @param upserts pairs to add or move, in the order they should be added
+     * @param removals pairs to drop. pairs that aren't there to drop are ignored when the delta is applied
+     */
+    public RateDelta(Map<String, Double> upserts, Set<String> removals) {
+        Map<String, Double> upsertMap = new LinkedHashMap<>(upserts);
+        upsertMap.keySet().removeAll(removals);
+        this.upserts = Collections.unmodifiableMap(upsertMap);
+        this.removals = Collections.unmodifiableSet(new LinkedHashSet<>(removals));
+    }
+
+
+    // PUBLIC
+    //
+
+    /**
+     *
+     * @return read-only, in file order
+     */
+    public Map<String, Double> getUpserts() { return upserts; }
+
+    /**
+     *
+     * @return read-only, in file order
+     */
+    public Set<String> getRemovals() { return removals; }
+
+    /**
+     *
+     * @return number of pairs the delta touches
+     */
+    public int size() { return upserts.size() + removals.size(); }
+
+    @Override
+    public String toString() { return "RateDelta{upserts=" + upserts.size() + ", removals=" + removals.size() + "}"; }
+
+}
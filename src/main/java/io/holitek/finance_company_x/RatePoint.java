@@ -0,0 +1,64 @@
+package io.holitek.finance_company_x;
+
+
+import java.time.Instant;
+
+
+/**
+ * one rate a currency pair had, and when it had it. returned by {@link TimeSeriesStore} range scans.
+ */
+public final class RatePoint {
+
+    private final long epochSecond;
+    private final double rate;
+
+
+    public RatePoint(long epochSecond, double rate) {
+        this.epochSecond = epochSecond;
+        this.rate = rate;
+    }
+
+
+    // PUBLIC
+    //
+
+    /**
+     *
+     * @return
+     */
+    public long getEpochSecond() { return epochSecond; }
+
+    /**
+     *
+     * @return
+     */
+    public Instant getTimestamp() { return Instant.ofEpochSecond(epochSecond); }
+
+    /**
+     *
+     * @return
+     */
+    public double getRate() { return rate; }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+
+        if (other instanceof RatePoint == false) {
+            return false;
+        }
+
+        RatePoint ratePoint = (RatePoint)other;
+        return epochSecond == ratePoint.epochSecond &&
+               Double.doubleToLongBits(rate) == Double.doubleToLongBits(ratePoint.rate);
+    }
+
+    @Override
+    public int hashCode() { return Long.hashCode(epochSecond) * 31 + Double.hashCode(rate); }
+
+    @Override
+    public String toString() { return "RatePoint{timestamp=" + getTimestamp() + ", rate=" + rate + "}"; }
+
+}
@@ -0,0 +1,375 @@
+package io.holitek.finance_company_x;
+
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.CamelContextAware;
+import org.apache.camel.spi.PropertiesComponent;
+import org.apache.camel.support.service.ServiceSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.beans.Introspector;
+
+import java.io.IOException;
+
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+
+
+/**
+ * read-only http api over the rates held by the {@link ExchangeRateBean}. runs inside the camel context on the JDK's
+ * built in http server so callers no longer need to embed the app to get at the rates.
+ *
+ *   GET /rates                  - every rate, as json
+ *   GET /rates/{pair}           - one rate, eg: /rates/CAD_USD
+ *   GET /rates?pairs={a},{b}    - the named rates. pairs without a rate are left out of the response
+ *   GET /metrics                - {@link ExchangeRateMetrics} in the prometheus text format
+ *
+ * every rates response carries the current buildID as a strong ETag. rates only change when the buildID does, so a
+ * client that sends the ETag back in If-None-Match gets an empty 304 until there is new data. the full table is
+ * written straight from the snapshot's cached json rather than being re-serialized per request.
+ */
+public class RateQueryServer extends ServiceSupport implements CamelContextAware {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RateQueryServer.class);
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    public static final String NAMESPACE_KEY = Introspector.decapitalize(RateQueryServer.class.getSimpleName());
+
+    public static final String RATES_PATH = "/rates";
+    public static final String PAIRS_QUERY_PARAMETER = "pairs";
+    public static final String METRICS_PATH = "/metrics";
+
+    public static final String DEFAULT_HOST = "localhost";
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final String CONTENT_TYPE_JSON = "application/json";
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final String exchangeRateBeanName;
+
+    private CamelContext camelContext;
+    private boolean enabled;
+    private String host;
+    private int port;
+    private int threads;
+
+    private ExchangeRateBean exchangeRateBean;
+    private ExecutorService executorService;
+    private HttpServer httpServer;
+
+
+    /**
+     * settings are resolved from app properties when the service starts.
+     *
+     * @param exchangeRateBeanName registry name of the bean to serve rates from
+     */
+    public RateQueryServer(String exchangeRateBeanName) {
+        this.exchangeRateBeanName = exchangeRateBeanName;
+    }
+
+    /**
+     * for when settings are known up front and shouldn't come from app properties.
+     *
+     * @param exchangeRateBeanName registry name of the bean to serve rates from
+     * @param host
+     * @param port 0 to pick any free port
+     * @param threads number of request handling threads
+     */
+    public RateQueryServer(String exchangeRateBeanName, String host, int port, int threads) {
+        this.exchangeRateBeanName = exchangeRateBeanName;
+        this.enabled = true;
+        this.host = host;
+        this.port = port;
+        this.threads = threads;
+    }
+
+
+    // PUBLIC
+    //
+
+    @Override
+    public CamelContext getCamelContext() { return camelContext; }
+
+    @Override
+    public void setCamelContext(CamelContext camelContext) { this.camelContext = camelContext; }
+
+    /**
+     *
+     * @return port the server is listening on, or -1 if it isn't running
+     */
+    public int getPort() { return httpServer == null ? -1 : httpServer.getAddress().getPort(); }
+
+
+    // PROTECTED
+    //
+
+    @Override
+    protected void doStart() throws Exception {
+        if (host == null) {
+            resolveSettings();
+        }
+
+        if (enabled == false) {
+            LOG.info("http query api is disabled");
+            return;
+        }
+
+        exchangeRateBean = camelContext.getRegistry().lookupByNameAndType(exchangeRateBeanName, ExchangeRateBean.class);
+        if (exchangeRateBean == null) {
+            LOG.error("no {} named {} in the registry - http query api won't start",
+                      ExchangeRateBean.class.getSimpleName(),
+                      exchangeRateBeanName);
+
+            return;
+        }
+
+        executorService = camelContext.getExecutorServiceManager().newFixedThreadPool(this, NAMESPACE_KEY, threads);
+
+        httpServer = HttpServer.create(new InetSocketAddress(host, port), 0);
+        httpServer.createContext(RATES_PATH, this::handle);
+        httpServer.createContext(METRICS_PATH, this::handleMetrics);
+        httpServer.setExecutor(executorService);
+        httpServer.start();
+        LOG.info("serving exchange rates on http://{}:{}{}", host, getPort(), RATES_PATH);
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+
+        if (executorService != null) {
+            camelContext.getExecutorServiceManager().shutdown(executorService);
+            executorService = null;
+        }
+    }
+
+
+    // PRIVATE
+    //
+
+    /**
+     *
+     */
+    private void resolveSettings() {
+        PropertiesComponent propertiesComponent = camelContext.getPropertiesComponent();
+
+        enabled = propertiesComponent.resolveProperty("http_enabled").map(Boolean::parseBoolean).orElse(false);
+        host = propertiesComponent.resolveProperty("http_host").orElse(DEFAULT_HOST);
+        port = propertiesComponent.resolveProperty("http_port").map(Integer::parseInt).orElse(DEFAULT_PORT);
+        threads = propertiesComponent.resolveProperty("http_threads")
+                                     .filter(value -> value.isBlank() == false)
+                                     .map(String::trim)
+                                     .map(Integer::parseInt)
+                                     .orElse(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * runs on one of the server's worker threads
+     *
+     * @param httpExchange
+     * @throws IOException
+     */
+    private void handle(HttpExchange httpExchange) throws IOException {
+        try {
+            String method = httpExchange.getRequestMethod();
+            boolean head = "HEAD".equals(method);
+            if (head == false && "GET".equals(method) == false) {
+                httpExchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                httpExchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            // the server matches contexts by prefix, so /ratesfoo lands here too
+            String path = httpExchange.getRequestURI().getPath();
+            if (path.equals(RATES_PATH) == false && path.startsWith(RATES_PATH + "/") == false) {
+                httpExchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            // one snapshot for the whole request so the ETag and body always agree
+            ExchangeRateSnapshot snapshot = exchangeRateBean.getSnapshot();
+            if (snapshot == ExchangeRateSnapshot.EMPTY) {
+                httpExchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            // an unknown pair is a 404 whatever ETag the client holds
+            String pair = path.length() > RATES_PATH.length() + 1 ? path.substring(RATES_PATH.length() + 1) : "";
+            Optional<Double> pairRateOptional = Optional.empty();
+            if (pair.isEmpty() == false) {
+                pairRateOptional = snapshot.getExchangeRateFor(pair);
+                ExchangeRateMetrics.INSTANCE.recordLookup(pairRateOptional.isPresent());
+                if (pairRateOptional.isEmpty()) {
+                    httpExchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+            }
+
+            String etag = etagOf(snapshot.getBuildID());
+            httpExchange.getResponseHeaders().set("ETag", etag);
+            httpExchange.getResponseHeaders().set("Cache-Control", "no-cache");
+
+            if (matchesEtag(httpExchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+                httpExchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            String pairs = queryParameter(httpExchange.getRequestURI().getRawQuery(), PAIRS_QUERY_PARAMETER);
+
+            httpExchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE_JSON);
+            if (pairRateOptional.isPresent()) {
+                sendBody(httpExchange, head, OBJECT_MAPPER.writeValueAsBytes(Map.of(pair, pairRateOptional.get())));
+            } else if (pairs != null) {
+                Map<String, Double> exchangeRateMap = new LinkedHashMap<>();
+                for (String key : pairs.split(",")) {
+                    Optional<Double> rateOptional = snapshot.getExchangeRateFor(key.trim());
+                    ExchangeRateMetrics.INSTANCE.recordLookup(rateOptional.isPresent());
+                    rateOptional.ifPresent(rate -> exchangeRateMap.put(key.trim(), rate));
+                }
+
+                sendBody(httpExchange, head, OBJECT_MAPPER.writeValueAsBytes(exchangeRateMap));
+            } else {
+                ExchangeRateRenderings renderings = snapshot.getRenderings();
+                httpExchange.sendResponseHeaders(200, head ? -1 : renderings.getJsonLength());
+                if (head == false) {
+                    renderings.writeJsonTo(httpExchange.getResponseBody());
+                }
+            }
+        } catch (RuntimeException e) {
+            LOG.error("something went wrong answering {}", httpExchange.getRequestURI(), e);
+            httpExchange.sendResponseHeaders(500, -1);
+        } finally {
+            httpExchange.close();
+        }
+    }
+
+    /**
+     * runs on one of the server's worker threads. answers whether or not there are rates yet - an empty snapshot is
+     * something to alert on, not a reason to stop reporting.
+     *
+     * @param httpExchange
+     * @throws IOException
+     */
+    private void handleMetrics(HttpExchange httpExchange) throws IOException {
+        try {
+            String method = httpExchange.getRequestMethod();
+            boolean head = "HEAD".equals(method);
+            if (head == false && "GET".equals(method) == false) {
+                httpExchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                httpExchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            if (httpExchange.getRequestURI().getPath().equals(METRICS_PATH) == false) {
+                httpExchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            String text = ExchangeRateMetrics.INSTANCE.toPrometheusText(exchangeRateBean.getSnapshot());
+            httpExchange.getResponseHeaders().set("Content-Type", ExchangeRateMetrics.PROMETHEUS_CONTENT_TYPE);
+            sendBody(httpExchange, head, text.getBytes(StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            LOG.error("something went wrong answering {}", httpExchange.getRequestURI(), e);
+            httpExchange.sendResponseHeaders(500, -1);
+        } finally {
+            httpExchange.close();
+        }
+    }
+
+    /**
+     *
+     * @param httpExchange
+     * @param head whether or not this is a HEAD request, which gets headers only
+     * @param body
+     * @throws IOException
+     */
+    private static void sendBody(HttpExchange httpExchange, boolean head, byte[] body) throws IOException {
+        httpExchange.sendResponseHeaders(200, head ? -1 : body.length);
+        if (head == false) {
+            httpExchange.getResponseBody().write(body);
+        }
+    }
+
+    /**
+     * buildIDs are whatever the provider put in the buildID file, so any byte an ETag can't hold - or that would be
+     * taken for the end of one in a list of them - is percent encoded. '%' is encoded too, so two buildIDs never
+     * share an ETag.
+     *
+     * @param buildID
+     * @return strong ETag for the buildID
+     */
+    private static String etagOf(String buildID) {
+        StringBuilder etag = new StringBuilder(buildID.length() + 2).append('"');
+        for (byte b : buildID.getBytes(StandardCharsets.UTF_8)) {
+            if (b > 0x20 && b < 0x7F && b != '"' && b != '%' && b != ',') {
+                etag.append((char)b);
+            } else {
+                etag.append('%').append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+            }
+        }
+
+        return etag.append('"').toString();
+    }
+
+    /**
+     * If-None-Match uses weak comparison, so a W/ prefix on the client's copy is ignored.
+     *
+     * @param ifNoneMatch header value - may be null, '*' or a comma separated list of ETags
+     * @param etag
+     * @return
+     */
+    private static boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || candidate.equals(etag) || candidate.equals("W/" + etag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     *
+     * @param rawQuery
+     * @param name
+     * @return decoded value of the first parameter with the given name, or null if there isn't one
+     */
+    private static String queryParameter(String rawQuery, String name) {
+        if (rawQuery == null) {
+            return null;
+        }
+
+        for (String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0 && parameter.substring(0, equals).equals(name)) {
+                return URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8);
+            }
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,422 @@
+package io.holitek.finance_company_x;
+
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+
+/**
+ * every rate one currency pair has had, compressed the way Facebook's Gorilla compresses time series. points are
+ * appended in time order and grouped into blocks of {@link #POINTS_PER_BLOCK}. within a block
+ *
+ *   - timestamps are stored as the change in the gap between consecutive points, which for data files published on a
+ *     regular schedule is zero and takes a single bit
+ *   - rates are stored as the XOR against the previous rate, with only the bits that differ written out. a rate that
+ *     didn't change takes a single bit
+ *
+ * each block's first timestamp goes into an index, so a lookup is a binary search for the right block followed by a
+ * decode of at most one block.
+ *
+ * writes come from one thread at a time (the {@link TimeSeriesStore}) and are synchronized. sealed blocks never change
+ * and are read without a lock - only reads that land in the block still being filled take the lock.
+ */
+public final class RateSeries {
+
+    public static final int POINTS_PER_BLOCK = 256;
+
+    // bit width of the timestamp change-of-gap buckets. anything wider is written out in full
+    private static final int[] DELTA_OF_DELTA_BITS = {7, 9, 12};
+
+    private static final int LEADING_ZEROS_BITS = 5;
+    private static final int MEANINGFUL_BITS_BITS = 6;
+    private static final int MAX_LEADING_ZEROS = (1 << LEADING_ZEROS_BITS) - 1;
+
+    // sealed blocks and their first timestamps, published together
+    private volatile BlockIndex blockIndex = new BlockIndex(new Block[0]);
+
+    // guarded by this
+    private BlockWriter openBlock;
+    private int size;
+
+
+    // PUBLIC
+    //
+
+    /**
+     *
+     * @param epochSecond
+     * @param rate
+     * @return false, and nothing is stored, if the timestamp isn't later than the last one appended
+     */
+    public synchronized boolean append(long epochSecond, double rate) {
+        if (openBlock != null && epochSecond <= openBlock.lastTimestamp) {
+            return false;
+        }
+
+        BlockIndex blockIndex = this.blockIndex;
+        if (openBlock == null && blockIndex.blocks.length > 0 && epochSecond <= blockIndex.lastTimestamp()) {
+            return false;
+        }
+
+        if (openBlock == null) {
+            openBlock = new BlockWriter(epochSecond, rate);
+        } else {
+            openBlock.append(epochSecond, rate);
+        }
+
+        if (openBlock.count == POINTS_PER_BLOCK) {
+            Block[] blocks = Arrays.copyOf(blockIndex.blocks, blockIndex.blocks.length + 1);
+            blocks[blocks.length - 1] = openBlock.seal();
+            this.blockIndex = new BlockIndex(blocks);
+            openBlock = null;
+        }
+
+        size += 1;
+        return true;
+    }
+
+    /**
+     *
+     * @param epochSecond
+     * @return the rate as of the given time - that of the latest point at or before it - or {@link RateTable#NO_RATE}
+     *         if the series starts after it
+     */
+    public double getRateAt(long epochSecond) {
+        synchronized (this) {
+            if (openBlock != null && epochSecond >= openBlock.firstTimestamp) {
+                return rateAt(openBlock.toBlock(), epochSecond);
+            }
+        }
+
+        // nothing in the open block is old enough, so the answer is in a block that was sealed before it was opened
+        BlockIndex blockIndex = this.blockIndex;
+        int blockNumber = blockIndex.lastBlockStartingAtOrBefore(epochSecond);
+        return blockNumber < 0 ? RateTable.NO_RATE : rateAt(blockIndex.blocks[blockNumber], epochSecond);
+    }
+
+    /**
+     *
+     * @param fromEpochSecond inclusive
+     * @param toEpochSecond exclusive
+     * @param consumer called with each point in the range, oldest first
+     */
+    public void forEach(long fromEpochSecond, long toEpochSecond, Consumer<RatePoint> consumer) {
+        BlockIndex blockIndex;
+        Block openBlockCopy;
+        synchronized (this) {
+            blockIndex = this.blockIndex;
+
+            // a trimmed copy, so the scan can run without the lock while appends carry on
+            openBlockCopy = openBlock == null ? null : openBlock.seal();
+        }
+
+        Cursor cursor = new Cursor();
+        int firstBlockNumber = Math.max(0, blockIndex.lastBlockStartingAtOrBefore(fromEpochSecond));
+        for (int i = firstBlockNumber; i < blockIndex.blocks.length; i++) {
+            Block block = blockIndex.blocks[i];
+            if (block.firstTimestamp >= toEpochSecond) {
+                return;
+            }
+
+            scan(cursor.reset(block), fromEpochSecond, toEpochSecond, consumer);
+        }
+
+        if (openBlockCopy != null) {
+            scan(cursor.reset(openBlockCopy), fromEpochSecond, toEpochSecond, consumer);
+        }
+    }
+
+    /**
+     *
+     * @return number of points in the series
+     */
+    public synchronized int size() { return size; }
+
+    /**
+     *
+     * @return rough heap footprint of the compressed points
+     */
+    public synchronized long getEstimatedBytes() {
+        long estimatedBytes = openBlock == null ? 0 : openBlock.bitStream.getEstimatedBytes();
+        for (Block block : blockIndex.blocks) {
+            estimatedBytes += block.bitStream.getEstimatedBytes();
+        }
+
+        return estimatedBytes;
+    }
+
+
+    // PRIVATE
+    //
+
+    /**
+     *
+     * @param block
+     * @param epochSecond no earlier than the block's first timestamp
+     * @return
+     */
+    private static double rateAt(Block block, long epochSecond) {
+        Cursor cursor = new Cursor().reset(block);
+        double rate = RateTable.NO_RATE;
+        while (cursor.next() && cursor.timestamp <= epochSecond) {
+            rate = cursor.rate;
+        }
+
+        return rate;
+    }
+
+    /**
+     *
+     * @param cursor
+     * @param fromEpochSecond
+     * @param toEpochSecond
+     * @param consumer
+     */
+    private static void scan(Cursor cursor, long fromEpochSecond, long toEpochSecond, Consumer<RatePoint> consumer) {
+        while (cursor.next() && cursor.timestamp < toEpochSecond) {
+            if (cursor.timestamp >= fromEpochSecond) {
+                consumer.accept(new RatePoint(cursor.timestamp, cursor.rate));
+            }
+        }
+    }
+
+    /**
+     *
+     * @param value
+     * @param bits
+     * @return value with the sign bit of its low order bits carried into the rest
+     */
+    private static long signExtend(long value, int bits) { return (value << (Long.SIZE - bits)) >> (Long.SIZE - bits); }
+
+
+    /**
+     * immutable, fully written block
+     */
+    private static final class Block {
+
+        private final long firstTimestamp;
+        private final long lastTimestamp;
+        private final int count;
+        private final BitStream bitStream;
+
+        private Block(long firstTimestamp, long lastTimestamp, int count, BitStream bitStream) {
+            this.firstTimestamp = firstTimestamp;
+            this.lastTimestamp = lastTimestamp;
+            this.count = count;
+            this.bitStream = bitStream;
+        }
+
+    }
+
+    /**
+     * sealed blocks plus their first timestamps in a flat array for the binary search
+     */
+    private static final class BlockIndex {
+
+        private final Block[] blocks;
+        private final long[] firstTimestamps;
+
+        private BlockIndex(Block[] blocks) {
+            this.blocks = blocks;
+            this.firstTimestamps = new long[blocks.length];
+            for (int i = 0; i < blocks.length; i++) {
+                firstTimestamps[i] = blocks[i].firstTimestamp;
+            }
+        }
+
+        private long lastTimestamp() { return blocks[blocks.length - 1].lastTimestamp; }
+
+        /**
+         *
+         * @param epochSecond
+         * @return index of the block the timestamp falls into, or -1 if it's before the first block
+         */
+        private int lastBlockStartingAtOrBefore(long epochSecond) {
+            int index = Arrays.binarySearch(firstTimestamps, epochSecond);
+            return index >= 0 ? index : -index - 2;
+        }
+
+    }
+
+    /**
+     * encoder for the block being filled
+     */
+    private static final class BlockWriter {
+
+        private final BitStream bitStream = new BitStream(16);
+        private final long firstTimestamp;
+
+        private long lastTimestamp;
+        private long lastDelta;
+        private long lastRateBits;
+        private int lastLeadingZeros = -1;
+        private int lastTrailingZeros;
+        private int count;
+
+        private BlockWriter(long epochSecond, double rate) {
+            firstTimestamp = epochSecond;
+            lastTimestamp = epochSecond;
+            lastRateBits = Double.doubleToRawLongBits(rate);
+            bitStream.write(epochSecond, Long.SIZE);
+            bitStream.write(lastRateBits, Long.SIZE);
+            count = 1;
+        }
+
+        private void append(long epochSecond, double rate) {
+            long delta = epochSecond - lastTimestamp;
+            writeDeltaOfDelta(delta - lastDelta);
+            lastDelta = delta;
+            lastTimestamp = epochSecond;
+
+            writeRate(Double.doubleToRawLongBits(rate));
+            count += 1;
+        }
+
+        /**
+         * '0' for no change, then progressively wider buckets each with one more leading '1'
+         *
+         * @param deltaOfDelta
+         */
+        private void writeDeltaOfDelta(long deltaOfDelta) {
+            if (deltaOfDelta == 0) {
+                bitStream.write(0, 1);
+                return;
+            }
+
+            for (int bucket = 0; bucket < DELTA_OF_DELTA_BITS.length; bucket++) {
+                int bits = DELTA_OF_DELTA_BITS[bucket];
+                if (deltaOfDelta >= -(1L << (bits - 1)) && deltaOfDelta < (1L << (bits - 1))) {
+                    // bucket + 1 ones followed by a zero
+                    bitStream.write(((1L << (bucket + 1)) - 1) << 1, bucket + 2);
+                    bitStream.write(deltaOfDelta, bits);
+                    return;
+                }
+            }
+
+            bitStream.write((1L << (DELTA_OF_DELTA_BITS.length + 1)) - 1, DELTA_OF_DELTA_BITS.length + 1);
+            bitStream.write(deltaOfDelta, Long.SIZE);
+        }
+
+        /**
+         * '0' for no change, '10' for changed bits that fit the previous window of meaningful bits, '11' for a new
+         * window followed by its size and position
+         *
+         * @param rateBits
+         */
+        private void writeRate(long rateBits) {
+            long xor = rateBits ^ lastRateBits;
+            lastRateBits = rateBits;
+            if (xor == 0) {
+                bitStream.write(0, 1);
+                return;
+            }
+
+            int leadingZeros = Math.min(Long.numberOfLeadingZeros(xor), MAX_LEADING_ZEROS);
+            int trailingZeros = Long.numberOfTrailingZeros(xor);
+            if (lastLeadingZeros >= 0 && leadingZeros >= lastLeadingZeros && trailingZeros >= lastTrailingZeros) {
+                bitStream.write(0b10, 2);
+                bitStream.write(xor >>> lastTrailingZeros, Long.SIZE - lastLeadingZeros - lastTrailingZeros);
+            } else {
+                int meaningfulBits = Long.SIZE - leadingZeros - trailingZeros;
+                bitStream.write(0b11, 2);
+                bitStream.write(leadingZeros, LEADING_ZEROS_BITS);
+                bitStream.write(meaningfulBits - 1, MEANINGFUL_BITS_BITS);
+                bitStream.write(xor >>> trailingZeros, meaningfulBits);
+                lastLeadingZeros = leadingZeros;
+                lastTrailingZeros = trailingZeros;
+            }
+        }
+
+        /**
+         *
+         * @return the block as written so far, sharing the writer's bits - only to be read while holding the lock
+         */
+        private Block toBlock() { return new Block(firstTimestamp, lastTimestamp, count, bitStream); }
+
+        /**
+         *
+         * @return immutable copy of the block as written so far, trimmed to size
+         */
+        private Block seal() { return new Block(firstTimestamp, lastTimestamp, count, bitStream.trimmed()); }
+
+    }
+
+    /**
+     * decoder - steps through a block one point at a time
+     */
+    private static final class Cursor {
+
+        private BitStream.Reader reader;
+        private int remaining;
+        private boolean first;
+
+        private long timestamp;
+        private long delta;
+        private long rateBits;
+        private double rate;
+        private int leadingZeros;
+        private int trailingZeros;
+
+        private Cursor reset(Block block) {
+            reader = block.bitStream.reader();
+            remaining = block.count;
+            first = true;
+            delta = 0;
+            return this;
+        }
+
+        /**
+         *
+         * @return false once every point in the block has been read
+         */
+        private boolean next() {
+            if (remaining == 0) {
+                return false;
+            }
+
+            remaining -= 1;
+            if (first) {
+                first = false;
+                timestamp = reader.read(Long.SIZE);
+                rateBits = reader.read(Long.SIZE);
+            } else {
+                delta += readDeltaOfDelta();
+                timestamp += delta;
+                rateBits ^= readXor();
+            }
+
+            rate = Double.longBitsToDouble(rateBits);
+            return true;
+        }
+
+        private long readDeltaOfDelta() {
+            if (reader.readBit() == false) {
+                return 0;
+            }
+
+            for (int bits : DELTA_OF_DELTA_BITS) {
+                if (reader.readBit() == false) {
+                    return signExtend(reader.read(bits), bits);
+                }
+            }
+
+            return reader.read(Long.SIZE);
+        }
+
+        private long readXor() {
+            if (reader.readBit() == false) {
+                return 0;
+            }
+
+            if (reader.readBit()) {
+                leadingZeros = (int)reader.read(LEADING_ZEROS_BITS);
+                int meaningfulBits = (int)reader.read(MEANINGFUL_BITS_BITS) + 1;
+                trailingZeros = Long.SIZE - leadingZeros - meaningfulBits;
+            }
+
+            return reader.read(Long.SIZE - leadingZeros - trailingZeros) << trailingZeros;
+        }
+
+    }
+
+}
@@ -0,0 +1,187 @@
+package io.holitek.finance_company_x;
+
+
+import org.apache.camel.Exchange;
+import org.apache.camel.ExtendedExchange;
+import org.apache.camel.support.SynchronizationAdapter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.beans.Introspector;
+
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+
+/**
+ * a provider directory polled alongside the main data directory. each source follows the same buildID file convention
+ * and gets its own update pipeline, {@link ExchangeRateBean} and {@link TimeSeriesStore}, registered under names
+ * derived from the source's name, eg: source "emea" is loaded into the "exchangeRateBean.emea" bean.
+ *
+ * sources are polled on a worker pool shared between them rather than on the timer thread, and a source is never
+ * polled twice at once - a poll that comes due while the last one is still running is dropped - so a slow or huge
+ * source can hold up its own updates but nobody else's.
+ */
+public final class RateSource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RateSource.class);
+
+    public static final String NAMESPACE_KEY = Introspector.decapitalize(RateSource.class.getSimpleName());
+
+    // what the main data directory is called in the consolidated book, so no source can have it
+    public static final String MAIN_SOURCE_NAME = "main";
+
+    // names end up in bean names, route ids and endpoint uris, so they're kept plain
+    private static final Pattern NAME_PATTERN = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final String name;
+    private final String dataDirectory;
+    private final AtomicBoolean pollInFlight = new AtomicBoolean();
+
+
+    /**
+     *
+     * @param name
+     * @param dataDirectory
+     */
+    public RateSource(String name, String dataDirectory) {
+        if (NAME_PATTERN.matcher(name).matches() == false) {
+            throw new IllegalArgumentException("source names may only use letters, digits, '-' and '_': " + name);
+        }
+
+        this.name = name;
+        this.dataDirectory = dataDirectory;
+    }
+
+
+    // PUBLIC
+    //
+
+    /**
+     * entries that can't be made sense of, or that reuse a name - including {@link #MAIN_SOURCE_NAME} - are logged and
+     * left out rather than stopping the app from starting with the rest.
+     *
+     * @param sources comma separated name=directory pairs, eg: emea=/data/emea,apac=/data/apac
+     * @return
+     */
+    public static List<RateSource> parse(String sources) {
+        List<RateSource> rateSources = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (String entry : sources.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+
+            int separator = entry.indexOf('=');
+            String name = separator < 0 ? "" : entry.substring(0, separator).strip();
+            String dataDirectory = separator < 0 ? "" : entry.substring(separator + 1).strip();
+            if (NAME_PATTERN.matcher(name).matches() == false || dataDirectory.isEmpty()) {
+                LOG.error("ignoring source '{}' - expected name=directory", entry.strip());
+            } else if (name.equals(MAIN_SOURCE_NAME)) {
+                LOG.error("ignoring source '{}' - {} is the data_directory's name", entry.strip(), MAIN_SOURCE_NAME);
+            } else if (names.add(name) == false) {
+                LOG.error("ignoring source '{}' - there's already a source named {}", entry.strip(), name);
+            } else {
+                rateSources.add(new RateSource(name, dataDirectory));
+            }
+        }
+
+        return rateSources;
+    }
+
+    public String getName() { return name; }
+
+    public String getDataDirectory() { return dataDirectory; }
+
+    /**
+     *
+     * @return registry name of the bean this source is loaded into
+     */
+    public String getExchangeRateBeanName() { return ExchangeRateBean.NAMESPACE_KEY + "." + name; }
+
+    /**
+     *
+     * @return registry name of this source's rate history
+     */
+    public String getTimeSeriesStoreName() { return TimeSeriesStore.NAMESPACE_KEY + "." + name; }
+
+    /**
+     *
+     * @return endpoint that queues a poll of this source on the worker pool, unless one is already running
+     */
+    public String getDispatchUri() { return "direct:" + getDispatchRouteId(); }
+
+    public String getDispatchRouteId() { return NAMESPACE_KEY + "." + name; }
+
+    /**
+     *
+     * @return endpoint that runs the update pipeline for this source on the calling thread
+     */
+    public String getPipelineUri() { return "direct:" + getPipelineRouteId(); }
+
+    public String getPipelineRouteId() { return CurrencyDataPollingConsumerRoute.NAMESPACE_KEY + "." + name; }
+
+    /**
+     *
+     * @return route that loads new buildIDs the pipeline has seen, on the loader pool
+     */
+    public String getLoaderRouteId() {
+        return getPipelineRouteId() + CurrencyDataPollingConsumerRoute.LOADER_ROUTE_ID_SUFFIX;
+    }
+
+    /**
+     *
+     * @param stateFilePath the main data directory's state file
+     * @return where this source keeps its last good snapshot - next to the main one, prefixed with the source's name
+     */
+    public Path getStateFilePath(Path stateFilePath) {
+        return stateFilePath.resolveSibling(name + "-" + stateFilePath.getFileName());
+    }
+
+    /**
+     *
+     * @return whether or not a poll of this source is queued or running
+     */
+    public boolean isPollInFlight() { return pollInFlight.get(); }
+
+
+    // PACKAGE PROTECTED
+    //
+
+    /**
+     *
+     * @return true if the caller now owns the next poll of this source, false if one is already queued or running
+     */
+    boolean tryStartPoll() {
+        if (pollInFlight.compareAndSet(false, true)) {
+            return true;
+        }
+
+        LOG.debug("skipping poll of source {} - the last one hasn't finished", name);
+        return false;
+    }
+
+    /**
+     * hands the poll started by {@link #tryStartPoll()} over to the exchange that will run it. the poll is over once
+     * that exchange is done, however it ends.
+     *
+     * @param exchange
+     */
+    void finishPollOnCompletion(Exchange exchange) {
+        exchange.adapt(ExtendedExchange.class).addOnCompletion(new SynchronizationAdapter() {
+            @Override
+            public void onDone(Exchange exchange) { pollInFlight.set(false); }
+        });
+    }
+
+    @Override
+    public String toString() { return name + "=" + dataDirectory; }
+
+}
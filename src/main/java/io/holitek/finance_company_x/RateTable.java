@@ -0,0 +1,373 @@
+package io.holitek.finance_company_x;
+
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * primitive, open-addressed lookup table for exchange rates. keys shaped like currency pairs (eg: "CAD_USD") are packed
+ * into an int id and rates are stored in a double[], so lookups don't hash strings, box values or allocate. a table is
+ * built once per buildID (see {@link ExchangeRateSnapshot}), from scratch or by patching a copy of the last one, and is
+ * never modified afterwards.
+ *
+ * keys that don't fit the packed format - anything that isn't two runs of one to three upper case letters joined by an
+ * underscore - are kept in a small overflow map so the table still answers for every key in the data file.
+ */
+public final class RateTable {
+
+    /**
+     * sentinel returned by {@link #getRate(String)} when there is no rate for the requested key. check for it with
+     * {@link Double#isNaN(double)} or ask {@link #hasRate(String)} first.
+     */
+    public static final double NO_RATE = Double.NaN;
+
+    /**
+     * returned by {@link #pairIdOf(String)} for keys that can't be packed
+     */
+    public static final int NO_PAIR_ID = -1;
+
+    public static final RateTable EMPTY = RateTable.of(Map.of());
+
+    private static final int MAX_CURRENCY_CODE_LENGTH = 3;
+    private static final int BITS_PER_LETTER = 5;
+    private static final int BITS_PER_CURRENCY_CODE = MAX_CURRENCY_CODE_LENGTH * BITS_PER_LETTER;
+    private static final char PAIR_SEPARATOR = '_';
+
+    // zero can never be a valid pair id, so it marks an empty slot
+    private static final int EMPTY_SLOT = 0;
+
+    private final int[] pairIds;
+    private final double[] rates;
+    private final int mask;
+    private final int size;
+    private final Map<String, Double> overflowMap;
+
+
+    private RateTable(int[] pairIds, double[] rates, int size, Map<String, Double> overflowMap) {
+        this.pairIds = pairIds;
+        this.rates = rates;
+        this.mask = pairIds.length - 1;
+        this.size = size;
+        this.overflowMap = overflowMap;
+    }
+
+
+    // PUBLIC
+    //
+
+    /**
+     * builds a table from the provided rates. null rates are skipped.
+     *
+     * @param exchangeRateMap
+     * @return
+     */
+    public static RateTable of(Map<String, Double> exchangeRateMap) {
+        int capacity = tableCapacityFor(exchangeRateMap.size());
+        int[] pairIds = new int[capacity];
+        double[] rates = new double[capacity];
+        Map<String, Double> overflowMap = new HashMap<>();
+        int size = 0;
+
+        for (Map.Entry<String, Double> entry : exchangeRateMap.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+
+            int pairId = pairIdOf(entry.getKey());
+            if (pairId == NO_PAIR_ID) {
+                overflowMap.put(entry.getKey(), entry.getValue());
+            } else {
+                int slot = slotFor(pairIds, pairId, capacity - 1);
+                if (pairIds[slot] == EMPTY_SLOT) {
+                    size += 1;
+                }
+
+                pairIds[slot] = pairId;
+                rates[slot] = entry.getValue();
+            }
+        }
+
+        return new RateTable(pairIds, rates, size + overflowMap.size(), overflowMap);
+    }
+
+    /**
+     * builds the table for a delta from this one. the arrays are copied and patched rather than rebuilt from every key,
+     * so the cost is a couple of array copies plus a probe per changed pair. this table is left as it was.
+     *
+     * @param upserts pairs to add or move. null rates are dropped, as {@link #of(Map)} skips them
+     * @param removals pairs to drop
+     * @return
+     */
+    public RateTable withChanges(Map<String, Double> upserts, Set<String> removals) {
+        int capacity = tableCapacityFor(size + upserts.size());
+        int[] newPairIds;
+        double[] newRates;
+        if (capacity > pairIds.length) {
+            // grows by re-inserting the packed ids already worked out - still no key parsing
+            newPairIds = new int[capacity];
+            newRates = new double[capacity];
+            for (int i = 0; i < pairIds.length; i++) {
+                if (pairIds[i] != EMPTY_SLOT) {
+                    int slot = slotFor(newPairIds, pairIds[i], capacity - 1);
+                    newPairIds[slot] = pairIds[i];
+                    newRates[slot] = rates[i];
+                }
+            }
+        } else {
+            capacity = pairIds.length;
+            newPairIds = pairIds.clone();
+            newRates = rates.clone();
+        }
+
+        Map<String, Double> newOverflowMap = new HashMap<>(overflowMap);
+        int tableSize = size - overflowMap.size();
+        for (Map.Entry<String, Double> entry : upserts.entrySet()) {
+            int pairId = pairIdOf(entry.getKey());
+            if (entry.getValue() == null) {
+                tableSize -= remove(newPairIds, newRates, newOverflowMap, entry.getKey(), pairId);
+            } else if (pairId == NO_PAIR_ID) {
+                newOverflowMap.put(entry.getKey(), entry.getValue());
+            } else {
+                int slot = slotFor(newPairIds, pairId, capacity - 1);
+                if (newPairIds[slot] == EMPTY_SLOT) {
+                    tableSize += 1;
+                }
+
+                newPairIds[slot] = pairId;
+                newRates[slot] = entry.getValue();
+            }
+        }
+
+        for (String key : removals) {
+            tableSize -= remove(newPairIds, newRates, newOverflowMap, key, pairIdOf(key));
+        }
+
+        return new RateTable(newPairIds, newRates, tableSize + newOverflowMap.size(), newOverflowMap);
+    }
+
+    /**
+     * packs a key like "CAD_USD" into an int. each currency code is one to three upper case ASCII letters, each letter
+     * taking five bits, so a pair fits into thirty bits and the result is always positive.
+     *
+     * @param key
+     * @return packed id, or {@link #NO_PAIR_ID} if the key isn't shaped like a currency pair
+     */
+    public static int pairIdOf(String key) {
+        if (key == null) {
+            return NO_PAIR_ID;
+        }
+
+        int separatorIndex = key.indexOf(PAIR_SEPARATOR);
+        if (separatorIndex < 0) {
+            return NO_PAIR_ID;
+        }
+
+        int base = currencyCodeOf(key, 0, separatorIndex);
+        int quote = currencyCodeOf(key, separatorIndex + 1, key.length());
+        if (base == NO_PAIR_ID || quote == NO_PAIR_ID) {
+            return NO_PAIR_ID;
+        }
+
+        return (base << BITS_PER_CURRENCY_CODE) | quote;
+    }
+
+    /**
+     * packs a single currency code like "CAD" into an int using the same scheme {@link #pairIdOf(String)} uses for
+     * each half of a pair.
+     *
+     * @param currency
+     * @return packed code, or {@link #NO_PAIR_ID} if the code can't be packed
+     */
+    public static int currencyCodeOf(String currency) {
+        return currency == null ? NO_PAIR_ID : currencyCodeOf(currency, 0, currency.length());
+    }
+
+    /**
+     *
+     * @param key
+     * @return the rate for the key, or {@link #NO_RATE} if there isn't one
+     */
+    public double getRate(String key) {
+        int pairId = pairIdOf(key);
+        if (pairId == NO_PAIR_ID) {
+            Double rate = overflowMap.get(key);
+            return rate == null ? NO_RATE : rate;
+        }
+
+        return getRate(pairId);
+    }
+
+    /**
+     *
+     * @param pairId as produced by {@link #pairIdOf(String)}
+     * @return the rate for the pair, or {@link #NO_RATE} if there isn't one
+     */
+    public double getRate(int pairId) {
+        if (pairId <= EMPTY_SLOT) {
+            return NO_RATE;
+        }
+
+        int slot = slotFor(pairIds, pairId, mask);
+        return pairIds[slot] == pairId ? rates[slot] : NO_RATE;
+    }
+
+    /**
+     *
+     * @param key
+     * @return
+     */
+    public boolean hasRate(String key) {
+        int pairId = pairIdOf(key);
+        return pairId == NO_PAIR_ID ? overflowMap.containsKey(key) : hasRate(pairId);
+    }
+
+    /**
+     *
+     * @param pairId
+     * @return
+     */
+    public boolean hasRate(int pairId) {
+        return pairId > EMPTY_SLOT && pairIds[slotFor(pairIds, pairId, mask)] == pairId;
+    }
+
+    /**
+     *
+     * @return number of rates in the table, overflow keys included
+     */
+    public int size() { return size; }
+
+    /**
+     *
+     * @return rough heap footprint of the table, see {@link Helpers#estimatedArrayBytes(long, int)}
+     */
+    public long getEstimatedBytes() {
+        long overflowBytes = 0;
+        for (String key : overflowMap.keySet()) {
+            // hash map node + boxed rate + key
+            overflowBytes += 32 + 16 + Helpers.estimatedStringBytes(key.length());
+        }
+
+        return Helpers.estimatedArrayBytes(pairIds.length, Integer.BYTES) +
+               Helpers.estimatedArrayBytes(rates.length, Double.BYTES) +
+               overflowBytes;
+    }
+
+
+    // PRIVATE
+    //
+
+    /**
+     *
+     * @param key
+     * @param start inclusive
+     * @param end exclusive
+     * @return
+     */
+    private static int currencyCodeOf(String key, int start, int end) {
+        int length = end - start;
+        if (length < 1 || length > MAX_CURRENCY_CODE_LENGTH) {
+            return NO_PAIR_ID;
+        }
+
+        int code = 0;
+        for (int i = start; i < end; i++) {
+            char c = key.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                return NO_PAIR_ID;
+            }
+
+            // letters map to 1..26 so "A" and "AA" don't collide
+            code = (code << BITS_PER_LETTER) | (c - 'A' + 1);
+        }
+
+        // left align shorter codes so every code takes the same number of bits
+        return code << (BITS_PER_LETTER * (MAX_CURRENCY_CODE_LENGTH - length));
+    }
+
+    /**
+     * takes the key out of the overflow map, or out of the table by shifting back any entries further along its probe
+     * sequence that could sit in the freed slot - linear probing has no tombstones to leave behind
+     *
+     * @param pairIds
+     * @param rates
+     * @param overflowMap
+     * @param key
+     * @param pairId
+     * @return number of entries removed from the table, not counting the overflow map
+     */
+    private static int remove(int[] pairIds, double[] rates, Map<String, Double> overflowMap, String key, int pairId) {
+        if (pairId == NO_PAIR_ID) {
+            overflowMap.remove(key);
+            return 0;
+        }
+
+        int mask = pairIds.length - 1;
+        int hole = slotFor(pairIds, pairId, mask);
+        if (pairIds[hole] != pairId) {
+            return 0;
+        }
+
+        int slot = (hole + 1) & mask;
+        while (pairIds[slot] != EMPTY_SLOT) {
+            // the entry can move back if the hole lies between its home slot and where it is now
+            int home = homeSlotFor(pairIds[slot], mask);
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                pairIds[hole] = pairIds[slot];
+                rates[hole] = rates[slot];
+                hole = slot;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        pairIds[hole] = EMPTY_SLOT;
+        rates[hole] = 0;
+        return 1;
+    }
+
+    /**
+     * linear probe for either the slot holding the pair id or the empty slot it would go into
+     *
+     * @param pairIds
+     * @param pairId
+     * @param mask
+     * @return
+     */
+    private static int slotFor(int[] pairIds, int pairId, int mask) {
+        int slot = homeSlotFor(pairId, mask);
+        while (pairIds[slot] != EMPTY_SLOT && pairIds[slot] != pairId) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     *
+     * @param pairId
+     * @param mask
+     * @return slot the pair id's probe sequence starts at
+     */
+    private static int homeSlotFor(int pairId, int mask) {
+        int hash = pairId * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * power of two that keeps the load factor at or below one half
+     *
+     * @param entries
+     * @return
+     */
+    private static int tableCapacityFor(int entries) {
+        int capacity = 2;
+        while (capacity < entries * 2) {
+            capacity <<= 1;
+        }
+
+        return capacity;
+    }
+
+}
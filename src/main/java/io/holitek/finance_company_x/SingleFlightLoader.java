@@ -0,0 +1,192 @@
+package io.holitek.finance_company_x;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.beans.Introspector;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * runs the loads an update pipeline asks for on an executor of its own, one at a time. the pipeline only works out
+ * which buildID it has seen and hands the load over, so the timer or watcher thread is never held up by a large data
+ * file and polls keep their cadence.
+ *
+ * at most one load is waiting at a time. a request for the buildID that's already waiting or loading is coalesced into
+ * it, and a request for any other buildID replaces the one waiting - only the newest buildID seen is worth loading, so
+ * nothing is spent on a data file that's already out of date by the time the loader gets to it.
+ */
+public final class SingleFlightLoader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SingleFlightLoader.class);
+
+    public static final String NAMESPACE_KEY = Introspector.decapitalize(SingleFlightLoader.class.getSimpleName());
+
+    private final String name;
+    private final Executor executor;
+
+    // guarded by this
+    private LoadRequest pendingRequest;
+    private String loadingBuildID;
+    private boolean draining;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong supersededCount = new AtomicLong();
+    private final AtomicLong loadCount = new AtomicLong();
+
+
+    /**
+     *
+     * @param name what to call the loader in the logs, eg: the name of the pipeline it loads for
+     * @param executor runs the loads. may be shared with other loaders
+     */
+    public SingleFlightLoader(String name, Executor executor) {
+        this.name = name;
+        this.executor = executor;
+    }
+
+
+    // PUBLIC
+    //
+
+    /**
+     * queues a load of the buildID, unless it's already waiting or loading
+     *
+     * @param buildID
+     * @param load reads the buildID's data and hands it to the bean. runs on the executor
+     * @return whether or not the load was queued
+     */
+    public boolean submit(String buildID, Runnable load) {
+        requestCount.incrementAndGet();
+        synchronized (this) {
+            if (pendingRequest != null && pendingRequest.buildID.equals(buildID)) {
+                coalescedCount.incrementAndGet();
+                return false;
+            }
+
+            // whatever is waiting is older than the buildID being loaded, which is the newest seen again
+            if (pendingRequest != null) {
+                supersededCount.incrementAndGet();
+                ExchangeRateMetrics.INSTANCE.recordPollSuperseded();
+                LOG.info("{} dropping load of superseded buildID {} for {}", name, pendingRequest.buildID, buildID);
+                pendingRequest = null;
+            }
+
+            if (buildID.equals(loadingBuildID)) {
+                coalescedCount.incrementAndGet();
+                return false;
+            }
+
+            pendingRequest = new LoadRequest(buildID, load);
+            if (draining) {
+                return true;
+            }
+
+            draining = true;
+        }
+
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            LOG.error("{} can't load buildID {} - the loader is shutting down", name, buildID);
+            synchronized (this) {
+                pendingRequest = null;
+                draining = false;
+            }
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     *
+     * @return buildID of the load that's running, or null if there isn't one
+     */
+    public synchronized String getLoadingBuildID() { return loadingBuildID; }
+
+    /**
+     *
+     * @return buildID of the load waiting for the running one to finish, or null if there isn't one
+     */
+    public synchronized String getPendingBuildID() { return pendingRequest == null ? null : pendingRequest.buildID; }
+
+    public long getRequestCount() { return requestCount.get(); }
+
+    /**
+     *
+     * @return number of requests for a buildID that was already waiting or loading
+     */
+    public long getCoalescedCount() { return coalescedCount.get(); }
+
+    /**
+     *
+     * @return number of waiting loads dropped because a newer buildID was seen before they started
+     */
+    public long getSupersededCount() { return supersededCount.get(); }
+
+    /**
+     *
+     * @return number of loads run, whether or not they succeeded
+     */
+    public long getLoadCount() { return loadCount.get(); }
+
+
+    // PRIVATE
+    //
+
+    /**
+     * runs on the executor until nothing is waiting
+     */
+    private void drain() {
+        while (true) {
+            LoadRequest loadRequest;
+            synchronized (this) {
+                loadRequest = pendingRequest;
+                pendingRequest = null;
+                loadingBuildID = loadRequest == null ? null : loadRequest.buildID;
+                if (loadRequest == null) {
+                    draining = false;
+                    return;
+                }
+            }
+
+            try {
+                loadRequest.load.run();
+            } catch (RuntimeException e) {
+                // don't let one bad load stop the ones after it
+                LOG.error("{} something went wrong loading buildID {}", name, loadRequest.buildID, e);
+            } finally {
+                loadCount.incrementAndGet();
+
+                // a request for the same buildID from here on needs a load of its own, eg: if the bean was reset
+                synchronized (this) {
+                    loadingBuildID = null;
+                }
+            }
+        }
+    }
+
+
+    /**
+     *
+     */
+    private static final class LoadRequest {
+
+        private final String buildID;
+        private final Runnable load;
+
+        private LoadRequest(String buildID, Runnable load) {
+            this.buildID = buildID;
+            this.load = load;
+        }
+
+    }
+
+}
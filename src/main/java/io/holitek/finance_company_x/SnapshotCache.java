@@ -0,0 +1,175 @@
+package io.holitek.finance_company_x;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.beans.Introspector;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * the last few snapshots loaded from whole data files, keyed by a hash of the data file's contents. providers sometimes
+ * bump the buildID without changing the data, and sometimes roll the buildID file back to an earlier data file after a
+ * bad publish. either way {@link DataFileProcessor} finds the contents in the cache and hands the snapshot they were
+ * loaded into over, so the bean only has to stamp it with the new buildID - nothing is parsed or built again.
+ *
+ * entries are evicted least recently used first. snapshots are named after the data file they were first loaded from,
+ * and one cache serves every pipeline, as the same contents make the same snapshot whichever directory they're in.
+ */
+public final class SnapshotCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SnapshotCache.class);
+
+    public static final String NAMESPACE_KEY = Introspector.decapitalize(SnapshotCache.class.getSimpleName());
+
+    public static final int DEFAULT_CAPACITY = 3;
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final int capacity;
+
+    // least recently used first. guarded by this
+    private final Map<String, ExchangeRateSnapshot> snapshots;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+
+    /**
+     *
+     * @param capacity number of snapshots to hold at most
+     */
+    public SnapshotCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("snapshot cache capacity must be at least 1: " + capacity);
+        }
+
+        this.capacity = capacity;
+        this.snapshots = new LinkedHashMap<>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ExchangeRateSnapshot> eldest) {
+                return size() > SnapshotCache.this.capacity;
+            }
+        };
+    }
+
+
+    // PUBLIC
+    //
+
+    /**
+     * hashes the file in one sequential pass, without parsing it. {@link DataFileProcessor} hashes a data file this way
+     * before reading it, so a cache hit skips the parse. files that are read regardless can be hashed as they're read
+     * instead, by way of {@link #newContentDigest()}.
+     *
+     * @param dataFilePath
+     * @return hex SHA-256 of the file's contents
+     * @throws IOException
+     */
+    public static String contentHashOf(Path dataFilePath) throws IOException {
+        MessageDigest contentDigest = newContentDigest();
+        ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+        try (FileChannel fileChannel = FileChannel.open(dataFilePath, StandardOpenOption.READ)) {
+            while (fileChannel.read(buffer) >= 0) {
+                buffer.flip();
+                contentDigest.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        return contentHashOf(contentDigest);
+    }
+
+    /**
+     *
+     * @return fresh digest for hashing a data file's contents as they're read
+     */
+    public static MessageDigest newContentDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(HASH_ALGORITHM + " is required of every jvm", e);
+        }
+    }
+
+    /**
+     * finishes the digest, which is reset and can't be used for the same contents again
+     *
+     * @param contentDigest from {@link #newContentDigest()}, updated with every byte of the file
+     * @return hex SHA-256 of the file's contents
+     */
+    public static String contentHashOf(MessageDigest contentDigest) {
+        byte[] digest = contentDigest.digest();
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xF];
+        }
+
+        return new String(hex);
+    }
+
+    /**
+     *
+     * @param contentHash
+     * @return the snapshot last loaded from a data file with the given contents, or empty if none is cached
+     */
+    public Optional<ExchangeRateSnapshot> get(String contentHash) {
+        ExchangeRateSnapshot snapshot;
+        synchronized (this) {
+            snapshot = snapshots.get(contentHash);
+        }
+
+        if (snapshot == null) {
+            missCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+
+        ExchangeRateMetrics.INSTANCE.recordSnapshotCacheLookup(snapshot != null);
+        return Optional.ofNullable(snapshot);
+    }
+
+    /**
+     *
+     * @param contentHash of the data file the snapshot was loaded from
+     * @param snapshot
+     */
+    public void put(String contentHash, ExchangeRateSnapshot snapshot) {
+        synchronized (this) {
+            snapshots.put(contentHash, snapshot);
+        }
+
+        LOG.debug("cached buildID {} as {}", snapshot.getBuildID(), contentHash);
+    }
+
+    /**
+     *
+     * @return number of snapshots held
+     */
+    public synchronized int size() { return snapshots.size(); }
+
+    public int getCapacity() { return capacity; }
+
+    public long getHitCount() { return hitCount.get(); }
+
+    public long getMissCount() { return missCount.get(); }
+
+}
@@ -0,0 +1,214 @@
+package io.holitek.finance_company_x;
+
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+
+/**
+ * what changed when the bean swapped one snapshot for the next - the new snapshot, the one it replaced, and the pairs
+ * that were added, removed or moved between them with their old and new rates. published to subscribers of
+ * {@link ExchangeRateBean#getSnapshotPublisher()} so they can react to the changed pairs alone rather than copying
+ * and comparing every rate on each poll.
+ *
+ * a snapshot built from a delta is diffed from the delta, in time proportional to the changes. any other is diffed
+ * pair by pair against the snapshot it replaced - off the loader thread, when a subscriber is ready for it, and once
+ * however many subscribers it goes to.
+ */
+public final class SnapshotChange {
+
+    private final ExchangeRateSnapshot previousSnapshot;
+    private final ExchangeRateSnapshot snapshot;
+    private final Map<String, RateChange> added;
+    private final Map<String, RateChange> removed;
+    private final Map<String, RateChange> changed;
+
+
+    /**
+     *
+     * @param previousSnapshot
+     * @param snapshot
+     * @param rateChanges pairs whose rate differs between the snapshots, absent rates being {@link RateTable#NO_RATE}
+     */
+    private SnapshotChange(ExchangeRateSnapshot previousSnapshot,
+                           ExchangeRateSnapshot snapshot,
+                           Map<String, RateChange> rateChanges) {
+
+        this.previousSnapshot = Objects.requireNonNull(previousSnapshot, "previousSnapshot");
+        this.snapshot = Objects.requireNonNull(snapshot, "snapshot");
+
+        Map<String, RateChange> addedMap = new LinkedHashMap<>();
+        Map<String, RateChange> removedMap = new LinkedHashMap<>();
+        Map<String, RateChange> changedMap = new LinkedHashMap<>();
+        rateChanges.forEach((key, rateChange) -> {
+            if (rateChange.isAdded()) {
+                addedMap.put(key, rateChange);
+            } else if (rateChange.isRemoved()) {
+                removedMap.put(key, rateChange);
+            } else {
+                changedMap.put(key, rateChange);
+            }
+        });
+
+        this.added = Collections.unmodifiableMap(addedMap);
+        this.removed = Collections.unmodifiableMap(removedMap);
+        this.changed = Collections.unmodifiableMap(changedMap);
+    }
+
+
+    // PUBLIC
+    //
+
+    /**
+     * compares every pair of both snapshots, unless they share the same rates - eg: a snapshot only stamped with a new
+     * buildID
+     *
+     * @param previousSnapshot
+     * @param snapshot
+     * @return
+     */
+    public static SnapshotChange between(ExchangeRateSnapshot previousSnapshot, ExchangeRateSnapshot snapshot) {
+        Map<String, Double> previousRateMap = previousSnapshot.getExchangeRateMap();
+        Map<String, Double> rateMap = snapshot.getExchangeRateMap();
+        Map<String, RateChange> rateChanges = new LinkedHashMap<>();
+        if (previousRateMap != rateMap) {
+            rateMap.forEach(
+                    (key, rate) -> putIfChanged(rateChanges, key, previousSnapshot.getRate(key), rateOf(rate))
+            );
+
+            previousRateMap.forEach((key, previousRate) -> {
+                if (rateMap.containsKey(key) == false) {
+                    putIfChanged(rateChanges, key, rateOf(previousRate), RateTable.NO_RATE);
+                }
+            });
+        }
+
+        return new SnapshotChange(previousSnapshot, snapshot, rateChanges);
+    }
+
+    /**
+     * only looks at the pairs the delta touches
+     *
+     * @param previousSnapshot the snapshot the delta was applied to
+     * @param snapshot the snapshot the delta led to
+     * @param rateDelta
+     * @return
+     */
+    public static SnapshotChange of(ExchangeRateSnapshot previousSnapshot,
+                                    ExchangeRateSnapshot snapshot,
+                                    RateDelta rateDelta) {
+
+        Map<String, RateChange> rateChanges = new LinkedHashMap<>();
+        rateDelta.getUpserts().forEach(
+                (key, rate) -> putIfChanged(rateChanges, key, previousSnapshot.getRate(key), rateOf(rate))
+        );
+
+        for (String key : rateDelta.getRemovals()) {
+            putIfChanged(rateChanges, key, previousSnapshot.getRate(key), RateTable.NO_RATE);
+        }
+
+        return new SnapshotChange(previousSnapshot, snapshot, rateChanges);
+    }
+
+    public ExchangeRateSnapshot getPreviousSnapshot() { return previousSnapshot; }
+
+    public ExchangeRateSnapshot getSnapshot() { return snapshot; }
+
+    /**
+     *
+     * @return read-only, pairs in the new snapshot that weren't in the previous one
+     */
+    public Map<String, RateChange> getAdded() { return added; }
+
+    /**
+     *
+     * @return read-only, pairs in the previous snapshot that aren't in the new one
+     */
+    public Map<String, RateChange> getRemoved() { return removed; }
+
+    /**
+     *
+     * @return read-only, pairs in both snapshots whose rate moved
+     */
+    public Map<String, RateChange> getChanged() { return changed; }
+
+    /**
+     *
+     * @return number of pairs added, removed or moved
+     */
+    public int size() { return added.size() + removed.size() + changed.size(); }
+
+    /**
+     *
+     * @return whether or not no rate changed, eg: the same data under a new buildID
+     */
+    public boolean isEmpty() { return size() == 0; }
+
+    @Override
+    public String toString() {
+        return "SnapshotChange{" +
+                "previousBuildID=" + previousSnapshot.getBuildID() +
+                ", buildID=" + snapshot.getBuildID() +
+                ", added=" + added.size() +
+                ", removed=" + removed.size() +
+                ", changed=" + changed.size() +
+                "}";
+    }
+
+
+    // PRIVATE
+    //
+
+    /**
+     * a pair whose rate is null in the data file has no rate, the same as in its {@link RateTable}
+     *
+     * @param rate
+     * @return
+     */
+    private static double rateOf(Double rate) { return rate == null ? RateTable.NO_RATE : rate; }
+
+    /**
+     *
+     * @param rateChanges
+     * @param key
+     * @param oldRate
+     * @param newRate
+     */
+    private static void putIfChanged(Map<String, RateChange> rateChanges, String key, double oldRate, double newRate) {
+        // NO_RATE is NaN, so absent on both sides compares equal here too
+        if (Double.compare(oldRate, newRate) != 0) {
+            rateChanges.put(key, new RateChange(oldRate, newRate));
+        }
+    }
+
+
+    /**
+     * a pair's rate before and after a change. a pair that wasn't there on one side has {@link RateTable#NO_RATE}
+     * on that side.
+     */
+    public static final class RateChange {
+
+        private final double oldRate;
+        private final double newRate;
+
+        private RateChange(double oldRate, double newRate) {
+            this.oldRate = oldRate;
+            this.newRate = newRate;
+        }
+
+        public double getOldRate() { return oldRate; }
+
+        public double getNewRate() { return newRate; }
+
+        public boolean isAdded() { return Double.isNaN(oldRate); }
+
+        public boolean isRemoved() { return Double.isNaN(newRate); }
+
+        @Override
+        public String toString() { return oldRate + " -> " + newRate; }
+
+    }
+
+}
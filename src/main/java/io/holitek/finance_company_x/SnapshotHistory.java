@@ -0,0 +1,126 @@
+package io.holitek.finance_company_x;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+
+/**
+ * the last few snapshots loaded into the {@link ExchangeRateBean}, newest first, so a caller that priced something
+ * against one buildID can still get at that buildID's rates after newer data has been loaded. once the history is full,
+ * recording a snapshot evicts the oldest one.
+ *
+ * like the bean itself, the history is an immutable array that is replaced wholesale on every write - lookups never
+ * take a lock and are a scan over a handful of entries.
+ */
+public final class SnapshotHistory {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SnapshotHistory.class);
+
+    private static final ExchangeRateSnapshot[] NO_SNAPSHOTS = new ExchangeRateSnapshot[0];
+
+    private final int capacity;
+
+    private volatile ExchangeRateSnapshot[] snapshots = NO_SNAPSHOTS;
+
+
+    /**
+     *
+     * @param capacity number of snapshots to hold on to - at least one
+     */
+    public SnapshotHistory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("snapshot history needs to hold at least one snapshot: " + capacity);
+        }
+
+        this.capacity = capacity;
+    }
+
+
+    // PUBLIC
+    //
+
+    /**
+     * adds the snapshot as the newest entry. an older entry with the same buildID is replaced rather than kept twice.
+     *
+     * @param snapshot
+     */
+    public synchronized void record(ExchangeRateSnapshot snapshot) {
+        ExchangeRateSnapshot[] current = snapshots;
+        ExchangeRateSnapshot[] updated = new ExchangeRateSnapshot[Math.min(capacity, current.length + 1)];
+        updated[0] = snapshot;
+
+        int size = 1;
+        for (ExchangeRateSnapshot retained : current) {
+            if (retained.getBuildID().equals(snapshot.getBuildID())) {
+                continue;
+            }
+
+            if (size < updated.length) {
+                updated[size++] = retained;
+            } else {
+                LOG.info("evicting buildID {} from snapshot history - frees roughly {} bytes",
+                         retained.getBuildID(),
+                         retained.getEstimatedBytes());
+            }
+        }
+
+        snapshots = size == updated.length ? updated : Arrays.copyOf(updated, size);
+    }
+
+    /**
+     *
+     * @param buildID
+     * @return the retained snapshot for the buildID, or empty if it was never loaded or has been evicted
+     */
+    public Optional<ExchangeRateSnapshot> get(String buildID) {
+        for (ExchangeRateSnapshot snapshot : snapshots) {
+            if (snapshot.getBuildID().equals(buildID)) {
+                return Optional.of(snapshot);
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     *
+     * @return retained snapshots, newest first
+     */
+    public List<ExchangeRateSnapshot> getSnapshots() { return List.of(snapshots); }
+
+    /**
+     *
+     * @return maximum number of snapshots held
+     */
+    public int getCapacity() { return capacity; }
+
+    /**
+     *
+     * @return number of snapshots held right now
+     */
+    public int size() { return snapshots.length; }
+
+    /**
+     *
+     * @return rough heap footprint of every retained snapshot, see {@link ExchangeRateSnapshot#getEstimatedBytes()}
+     */
+    public long getEstimatedBytes() {
+        long estimatedBytes = 0;
+        for (ExchangeRateSnapshot snapshot : snapshots) {
+            estimatedBytes += snapshot.getEstimatedBytes();
+        }
+
+        return estimatedBytes;
+    }
+
+    /**
+     *
+     */
+    public synchronized void clear() { snapshots = NO_SNAPSHOTS; }
+
+}
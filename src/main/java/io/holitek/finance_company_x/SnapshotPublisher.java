@@ -0,0 +1,343 @@
+package io.holitek.finance_company_x;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * pushes a {@link SnapshotChange} to every subscriber each time the bean swaps in a new snapshot, so components in the
+ * same jvm can follow the rates without copying the whole map on every poll to find out what moved.
+ *
+ * subscribers are called on the executor, one call at a time each, and never on the loader thread that swapped the
+ * snapshot in. publishing only hands the snapshots on - the change between them is worked out on the executor when a
+ * subscriber is ready for it, once however many subscribers it goes to, so a full diff never holds up the loader.
+ *
+ * each subscriber is sent no more changes than it has requested. one that falls behind - whether it hasn't requested
+ * more or is still busy with the last change - isn't queued every swap it missed. it's held the last snapshot it saw
+ * and the latest instead, so it gets one change between the two and no memory is spent on snapshots nobody will look
+ * at.
+ *
+ * a new subscriber is first sent a change from {@link ExchangeRateSnapshot#EMPTY} to the snapshot that's live when it
+ * subscribes, if there is one, so it never has to go back to the bean for its starting point.
+ */
+public final class SnapshotPublisher implements Flow.Publisher<SnapshotChange> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SnapshotPublisher.class);
+
+    private final Executor executor;
+    private final List<ConflatingSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    // the last snapshot published, so new subscribers know where to start. guarded by this
+    private ExchangeRateSnapshot snapshot = ExchangeRateSnapshot.EMPTY;
+
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong conflatedCount = new AtomicLong();
+
+
+    /**
+     *
+     * @param executor calls subscribers. may be shared with other publishers
+     */
+    public SnapshotPublisher(Executor executor) {
+        this.executor = Objects.requireNonNull(executor, "executor");
+    }
+
+
+    // PUBLIC
+    //
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super SnapshotChange> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        ConflatingSubscription subscription = new ConflatingSubscription(subscriber);
+        synchronized (this) {
+            if (snapshot != ExchangeRateSnapshot.EMPTY) {
+                subscription.pendingChange = new PendingChange(ExchangeRateSnapshot.EMPTY, snapshot, null);
+            }
+
+            subscriptions.add(subscription);
+        }
+
+        subscription.start();
+    }
+
+    /**
+     * called by the bean after each swap, in the order the swaps happened. nothing is worked out here - the change is
+     * left to the executor, and only if someone has subscribed
+     *
+     * @param previousSnapshot
+     * @param snapshot
+     * @param rateDelta the delta that led from one to the other, or null if the snapshot wasn't built from a delta
+     */
+    public synchronized void publish(ExchangeRateSnapshot previousSnapshot,
+                                     ExchangeRateSnapshot snapshot,
+                                     RateDelta rateDelta) {
+
+        this.snapshot = snapshot;
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+
+        PendingChange pendingChange = new PendingChange(previousSnapshot, snapshot, rateDelta);
+        publishedCount.incrementAndGet();
+        subscriptions.forEach(subscription -> subscription.offer(pendingChange));
+    }
+
+    /**
+     *
+     * @return number of subscribers that haven't cancelled or failed
+     */
+    public int getSubscriberCount() { return subscriptions.size(); }
+
+    /**
+     *
+     * @return number of swaps offered to subscribers
+     */
+    public long getPublishedCount() { return publishedCount.get(); }
+
+    /**
+     *
+     * @return number of times a swap was folded into one a subscriber hadn't taken yet
+     */
+    public long getConflatedCount() { return conflatedCount.get(); }
+
+
+    /**
+     * holds at most one change for its subscriber, and delivers it once the subscriber has asked for one
+     */
+    private final class ConflatingSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super SnapshotChange> subscriber;
+
+        // guarded by this
+        private PendingChange pendingChange;
+        private long demand;
+        private boolean delivering = true;
+        private boolean cancelled;
+        private IllegalArgumentException demandError;
+
+        private ConflatingSubscription(Flow.Subscriber<? super SnapshotChange> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+
+                if (n <= 0) {
+                    demandError = new IllegalArgumentException("subscribers must request at least 1 change: " + n);
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            }
+
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                pendingChange = null;
+            }
+
+            subscriptions.remove(this);
+        }
+
+        /**
+         * onSubscribe runs on the executor too, and nothing is delivered until it returns
+         */
+        private void start() {
+            execute(() -> {
+                try {
+                    subscriber.onSubscribe(this);
+                } catch (RuntimeException e) {
+                    fail(e);
+                    return;
+                }
+
+                synchronized (this) {
+                    delivering = false;
+                }
+
+                schedule();
+            });
+        }
+
+        /**
+         *
+         * @param nextChange
+         */
+        private void offer(PendingChange nextChange) {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+
+                if (pendingChange == null) {
+                    pendingChange = nextChange;
+                } else {
+                    pendingChange = pendingChange.then(nextChange);
+                    conflatedCount.incrementAndGet();
+                }
+            }
+
+            schedule();
+        }
+
+        /**
+         * starts a delivery run unless one is already going or there's nothing to deliver
+         */
+        private void schedule() {
+            synchronized (this) {
+                boolean ready = demandError != null || (pendingChange != null && demand > 0);
+                if (cancelled || delivering || ready == false) {
+                    return;
+                }
+
+                delivering = true;
+            }
+
+            execute(this::deliver);
+        }
+
+        /**
+         * runs on the executor until the subscriber has everything it asked for that there is to give
+         */
+        private void deliver() {
+            while (true) {
+                PendingChange nextChange = null;
+                IllegalArgumentException requestError;
+                synchronized (this) {
+                    requestError = demandError;
+                    demandError = null;
+                    if (requestError == null && cancelled == false && pendingChange != null && demand > 0) {
+                        nextChange = pendingChange;
+                        pendingChange = null;
+                        demand = demand == Long.MAX_VALUE ? demand : demand - 1;
+                    } else {
+                        delivering = false;
+                    }
+                }
+
+                if (requestError != null) {
+                    fail(requestError);
+                    return;
+                }
+
+                if (nextChange == null) {
+                    return;
+                }
+
+                try {
+                    subscriber.onNext(nextChange.get());
+                } catch (RuntimeException e) {
+                    synchronized (this) {
+                        delivering = false;
+                    }
+
+                    fail(e);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * a subscriber that throws, or breaks the request rules, is dropped and told why
+         *
+         * @param e
+         */
+        private void fail(Throwable e) {
+            LOG.warn("dropping snapshot change subscriber {}", subscriber, e);
+            cancel();
+            try {
+                subscriber.onError(e);
+            } catch (RuntimeException onErrorException) {
+                LOG.warn("snapshot change subscriber {} failed handling its own error", subscriber, onErrorException);
+            }
+        }
+
+        /**
+         *
+         * @param task
+         */
+        private void execute(Runnable task) {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                LOG.error("can't notify snapshot change subscriber {} - the executor is shutting down", subscriber);
+                cancel();
+            }
+        }
+
+    }
+
+
+    /**
+     * a swap, or run of swaps, not yet sent to a subscriber. the change is worked out the first time it's delivered
+     * and shared by every subscriber it was offered to.
+     */
+    private static final class PendingChange {
+
+        private final ExchangeRateSnapshot previousSnapshot;
+        private final ExchangeRateSnapshot snapshot;
+        private final RateDelta rateDelta;
+
+        // guarded by this
+        private SnapshotChange snapshotChange;
+
+        /**
+         *
+         * @param previousSnapshot
+         * @param snapshot
+         * @param rateDelta the delta that led from one to the other, or null if there wasn't just the one
+         */
+        private PendingChange(ExchangeRateSnapshot previousSnapshot,
+                              ExchangeRateSnapshot snapshot,
+                              RateDelta rateDelta) {
+
+            this.previousSnapshot = previousSnapshot;
+            this.snapshot = snapshot;
+            this.rateDelta = rateDelta;
+        }
+
+        /**
+         * the snapshots in between are let go, so the two are diffed pair by pair however they came about
+         *
+         * @param nextChange
+         * @return one change from this one's previous snapshot to the next one's snapshot
+         */
+        private PendingChange then(PendingChange nextChange) {
+            return new PendingChange(previousSnapshot, nextChange.snapshot, null);
+        }
+
+        /**
+         * runs on the executor
+         *
+         * @return
+         */
+        private synchronized SnapshotChange get() {
+            if (snapshotChange == null) {
+                snapshotChange = rateDelta == null ?
+                        SnapshotChange.between(previousSnapshot, snapshot) :
+                        SnapshotChange.of(previousSnapshot, snapshot, rateDelta);
+            }
+
+            return snapshotChange;
+        }
+
+    }
+
+}
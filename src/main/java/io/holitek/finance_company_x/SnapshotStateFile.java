@@ -0,0 +1,190 @@
+package io.holitek.finance_company_x;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.time.Instant;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+
+
+/**
+ * local copy of the last snapshot the {@link ExchangeRateBean} loaded successfully, so that a restarted app can answer
+ * with those rates straight away rather than holding nothing until its first poll. the first poll then either confirms
+ * the restored buildID is still current or loads the one that replaced it. everything is little-endian:
+ *
+ * <pre>
+ *   magic             4 bytes   'F' 'C' 'X' 'S'
+ *   version           u16       {@link #VERSION}
+ *   buildID length    u16
+ *   loaded at         i64       epoch millis
+ *   buildID                     UTF-8 bytes
+ *   padding                     zero bytes up to the next 8 byte boundary
+ *   rates                       the snapshot's {@link BinaryRateFormat} rendering
+ * </pre>
+ *
+ * the rates are written from the rendering the snapshot already holds and are memory mapped when read back, so neither
+ * saving nor restoring involves any json.
+ */
+public final class SnapshotStateFile {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SnapshotStateFile.class);
+
+    public static final byte[] MAGIC = {'F', 'C', 'X', 'S'};
+    public static final short VERSION = 1;
+
+    private static final int HEADER_LENGTH = MAGIC.length + Short.BYTES + Short.BYTES + Long.BYTES;
+
+    private final Path stateFilePath;
+
+
+    /**
+     *
+     * @param stateFilePath where to keep the last good snapshot. missing parent directories are created on first save
+     */
+    public SnapshotStateFile(Path stateFilePath) { this.stateFilePath = stateFilePath; }
+
+
+    // PUBLIC
+    //
+
+    /**
+     * the file is written under a temporary name and moved into place, so a crash part way through a save leaves the
+     * previous state file as it was.
+     *
+     * @param snapshot
+     * @throws IOException if the file can't be written
+     */
+    public void save(ExchangeRateSnapshot snapshot) throws IOException {
+        byte[] buildID = snapshot.getBuildID().getBytes(StandardCharsets.UTF_8);
+        if (buildID.length > 0xFFFF) {
+            throw new IOException("buildID too long for snapshot state file: " + snapshot.getBuildID());
+        }
+
+        ByteBuffer rates = snapshot.getRenderings().getBinary();
+        int ratesOffset = ratesOffset(buildID.length);
+        ByteBuffer buffer = ByteBuffer.allocate(ratesOffset + rates.remaining()).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC)
+              .putShort(VERSION)
+              .putShort((short)buildID.length)
+              .putLong(snapshot.getLoadedAt().toEpochMilli())
+              .put(buildID)
+              .position(ratesOffset);
+
+        buffer.put(rates);
+
+        Path parentPath = stateFilePath.toAbsolutePath().getParent();
+        if (parentPath != null) {
+            Files.createDirectories(parentPath);
+        }
+
+        Path stagedPath = stateFilePath.resolveSibling(stateFilePath.getFileName() + ".tmp");
+        Files.write(stagedPath, buffer.array());
+        Files.move(stagedPath, stateFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * a missing file is the normal state of affairs on a first start and isn't an error. a file that can't be read is
+     * logged and ignored - the app then starts empty, as it would have without one.
+     *
+     * @return the snapshot that was last saved, or empty if there isn't a usable one
+     */
+    public Optional<ExchangeRateSnapshot> load() {
+        if (Files.exists(stateFilePath) == false) {
+            LOG.info("no snapshot state file at {} - starting without rates", stateFilePath);
+            return Optional.empty();
+        }
+
+        try (FileChannel fileChannel = FileChannel.open(stateFilePath, StandardOpenOption.READ)) {
+            MappedByteBuffer mappedByteBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+            return Optional.of(decode(mappedByteBuffer, stateFilePath.getFileName().toString()));
+        } catch (IOException e) {
+            LOG.error("snapshot state file {} can't be read - starting without rates", stateFilePath, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     *
+     * @return
+     */
+    public Path getPath() { return stateFilePath; }
+
+
+    // PACKAGE PROTECTED
+    //
+
+    /**
+     *
+     * @param buffer
+     * @param stateFileName what the snapshot reports as its data file name - the data file it was originally loaded
+     *                      from isn't saved
+     * @return
+     * @throws IOException if the buffer doesn't hold a well formed snapshot in a version this class understands
+     */
+    static ExchangeRateSnapshot decode(ByteBuffer buffer, String stateFileName) throws IOException {
+        ByteBuffer input = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            input.get(magic);
+            if (Arrays.equals(MAGIC, magic) == false) {
+                throw new IOException("not a snapshot state file - bad magic number");
+            }
+
+            short version = input.getShort();
+            if (version != VERSION) {
+                throw new IOException("unsupported snapshot state file version: " + version);
+            }
+
+            byte[] buildID = new byte[Short.toUnsignedInt(input.getShort())];
+            Instant loadedAt = Instant.ofEpochMilli(input.getLong());
+            input.get(buildID);
+
+            int ratesOffset = ratesOffset(buildID.length);
+            if (ratesOffset > input.limit()) {
+                throw new IOException("snapshot state file is truncated");
+            }
+
+            Map<String, Double> exchangeRateMap = BinaryRateFormat.decode(input.position(ratesOffset));
+            return ExchangeRateSnapshot.wrap(
+                    new String(buildID, StandardCharsets.UTF_8),
+                    loadedAt,
+                    exchangeRateMap,
+                    stateFileName
+            );
+        } catch (BufferUnderflowException e) {
+            throw new IOException("snapshot state file is truncated", e);
+        }
+    }
+
+
+    // PRIVATE
+    //
+
+    /**
+     *
+     * @param buildIdLength
+     * @return offset of the 8 byte aligned rates, so the rate block within them stays aligned too
+     */
+    private static int ratesOffset(int buildIdLength) {
+        int unaligned = HEADER_LENGTH + buildIdLength;
+        return (unaligned + Double.BYTES - 1) & -Double.BYTES;
+    }
+
+}
@@ -0,0 +1,347 @@
+package io.holitek.finance_company_x;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.beans.Introspector;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * history of every rate in every timestamped data file in the data directory, not just the one the buildID file
+ * currently points to. each pair gets its own compressed {@link RateSeries}, so "what was CAD_USD at time T" and range
+ * scans are answered from memory without a separate database to keep in sync.
+ *
+ * data files are expected to be named for the time they were published, eg: 20201010-0000.txt (UTC), and may be json
+ * or, with a {@link BinaryRateFormat#FILE_EXTENSION} extension, binary. where a relay has left both forms of a file the
+ * binary one is read. files are ingested oldest first and each is only ingested once - a file that lands with a
+ * timestamp older than one already ingested is skipped. the first ingest of a directory with many files in it parses
+ * them in parallel.
+ */
+public final class TimeSeriesStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TimeSeriesStore.class);
+
+    public static final String NAMESPACE_KEY = Introspector.decapitalize(TimeSeriesStore.class.getSimpleName());
+
+    private static final String JSON_FILE_EXTENSION = ".txt";
+    private static final DateTimeFormatter DATA_FILE_TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmm");
+
+    // files parsed ahead of being appended, per backfill thread. bounds how much parsed data is held at once
+    private static final int FILES_PER_THREAD_PER_WINDOW = 4;
+
+    private final Map<String, RateSeries> seriesMap = new ConcurrentHashMap<>();
+    private final int backfillThreads;
+
+    // guarded by this
+    private long latestEpochSecond = Long.MIN_VALUE;
+    private long fileCount;
+
+
+    public TimeSeriesStore() { this(0); }
+
+    /**
+     *
+     * @param backfillThreads number of threads to parse data files with when there are several to ingest, or zero or
+     *                        less for one per core
+     */
+    public TimeSeriesStore(int backfillThreads) {
+        this.backfillThreads = backfillThreads > 0 ? backfillThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+
+    // PUBLIC
+    //
+
+    /**
+     * ingests every data file in the directory newer than the newest one already ingested. safe to call on every
+     * update - when nothing new has landed it's a directory listing and nothing more.
+     *
+     * @param dataDirectory
+     * @return number of files ingested
+     */
+    public synchronized int ingestNewFiles(String dataDirectory) {
+        List<Path> dataFilePaths;
+        try (Stream<Path> directoryStream = Files.list(Paths.get(dataDirectory))) {
+            Map<Long, Path> dataFilePathMap = directoryStream
+                    .filter(path -> timestampOf(path.getFileName().toString()).isPresent())
+                    .filter(path -> epochSecondOf(path) > latestEpochSecond)
+                    .collect(Collectors.toMap(
+                            TimeSeriesStore::epochSecondOf,
+                            Function.identity(),
+                            (path, otherPath) -> isBinary(path) ? path : otherPath,
+                            TreeMap::new
+                    ));
+
+            dataFilePaths = new ArrayList<>(dataFilePathMap.values());
+        } catch (IOException e) {
+            LOG.error("something went wrong listing data directory {} for the time series store", dataDirectory, e);
+            return 0;
+        }
+
+        if (dataFilePaths.isEmpty()) {
+            return 0;
+        }
+
+        int ingestedCount = dataFilePaths.size() == 1 || backfillThreads == 1 ?
+                ingestSequentially(dataFilePaths) :
+                ingestInParallel(dataFilePaths);
+
+        LOG.info("ingested {} data files into the time series store - {} pairs, {} files in all, roughly {} bytes",
+                 ingestedCount,
+                 seriesMap.size(),
+                 fileCount,
+                 getEstimatedBytes());
+
+        return ingestedCount;
+    }
+
+    /**
+     * same as {@link #ingestNewFiles(String)} for the first call and a no-op after that. for callers that only need the
+     * store to have been filled once, eg: after a warm start where the buildID never changes and so nothing new lands.
+     *
+     * @param dataDirectory
+     * @return number of files ingested
+     */
+    public synchronized int backfill(String dataDirectory) {
+        return fileCount == 0 ? ingestNewFiles(dataDirectory) : 0;
+    }
+
+    /**
+     * adds one point to the series of every pair in the map. null rates are skipped.
+     *
+     * @param timestamp when the rates were published
+     * @param exchangeRateMap
+     * @return false, and nothing is stored, if the timestamp isn't later than everything already ingested
+     */
+    public synchronized boolean ingest(Instant timestamp, Map<String, Double> exchangeRateMap) {
+        long epochSecond = timestamp.getEpochSecond();
+        if (epochSecond <= latestEpochSecond) {
+            LOG.warn("skipping rates for {} as the time series store already holds rates up to {}",
+                     timestamp,
+                     Instant.ofEpochSecond(latestEpochSecond));
+
+            return false;
+        }
+
+        exchangeRateMap.forEach((key, rate) -> {
+            if (rate != null) {
+                seriesMap.computeIfAbsent(key, k -> new RateSeries()).append(epochSecond, rate);
+            }
+        });
+
+        latestEpochSecond = epochSecond;
+        fileCount += 1;
+        return true;
+    }
+
+    /**
+     *
+     * @param key eg: "CAD_USD"
+     * @param timestamp
+     * @return the rate the pair had at the given time - that of the latest data file published at or before it - or
+     *         {@link RateTable#NO_RATE} if there isn't one
+     */
+    public double getRateAt(String key, Instant timestamp) {
+        RateSeries rateSeries = seriesMap.get(key);
+        return rateSeries == null ? RateTable.NO_RATE : rateSeries.getRateAt(timestamp.getEpochSecond());
+    }
+
+    /**
+     *
+     * @param key eg: "CAD_USD"
+     * @param from inclusive
+     * @param to exclusive
+     * @return every rate the pair had in the range, oldest first
+     */
+    public List<RatePoint> getRates(String key, Instant from, Instant to) {
+        List<RatePoint> ratePoints = new ArrayList<>();
+        RateSeries rateSeries = seriesMap.get(key);
+        if (rateSeries != null) {
+            rateSeries.forEach(from.getEpochSecond(), to.getEpochSecond(), ratePoints::add);
+        }
+
+        return ratePoints;
+    }
+
+    /**
+     *
+     * @return every pair that has appeared in an ingested data file
+     */
+    public Set<String> getPairs() { return Set.copyOf(seriesMap.keySet()); }
+
+    /**
+     *
+     * @return timestamp of the newest data file ingested, or empty if nothing has been
+     */
+    public synchronized Optional<Instant> getLatestTimestamp() {
+        return fileCount == 0 ? Optional.empty() : Optional.of(Instant.ofEpochSecond(latestEpochSecond));
+    }
+
+    /**
+     *
+     * @return number of data files ingested
+     */
+    public synchronized long getFileCount() { return fileCount; }
+
+    /**
+     *
+     * @return rough heap footprint of every series' compressed points
+     */
+    public long getEstimatedBytes() {
+        long estimatedBytes = 0;
+        for (RateSeries rateSeries : seriesMap.values()) {
+            estimatedBytes += rateSeries.getEstimatedBytes();
+        }
+
+        return estimatedBytes;
+    }
+
+    /**
+     *
+     * @param dataFileName eg: 20201010-0000.txt or 20201010-0000.fcxr
+     * @return the time the file was published, or empty if the name isn't a timestamp
+     */
+    public static Optional<Instant> timestampOf(String dataFileName) {
+        int extensionLength;
+        if (dataFileName.endsWith(JSON_FILE_EXTENSION)) {
+            extensionLength = JSON_FILE_EXTENSION.length();
+        } else if (dataFileName.endsWith(BinaryRateFormat.FILE_EXTENSION)) {
+            extensionLength = BinaryRateFormat.FILE_EXTENSION.length();
+        } else {
+            return Optional.empty();
+        }
+
+        try {
+            String timestamp = dataFileName.substring(0, dataFileName.length() - extensionLength);
+            return Optional.of(LocalDateTime.parse(timestamp, DATA_FILE_TIMESTAMP_FORMAT).toInstant(ZoneOffset.UTC));
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+
+    // PRIVATE
+    //
+
+    /**
+     *
+     * @param dataFilePath whose name is known to be a timestamp
+     * @return
+     */
+    private static long epochSecondOf(Path dataFilePath) {
+        return timestampOf(dataFilePath.getFileName().toString()).orElseThrow().getEpochSecond();
+    }
+
+    /**
+     *
+     * @param dataFilePath
+     * @return
+     */
+    private static boolean isBinary(Path dataFilePath) {
+        return BinaryRateFormat.isBinaryDataFile(dataFilePath.getFileName().toString(), null);
+    }
+
+    /**
+     *
+     * @param dataFilePaths oldest first
+     * @return number of files ingested
+     */
+    private int ingestSequentially(List<Path> dataFilePaths) {
+        int ingestedCount = 0;
+        for (Path dataFilePath : dataFilePaths) {
+            try {
+                ingestedCount += ingest(dataFilePath, BinaryRateFormat.readDataFile(dataFilePath, null)) ? 1 : 0;
+            } catch (IOException e) {
+                LOG.error("skipping data file {} - it couldn't be read", dataFilePath, e);
+            }
+        }
+
+        return ingestedCount;
+    }
+
+    /**
+     * parsing is what takes the time, so files are parsed in parallel a window at a time and then appended in order
+     * on this thread - series only ever take points oldest first.
+     *
+     * @param dataFilePaths oldest first
+     * @return number of files ingested
+     */
+    private int ingestInParallel(List<Path> dataFilePaths) {
+        int threads = Math.min(backfillThreads, dataFilePaths.size());
+        int windowSize = threads * FILES_PER_THREAD_PER_WINDOW;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, NAMESPACE_KEY + "Backfill");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        int ingestedCount = 0;
+        try {
+            for (int windowStart = 0; windowStart < dataFilePaths.size(); windowStart += windowSize) {
+                List<Path> window = dataFilePaths.subList(
+                        windowStart,
+                        Math.min(windowStart + windowSize, dataFilePaths.size())
+                );
+
+                List<Future<Map<String, Double>>> parsedFiles = new ArrayList<>(window.size());
+                for (Path dataFilePath : window) {
+                    parsedFiles.add(executorService.submit(() -> BinaryRateFormat.readDataFile(dataFilePath, null)));
+                }
+
+                for (int i = 0; i < window.size(); i++) {
+                    try {
+                        ingestedCount += ingest(window.get(i), parsedFiles.get(i).get()) ? 1 : 0;
+                    } catch (ExecutionException e) {
+                        LOG.error("skipping data file {} - it couldn't be read", window.get(i), e.getCause());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            LOG.warn("time series backfill interrupted after {} data files", ingestedCount);
+            Thread.currentThread().interrupt();
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        return ingestedCount;
+    }
+
+    /**
+     *
+     * @param dataFilePath
+     * @param exchangeRateMap
+     * @return
+     */
+    private boolean ingest(Path dataFilePath, Map<String, Double> exchangeRateMap) {
+        return ingest(Instant.ofEpochSecond(epochSecondOf(dataFilePath)), exchangeRateMap);
+    }
+
+}
@@ -0,0 +1,100 @@
+package io.holitek.finance_company_x;
+
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+
+public class AdaptivePollIntervalTest {
+
+    private static final long MIN = 1_000;
+    private static final long MAX = 60_000;
+    private static final long HOUR = 3_600_000;
+
+
+    @Test
+    @DisplayName("checks that polls that find nothing new back off to the max, and a change drops back to the min")
+    public void testBackoff() {
+        AdaptivePollInterval adaptivePollInterval = new AdaptivePollInterval(MIN, MAX, 0, new Random(0));
+
+        long now = 0;
+        long[] expected = {2_000, 4_000, 8_000, 16_000, 32_000, 60_000, 60_000};
+        for (long interval : expected) {
+            Assertions.assertEquals(interval, adaptivePollInterval.next(now, false));
+            now += interval;
+        }
+
+        Assertions.assertEquals(MIN, adaptivePollInterval.next(now, true));
+        Assertions.assertTrue(adaptivePollInterval.getCadence().isEmpty(), "one change is no cadence");
+
+        // a change found between polls counts from when it happened, and drops the next poll back to the min as well
+        Assertions.assertEquals(2_000, adaptivePollInterval.next(now + MIN));
+        adaptivePollInterval.recordChange(now + 1_500);
+        Assertions.assertEquals(MIN, adaptivePollInterval.next(now + 3_000));
+        Assertions.assertEquals(1_500, adaptivePollInterval.getCadence().orElseThrow());
+    }
+
+    @Test
+    @DisplayName("checks that once a cadence is learned, polls are fast around the next expected change only")
+    public void testLearnedCadence() {
+        AdaptivePollInterval adaptivePollInterval = new AdaptivePollInterval(MIN, MAX, 0, new Random(0));
+        adaptivePollInterval.next(0, true);
+        adaptivePollInterval.next(HOUR, true);
+        adaptivePollInterval.next(2 * HOUR + 5_000, true);
+
+        // median of one hour and one hour five seconds
+        Assertions.assertEquals(HOUR + 5_000, adaptivePollInterval.getCadence().orElseThrow());
+
+        // well before the next change polls back off as usual
+        long lastChange = 2 * HOUR + 5_000;
+        Assertions.assertEquals(2_000, adaptivePollInterval.next(lastChange + 60_000, false));
+
+        // but never past the start of the window, an eighth of a cadence before the change is expected
+        long windowStart = lastChange + (HOUR + 5_000) - (HOUR + 5_000) / 8;
+        Assertions.assertEquals(3_000, adaptivePollInterval.next(windowStart - 3_000, false));
+
+        // and within the window they run at the min however long it's been
+        Assertions.assertEquals(MIN, adaptivePollInterval.next(windowStart + 1, false));
+        Assertions.assertEquals(MIN, adaptivePollInterval.next(windowStart + 2 * (HOUR + 5_000) / 8 - 1, false));
+
+        // a missed publish is expected a cadence later rather than polled fast for until it turns up - the backoff
+        //   carries on from where it got to
+        Assertions.assertEquals(32_000, adaptivePollInterval.next(windowStart + 2 * (HOUR + 5_000) / 8 + 1, false));
+    }
+
+    @Test
+    @DisplayName("checks that intervals are jittered by no more than the jitter fraction, and stay within min and max")
+    public void testJitter() {
+        AdaptivePollInterval adaptivePollInterval = new AdaptivePollInterval(MIN, MAX, 0.2, new Random(42));
+
+        boolean jittered = false;
+        long now = 0;
+        for (int i = 0; i < 100; i++) {
+            // one change only, so there's no cadence to steer the backoff
+            long interval = adaptivePollInterval.next(now, i == 0);
+            long unjittered = i == 0 ? MIN : Math.min(MAX, MIN << Math.min(i, 7));
+
+            Assertions.assertTrue(interval >= MIN && interval <= MAX, "interval out of range: " + interval);
+            Assertions.assertTrue(Math.abs(interval - unjittered) <= unjittered * 0.2 + 1,
+                                  "interval jittered too far: " + interval + " from " + unjittered);
+            jittered |= interval != unjittered;
+            now += interval;
+        }
+
+        Assertions.assertTrue(jittered, "intervals should be jittered");
+    }
+
+    @Test
+    @DisplayName("checks that out of range settings are rejected")
+    public void testValidation() {
+        Random random = new Random();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AdaptivePollInterval(0, MAX, 0, random));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AdaptivePollInterval(MAX, MIN, 0, random));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AdaptivePollInterval(MIN, MAX, 1, random));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AdaptivePollInterval(MIN, MAX, -0.1, random));
+    }
+
+}
@@ -0,0 +1,148 @@
+package io.holitek.finance_company_x;
+
+
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit5.CamelTestSupport;
+
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static io.holitek.finance_company_x.BuildIdFileProcessor.NEW_BUILD_ID_HEADER_KEY;
+
+
+public class AdaptivePollSchedulerTest extends CamelTestSupport {
+
+    private static final long MIN_INTERVAL = 10;
+    private static final long MAX_INTERVAL = 40;
+
+    private final AtomicInteger pipelineCount = new AtomicInteger();
+
+    private AdaptivePollScheduler adaptivePollScheduler;
+
+    //
+    // test setup and configuration
+
+    // tells the test runner that we'll start and stop the camel context manually. this ensures the camel context
+    // doesn't start before we've set up the camel registry and routes.
+    @Override
+    public boolean isUseAdviceWith() { return true; }
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        this.adaptivePollScheduler = new AdaptivePollScheduler(
+                "direct:start",
+                List.of("direct:dispatch"),
+                ExchangeRateBean.NAMESPACE_KEY,
+                new AdaptivePollInterval(MIN_INTERVAL, MAX_INTERVAL, 0, new Random(0))
+        );
+
+        context().addService(adaptivePollScheduler);
+
+        // simbora!
+        context().start();
+    }
+
+    @AfterEach
+    void afterEach() { context().stop(); }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() {
+        return new RouteBuilder() {
+            @Override
+            public void configure() {
+                // a provider that publishes a new buildID every third poll
+                from("direct:start")
+                        .process(exchange -> exchange.getMessage().setHeader(
+                                NEW_BUILD_ID_HEADER_KEY,
+                                String.valueOf(pipelineCount.getAndIncrement() / 3)
+                        ))
+                        .to("mock:result");
+
+                from("direct:dispatch")
+                        .to("mock:dispatch");
+
+                // a pipeline that never finds anything
+                from("direct:idle")
+                        .to("mock:idle");
+            }
+        };
+    }
+
+
+    //
+    // tests
+
+    @Test
+    @DisplayName("checks that the pipeline and every other source are polled, and the interval is published")
+    public void testPolls() throws Exception {
+        MockEndpoint mockEndpoint = getMockEndpoint("mock:result");
+        mockEndpoint.expectedMinimumMessageCount(10);
+        MockEndpoint dispatchMockEndpoint = getMockEndpoint("mock:dispatch");
+        dispatchMockEndpoint.expectedMinimumMessageCount(10);
+
+        mockEndpoint.setResultWaitTime(TimeUnit.SECONDS.toMillis(10));
+        dispatchMockEndpoint.setResultWaitTime(TimeUnit.SECONDS.toMillis(10));
+        assertMockEndpointsSatisfied();
+
+        Assertions.assertTrue(adaptivePollScheduler.getPollCount() >= 10);
+        long pollInterval = ExchangeRateMetrics.INSTANCE.getPollInterval();
+        Assertions.assertTrue(pollInterval >= MIN_INTERVAL && pollInterval <= MAX_INTERVAL,
+                              "poll interval out of range: " + pollInterval);
+    }
+
+    @Test
+    @DisplayName("checks that changes are learned from the bean's swaps, however they were found, when there's a bean")
+    public void testLearnsFromSwaps() throws Exception {
+        // no bean was bound when the first scheduler started, so it learns from its polls
+        Assertions.assertTrue(waitFor(() -> adaptivePollScheduler.getChangeCount() >= 1));
+
+        // the snapshot live when it subscribes is only where learning starts. subscribers are told of each swap as it
+        //   happens, so none are folded into the next - the subscription's first one included
+        ExchangeRateBean exchangeRateBean =
+                new ExchangeRateBean(ExchangeRateBean.DEFAULT_HISTORY_SIZE, null, Runnable::run, Runnable::run);
+        exchangeRateBean.setExchangeRates("1", "{\"CAD_USD\":0.98}");
+        context().getRegistry().bind("swappingExchangeRateBean", exchangeRateBean);
+        AdaptivePollScheduler swapScheduler = new AdaptivePollScheduler(
+                "direct:idle",
+                List.of(),
+                "swappingExchangeRateBean",
+                new AdaptivePollInterval(MIN_INTERVAL, MAX_INTERVAL, 0, new Random(0))
+        );
+
+        context().addService(swapScheduler);
+
+        // loaded as a directory watcher would load them, with no poll finding a new buildID
+        exchangeRateBean.setExchangeRates("2", "{\"CAD_USD\":0.97}");
+        Assertions.assertEquals(1, swapScheduler.getChangeCount());
+        exchangeRateBean.setExchangeRates("3", "{\"CAD_USD\":0.96}");
+        Assertions.assertEquals(2, swapScheduler.getChangeCount());
+
+        // neither the same buildID stamped afresh nor a reset is a change
+        exchangeRateBean.promoteSnapshot("3", exchangeRateBean.getSnapshot());
+        exchangeRateBean.resetBean();
+        Thread.sleep(MAX_INTERVAL * 2);
+        Assertions.assertEquals(2, swapScheduler.getChangeCount());
+    }
+
+    /**
+     *
+     * @param condition
+     * @return whether or not the condition was met within ten seconds
+     * @throws InterruptedException
+     */
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (condition.getAsBoolean() == false && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        return condition.getAsBoolean();
+    }
+
+}
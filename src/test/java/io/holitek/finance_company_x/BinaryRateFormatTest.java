@@ -0,0 +1,109 @@
+package io.holitek.finance_company_x;
+
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+
+public class BinaryRateFormatTest {
+
+    private static final Map<String, Double> EXCHANGE_RATE_MAP = Map.of("CAD_USD", 0.98, "FR_USD", 0.9);
+
+    @TempDir
+    Path dataDirectory;
+
+
+    @Test
+    @DisplayName("checks that encoded rates decode back to the same rates, in key order")
+    public void testRoundTrip() throws IOException {
+        Map<String, Double> exchangeRateMap = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            exchangeRateMap.put(String.format("C%03d_USD", i), 1 + i / 1000.0);
+        }
+
+        byte[] encoded = BinaryRateFormat.encode(exchangeRateMap);
+        Map<String, Double> decoded = BinaryRateFormat.decode(ByteBuffer.wrap(encoded));
+        Assertions.assertEquals(exchangeRateMap, decoded);
+        Assertions.assertEquals("C000_USD", decoded.keySet().iterator().next());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> decoded.put("CAD_USD", 0.5));
+
+        Assertions.assertEquals(Map.of(), BinaryRateFormat.decode(ByteBuffer.wrap(BinaryRateFormat.encode(Map.of()))));
+    }
+
+    @Test
+    @DisplayName("checks that a json data file is converted to a binary one that reads back the same rates")
+    public void testConvertAndRead() throws IOException {
+        Path jsonDataFilePath = dataDirectory.resolve("20201010-0000.txt");
+        Files.writeString(jsonDataFilePath, "{\"CAD_USD\":0.98,\"FR_USD\":0.9}");
+
+        Path binaryDataFilePath = DataFileConverter.convert(jsonDataFilePath);
+        Assertions.assertEquals(
+                dataDirectory.resolve("20201010-0000" + BinaryRateFormat.FILE_EXTENSION),
+                binaryDataFilePath
+        );
+
+        // nothing is left behind from staging the file
+        try (Stream<Path> directoryStream = Files.list(dataDirectory)) {
+            Assertions.assertEquals(2, directoryStream.count());
+        }
+
+        Assertions.assertEquals(EXCHANGE_RATE_MAP, BinaryRateFormat.read(binaryDataFilePath));
+        Assertions.assertEquals(EXCHANGE_RATE_MAP, BinaryRateFormat.readDataFile(binaryDataFilePath, null));
+        Assertions.assertEquals(EXCHANGE_RATE_MAP, BinaryRateFormat.readDataFile(jsonDataFilePath, null));
+
+        // a binary file without the extension is picked out by the buildID file's Version
+        Path renamedDataFilePath = Files.move(binaryDataFilePath, dataDirectory.resolve("20201010-0000.dat"));
+        Assertions.assertEquals(
+                EXCHANGE_RATE_MAP,
+                BinaryRateFormat.readDataFile(renamedDataFilePath, BinaryRateFormat.BUILD_ID_VERSION)
+        );
+    }
+
+    @Test
+    @DisplayName("checks that malformed binary data is rejected rather than read as garbage")
+    public void testMalformed() {
+        byte[] encoded = BinaryRateFormat.encode(EXCHANGE_RATE_MAP);
+
+        byte[] badMagic = encoded.clone();
+        badMagic[0] = 'X';
+
+        byte[] badVersion = encoded.clone();
+        badVersion[4] = 99;
+
+        byte[] badCount = encoded.clone();
+        badCount[8] = 3;
+
+        byte[] badDictionary = encoded.clone();
+        badDictionary[BinaryRateFormat.HEADER_LENGTH] = (byte)0xFF;
+
+        List<byte[]> malformed = List.of(
+                new byte[0],
+                "{\"CAD_USD\":0.98}".getBytes(),
+                badMagic,
+                badVersion,
+                badCount,
+                badDictionary,
+                Arrays.copyOf(encoded, BinaryRateFormat.HEADER_LENGTH),
+                Arrays.copyOf(encoded, encoded.length - 1)
+        );
+
+        for (byte[] bytes : malformed) {
+            Assertions.assertThrows(IOException.class, () -> BinaryRateFormat.decode(ByteBuffer.wrap(bytes)));
+        }
+    }
+
+}
@@ -3,16 +3,24 @@ package io.holitek.finance_company_x;
 
 import com.jayway.jsonpath.JsonPath;
 
+import com.sun.management.ThreadMXBean;
+
+import org.apache.camel.Exchange;
 import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.support.DefaultExchange;
 import org.apache.camel.test.junit5.CamelTestSupport;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
 
 public class BuildIdFileProcessorTest extends CamelTestSupport {
@@ -66,8 +74,13 @@ public class BuildIdFileProcessorTest extends CamelTestSupport {
         context().start();
     }
 
+    // the buildID filename system property set by individual tests would otherwise leak into test classes that rely on
+    //   the value from the test properties file
     @AfterEach
-    void afterEach() { context().stop(); }
+    void afterEach() {
+        context().stop();
+        System.clearProperty("buildID_filename");
+    }
 
     @Override
     protected RouteBuilder createRouteBuilder() {
@@ -218,6 +231,117 @@ public class BuildIdFileProcessorTest extends CamelTestSupport {
     }
 
 
+    @Test
+    @DisplayName("checks that an unchanged buildID file is neither read nor parsed on subsequent polls")
+    public void testBuildIdFileProcessorSkipsUnchangedFile(@TempDir Path tempDirectory) throws Exception {
+
+        // setup
+        //
+        BuildIdFileProcessor buildIdFileProcessor = context().getRegistry()
+                                                             .lookupByNameAndType(
+                                                                     BuildIdFileProcessor.NAMESPACE_KEY,
+                                                                     BuildIdFileProcessor.class
+                                                             );
+
+        Path buildIdFilePath = tempDirectory.resolve("buildID.txt");
+        Files.writeString(buildIdFilePath, this.buildIdFileContents);
+        System.setProperty("buildID_filename", buildIdFilePath.getFileName().toString());
+
+        getMockEndpoint("mock:result").expectedHeaderValuesReceivedInAnyOrder(
+                BuildIdFileProcessor.NEW_BUILD_ID_HEADER_KEY,
+                this.buildID, this.buildID, "5678"
+        );
+
+        // test
+        //
+        template.sendBodyAndHeader(
+                "direct:start",
+                "",
+                CurrencyDataPollingConsumerRoute.DATA_DIRECTORY_HEADER_KEY, tempDirectory.toString()
+        );
+
+        template.sendBodyAndHeader(
+                "direct:start",
+                "",
+                CurrencyDataPollingConsumerRoute.DATA_DIRECTORY_HEADER_KEY, tempDirectory.toString()
+        );
+
+        Assertions.assertEquals(1, buildIdFileProcessor.getFullPollCount(), "first poll should read the file");
+        Assertions.assertEquals(1, buildIdFileProcessor.getSkippedPollCount(), "second poll should skip the read");
+
+        // replacing the file should be noticed even if size and modified time happen to match
+        Path stagedFilePath = Files.writeString(
+                tempDirectory.resolve("buildID.tmp"),
+                this.buildIdFileContents.replace(this.buildID, "5678")
+        );
+
+        Files.setLastModifiedTime(stagedFilePath, Files.getLastModifiedTime(buildIdFilePath));
+        Files.move(stagedFilePath, buildIdFilePath, StandardCopyOption.REPLACE_EXISTING);
+
+        template.sendBodyAndHeader(
+                "direct:start",
+                "",
+                CurrencyDataPollingConsumerRoute.DATA_DIRECTORY_HEADER_KEY, tempDirectory.toString()
+        );
+
+        Assertions.assertEquals(2, buildIdFileProcessor.getFullPollCount(), "replaced file should be read");
+        Assertions.assertEquals(1, buildIdFileProcessor.getSkippedPollCount());
+        assertMockEndpointsSatisfied();
+    }
+
+
+    @Test
+    @DisplayName("checks that a poll that finds the buildID file unchanged stays within its allocation budget")
+    public void testBuildIdFileProcessorIdlePollAllocationBudget() throws Exception {
+
+        // generous enough to absorb the file attributes object the stat call returns, tight enough to catch anyone
+        //   re-introducing per poll parsers, paths, strings or optionals
+        final long allocationBudgetPerPoll = 512;
+        final int polls = 20_000;
+
+        ThreadMXBean threadMXBean = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(
+                threadMXBean.isThreadAllocatedMemorySupported(),
+                "JVM can't report per thread allocations"
+        );
+
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        // setup
+        //
+        setbuildIdFilenameHeader("buildID.file.good");
+        BuildIdFileProcessor buildIdFileProcessor = new BuildIdFileProcessor();
+        Exchange exchange = new DefaultExchange(context());
+        exchange.getMessage().setHeader(
+                CurrencyDataPollingConsumerRoute.DATA_DIRECTORY_HEADER_KEY,
+                this.dataDirectory.toString()
+        );
+
+        // first poll does the real work, the rest warm up the idle path
+        for (int i = 0; i < polls; i++) {
+            buildIdFileProcessor.process(exchange);
+        }
+
+        // test
+        //
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < polls; i++) {
+            buildIdFileProcessor.process(exchange);
+        }
+
+        long allocatedPerPoll = (threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore) / polls;
+        LOG.info("idle buildID poll allocated {} bytes", allocatedPerPoll);
+
+        Assertions.assertEquals(1, buildIdFileProcessor.getFullPollCount(), "only the first poll should parse");
+        Assertions.assertEquals(this.buildID, exchange.getMessage().getHeader(BuildIdFileProcessor.NEW_BUILD_ID_HEADER_KEY));
+        Assertions.assertTrue(
+                allocatedPerPoll <= allocationBudgetPerPoll,
+                "idle poll allocated " + allocatedPerPoll + " bytes, budget is " + allocationBudgetPerPoll
+        );
+    }
+
+
     /**
      * populates a JVM system property with the build filename appropriate for a given test. the property key the
      * processor is looking for isn't set in the test properties file, so the JVM value will be used instead. doing this
@@ -0,0 +1,150 @@
+package io.holitek.finance_company_x;
+
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+public class ConsolidatedRateBookTest {
+
+    private static final List<String> PROVIDERS = List.of("emea", "apac", "latam");
+
+    /**
+     *
+     * @param buildID
+     * @param exchangeRateMap
+     * @return
+     */
+    private static ExchangeRateSnapshot snapshot(String buildID, Map<String, Double> exchangeRateMap) {
+        return new ExchangeRateSnapshot(buildID, Instant.now(), exchangeRateMap);
+    }
+
+    /**
+     *
+     * @param policy
+     * @return book with emea, apac and latam quoting CAD_USD as 0.98, 0.97 and 0.99, and emea alone quoting FR_USD
+     */
+    private static ConsolidatedRateBook book(ConsolidatedRateBook.Policy policy) {
+        ConsolidatedRateBook consolidatedRateBook = new ConsolidatedRateBook(policy, PROVIDERS);
+        consolidatedRateBook.update("emea", snapshot("1", Map.of("CAD_USD", 0.98, "FR_USD", 0.9)));
+        consolidatedRateBook.update("apac", snapshot("2", Map.of("CAD_USD", 0.97)));
+        consolidatedRateBook.update("latam", snapshot("3", Map.of("CAD_USD", 0.99)));
+        return consolidatedRateBook;
+    }
+
+
+    @Test
+    @DisplayName("checks that each policy picks the expected rate when several providers quote a pair")
+    public void testPolicies() {
+        Assertions.assertEquals(0.99, book(ConsolidatedRateBook.Policy.BEST).getRate("CAD_USD"));
+        Assertions.assertEquals(0.98, book(ConsolidatedRateBook.Policy.MEDIAN).getRate("CAD_USD"));
+        Assertions.assertEquals(0.98, book(ConsolidatedRateBook.Policy.PRIORITY).getRate("CAD_USD"));
+
+        // a pair only one provider quotes comes out the same under every policy
+        for (ConsolidatedRateBook.Policy policy : ConsolidatedRateBook.Policy.values()) {
+            Assertions.assertEquals(0.9, book(policy).getRate("FR_USD"));
+        }
+
+        // even number of quotes - mean of the middle two
+        ConsolidatedRateBook consolidatedRateBook = book(ConsolidatedRateBook.Policy.MEDIAN);
+        consolidatedRateBook.update("latam", snapshot("4", Map.of()));
+        Assertions.assertEquals((0.97 + 0.98) / 2, consolidatedRateBook.getRate("CAD_USD"));
+
+        Assertions.assertEquals(ConsolidatedRateBook.Policy.MEDIAN, ConsolidatedRateBook.Policy.of(" median"));
+    }
+
+    @Test
+    @DisplayName("checks that a provider update only works out the pairs it touched and swaps in a new snapshot")
+    public void testIncrementalUpdate() {
+        ConsolidatedRateBook consolidatedRateBook = book(ConsolidatedRateBook.Policy.PRIORITY);
+        ExchangeRateSnapshot before = consolidatedRateBook.getSnapshot();
+        Assertions.assertEquals(Map.of("emea", 0.98, "apac", 0.97, "latam", 0.99),
+                                consolidatedRateBook.getQuotes("CAD_USD"));
+
+        // FR_USD unchanged, CAD_USD moved, JP_USD added
+        ExchangeRateSnapshot emeaSnapshot = snapshot("5", Map.of("CAD_USD", 0.5, "FR_USD", 0.9, "JP_USD", 0.01));
+        Assertions.assertEquals(2, consolidatedRateBook.update("emea", emeaSnapshot));
+        ExchangeRateSnapshot after = consolidatedRateBook.getSnapshot();
+        Assertions.assertNotSame(before, after, "book should be published as a new snapshot");
+        Assertions.assertNotEquals(before.getBuildID(), after.getBuildID());
+        Assertions.assertEquals(0.98, before.getRate("CAD_USD"), "old snapshot should be left as it was");
+        Assertions.assertEquals(0.5, after.getRate("CAD_USD"));
+        Assertions.assertEquals(0.01, after.getRate("JP_USD"));
+
+        // same snapshot again - nothing to do
+        Assertions.assertEquals(0, consolidatedRateBook.update("emea", emeaSnapshot));
+        Assertions.assertSame(after, consolidatedRateBook.getSnapshot());
+
+        // same rates under a new buildID - nothing to work out, and the book's rates haven't changed
+        Assertions.assertEquals(0, consolidatedRateBook.update("emea", emeaSnapshot.withBuildID("6")));
+        Assertions.assertSame(after, consolidatedRateBook.getSnapshot());
+
+        // a lower priority provider moving doesn't change the book under the priority policy
+        Assertions.assertEquals(1, consolidatedRateBook.update("apac", snapshot("7", Map.of("CAD_USD", 0.1))));
+        Assertions.assertSame(after, consolidatedRateBook.getSnapshot());
+
+        // dropped pairs leave the book once nobody quotes them
+        Assertions.assertEquals(3, consolidatedRateBook.update("emea", ExchangeRateSnapshot.EMPTY));
+        Assertions.assertEquals(0.1, consolidatedRateBook.getRate("CAD_USD"), "apac should now have priority");
+        Assertions.assertFalse(consolidatedRateBook.getSnapshot().hasRate("FR_USD"));
+        Assertions.assertFalse(consolidatedRateBook.getSnapshot().hasRate("JP_USD"));
+        Assertions.assertTrue(consolidatedRateBook.getQuotes("FR_USD").isEmpty());
+    }
+
+    @Test
+    @DisplayName("checks that a null rate counts as the provider not quoting the pair")
+    public void testNullRates() {
+        ConsolidatedRateBook consolidatedRateBook = book(ConsolidatedRateBook.Policy.PRIORITY);
+
+        Map<String, Double> emeaRates = new LinkedHashMap<>();
+        emeaRates.put("CAD_USD", null);
+        emeaRates.put("FR_USD", 0.9);
+        emeaRates.put("JP_USD", null);
+        Assertions.assertEquals(1, consolidatedRateBook.update("emea", snapshot("4", emeaRates)));
+        Assertions.assertEquals(0.97, consolidatedRateBook.getRate("CAD_USD"), "apac should now have priority");
+        Assertions.assertFalse(consolidatedRateBook.getSnapshot().hasRate("JP_USD"));
+        Assertions.assertEquals(Map.of("apac", 0.97, "latam", 0.99), consolidatedRateBook.getQuotes("CAD_USD"));
+
+        // and quoting it again picks up where the book left off
+        ExchangeRateSnapshot emeaSnapshot = snapshot("5", Map.of("CAD_USD", 0.5, "FR_USD", 0.9));
+        Assertions.assertEquals(1, consolidatedRateBook.update("emea", emeaSnapshot));
+        Assertions.assertEquals(0.5, consolidatedRateBook.getRate("CAD_USD"));
+    }
+
+    @Test
+    @DisplayName("checks that each published snapshot matches one built from scratch out of the book's rates")
+    public void testPublishedSnapshots() {
+        ConsolidatedRateBook consolidatedRateBook = book(ConsolidatedRateBook.Policy.BEST);
+        consolidatedRateBook.update("apac", snapshot("4", Map.of("CAD_USD", 0.97, "JP_USD", 0.01)));
+        consolidatedRateBook.update("emea", snapshot("5", Map.of("CAD_USD", 0.995)));
+
+        ExchangeRateSnapshot published = consolidatedRateBook.getSnapshot();
+        ExchangeRateSnapshot fromScratch = snapshot("6", Map.of("CAD_USD", 0.995, "JP_USD", 0.01));
+        Assertions.assertEquals(fromScratch.getExchangeRateMap(), published.getExchangeRateMap());
+        Assertions.assertFalse(published.hasRate("FR_USD"));
+        Assertions.assertEquals(fromScratch.convert("CAD", "JP"), published.convert("CAD", "JP"));
+        Assertions.assertEquals(fromScratch.convert("JP", "CAD"), published.convert("JP", "CAD"));
+    }
+
+    @Test
+    @DisplayName("checks that the book's buildID depends only on what went into it")
+    public void testBuildID() {
+        String buildID = book(ConsolidatedRateBook.Policy.BEST).getSnapshot().getBuildID();
+        Assertions.assertEquals(16, buildID.length());
+        Assertions.assertEquals(buildID, book(ConsolidatedRateBook.Policy.BEST).getSnapshot().getBuildID());
+        Assertions.assertNotEquals(buildID, book(ConsolidatedRateBook.Policy.MEDIAN).getSnapshot().getBuildID());
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                                () -> book(ConsolidatedRateBook.Policy.BEST).update("nobody", snapshot("1", Map.of())));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                                () -> new ConsolidatedRateBook(ConsolidatedRateBook.Policy.BEST, List.of("a", "a")));
+    }
+
+}
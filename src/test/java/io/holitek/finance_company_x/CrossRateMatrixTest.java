@@ -0,0 +1,147 @@
+package io.holitek.finance_company_x;
+
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+
+public class CrossRateMatrixTest {
+
+    private static final double DELTA = 1e-12;
+
+    private static CrossRateMatrix crossRateMatrixOf(Map<String, Double> exchangeRateMap) {
+        return CrossRateMatrix.of(exchangeRateMap, RateTable.of(exchangeRateMap));
+    }
+
+
+    @Test
+    @DisplayName("checks that direct rates, reciprocals and one hop cross rates are all available")
+    public void testConvert() {
+        CrossRateMatrix crossRateMatrix = crossRateMatrixOf(Map.of("CAD_USD", 0.8, "FR_USD", 0.5));
+
+        Assertions.assertEquals(3, crossRateMatrix.size());
+        Assertions.assertEquals(0.8, crossRateMatrix.convert("CAD", "USD"), DELTA);
+        Assertions.assertEquals(1.25, crossRateMatrix.convert("USD", "CAD"), DELTA);
+        Assertions.assertEquals(1.6, crossRateMatrix.convert("CAD", "FR"), DELTA);
+        Assertions.assertEquals(0.625, crossRateMatrix.convert("FR", "CAD"), DELTA);
+        Assertions.assertEquals(1.0, crossRateMatrix.convert("CAD", "CAD"), DELTA);
+    }
+
+    @Test
+    @DisplayName("checks that ordinal lookups agree with currency code lookups")
+    public void testConvertByOrdinal() {
+        CrossRateMatrix crossRateMatrix = crossRateMatrixOf(Map.of("CAD_USD", 0.8, "FR_USD", 0.5));
+
+        int cad = crossRateMatrix.ordinalOf("CAD");
+        int fr = crossRateMatrix.ordinalOf("FR");
+        Assertions.assertEquals("CAD", crossRateMatrix.currencyAt(cad));
+        Assertions.assertEquals(crossRateMatrix.convert("CAD", "FR"), crossRateMatrix.convert(cad, fr));
+
+        Assertions.assertEquals(CrossRateMatrix.NO_ORDINAL, crossRateMatrix.ordinalOf("XXX"));
+        Assertions.assertTrue(Double.isNaN(crossRateMatrix.convert(cad, CrossRateMatrix.NO_ORDINAL)));
+    }
+
+    @Test
+    @DisplayName("checks that data file rates win over reciprocals and reciprocals win over cross rates")
+    public void testPrecedence() {
+        Map<String, Double> exchangeRateMap = new LinkedHashMap<>();
+        exchangeRateMap.put("CAD_USD", 0.8);
+        exchangeRateMap.put("USD_CAD", 1.3);
+        exchangeRateMap.put("FR_USD", 0.5);
+        exchangeRateMap.put("FR_CAD", 0.7);
+
+        CrossRateMatrix crossRateMatrix = crossRateMatrixOf(exchangeRateMap);
+        Assertions.assertEquals(1.3, crossRateMatrix.convert("USD", "CAD"), DELTA);
+        Assertions.assertEquals(0.7, crossRateMatrix.convert("FR", "CAD"), DELTA);
+        Assertions.assertEquals(1 / 0.7, crossRateMatrix.convert("CAD", "FR"), DELTA);
+    }
+
+    @Test
+    @DisplayName("checks that currencies more than one hop apart, unknown currencies and unusable rates get no rate")
+    public void testNoRate() {
+        Map<String, Double> exchangeRateMap = new HashMap<>();
+        exchangeRateMap.put("AAA_BBB", 2.0);
+        exchangeRateMap.put("BBB_CCC", 2.0);
+        exchangeRateMap.put("CCC_DDD", 2.0);
+        exchangeRateMap.put("EEE_FFF", 0.0);
+        exchangeRateMap.put("GGG_HHH", null);
+        exchangeRateMap.put("NOT-A-PAIR", 1.0);
+
+        CrossRateMatrix crossRateMatrix = crossRateMatrixOf(exchangeRateMap);
+        Assertions.assertEquals(4.0, crossRateMatrix.convert("AAA", "CCC"), DELTA);
+        Assertions.assertTrue(Double.isNaN(crossRateMatrix.convert("AAA", "DDD")));
+        Assertions.assertTrue(Double.isNaN(crossRateMatrix.convert("AAA", "XXX")));
+        Assertions.assertTrue(Double.isNaN(crossRateMatrix.convert("FFF", "EEE")));
+        Assertions.assertEquals(CrossRateMatrix.NO_ORDINAL, crossRateMatrix.ordinalOf("GGG"));
+        Assertions.assertEquals(4, crossRateMatrix.size());
+    }
+
+    @Test
+    @DisplayName("checks that too many currencies falls back to direct and reciprocal rates")
+    public void testTooManyCurrencies() {
+        Map<String, Double> exchangeRateMap = new HashMap<>();
+        for (int i = 0; i <= CrossRateMatrix.MAX_CURRENCIES; i++) {
+            exchangeRateMap.put("C" + (char)('A' + i / 26 % 26) + (char)('A' + i % 26) + "_USD", 2.0);
+        }
+
+        CrossRateMatrix crossRateMatrix = crossRateMatrixOf(exchangeRateMap);
+        Assertions.assertEquals(0, crossRateMatrix.size());
+        Assertions.assertEquals(2.0, crossRateMatrix.convert("CAA", "USD"), DELTA);
+        Assertions.assertEquals(0.5, crossRateMatrix.convert("USD", "CAA"), DELTA);
+        Assertions.assertTrue(Double.isNaN(crossRateMatrix.convert("CAA", "CAB")));
+    }
+
+    @Test
+    @DisplayName("checks that a matrix patched with a delta converts every pair the same as one built from scratch")
+    public void testWithChanges() {
+        Map<String, Double> exchangeRateMap = new LinkedHashMap<>();
+        exchangeRateMap.put("CAD_USD", 0.8);
+        exchangeRateMap.put("FR_USD", 0.5);
+        exchangeRateMap.put("FR_GBP", 0.9);
+        exchangeRateMap.put("GBP_JPY", 140.0);
+        exchangeRateMap.put("AUD_USD", 0.7);
+        CrossRateMatrix crossRateMatrix = crossRateMatrixOf(exchangeRateMap);
+
+        // moved, dropped, linked up, added, unusable and orphaning in turn
+        assertPatchedLikeRebuilt(crossRateMatrix, exchangeRateMap, Map.of("CAD_USD", 0.75), Set.of());
+        assertPatchedLikeRebuilt(crossRateMatrix, exchangeRateMap, Map.of(), Set.of("FR_USD"));
+        assertPatchedLikeRebuilt(crossRateMatrix, exchangeRateMap, Map.of("CAD_JPY", 85.0), Set.of("GBP_JPY"));
+        assertPatchedLikeRebuilt(crossRateMatrix, exchangeRateMap, Map.of("CHF_USD", 1.1), Set.of());
+        assertPatchedLikeRebuilt(crossRateMatrix, exchangeRateMap, Map.of("CAD_USD", 0.0), Set.of());
+        assertPatchedLikeRebuilt(crossRateMatrix, exchangeRateMap, Map.of(), Set.of("AUD_USD"));
+        assertPatchedLikeRebuilt(crossRateMatrix, exchangeRateMap, Map.of(), Set.of("XXX_YYY"));
+    }
+
+    private static void assertPatchedLikeRebuilt(CrossRateMatrix crossRateMatrix,
+                                                 Map<String, Double> exchangeRateMap,
+                                                 Map<String, Double> upserts,
+                                                 Set<String> removals) {
+
+        RateDelta rateDelta = new RateDelta(upserts, removals);
+        Map<String, Double> patchedRateMap = DeltaRateMap.apply(exchangeRateMap, rateDelta);
+        CrossRateMatrix patchedMatrix =
+                crossRateMatrix.withChanges(patchedRateMap, rateDelta, RateTable.of(patchedRateMap));
+        CrossRateMatrix rebuiltMatrix = crossRateMatrixOf(patchedRateMap);
+
+        Assertions.assertEquals(rebuiltMatrix.size(), patchedMatrix.size(), rateDelta.toString());
+        for (int from = 0; from < rebuiltMatrix.size(); from++) {
+            for (int to = 0; to < rebuiltMatrix.size(); to++) {
+                String fromCurrency = rebuiltMatrix.currencyAt(from);
+                String toCurrency = rebuiltMatrix.currencyAt(to);
+                Assertions.assertEquals(
+                        rebuiltMatrix.convert(from, to),
+                        patchedMatrix.convert(fromCurrency, toCurrency),
+                        DELTA,
+                        fromCurrency + " to " + toCurrency + " after " + upserts + " and " + removals
+                );
+            }
+        }
+    }
+
+}
@@ -2,19 +2,39 @@ package io.holitek.finance_company_x;
 
 
 import com.jayway.jsonpath.JsonPath;
+import com.sun.management.ThreadMXBean;
+import org.apache.camel.Endpoint;
+import org.apache.camel.builder.NotifyBuilder;
 import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.test.junit5.CamelTestSupport;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
 
 import java.nio.file.Path;
 
+import java.time.Instant;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 
 public class CurrencyDataPollingConsumerRouteTest extends CamelTestSupport {
 
+    private static final Logger LOG = LoggerFactory.getLogger(CurrencyDataPollingConsumerRouteTest.class);
+
     private String buildIdFileContents;
     private String buildID;
     private String dataFileContents;
+    private SnapshotStateFile snapshotStateFile;
+
+    @TempDir
+    Path stateDirectory;
 
     //
     // test setup and configuration
@@ -29,8 +49,16 @@ public class CurrencyDataPollingConsumerRouteTest extends CamelTestSupport {
         context().getPropertiesComponent()
                 .setLocation("classpath:application.test.properties");
 
+        // saves run on the loader thread, so the state file is up to date as soon as a load is
+        this.snapshotStateFile = new SnapshotStateFile(stateDirectory.resolve("lastGoodSnapshot.fcxs"));
         context().getRegistry()
-                .bind(ExchangeRateBean.NAMESPACE_KEY, new ExchangeRateBean());
+                .bind(
+                    ExchangeRateBean.NAMESPACE_KEY,
+                    new ExchangeRateBean(ExchangeRateBean.DEFAULT_HISTORY_SIZE, snapshotStateFile, Runnable::run)
+                );
+
+        context().getRegistry()
+                .bind(TimeSeriesStore.NAMESPACE_KEY, new TimeSeriesStore());
 
         // this will allow us to dynamically resolve a target directory for the route to find build and data files
         String routeTestDataRelativeDirectory = context().getPropertiesComponent()
@@ -79,6 +107,36 @@ public class CurrencyDataPollingConsumerRouteTest extends CamelTestSupport {
         return new CurrencyDataPollingConsumerRoute();
     }
 
+    /**
+     * new buildIDs are loaded on the loader pool, so the route returns before the bean has been updated. the loader
+     * takes in any request for the buildID it's loading until it's finished with it, so that's waited for too - or a
+     * test that loads the same buildID again could see the second request folded into the first.
+     */
+    private void sendAndAwaitLoad() throws InterruptedException {
+        NotifyBuilder loaded = new NotifyBuilder(context())
+                .fromRoute(CurrencyDataPollingConsumerRoute.LOADER_ROUTE_ID)
+                .whenDone(1)
+                .create();
+
+        template.sendBody("direct:start", "");
+        Assertions.assertTrue(loaded.matches(10, TimeUnit.SECONDS), "new buildID should have been loaded");
+
+        // otherwise it goes on matching every exchange the test sends after this one
+        loaded.destroy();
+
+        SingleFlightLoader singleFlightLoader = context().getRegistry().lookupByNameAndType(
+                CurrencyDataPollingConsumerRoute.LOADER_ROUTE_ID,
+                SingleFlightLoader.class
+        );
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (singleFlightLoader.getLoadingBuildID() != null && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        Assertions.assertNull(singleFlightLoader.getLoadingBuildID(), "loader should have finished");
+    }
+
 
     //
     // tests
@@ -109,8 +167,14 @@ public class CurrencyDataPollingConsumerRouteTest extends CamelTestSupport {
         );
 
 
+        ExchangeRateMetrics metrics = ExchangeRateMetrics.INSTANCE;
+        long polls = metrics.getPolls();
+        long pollsReloaded = metrics.getPollsReloaded();
+        long pollsSkipped = metrics.getPollsSkipped();
+
+
         // kick off route
-        template.sendBody("direct:start", "");
+        sendAndAwaitLoad();
 
 
         // currency exchange bean should now be populated
@@ -126,6 +190,27 @@ public class CurrencyDataPollingConsumerRouteTest extends CamelTestSupport {
                 "bean should report updated exchange rates"
         );
 
+        // and the data file should have made it into the rate history
+        TimeSeriesStore timeSeriesStore = template.getCamelContext()
+                                                  .getRegistry()
+                                                  .lookupByNameAndType(
+                                                      TimeSeriesStore.NAMESPACE_KEY,
+                                                      TimeSeriesStore.class
+                                                  );
+
+        // ingested off the loader, so it may still be on its way
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (timeSeriesStore.getFileCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        Assertions.assertEquals(1, timeSeriesStore.getFileCount(), "data file should have been ingested");
+        Assertions.assertEquals(
+                0.98,
+                timeSeriesStore.getRateAt("CAD_USD", Instant.parse("2020-10-10T00:00:00Z")),
+                "rate history should hold the data file's rates"
+        );
+
 
         // send another message
         template.sendBody("direct:start", "");
@@ -148,6 +233,181 @@ public class CurrencyDataPollingConsumerRouteTest extends CamelTestSupport {
                 "exchange rate json value should not have changed upon second message with same data in data directory"
         );
 
+        // and both polls should have been counted
+        Assertions.assertEquals(polls + 2, metrics.getPolls());
+        Assertions.assertEquals(pollsReloaded + 1, metrics.getPollsReloaded());
+        Assertions.assertEquals(pollsSkipped + 1, metrics.getPollsSkipped());
+
+        // and what was loaded should have been saved for the next start
+        Assertions.assertEquals(
+                buildID,
+                snapshotStateFile.load().map(ExchangeRateSnapshot::getBuildID).orElse(""),
+                "loaded snapshot should have been saved to the state file"
+        );
+
+    }
+
+    @Test
+    @DisplayName("checks that a snapshot restored on startup is kept when it's still current and replaced when it isn't")
+    public void testCurrencyDataPollingConsumerWarmStart() throws Exception {
+
+        ExchangeRateBean exchangeRateBean = template.getCamelContext()
+                                                    .getRegistry()
+                                                    .lookupByNameAndType(
+                                                        ExchangeRateBean.NAMESPACE_KEY,
+                                                        ExchangeRateBean.class
+                                                    );
+
+        TimeSeriesStore timeSeriesStore = template.getCamelContext()
+                                                  .getRegistry()
+                                                  .lookupByNameAndType(
+                                                      TimeSeriesStore.NAMESPACE_KEY,
+                                                      TimeSeriesStore.class
+                                                  );
+
+        // as left behind by an earlier run that had loaded the current buildID
+        Instant loadedAt = Instant.parse("2020-10-10T00:01:00Z");
+        snapshotStateFile.save(new ExchangeRateSnapshot(buildID, loadedAt, Map.of("CAD_USD", 0.98, "FR_USD", 0.9)));
+        Assertions.assertTrue(exchangeRateBean.restoreSnapshot(), "bean should restore the saved snapshot");
+        Assertions.assertEquals(buildID, exchangeRateBean.getBuildID(), "bean should answer before the first poll");
+        Assertions.assertEquals(0.98, exchangeRateBean.getRate("CAD_USD"));
+
+
+        // kick off route
+        template.sendBody("direct:start", "");
+
+
+        // restored snapshot is still current, so it shouldn't have been reloaded - but the history still needs filling,
+        //   which the restore queued on the time series thread
+        Assertions.assertEquals(loadedAt, exchangeRateBean.getSnapshot().getLoadedAt(), "snapshot should be kept");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (timeSeriesStore.getFileCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        Assertions.assertEquals(1, timeSeriesStore.getFileCount(), "data file should have been backfilled");
+
+
+        // a stale state file is replaced by whatever the buildID file points to
+        exchangeRateBean.resetBean();
+        snapshotStateFile.save(new ExchangeRateSnapshot("1233", loadedAt, Map.of("CAD_USD", 0.5)));
+        Assertions.assertTrue(exchangeRateBean.restoreSnapshot(), "bean should restore the saved snapshot");
+        Assertions.assertEquals(0.5, exchangeRateBean.getRate("CAD_USD"));
+
+        sendAndAwaitLoad();
+
+        Assertions.assertEquals(buildID, exchangeRateBean.getBuildID(), "bean should report the live buildID");
+        Assertions.assertEquals(dataFileContents, exchangeRateBean.getExchangeRatesAsJson());
+    }
+
+    @Test
+    @DisplayName("checks that a data file staged before the buildID file pointed at it is promoted rather than read")
+    public void testCurrencyDataPollingConsumerStagedDataFile() throws Exception {
+
+        ExchangeRateBean exchangeRateBean = template.getCamelContext()
+                                                    .getRegistry()
+                                                    .lookupByNameAndType(
+                                                        ExchangeRateBean.NAMESPACE_KEY,
+                                                        ExchangeRateBean.class
+                                                    );
+
+        // as the watcher would have done when the data file landed. staging runs on the calling thread
+        DataFileStager dataFileStager = new DataFileStager(DataFileStager.DEFAULT_CAPACITY, Runnable::run);
+        context().getRegistry().bind(DataFileStager.NAMESPACE_KEY, dataFileStager);
+        Path dataFilePath = Path.of(System.getProperty("data_directory"), "20201010-0000.txt");
+        Assertions.assertTrue(dataFileStager.stage(dataFilePath).join(), "data file should have been staged");
+
+
+        // kick off route
+        sendAndAwaitLoad();
+
+
+        Assertions.assertEquals(1, dataFileStager.getPromotedCount(), "staged snapshot should have been promoted");
+        Assertions.assertEquals(0, dataFileStager.size());
+        Assertions.assertEquals(buildID, exchangeRateBean.getBuildID(), "bean should report updated buildID");
+        Assertions.assertEquals("20201010-0000.txt", exchangeRateBean.getSnapshot().getDataFileName());
+        Assertions.assertEquals(dataFileContents, exchangeRateBean.getExchangeRatesAsJson());
+    }
+
+    @Test
+    @DisplayName("checks that data already loaded once is swapped in from the snapshot cache rather than parsed again")
+    public void testCurrencyDataPollingConsumerCachedDataFile() throws Exception {
+
+        ExchangeRateBean exchangeRateBean = template.getCamelContext()
+                                                    .getRegistry()
+                                                    .lookupByNameAndType(
+                                                        ExchangeRateBean.NAMESPACE_KEY,
+                                                        ExchangeRateBean.class
+                                                    );
+
+        SnapshotCache snapshotCache = template.getCamelContext()
+                                              .getRegistry()
+                                              .lookupByNameAndType(SnapshotCache.NAMESPACE_KEY, SnapshotCache.class);
+
+
+        // first load parses the data file and caches what it was loaded into
+        sendAndAwaitLoad();
+        ExchangeRateSnapshot loadedSnapshot = exchangeRateBean.getSnapshot();
+        Assertions.assertEquals(0, snapshotCache.getHitCount());
+        Assertions.assertEquals(1, snapshotCache.size());
+
+        // the bean no longer holds the buildID, as it wouldn't after a roll back to it, but its data is cached
+        exchangeRateBean.resetBean();
+        sendAndAwaitLoad();
+
+
+        Assertions.assertEquals(1, snapshotCache.getHitCount(), "data file should have been found in the cache");
+        Assertions.assertEquals(buildID, exchangeRateBean.getBuildID(), "bean should report updated buildID");
+        Assertions.assertSame(loadedSnapshot.getExchangeRateMap(),
+                              exchangeRateBean.getSnapshot().getExchangeRateMap(),
+                              "cached rates should have been reused rather than parsed again");
+
+        Assertions.assertEquals(dataFileContents, exchangeRateBean.getExchangeRatesAsJson());
+    }
+
+    @Test
+    @DisplayName("checks that an idle poll through the whole route stays within its allocation budget")
+    public void testCurrencyDataPollingConsumerIdlePollAllocationBudget() throws Exception {
+
+        // a ceiling, not a measurement. about 2.5KB today, nearly all of it the exchange, its message and headers, and
+        //   camel's routing of it through two routes - which shifts with the JIT and camel's version, so it's given
+        //   plenty of room. it catches the idle path going wholesale the way of a load, eg: the data file read or
+        //   rendered per poll. the processors' own share is held to a tight budget in BuildIdFileProcessorTest
+        final long allocationBudgetPerPoll = 4096;
+        final int polls = 20_000;
+
+        ThreadMXBean threadMXBean = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(
+                threadMXBean.isThreadAllocatedMemorySupported(),
+                "JVM can't report per thread allocations"
+        );
+
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        // the first poll loads the data file, the rest warm up the idle path. idle polls run on this thread, and the
+        //   endpoint is resolved once so its uri isn't parsed on every send
+        sendAndAwaitLoad();
+        Endpoint startEndpoint = context().getEndpoint("direct:start");
+        ExchangeRateMetrics metrics = ExchangeRateMetrics.INSTANCE;
+        long pollsSkipped = metrics.getPollsSkipped();
+        for (int i = 0; i < polls; i++) {
+            template.sendBody(startEndpoint, "");
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < polls; i++) {
+            template.sendBody(startEndpoint, "");
+        }
+
+        long allocatedPerPoll = (threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore) / polls;
+        LOG.info("idle poll through the route allocated {} bytes", allocatedPerPoll);
+
+        Assertions.assertEquals(pollsSkipped + polls * 2L, metrics.getPollsSkipped(), "every poll should be idle");
+        Assertions.assertTrue(
+                allocatedPerPoll <= allocationBudgetPerPoll,
+                "idle poll allocated " + allocatedPerPoll + " bytes, budget is " + allocationBudgetPerPoll
+        );
     }
 
 }
@@ -0,0 +1,163 @@
+package io.holitek.finance_company_x;
+
+
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit5.CamelTestSupport;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+public class DataDirectoryWatcherTest extends CamelTestSupport {
+
+    private static final String BUILD_ID_FILENAME = "buildID.txt";
+
+    @TempDir
+    Path dataDirectory;
+
+    private DataDirectoryWatcher dataDirectoryWatcher;
+    private DataFileStager dataFileStager;
+
+    //
+    // test setup and configuration
+
+    // tells the test runner that we'll start and stop the camel context manually. this ensures the camel context
+    // doesn't start before we've set up the camel registry and routes.
+    @Override
+    public boolean isUseAdviceWith() { return true; }
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        this.dataDirectoryWatcher = new DataDirectoryWatcher(
+                "direct:start",
+                dataDirectory.toString(),
+                BUILD_ID_FILENAME,
+                DataDirectoryWatcher.DEFAULT_DEBOUNCE_PERIOD
+        );
+
+        context().addService(dataDirectoryWatcher);
+
+        // staging runs on the watch thread
+        this.dataFileStager = new DataFileStager(DataFileStager.DEFAULT_CAPACITY, Runnable::run);
+        context().getRegistry().bind(DataFileStager.NAMESPACE_KEY, dataFileStager);
+
+        // simbora!
+        context().start();
+    }
+
+    @AfterEach
+    void afterEach() { context().stop(); }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() {
+        return new RouteBuilder() {
+            @Override
+            public void configure() {
+                from("direct:start")
+                        .to("mock:result");
+
+                from("direct:slow")
+                        .to("mock:slow");
+            }
+        };
+    }
+
+
+    //
+    // tests
+
+    @Test
+    @DisplayName("checks that replacing the buildID file fires the pipeline")
+    public void testBuildIdFileReplaced() throws Exception {
+        MockEndpoint mockEndpoint = getMockEndpoint("mock:result");
+        mockEndpoint.expectedMinimumMessageCount(1);
+
+        // the way a provider should publish - write elsewhere then move over the top of the old file
+        Path stagedFile = Files.writeString(dataDirectory.resolve("buildID.tmp"), "{\"buildID\":\"1234\"}");
+        Files.move(stagedFile, dataDirectory.resolve(BUILD_ID_FILENAME), StandardCopyOption.ATOMIC_MOVE);
+
+        mockEndpoint.setResultWaitTime(TimeUnit.SECONDS.toMillis(10));
+        mockEndpoint.assertIsSatisfied();
+        Assertions.assertTrue(dataDirectoryWatcher.getTriggerCount() >= 1);
+    }
+
+    @Test
+    @DisplayName("checks that a steady stream of events from another file doesn't hold off the pipeline")
+    public void testBuildIdFileReplacedWhileDataFileWritten() throws Exception {
+        // long enough that the writer below never leaves a gap in the stream of events as wide as the debounce
+        long debouncePeriod = 200;
+        DataDirectoryWatcher slowDataDirectoryWatcher =
+                new DataDirectoryWatcher("direct:slow", dataDirectory.toString(), BUILD_ID_FILENAME, debouncePeriod);
+        context().addService(slowDataDirectoryWatcher);
+
+        MockEndpoint mockEndpoint = getMockEndpoint("mock:slow");
+        mockEndpoint.expectedMinimumMessageCount(1);
+
+        // a large data file being written, a little at a time, for as long as the test runs
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Path dataFilePath = dataDirectory.resolve("20201010-0000.txt");
+        Thread writer = new Thread(() -> {
+            try {
+                while (writing.get()) {
+                    Files.writeString(dataFilePath, "{\"CAD_USD\":0.98}", StandardOpenOption.CREATE,
+                                                                          StandardOpenOption.APPEND);
+                    Thread.sleep(debouncePeriod / 20);
+                }
+            } catch (IOException | InterruptedException e) {
+                // the test times out
+            }
+        });
+
+        writer.start();
+        try {
+            Thread.sleep(debouncePeriod);
+            Files.writeString(dataDirectory.resolve(BUILD_ID_FILENAME), "{\"buildID\":\"1234\"}");
+
+            // the burst is cut off after MAX_DEBOUNCE_MULTIPLIER debounce periods at the latest
+            mockEndpoint.setResultWaitTime(debouncePeriod * DataDirectoryWatcher.MAX_DEBOUNCE_MULTIPLIER * 3);
+            mockEndpoint.assertIsSatisfied();
+        } finally {
+            writing.set(false);
+            writer.join();
+            context().removeService(slowDataDirectoryWatcher);
+        }
+    }
+
+    @Test
+    @DisplayName("checks that changes to other files in the data directory are ignored")
+    public void testOtherFileChanged() throws Exception {
+        MockEndpoint mockEndpoint = getMockEndpoint("mock:result");
+        mockEndpoint.expectedMessageCount(0);
+
+        Files.writeString(dataDirectory.resolve("20201010-0000.txt"), "{\"CAD_USD\":0.98}");
+
+        mockEndpoint.setAssertPeriod(TimeUnit.SECONDS.toMillis(1));
+        mockEndpoint.assertIsSatisfied();
+        Assertions.assertEquals(0, dataDirectoryWatcher.getTriggerCount());
+    }
+
+    @Test
+    @DisplayName("checks that new data files are handed to the stager")
+    public void testDataFileStaged() throws Exception {
+        Path dataFilePath = Files.writeString(dataDirectory.resolve("20201010-0000.txt"), "{\"CAD_USD\":0.98}");
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (dataFileStager.size() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        Assertions.assertEquals(0.98, dataFileStager.promote(dataFilePath).orElseThrow().getSnapshot().getRate("CAD_USD"));
+    }
+
+}
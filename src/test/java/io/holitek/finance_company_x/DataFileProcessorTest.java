@@ -1,10 +1,12 @@
 package io.holitek.finance_company_x;
 
 
+import org.apache.camel.Exchange;
 import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.test.junit5.CamelTestSupport;
 
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 
 import org.junit.jupiter.api.DisplayName;
@@ -13,7 +15,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
 
 
@@ -119,13 +123,11 @@ public class DataFileProcessorTest extends CamelTestSupport {
     public void testDataFileProcessorHappyPath() throws Exception {
 
         // set expectations of output
-        getMockEndpoint("mock:result").expectedHeaderReceived(
-                DataFileProcessor.DATA_FILE_CONTENTS_HEADER_KEY,
-                this.dataFileContents
+        getMockEndpoint("mock:result").expectedMessageCount(1);
+        getMockEndpoint("mock:result").expectedMessagesMatches(
+                exchange -> exchange.getMessage().getBody() instanceof DataFileLoad
         );
 
-        getMockEndpoint("mock:result").expectedBodiesReceived("");
-
 
         Map<String, Object> exchangeHeaders = Map.of(
                 BuildIdFileProcessor.BUILD_ID_FILE_CONTENTS_HEADER_KEY, this.buildIdFileContents,
@@ -140,6 +142,16 @@ public class DataFileProcessorTest extends CamelTestSupport {
         );
 
         assertMockEndpointsSatisfied();
+
+        // mock's body expectations try to type convert, so compare by hand
+        DataFileLoad dataFileLoad = getMockEndpoint("mock:result").getReceivedExchanges()
+                                                                  .get(0)
+                                                                  .getMessage()
+                                                                  .getBody(DataFileLoad.class);
+
+        Assertions.assertEquals(Map.of("CAD_USD", 0.98, "FR_USD", 0.9), dataFileLoad.getExchangeRateMap());
+        Assertions.assertEquals("20201010-0000.txt", dataFileLoad.getDataFileName());
+        Assertions.assertNull(dataFileLoad.getRateDelta());
     }
 
     @Test
@@ -147,9 +159,8 @@ public class DataFileProcessorTest extends CamelTestSupport {
     public void testDataFileProcessorNoFilenameInBuildIdFile() throws Exception {
 
         // set expectations of output
-        getMockEndpoint("mock:result").expectedHeaderReceived(
-                DataFileProcessor.DATA_FILE_CONTENTS_HEADER_KEY,
-                this.dataFileContents
+        getMockEndpoint("mock:result").expectedMessagesMatches(
+                exchange -> exchange.getMessage().getBody() instanceof DataFileLoad
         );
 
 
@@ -173,9 +184,8 @@ public class DataFileProcessorTest extends CamelTestSupport {
     public void testDataFileProcessorBadFilenameInBuildIdFile() throws Exception {
 
         // set expectations of output
-        getMockEndpoint("mock:result").expectedHeaderReceived(
-                DataFileProcessor.DATA_FILE_CONTENTS_HEADER_KEY,
-                this.dataFileContents
+        getMockEndpoint("mock:result").expectedMessagesMatches(
+                exchange -> exchange.getMessage().getBody() instanceof DataFileLoad
         );
 
 
@@ -194,13 +204,74 @@ public class DataFileProcessorTest extends CamelTestSupport {
         getMockEndpoint("mock:result").assertIsNotSatisfied();
     }
 
-}
-
-
-
+    @Test
+    @DisplayName("checks that a numeric Version in the buildID file is read like a string one")
+    public void testDataFileProcessorNumericVersion() throws Exception {
+        getMockEndpoint("mock:result").expectedMessageCount(1);
 
+        template.sendBodyAndHeaders("direct:start", "", Map.of(
+                BuildIdFileProcessor.BUILD_ID_FILE_CONTENTS_HEADER_KEY,
+                "{\"buildID\":\"1234\",\"FileName\":\"20201010-0000.txt\",\"Version\":1}",
+                CurrencyDataPollingConsumerRoute.DATA_DIRECTORY_HEADER_KEY, this.dataDirectory.toString()
+        ));
 
+        assertMockEndpointsSatisfied();
+        DataFileLoad dataFileLoad = getMockEndpoint("mock:result").getReceivedExchanges()
+                                                                  .get(0)
+                                                                  .getMessage()
+                                                                  .getBody(DataFileLoad.class);
 
+        Assertions.assertEquals(Map.of("CAD_USD", 0.98, "FR_USD", 0.9), dataFileLoad.getExchangeRateMap());
+    }
 
+    @Test
+    @DisplayName("checks that a delta made against the current buildID is read in place of the data file")
+    public void testDataFileProcessorDelta() throws Exception {
+        Path deltaDirectory = Files.createTempDirectory("delta");
+        Files.copy(this.dataDirectory.toPath().resolve("20201010-0000.txt"),
+                   deltaDirectory.resolve("20201010-0000.txt"));
+        Files.writeString(deltaDirectory.resolve("20201010-0000.delta.txt"), "{\"upserts\":{\"CAD_USD\":0.97}}");
+        String buildIdContents = "{\"buildID\":\"5678\",\"FileName\":\"20201010-0000.txt\"," +
+                                 "\"DeltaFileName\":\"20201010-0000.delta.txt\",\"BaseBuildID\":\"1234\"}";
+
+        getMockEndpoint("mock:result").expectedMessageCount(3);
+
+        // bean holds the delta's base - the delta is read and the data file isn't
+        template.sendBodyAndHeaders("direct:start", "", Map.of(
+                BuildIdFileProcessor.BUILD_ID_FILE_CONTENTS_HEADER_KEY, buildIdContents,
+                CurrencyDataPollingConsumerRoute.DATA_DIRECTORY_HEADER_KEY, deltaDirectory.toString(),
+                ExchangeRateBean.CURRENT_BUILD_ID_HEADER_KEY, "1234"
+        ));
+
+        // bean holds something else - the data file is read
+        template.sendBodyAndHeaders("direct:start", "", Map.of(
+                BuildIdFileProcessor.BUILD_ID_FILE_CONTENTS_HEADER_KEY, buildIdContents,
+                CurrencyDataPollingConsumerRoute.DATA_DIRECTORY_HEADER_KEY, deltaDirectory.toString(),
+                ExchangeRateBean.CURRENT_BUILD_ID_HEADER_KEY, "0000"
+        ));
+
+        // delta can't be read - the data file is read
+        Files.writeString(deltaDirectory.resolve("20201010-0000.delta.txt"), "not json");
+        template.sendBodyAndHeaders("direct:start", "", Map.of(
+                BuildIdFileProcessor.BUILD_ID_FILE_CONTENTS_HEADER_KEY, buildIdContents,
+                CurrencyDataPollingConsumerRoute.DATA_DIRECTORY_HEADER_KEY, deltaDirectory.toString(),
+                ExchangeRateBean.CURRENT_BUILD_ID_HEADER_KEY, "1234"
+        ));
 
+        assertMockEndpointsSatisfied();
+        List<Exchange> exchanges = getMockEndpoint("mock:result").getReceivedExchanges();
+
+        DataFileLoad deltaLoad = exchanges.get(0).getMessage().getBody(DataFileLoad.class);
+        Assertions.assertEquals(Map.of("CAD_USD", 0.97), deltaLoad.getRateDelta().getUpserts());
+        Assertions.assertEquals("1234", deltaLoad.getBaseBuildID());
+        Assertions.assertEquals("20201010-0000.delta.txt", deltaLoad.getDataFileName());
+        Assertions.assertNull(deltaLoad.getExchangeRateMap());
+
+        for (Exchange exchange : exchanges.subList(1, 3)) {
+            DataFileLoad dataFileLoad = exchange.getMessage().getBody(DataFileLoad.class);
+            Assertions.assertNull(dataFileLoad.getRateDelta());
+            Assertions.assertEquals(Map.of("CAD_USD", 0.98, "FR_USD", 0.9), dataFileLoad.getExchangeRateMap());
+        }
+    }
 
+}
@@ -0,0 +1,112 @@
+package io.holitek.finance_company_x;
+
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import java.util.Map;
+import java.util.Optional;
+
+
+public class DataFileStagerTest {
+
+    @TempDir
+    Path dataDirectory;
+
+    /**
+     *
+     * @param dataFileName
+     * @param json
+     * @return
+     * @throws IOException
+     */
+    private Path writeDataFile(String dataFileName, String json) throws IOException {
+        return Files.writeString(dataDirectory.resolve(dataFileName), json);
+    }
+
+
+    @Test
+    @DisplayName("checks that a staged data file is promoted once, fully built, and other files aren't staged")
+    public void testStageAndPromote() throws IOException {
+        // runs staging on the calling thread
+        DataFileStager dataFileStager = new DataFileStager(DataFileStager.DEFAULT_CAPACITY, Runnable::run);
+        Path dataFilePath = writeDataFile("20201010-0000.txt", "{\"CAD_USD\":0.98,\"FR_USD\":0.9}");
+
+        Assertions.assertTrue(dataFileStager.stage(dataFilePath).join());
+        Assertions.assertTrue(dataFileStager.stage(dataFilePath).join(), "unchanged file should stay staged");
+        Assertions.assertEquals(1, dataFileStager.size());
+
+        Optional<DataFileStager.StagedFile> stagedFileOptional = dataFileStager.promote(dataFilePath);
+        Assertions.assertTrue(stagedFileOptional.isPresent());
+        ExchangeRateSnapshot snapshot = stagedFileOptional.get().getSnapshot();
+        Assertions.assertEquals(Map.of("CAD_USD", 0.98, "FR_USD", 0.9), snapshot.getExchangeRateMap());
+        Assertions.assertEquals("20201010-0000.txt", snapshot.getDataFileName());
+        Assertions.assertEquals(0.98 / 0.9, snapshot.convert("CAD", "FR"), 1e-12);
+
+        // hashed as it was read, the same as if it had been hashed on its own
+        Assertions.assertEquals(SnapshotCache.contentHashOf(dataFilePath), stagedFileOptional.get().getContentHash());
+        Assertions.assertEquals(1, dataFileStager.getPromotedCount());
+
+        // promotion takes it out of the staging area
+        Assertions.assertTrue(dataFileStager.promote(dataFilePath).isEmpty());
+        Assertions.assertEquals(0, dataFileStager.size());
+
+        // neither the buildID file nor a delta file are data files
+        Assertions.assertFalse(dataFileStager.stage(writeDataFile("buildID.txt", "{}")).join());
+        Assertions.assertFalse(dataFileStager.stage(writeDataFile("20201010-0000.delta.txt", "{}")).join());
+        Assertions.assertFalse(dataFileStager.stage(dataDirectory.resolve("20201010-0100.txt")).join());
+        Assertions.assertEquals(0, dataFileStager.size());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new DataFileStager(0, Runnable::run));
+    }
+
+    @Test
+    @DisplayName("checks that files that are half written or changed after staging aren't promoted")
+    public void testChangedFiles() throws IOException {
+        DataFileStager dataFileStager = new DataFileStager(DataFileStager.DEFAULT_CAPACITY, Runnable::run);
+
+        // still being written
+        Path dataFilePath = writeDataFile("20201010-0000.txt", "{\"CAD_USD\":0.9");
+        Assertions.assertFalse(dataFileStager.stage(dataFilePath).join());
+        Assertions.assertTrue(dataFileStager.promote(dataFilePath).isEmpty());
+
+        // finished - and changed again once staged
+        writeDataFile("20201010-0000.txt", "{\"CAD_USD\":0.98}");
+        Assertions.assertTrue(dataFileStager.stage(dataFilePath).join());
+        writeDataFile("20201010-0000.txt", "{\"CAD_USD\":0.97}");
+        Files.setLastModifiedTime(dataFilePath, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+        Assertions.assertTrue(dataFileStager.promote(dataFilePath).isEmpty(), "changed file should be read afresh");
+
+        // staging it again picks up the change
+        Assertions.assertTrue(dataFileStager.stage(dataFilePath).join());
+        Assertions.assertEquals(0.97, dataFileStager.promote(dataFilePath).orElseThrow().getSnapshot().getRate("CAD_USD"));
+    }
+
+    @Test
+    @DisplayName("checks that files that are never promoted are evicted oldest first")
+    public void testEviction() throws IOException {
+        DataFileStager dataFileStager = new DataFileStager(2, Runnable::run);
+        Path first = writeDataFile("20201010-0000.txt", "{\"CAD_USD\":0.98}");
+        Path second = writeDataFile("20201010-0100.txt", "{\"CAD_USD\":0.97}");
+        Path third = writeDataFile("20201010-0200.txt", "{\"CAD_USD\":0.96}");
+
+        dataFileStager.stage(first).join();
+        dataFileStager.stage(second).join();
+        dataFileStager.stage(third).join();
+
+        Assertions.assertEquals(2, dataFileStager.size());
+        Assertions.assertEquals(1, dataFileStager.getEvictedCount());
+        Assertions.assertTrue(dataFileStager.promote(first).isEmpty());
+        Assertions.assertTrue(dataFileStager.promote(second).isPresent());
+        Assertions.assertTrue(dataFileStager.promote(third).isPresent());
+    }
+
+}
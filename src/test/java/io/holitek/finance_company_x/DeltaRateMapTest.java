@@ -0,0 +1,93 @@
+package io.holitek.finance_company_x;
+
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+public class DeltaRateMapTest {
+
+    /**
+     *
+     * @param size
+     * @return read-only map of K0_USD .. K(size - 1)_USD, in order, each rated at its index
+     */
+    private static Map<String, Double> base(int size) {
+        Map<String, Double> exchangeRateMap = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            exchangeRateMap.put("K" + i + "_USD", (double)i);
+        }
+
+        return Collections.unmodifiableMap(exchangeRateMap);
+    }
+
+
+    @Test
+    @DisplayName("checks that the delta is applied with the base left as it was, in base order with additions last")
+    public void testApply() {
+        Map<String, Double> base = base(100);
+        Map<String, Double> exchangeRateMap = DeltaRateMap.apply(
+                base,
+                new RateDelta(Map.of("K1_USD", 0.5, "NEW_USD", 7.0), Set.of("K0_USD", "NOPE_USD"))
+        );
+
+        Assertions.assertTrue(exchangeRateMap instanceof DeltaRateMap, "small delta should be overlaid on the base");
+        Assertions.assertEquals(100, exchangeRateMap.size());
+        Assertions.assertEquals(0.5, exchangeRateMap.get("K1_USD"));
+        Assertions.assertEquals(7.0, exchangeRateMap.get("NEW_USD"));
+        Assertions.assertEquals(2.0, exchangeRateMap.get("K2_USD"));
+        Assertions.assertNull(exchangeRateMap.get("K0_USD"));
+        Assertions.assertFalse(exchangeRateMap.containsKey("K0_USD"));
+        Assertions.assertEquals(0.0, base.get("K0_USD"), "base should be left as it was");
+
+        List<String> keys = new ArrayList<>(exchangeRateMap.keySet());
+        Assertions.assertEquals(List.of("K1_USD", "K2_USD"), keys.subList(0, 2));
+        Assertions.assertEquals("NEW_USD", keys.get(keys.size() - 1));
+
+        // equal to the same rates built the long way
+        Map<String, Double> expected = new LinkedHashMap<>(base);
+        expected.remove("K0_USD");
+        expected.put("K1_USD", 0.5);
+        expected.put("NEW_USD", 7.0);
+        Assertions.assertEquals(expected, exchangeRateMap);
+        Assertions.assertEquals(expected.hashCode(), exchangeRateMap.hashCode());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> exchangeRateMap.put("A_B", 1.0));
+    }
+
+    @Test
+    @DisplayName("checks that successive deltas fold onto the same base and flatten once they've changed enough")
+    public void testFoldAndFlatten() {
+        Map<String, Double> base = base(20);
+        Map<String, Double> first = DeltaRateMap.apply(base, new RateDelta(Map.of("NEW_USD", 1.0), Set.of("K0_USD")));
+        Map<String, Double> second = DeltaRateMap.apply(first, new RateDelta(Map.of("K0_USD", 9.0), Set.of("NEW_USD")));
+
+        // the second delta undoes the first, so the changes left are a single upsert over the base
+        Assertions.assertTrue(second instanceof DeltaRateMap);
+        Assertions.assertEquals(20, second.size());
+        Assertions.assertEquals(9.0, second.get("K0_USD"));
+        Assertions.assertFalse(second.containsKey("NEW_USD"));
+        Assertions.assertEquals(1.0, first.get("NEW_USD"), "earlier map should be left as it was");
+
+        // more than a quarter of the base changed - folded into a plain map
+        Map<String, Double> upserts = new LinkedHashMap<>();
+        for (int i = 0; i < 6; i++) {
+            upserts.put("K" + i + "_USD", -1.0);
+        }
+
+        Map<String, Double> flattened = DeltaRateMap.apply(second, new RateDelta(upserts, Set.of()));
+        Assertions.assertFalse(flattened instanceof DeltaRateMap);
+        Assertions.assertEquals(20, flattened.size());
+        Assertions.assertEquals(-1.0, flattened.get("K5_USD"));
+        Assertions.assertEquals("K0_USD", flattened.keySet().iterator().next());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> flattened.put("A_B", 1.0));
+    }
+
+}
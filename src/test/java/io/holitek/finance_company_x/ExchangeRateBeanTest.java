@@ -10,9 +10,12 @@ import org.junit.jupiter.api.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 
 public class ExchangeRateBeanTest extends CamelTestSupport {
@@ -197,6 +200,20 @@ public class ExchangeRateBeanTest extends CamelTestSupport {
         Assertions.assertEquals(expectedJsonResults, actualJsonResults);
     }
 
+    @Test
+    @DisplayName("checks that binary rates are imported the same as json ones and malformed ones are refused")
+    public void testSetExchangeRateMapBinary() {
+        ExchangeRateBean exchangeRateBean = new ExchangeRateBean();
+        Map<String, Double> expectedMapResults = Map.of("CAD_USD", 0.98, "FR_USD", 0.9);
+
+        byte[] encoded = BinaryRateFormat.encode(expectedMapResults);
+        Assertions.assertTrue(exchangeRateBean.setExchangeRateMap(ByteBuffer.wrap(encoded)));
+        Assertions.assertEquals(expectedMapResults, exchangeRateBean.getExchangeRateMap());
+
+        Assertions.assertFalse(exchangeRateBean.setExchangeRateMap(ByteBuffer.wrap(Arrays.copyOf(encoded, 10))));
+        Assertions.assertEquals(expectedMapResults, exchangeRateBean.getExchangeRateMap());
+    }
+
     @Test
     @DisplayName("checks that a request for an exchange rate that doesn't exist returns empty optional")
     public void testGetExchangeRateForNonExistentKey() {
@@ -429,31 +446,158 @@ public class ExchangeRateBeanTest extends CamelTestSupport {
 
     }
 
-}
-
-
-
-
+    @Test
+    @DisplayName("checks that a snapshot carries buildID and rates from the same update")
+    public void testGetSnapshot() {
+        ExchangeRateBean exchangeRateBean = (
+                ExchangeRateBean) context().getRegistry().lookupByName(ExchangeRateBean.NAMESPACE_KEY);
 
+        // setup
+        //
+        ExchangeRateSnapshot defaultSnapshot = exchangeRateBean.getSnapshot();
+        assert defaultSnapshot == ExchangeRateSnapshot.EMPTY;
 
+        // test
+        //
+        assert exchangeRateBean.setExchangeRates(this.buildID, this.dataFileContents);
+        ExchangeRateSnapshot snapshot = exchangeRateBean.getSnapshot();
 
+        Assertions.assertEquals(this.buildID, snapshot.getBuildID(), "snapshot reporting unexpected buildID");
+        Assertions.assertEquals(
+                Map.of("CAD_USD", 0.98, "FR_USD", 0.9),
+                snapshot.getExchangeRateMap(),
+                "snapshot reporting unexpected exchange rates"
+        );
 
+        Assertions.assertTrue(
+                snapshot.getLoadedAt().isAfter(defaultSnapshot.getLoadedAt()),
+                "snapshot load timestamp should be set when the snapshot is created"
+        );
 
+        // a reset swaps in a new snapshot - it doesn't touch the one a reader is already holding
+        exchangeRateBean.resetBean();
+        Assertions.assertEquals(ExchangeRateSnapshot.EMPTY, exchangeRateBean.getSnapshot());
+        Assertions.assertEquals(this.buildID, snapshot.getBuildID(), "held snapshot should not have changed");
+        Assertions.assertEquals(2, snapshot.size(), "held snapshot should not have changed");
+    }
 
+    @Test
+    @DisplayName("checks that snapshot rates can't be modified by callers")
+    public void testSnapshotIsReadOnly() {
+        ExchangeRateBean exchangeRateBean = (
+                ExchangeRateBean) context().getRegistry().lookupByName(ExchangeRateBean.NAMESPACE_KEY);
 
+        assert exchangeRateBean.setExchangeRates(this.buildID, this.dataFileContents);
+        ExchangeRateSnapshot snapshot = exchangeRateBean.getSnapshot();
 
+        Assertions.assertThrows(
+                UnsupportedOperationException.class,
+                () -> snapshot.getExchangeRateMap().clear(),
+                "snapshot rates should be read only"
+        );
+    }
 
+    @Test
+    @DisplayName("checks primitive rate lookups against populated and default bean")
+    public void testGetRateAndHasRate() {
+        ExchangeRateBean exchangeRateBean = (
+                ExchangeRateBean) context().getRegistry().lookupByName(ExchangeRateBean.NAMESPACE_KEY);
 
+        Assertions.assertFalse(exchangeRateBean.hasRate("CAD_USD"), "default bean shouldn't report any rates");
+        Assertions.assertTrue(Double.isNaN(exchangeRateBean.getRate("CAD_USD")), "expected sentinel from default bean");
 
+        assert exchangeRateBean.setExchangeRates(this.buildID, this.dataFileContents);
 
+        Assertions.assertTrue(exchangeRateBean.hasRate("CAD_USD"));
+        Assertions.assertEquals(0.98, exchangeRateBean.getRate("CAD_USD"));
+        Assertions.assertEquals(0.9, exchangeRateBean.getRate("FR_USD"));
+        Assertions.assertFalse(exchangeRateBean.hasRate("floopieDonkWagonTheThird"));
+        Assertions.assertTrue(Double.isNaN(exchangeRateBean.getRate("floopieDonkWagonTheThird")));
+    }
 
+    @Test
+    @DisplayName("checks that cross rates are available for pairs the data file doesn't have")
+    public void testConvert() {
+        ExchangeRateBean exchangeRateBean = (
+                ExchangeRateBean) context().getRegistry().lookupByName(ExchangeRateBean.NAMESPACE_KEY);
 
+        Assertions.assertTrue(Double.isNaN(exchangeRateBean.convert("CAD", "FR")), "expected sentinel from default bean");
 
+        assert exchangeRateBean.setExchangeRates(this.buildID, this.dataFileContents);
 
+        Assertions.assertEquals(0.98, exchangeRateBean.convert("CAD", "USD"));
+        Assertions.assertEquals(1 / 0.9, exchangeRateBean.convert("USD", "FR"), 1e-12);
+        Assertions.assertEquals(0.98 / 0.9, exchangeRateBean.convert("CAD", "FR"), 1e-12);
+        Assertions.assertTrue(Double.isNaN(exchangeRateBean.convert("CAD", "XXX")));
+    }
 
+    @Test
+    @DisplayName("checks that earlier builds can still be read by buildID after newer data is loaded")
+    public void testVersionPinnedLookups() {
+        ExchangeRateBean exchangeRateBean = (
+                ExchangeRateBean) context().getRegistry().lookupByName(ExchangeRateBean.NAMESPACE_KEY);
 
+        assert exchangeRateBean.setExchangeRates(this.buildID, this.dataFileContents);
+        assert exchangeRateBean.setExchangeRates("5678", "{\"CAD_USD\":0.97}");
 
+        Assertions.assertEquals(Optional.of(0.98), exchangeRateBean.getExchangeRateFor(this.buildID, "CAD_USD"));
+        Assertions.assertEquals(Optional.of(0.97), exchangeRateBean.getExchangeRateFor("5678", "CAD_USD"));
+        Assertions.assertEquals(Optional.of(0.9), exchangeRateBean.getExchangeRateFor(this.buildID, "FR_USD"));
+        Assertions.assertEquals(Optional.empty(), exchangeRateBean.getExchangeRateFor("5678", "FR_USD"));
+        Assertions.assertEquals(Optional.empty(), exchangeRateBean.getExchangeRateFor("nope", "CAD_USD"));
 
+        // a failed load resets the live snapshot but leaves the good ones in the history
+        assert exchangeRateBean.setExchangeRates("9999", "not json") == false;
+        Assertions.assertEquals(ExchangeRateSnapshot.EMPTY, exchangeRateBean.getSnapshot());
+        Assertions.assertEquals(2, exchangeRateBean.getSnapshot(this.buildID).orElseThrow().size());
+    }
 
+    @Test
+    @DisplayName("checks that the history only holds as many builds as it was sized for")
+    public void testHistoryEviction() {
+        ExchangeRateBean exchangeRateBean = new ExchangeRateBean(2);
+
+        assert exchangeRateBean.setExchangeRates("1", this.dataFileContents);
+        assert exchangeRateBean.setExchangeRates("2", this.dataFileContents);
+        assert exchangeRateBean.setExchangeRates("3", this.dataFileContents);
+
+        Assertions.assertTrue(exchangeRateBean.getSnapshot("1").isEmpty());
+        Assertions.assertTrue(exchangeRateBean.getSnapshot("2").isPresent());
+        Assertions.assertSame(exchangeRateBean.getSnapshot(), exchangeRateBean.getSnapshot("3").orElseThrow());
+        Assertions.assertEquals(2, exchangeRateBean.getSnapshotHistory().size());
+    }
 
+    @Test
+    @DisplayName("checks that a delta is only applied to the buildID it was made against")
+    public void testApplyDelta() {
+        ExchangeRateBean exchangeRateBean = new ExchangeRateBean(3);
+        RateDelta rateDelta = new RateDelta(Map.of("CAD_USD", 0.97, "JP_USD", 0.01), Set.of("FR_USD"));
+
+        // nothing loaded yet - nothing to apply the delta to
+        Assertions.assertFalse(exchangeRateBean.applyDelta("5678", this.buildID, rateDelta, "delta.txt"));
+        Assertions.assertEquals(ExchangeRateSnapshot.EMPTY, exchangeRateBean.getSnapshot());
+
+        assert exchangeRateBean.setExchangeRates(this.buildID, this.dataFileContents);
+        ExchangeRateSnapshot baseSnapshot = exchangeRateBean.getSnapshot();
+
+        // made against some other buildID - the bean keeps what it has rather than resetting
+        Assertions.assertFalse(exchangeRateBean.applyDelta("5678", "nope", rateDelta, "delta.txt"));
+        Assertions.assertSame(baseSnapshot, exchangeRateBean.getSnapshot());
+        Assertions.assertFalse(exchangeRateBean.applyDelta("", this.buildID, rateDelta, "delta.txt"));
+        Assertions.assertSame(baseSnapshot, exchangeRateBean.getSnapshot());
+
+        Assertions.assertTrue(exchangeRateBean.applyDelta("5678", this.buildID, rateDelta, "delta.txt"));
+        Assertions.assertEquals("5678", exchangeRateBean.getBuildID());
+        Assertions.assertEquals("delta.txt", exchangeRateBean.getSnapshot().getDataFileName());
+        Assertions.assertEquals(Map.of("CAD_USD", 0.97, "JP_USD", 0.01), exchangeRateBean.getExchangeRateMap());
+        Assertions.assertEquals(0.97, exchangeRateBean.getRate("CAD_USD"));
+        Assertions.assertFalse(exchangeRateBean.hasRate("FR_USD"));
+        Assertions.assertEquals(0.97 / 0.01, exchangeRateBean.convert("CAD", "JP"), 1e-9);
+        Assertions.assertTrue(exchangeRateBean.getExchangeRatesAsJson().contains("\"JP_USD\""));
+
+        // the base is still there for version pinned lookups
+        Assertions.assertEquals(Optional.of(0.9), exchangeRateBean.getExchangeRateFor(this.buildID, "FR_USD"));
+        Assertions.assertEquals(0.98, baseSnapshot.getRate("CAD_USD"));
+    }
 
+}
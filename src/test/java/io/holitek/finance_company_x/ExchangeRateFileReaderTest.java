@@ -0,0 +1,103 @@
+package io.holitek.finance_company_x;
+
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+public class ExchangeRateFileReaderTest {
+
+    @TempDir
+    Path tempDirectory;
+
+
+    @Test
+    @DisplayName("checks that a well formed data file streams into a read-only map in file order")
+    public void testReadHappyPath() throws IOException {
+        Path dataFilePath = Path.of(System.getProperty("user.dir"), "src/test/resources/test_dataFiles/20201010-0000.txt");
+
+        Map<String, Double> exchangeRateMap = ExchangeRateFileReader.read(dataFilePath);
+
+        Assertions.assertEquals(Map.of("CAD_USD", 0.98, "FR_USD", 0.9), exchangeRateMap);
+        Assertions.assertEquals(List.of("CAD_USD", "FR_USD"), new ArrayList<>(exchangeRateMap.keySet()));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> exchangeRateMap.put("A_B", 1.0));
+    }
+
+    @Test
+    @DisplayName("checks that the same values databind accepts are accepted")
+    public void testReadValueTypes() throws IOException {
+        Map<String, Double> expected = new HashMap<>();
+        expected.put("INT_USD", 2.0);
+        expected.put("STR_USD", 0.5);
+        expected.put("NUL_USD", null);
+
+        Map<String, Double> actual = ExchangeRateFileReader.read("{\"INT_USD\":2,\"STR_USD\":\"0.5\",\"NUL_USD\":null}");
+        Assertions.assertEquals(expected, actual);
+    }
+
+    @Test
+    @DisplayName("checks that malformed data is rejected")
+    public void testReadMalformed() throws IOException {
+        for (String malformed : new String[] {"", "[]", "{\"CAD_USD\":", "{\"CAD_USD\":true}", "{\"CAD_USD\":\"x\"}"}) {
+            Path dataFilePath = Files.writeString(tempDirectory.resolve("malformed.txt"), malformed);
+            Assertions.assertThrows(
+                    IOException.class,
+                    () -> ExchangeRateFileReader.read(dataFilePath),
+                    "expected data to be rejected: " + malformed
+            );
+        }
+    }
+
+    @Test
+    @DisplayName("checks that a large data file round trips")
+    public void testReadLargeFile() throws IOException {
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i < 100_000; i++) {
+            json.append(i == 0 ? "" : ",").append("\"K").append(i).append("_USD\":").append(i / 7.0);
+        }
+
+        Path dataFilePath = Files.writeString(tempDirectory.resolve("large.txt"), json.append('}'));
+
+        Map<String, Double> exchangeRateMap = ExchangeRateFileReader.read(dataFilePath);
+        Assertions.assertEquals(100_000, exchangeRateMap.size());
+        Assertions.assertEquals(99_999 / 7.0, exchangeRateMap.get("K99999_USD"));
+    }
+
+    @Test
+    @DisplayName("checks that a delta file reads into its upserts and removals and malformed ones are rejected")
+    public void testReadDelta() throws IOException {
+        Path deltaFilePath = Files.writeString(
+                tempDirectory.resolve("20201010-0100.delta.txt"),
+                "{\"upserts\":{\"CAD_USD\":0.97,\"JP_USD\":0.01},\"comment\":[1,{}],\"removals\":[\"FR_USD\"]}"
+        );
+
+        RateDelta rateDelta = ExchangeRateFileReader.readDelta(deltaFilePath);
+        Assertions.assertEquals(Map.of("CAD_USD", 0.97, "JP_USD", 0.01), rateDelta.getUpserts());
+        Assertions.assertEquals(Set.of("FR_USD"), rateDelta.getRemovals());
+        Assertions.assertEquals(3, rateDelta.size());
+
+        Assertions.assertEquals(0, ExchangeRateFileReader.readDelta("{}").size());
+        String[] malformedDeltas = {"", "[]", "{\"removals\":{}}", "{\"removals\":[1]}", "{\"upserts\":[]}"};
+        for (String malformed : malformedDeltas) {
+            Assertions.assertThrows(
+                    IOException.class,
+                    () -> ExchangeRateFileReader.readDelta(malformed),
+                    "expected delta to be rejected: " + malformed
+            );
+        }
+    }
+
+}
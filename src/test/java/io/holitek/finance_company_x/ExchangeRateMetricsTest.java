@@ -0,0 +1,128 @@
+package io.holitek.finance_company_x;
+
+
+import org.apache.camel.test.junit5.CamelTestSupport;
+
+import org.junit.jupiter.api.*;
+
+import java.lang.management.ManagementFactory;
+
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+
+public class ExchangeRateMetricsTest extends CamelTestSupport {
+
+    private static final ExchangeRateMetrics METRICS = ExchangeRateMetrics.INSTANCE;
+
+    private ExchangeRateBean exchangeRateBean;
+    private ExchangeRateMetricsExporter exchangeRateMetricsExporter;
+
+    //
+    // test setup and configuration
+
+    // tells the test runner that we'll start and stop the camel context manually. this ensures the camel context
+    // doesn't start before we've set up the camel registry and routes.
+    @Override
+    public boolean isUseAdviceWith() { return true; }
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        System.setProperty("metrics_jmx_enabled", "true");
+
+        exchangeRateBean = new ExchangeRateBean();
+        context().getRegistry().bind(ExchangeRateBean.NAMESPACE_KEY, exchangeRateBean);
+
+        exchangeRateMetricsExporter = new ExchangeRateMetricsExporter(ExchangeRateBean.NAMESPACE_KEY);
+        context().addService(exchangeRateMetricsExporter);
+
+        // simbora!
+        context().start();
+    }
+
+    @AfterEach
+    void afterEach() {
+        context().stop();
+        System.clearProperty("metrics_jmx_enabled");
+    }
+
+
+    //
+    // tests
+
+    @Test
+    @DisplayName("checks that lookups through the bean are counted as hits or misses")
+    public void testLookupCounters() {
+        exchangeRateBean.setExchangeRates("1234", Map.of("CAD_USD", 0.98, "FR_USD", 0.9));
+        long hits = METRICS.getLookupHits();
+        long misses = METRICS.getLookupMisses();
+
+        exchangeRateBean.getRate("CAD_USD");
+        exchangeRateBean.getExchangeRateFor("FR_USD");
+        exchangeRateBean.getExchangeRateFor("1234", "FR_USD");
+        exchangeRateBean.convert("CAD", "FR");
+        exchangeRateBean.getRate("XXX_USD");
+        exchangeRateBean.getExchangeRateFor("9999", "FR_USD");
+
+        Assertions.assertEquals(hits + 4, METRICS.getLookupHits());
+        Assertions.assertEquals(misses + 2, METRICS.getLookupMisses());
+    }
+
+    @Test
+    @DisplayName("checks that each stage of an update is timed")
+    public void testUpdateLatencies() {
+        long builds = METRICS.getSnapshotBuildLatency().getCount();
+        long swaps = METRICS.getSnapshotSwapLatency().getCount();
+
+        exchangeRateBean.setExchangeRates("1234", Map.of("CAD_USD", 0.98));
+        exchangeRateBean.setExchangeRates("", Map.of("CAD_USD", 0.98));
+
+        Assertions.assertEquals(builds + 1, METRICS.getSnapshotBuildLatency().getCount());
+        Assertions.assertEquals(swaps + 1, METRICS.getSnapshotSwapLatency().getCount());
+    }
+
+    @Test
+    @DisplayName("checks that the prometheus text has cumulative histogram buckets that end in the count")
+    public void testPrometheusText() {
+        ExchangeRateMetrics metrics = new ExchangeRateMetrics();
+        metrics.recordPoll();
+        metrics.recordPollSkipped();
+        metrics.getDataFileParseLatency().record(1_500);
+        metrics.getDataFileParseLatency().record(3_000_000);
+
+        String text = metrics.toPrometheusText(ExchangeRateSnapshot.EMPTY);
+        Assertions.assertTrue(text.contains("\nfinance_company_x_polls_total 1\n"), text);
+        Assertions.assertTrue(text.contains("\nfinance_company_x_polls_skipped_total 1\n"), text);
+        Assertions.assertTrue(text.contains("\nfinance_company_x_polls_reloaded_total 0\n"), text);
+        Assertions.assertTrue(text.contains("\nfinance_company_x_data_file_parse_seconds_bucket{le=\"2.048E-6\"} 1\n"));
+        Assertions.assertTrue(text.contains("\nfinance_company_x_data_file_parse_seconds_bucket{le=\"+Inf\"} 2\n"));
+        Assertions.assertTrue(text.contains("\nfinance_company_x_data_file_parse_seconds_count 2\n"));
+        Assertions.assertTrue(text.contains("\nfinance_company_x_snapshot_info{build_id=\"\"} 1\n"));
+        Assertions.assertTrue(text.endsWith("\n"));
+    }
+
+    @Test
+    @DisplayName("checks that the metrics and live snapshot gauges are readable over jmx, and unregistered on stop")
+    public void testJmx() throws Exception {
+        exchangeRateBean.setExchangeRates("1234", Map.of("CAD_USD", 0.98, "FR_USD", 0.9));
+
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = exchangeRateMetricsExporter.getObjectName();
+        Assertions.assertNotNull(objectName);
+
+        Assertions.assertEquals("1234", mBeanServer.getAttribute(objectName, "BuildID"));
+        Assertions.assertEquals(2, mBeanServer.getAttribute(objectName, "SnapshotEntries"));
+        Assertions.assertTrue((Long)mBeanServer.getAttribute(objectName, "SnapshotBytes") > 0);
+        Assertions.assertEquals(METRICS.getPolls(), mBeanServer.getAttribute(objectName, "Polls"));
+
+        CompositeData swapLatency = (CompositeData)mBeanServer.getAttribute(objectName, "SnapshotSwapLatency");
+        Assertions.assertTrue((Long)swapLatency.get("count") > 0);
+
+        context().stop();
+        Assertions.assertFalse(mBeanServer.isRegistered(objectName));
+    }
+
+}
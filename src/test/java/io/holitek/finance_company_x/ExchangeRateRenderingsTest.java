@@ -0,0 +1,123 @@
+package io.holitek.finance_company_x;
+
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.StandardCharsets;
+
+import java.time.Instant;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+public class ExchangeRateRenderingsTest {
+
+    private static final Map<String, Double> EXCHANGE_RATE_MAP = new LinkedHashMap<>();
+    static {
+        EXCHANGE_RATE_MAP.put("FR_USD", 0.9);
+        EXCHANGE_RATE_MAP.put("CAD_USD", 0.98);
+    }
+
+    @Test
+    @DisplayName("checks json and csv renderings keep data file order")
+    public void testJsonAndCsv() {
+        ExchangeRateRenderings renderings = ExchangeRateRenderings.of(EXCHANGE_RATE_MAP);
+
+        Assertions.assertEquals("{\"FR_USD\":0.9,\"CAD_USD\":0.98}", renderings.getJson());
+        Assertions.assertEquals(
+                renderings.getJson(),
+                StandardCharsets.UTF_8.decode(renderings.getJsonBytes()).toString()
+        );
+
+        Assertions.assertEquals("pair,rate\nFR_USD,0.9\nCAD_USD,0.98\n", renderings.getCsv());
+        Assertions.assertEquals(
+                renderings.getCsv(),
+                StandardCharsets.UTF_8.decode(renderings.getCsvBytes()).toString()
+        );
+    }
+
+    @Test
+    @DisplayName("checks that every rendering leaves null rates out")
+    public void testNullRates() {
+        Map<String, Double> exchangeRateMap = new LinkedHashMap<>(EXCHANGE_RATE_MAP);
+        exchangeRateMap.put("JP_USD", null);
+        ExchangeRateRenderings renderings = ExchangeRateRenderings.of(exchangeRateMap);
+        ExchangeRateRenderings expectedRenderings = ExchangeRateRenderings.of(EXCHANGE_RATE_MAP);
+
+        Assertions.assertEquals(expectedRenderings.getJson(), renderings.getJson());
+        Assertions.assertEquals(expectedRenderings.getCsv(), renderings.getCsv());
+        Assertions.assertEquals(expectedRenderings.getBinary(), renderings.getBinary());
+        Assertions.assertNull(exchangeRateMap.get("JP_USD"), "the rates rendered should be left as they were");
+    }
+
+    @Test
+    @DisplayName("checks binary rendering layout")
+    public void testBinary() {
+        ByteBuffer binary = ExchangeRateRenderings.of(EXCHANGE_RATE_MAP).getBinary().order(ByteOrder.LITTLE_ENDIAN);
+
+        byte[] magic = new byte[BinaryRateFormat.MAGIC.length];
+        binary.get(magic);
+        Assertions.assertArrayEquals(BinaryRateFormat.MAGIC, magic);
+        Assertions.assertEquals(BinaryRateFormat.VERSION, binary.getShort());
+        Assertions.assertEquals(0, binary.getShort());
+        Assertions.assertEquals(2, binary.getInt());
+
+        int dictionaryLength = binary.getInt();
+        Assertions.assertEquals(2 + "CAD_USD".length() + 2 + "FR_USD".length(), dictionaryLength);
+
+        // keys come out sorted
+        byte[] firstKey = new byte[binary.getShort()];
+        binary.get(firstKey);
+        Assertions.assertEquals("CAD_USD", new String(firstKey, StandardCharsets.UTF_8));
+
+        int rateBlockOffset = BinaryRateFormat.rateBlockOffset(dictionaryLength);
+        Assertions.assertEquals(0, rateBlockOffset % Double.BYTES, "rate block should be 8 byte aligned");
+        Assertions.assertEquals(0.98, binary.getDouble(rateBlockOffset));
+        Assertions.assertEquals(0.9, binary.getDouble(rateBlockOffset + Double.BYTES));
+        Assertions.assertEquals(rateBlockOffset + 2 * Double.BYTES, binary.limit());
+    }
+
+    @Test
+    @DisplayName("checks that cached bytes can't be modified through the buffers handed out")
+    public void testBuffersAreReadOnly() {
+        ExchangeRateRenderings renderings = ExchangeRateRenderings.of(EXCHANGE_RATE_MAP);
+        Assertions.assertThrows(ReadOnlyBufferException.class, () -> renderings.getJsonBytes().put(0, (byte)'x'));
+        Assertions.assertThrows(ReadOnlyBufferException.class, () -> renderings.getCsvBytes().put(0, (byte)'x'));
+        Assertions.assertThrows(ReadOnlyBufferException.class, () -> renderings.getBinary().put(0, (byte)'x'));
+    }
+
+    @Test
+    @DisplayName("checks renderings are produced once per snapshot and shared when only the buildID changes")
+    public void testRenderingsCachedPerSnapshot() {
+        ExchangeRateSnapshot snapshot = new ExchangeRateSnapshot("1234", Instant.now(), EXCHANGE_RATE_MAP);
+        Assertions.assertSame(snapshot.getRenderings(), snapshot.getRenderings());
+        Assertions.assertSame(snapshot.getRenderings(), snapshot.withBuildID("5678").getRenderings());
+        Assertions.assertNotSame(
+                snapshot.getRenderings(),
+                snapshot.withExchangeRateMap(Map.of("CAD_USD", 0.97)).getRenderings()
+        );
+    }
+
+    @Test
+    @DisplayName("checks each rendering is only made when it's first asked for, and then kept")
+    public void testRenderingsLazy() {
+        ExchangeRateRenderings renderings = ExchangeRateRenderings.of(EXCHANGE_RATE_MAP);
+        Assertions.assertEquals(0, renderings.getEstimatedBytes());
+
+        renderings.getJson();
+        long jsonBytes = renderings.getEstimatedBytes();
+        Assertions.assertTrue(jsonBytes > 0);
+        Assertions.assertEquals(jsonBytes, renderings.getEstimatedBytes(), "json should be kept, not re-rendered");
+        Assertions.assertSame(renderings.getJson(), renderings.getJson(), "json string should be kept, not decoded");
+
+        renderings.getCsvBytes();
+        Assertions.assertTrue(renderings.getEstimatedBytes() > jsonBytes);
+    }
+
+}
@@ -0,0 +1,167 @@
+package io.holitek.finance_company_x;
+
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+
+public class FlightRecorderEventsTest {
+
+    private static final String EVENT_PREFIX = "io.holitek.finance_company_x.";
+
+    @TempDir
+    Path dataDirectory;
+
+    @AfterEach
+    void afterEach() {
+        FlightRecorderEvents.lookupSampleInterval = FlightRecorderEvents.DEFAULT_LOOKUP_SAMPLE_INTERVAL;
+    }
+
+    /**
+     * runs the action under a recording with every event from this app enabled
+     */
+    private List<RecordedEvent> record(Runnable action) throws IOException {
+        Path recordingPath = dataDirectory.resolve("recording.jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : new String[] {"BuildIdRead", "DataFileRead", "SnapshotBuild", "SnapshotSwap",
+                                             "LoadFailed", "RateLookup"}) {
+                recording.enable(EVENT_PREFIX + name);
+            }
+
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(recordingPath);
+        }
+
+        return RecordingFile.readAllEvents(recordingPath)
+                            .stream()
+                            .filter(event -> event.getEventType().getName().startsWith(EVENT_PREFIX))
+                            .collect(Collectors.toList());
+    }
+
+    private static List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+        return events.stream()
+                     .filter(event -> event.getEventType().getName().equals(EVENT_PREFIX + name))
+                     .collect(Collectors.toList());
+    }
+
+
+    @Test
+    @DisplayName("checks that a reload records build and swap events carrying the buildID and data file")
+    public void testReloadEvents() throws IOException {
+        ExchangeRateBean exchangeRateBean = new ExchangeRateBean();
+        exchangeRateBean.setExchangeRates("1234", Map.of("CAD_USD", 0.98));
+
+        List<RecordedEvent> events = record(
+                () -> exchangeRateBean.setExchangeRates("5678", Map.of("CAD_USD", 0.97, "FR_USD", 0.9), "a.txt")
+        );
+
+        RecordedEvent buildEvent = ofType(events, "SnapshotBuild").get(0);
+        Assertions.assertEquals("5678", buildEvent.getString("buildID"));
+        Assertions.assertEquals("a.txt", buildEvent.getString("fileName"));
+        Assertions.assertEquals(2, buildEvent.getInt("entries"));
+
+        RecordedEvent swapEvent = ofType(events, "SnapshotSwap").get(0);
+        Assertions.assertEquals("5678", swapEvent.getString("buildID"));
+        Assertions.assertEquals("1234", swapEvent.getString("previousBuildID"));
+        Assertions.assertEquals("a.txt", exchangeRateBean.getSnapshot().getDataFileName());
+    }
+
+    @Test
+    @DisplayName("checks that a load the bean rejects records a failure event")
+    public void testLoadFailedEvent() throws IOException {
+        ExchangeRateBean exchangeRateBean = new ExchangeRateBean();
+        List<RecordedEvent> events = record(() -> exchangeRateBean.setExchangeRates("", Map.of(), "a.txt"));
+
+        Assertions.assertTrue(ofType(events, "SnapshotSwap").isEmpty());
+        RecordedEvent failedEvent = ofType(events, "LoadFailed").get(0);
+        Assertions.assertEquals("a.txt", failedEvent.getString("fileName"));
+        Assertions.assertEquals("buildID missing or empty", failedEvent.getString("reason"));
+    }
+
+    @Test
+    @DisplayName("checks that the data file processor records what it read")
+    public void testDataFileReadEvent() throws Exception {
+        String dataFileContents = "{\"CAD_USD\":0.98,\"FR_USD\":0.9}";
+        Files.writeString(dataDirectory.resolve("20201010-0000.txt"), dataFileContents);
+
+        Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+        exchange.getMessage().setHeader(CurrencyDataPollingConsumerRoute.DATA_DIRECTORY_HEADER_KEY,
+                                        dataDirectory.toString());
+        exchange.getMessage().setHeader(BuildIdFileProcessor.NEW_BUILD_ID_HEADER_KEY, "1234");
+        exchange.getMessage().setHeader(BuildIdFileProcessor.BUILD_ID_FILE_CONTENTS_HEADER_KEY,
+                                        "{\"buildID\":\"1234\",\"FileName\":\"20201010-0000.txt\"}");
+
+        List<RecordedEvent> events = record(() -> {
+            try {
+                new DataFileProcessor().process(exchange);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        RecordedEvent readEvent = ofType(events, "DataFileRead").get(0);
+        Assertions.assertEquals("1234", readEvent.getString("buildID"));
+        Assertions.assertEquals("20201010-0000.txt", readEvent.getString("fileName"));
+        Assertions.assertEquals("json", readEvent.getString("format"));
+        Assertions.assertEquals(dataFileContents.length(), readEvent.getLong("bytes"));
+        Assertions.assertEquals(2, readEvent.getInt("entries"));
+        Assertions.assertEquals(
+                "20201010-0000.txt",
+                exchange.getMessage().getBody(DataFileLoad.class).getDataFileName()
+        );
+    }
+
+    @Test
+    @DisplayName("checks that lookups are only recorded when the event is enabled, and then only as often as sampled")
+    public void testRateLookupEvents() throws IOException {
+        ExchangeRateBean exchangeRateBean = new ExchangeRateBean();
+        exchangeRateBean.setExchangeRates("1234", Map.of("CAD_USD", 0.98), "a.txt");
+
+        FlightRecorderEvents.lookupSampleInterval = 1;
+        List<RecordedEvent> events = record(() -> {
+            exchangeRateBean.getExchangeRateFor("CAD_USD");
+            exchangeRateBean.getExchangeRateFor("XXX_USD");
+        });
+
+        List<RecordedEvent> lookupEvents = ofType(events, "RateLookup");
+        Assertions.assertEquals(2, lookupEvents.size());
+        Assertions.assertEquals("1234", lookupEvents.get(0).getString("buildID"));
+        Assertions.assertEquals("a.txt", lookupEvents.get(0).getString("fileName"));
+        Assertions.assertEquals("CAD_USD", lookupEvents.get(0).getString("key"));
+        Assertions.assertTrue(lookupEvents.get(0).getBoolean("hit"));
+        Assertions.assertFalse(lookupEvents.get(1).getBoolean("hit"));
+
+        // sampled down, a thousand lookups should record far fewer than a thousand events
+        FlightRecorderEvents.lookupSampleInterval = FlightRecorderEvents.DEFAULT_LOOKUP_SAMPLE_INTERVAL;
+        events = record(() -> {
+            for (int i = 0; i < 1000; i++) {
+                exchangeRateBean.getExchangeRateFor("CAD_USD");
+            }
+        });
+
+        Assertions.assertTrue(ofType(events, "RateLookup").size() < 50);
+    }
+
+}
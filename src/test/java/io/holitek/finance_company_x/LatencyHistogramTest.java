@@ -0,0 +1,74 @@
+package io.holitek.finance_company_x;
+
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+
+public class LatencyHistogramTest {
+
+    @Test
+    @DisplayName("checks that durations land in power of two buckets")
+    public void testBuckets() {
+        Assertions.assertEquals(0, LatencyHistogram.bucketOf(0));
+        Assertions.assertEquals(1, LatencyHistogram.bucketOf(1));
+        Assertions.assertEquals(2, LatencyHistogram.bucketOf(2));
+        Assertions.assertEquals(2, LatencyHistogram.bucketOf(3));
+        Assertions.assertEquals(11, LatencyHistogram.bucketOf(1024));
+        Assertions.assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+
+        for (int bucket = 1; bucket < LatencyHistogram.BUCKETS - 1; bucket++) {
+            long upperBound = LatencyHistogram.upperBoundNanos(bucket);
+            Assertions.assertEquals(bucket, LatencyHistogram.bucketOf(upperBound));
+            Assertions.assertEquals(bucket + 1, LatencyHistogram.bucketOf(upperBound + 1));
+        }
+    }
+
+    @Test
+    @DisplayName("checks that counts, totals, max and quantiles are reported to within a bucket")
+    public void testSummary() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assertions.assertEquals(0, histogram.getSummary().getCount());
+        Assertions.assertEquals(0, histogram.getQuantileNanos(0.99));
+
+        // 98 fast durations and two slow ones
+        for (int i = 0; i < 98; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(50));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(60));
+        histogram.record(-1);
+
+        Assertions.assertEquals(101, histogram.getCount());
+        Assertions.assertEquals(TimeUnit.MILLISECONDS.toNanos(60), histogram.getMaxNanos());
+
+        long median = histogram.getQuantileNanos(0.5);
+        Assertions.assertTrue(median >= TimeUnit.MICROSECONDS.toNanos(100), "median: " + median);
+        Assertions.assertTrue(median < TimeUnit.MICROSECONDS.toNanos(200), "median: " + median);
+
+        long p99 = histogram.getQuantileNanos(0.99);
+        Assertions.assertTrue(p99 >= TimeUnit.MILLISECONDS.toNanos(50), "p99: " + p99);
+        Assertions.assertTrue(p99 <= TimeUnit.MILLISECONDS.toNanos(60), "p99: " + p99);
+
+        LatencyHistogram.LatencySummary summary = histogram.getSummary();
+        Assertions.assertEquals(101, summary.getCount());
+        Assertions.assertEquals(60.0, summary.getMaxMillis());
+        Assertions.assertEquals((98 * 0.1 + 110) / 101, summary.getMeanMillis(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("checks that concurrent recording doesn't lose counts")
+    public void testConcurrentRecording() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        IntStream.range(0, 100_000).parallel().forEach(histogram::record);
+        Assertions.assertEquals(100_000, histogram.getCount());
+        Assertions.assertEquals(99_999L * 100_000 / 2, histogram.getTotalNanos());
+        Assertions.assertEquals(99_999, histogram.getMaxNanos());
+    }
+
+}
@@ -0,0 +1,182 @@
+package io.holitek.finance_company_x;
+
+
+import org.apache.camel.test.junit5.CamelTestSupport;
+
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+
+public class RateQueryServerTest extends CamelTestSupport {
+
+    private static final String EXCHANGE_RATE_JSON = "{\"CAD_USD\":0.98,\"FR_USD\":0.9}";
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    private ExchangeRateBean exchangeRateBean;
+    private RateQueryServer rateQueryServer;
+
+    //
+    // test setup and configuration
+
+    // tells the test runner that we'll start and stop the camel context manually. this ensures the camel context
+    // doesn't start before we've set up the camel registry and routes.
+    @Override
+    public boolean isUseAdviceWith() { return true; }
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        exchangeRateBean = new ExchangeRateBean();
+        context().getRegistry().bind(ExchangeRateBean.NAMESPACE_KEY, exchangeRateBean);
+
+        rateQueryServer = new RateQueryServer(ExchangeRateBean.NAMESPACE_KEY, "localhost", 0, 2);
+        context().addService(rateQueryServer);
+
+        // simbora!
+        context().start();
+    }
+
+    @AfterEach
+    void afterEach() { context().stop(); }
+
+
+    //
+    // tests
+
+    @Test
+    @DisplayName("checks that the full table is served with the buildID as its ETag")
+    public void testGetAllRates() throws Exception {
+        exchangeRateBean.setExchangeRates("1234", EXCHANGE_RATE_JSON);
+
+        HttpResponse<String> response = get("/rates", null);
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("\"1234\"", response.headers().firstValue("ETag").orElseThrow());
+        Assertions.assertEquals("application/json", response.headers().firstValue("Content-Type").orElseThrow());
+        Assertions.assertEquals(EXCHANGE_RATE_JSON, response.body());
+    }
+
+    @Test
+    @DisplayName("checks that a matching If-None-Match gets a 304 until the buildID changes")
+    public void testConditionalGet() throws Exception {
+        exchangeRateBean.setExchangeRates("1234", EXCHANGE_RATE_JSON);
+
+        HttpResponse<String> notModified = get("/rates", "\"1234\"");
+        Assertions.assertEquals(304, notModified.statusCode());
+        Assertions.assertEquals("", notModified.body());
+
+        Assertions.assertEquals(304, get("/rates/CAD_USD", "\"nope\", W/\"1234\"").statusCode());
+
+        // a path that doesn't name anything is a 404 whatever the client holds
+        Assertions.assertEquals(404, get("/rates/XXX_USD", "\"1234\"").statusCode());
+        Assertions.assertEquals(404, get("/ratesfoo", "\"1234\"").statusCode());
+
+        exchangeRateBean.setExchangeRates("5678", "{\"CAD_USD\":0.97}");
+        HttpResponse<String> modified = get("/rates", "\"1234\"");
+        Assertions.assertEquals(200, modified.statusCode());
+        Assertions.assertEquals("\"5678\"", modified.headers().firstValue("ETag").orElseThrow());
+        Assertions.assertEquals("{\"CAD_USD\":0.97}", modified.body());
+    }
+
+    @Test
+    @DisplayName("checks that a buildID an ETag can't hold as it is is percent encoded")
+    public void testEtagEncoding() throws Exception {
+        exchangeRateBean.setExchangeRates("12\"3 4%", EXCHANGE_RATE_JSON);
+
+        HttpResponse<String> response = get("/rates", null);
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("\"12%223%204%25\"", response.headers().firstValue("ETag").orElseThrow());
+        Assertions.assertEquals(304, get("/rates", "\"12%223%204%25\"").statusCode());
+    }
+
+    @Test
+    @DisplayName("checks that a single pair can be fetched and an unknown one is a 404")
+    public void testGetOneRate() throws Exception {
+        exchangeRateBean.setExchangeRates("1234", EXCHANGE_RATE_JSON);
+
+        HttpResponse<String> response = get("/rates/FR_USD", null);
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("\"1234\"", response.headers().firstValue("ETag").orElseThrow());
+        Assertions.assertEquals("{\"FR_USD\":0.9}", response.body());
+
+        Assertions.assertEquals(404, get("/rates/XXX_USD", null).statusCode());
+        Assertions.assertEquals(404, get("/ratesCAD_USD", null).statusCode());
+    }
+
+    @Test
+    @DisplayName("checks that a batch of pairs comes back in request order without the unknown ones")
+    public void testGetBatchOfRates() throws Exception {
+        exchangeRateBean.setExchangeRates("1234", EXCHANGE_RATE_JSON);
+
+        HttpResponse<String> response = get("/rates?pairs=FR_USD,XXX_USD,CAD_USD", null);
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("{\"FR_USD\":0.9,\"CAD_USD\":0.98}", response.body());
+    }
+
+    @Test
+    @DisplayName("checks that metrics are served as prometheus text, before and after rates are loaded")
+    public void testGetMetrics() throws Exception {
+        HttpResponse<String> empty = get("/metrics", null);
+        Assertions.assertEquals(200, empty.statusCode());
+        Assertions.assertEquals(
+                ExchangeRateMetrics.PROMETHEUS_CONTENT_TYPE,
+                empty.headers().firstValue("Content-Type").orElseThrow()
+        );
+        Assertions.assertTrue(empty.body().contains("\nfinance_company_x_snapshot_entries 0.0\n"), empty.body());
+
+        long lookupMisses = ExchangeRateMetrics.INSTANCE.getLookupMisses();
+        exchangeRateBean.setExchangeRates("1234", EXCHANGE_RATE_JSON);
+        Assertions.assertEquals(404, get("/rates/XXX_USD", null).statusCode());
+        Assertions.assertEquals(lookupMisses + 1, ExchangeRateMetrics.INSTANCE.getLookupMisses());
+
+        String body = get("/metrics", null).body();
+        Assertions.assertTrue(body.contains("\nfinance_company_x_snapshot_info{build_id=\"1234\"} 1\n"), body);
+        Assertions.assertTrue(body.contains("\nfinance_company_x_snapshot_entries 2.0\n"), body);
+        Assertions.assertTrue(body.contains("# TYPE finance_company_x_snapshot_build_seconds histogram\n"), body);
+
+        Assertions.assertEquals(404, get("/metricsfoo", null).statusCode());
+    }
+
+    @Test
+    @DisplayName("checks that nothing is served before any rates are loaded")
+    public void testNoRatesLoaded() throws Exception {
+        HttpResponse<String> response = get("/rates", null);
+        Assertions.assertEquals(503, response.statusCode());
+        Assertions.assertTrue(response.headers().firstValue("ETag").isEmpty());
+    }
+
+    @Test
+    @DisplayName("checks that the api is read-only")
+    public void testReadOnly() throws Exception {
+        HttpRequest httpRequest = HttpRequest.newBuilder(uri("/rates"))
+                                             .POST(HttpRequest.BodyPublishers.ofString(EXCHANGE_RATE_JSON))
+                                             .build();
+
+        HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(405, response.statusCode());
+        Assertions.assertEquals("GET, HEAD", response.headers().firstValue("Allow").orElseThrow());
+    }
+
+
+    //
+    // helpers
+
+    private URI uri(String pathAndQuery) {
+        return URI.create("http://localhost:" + rateQueryServer.getPort() + pathAndQuery);
+    }
+
+    private HttpResponse<String> get(String pathAndQuery, String ifNoneMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder httpRequestBuilder = HttpRequest.newBuilder(uri(pathAndQuery)).GET();
+        if (ifNoneMatch != null) {
+            httpRequestBuilder.header("If-None-Match", ifNoneMatch);
+        }
+
+        return httpClient.send(httpRequestBuilder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+}
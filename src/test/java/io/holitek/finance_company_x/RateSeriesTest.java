@@ -0,0 +1,104 @@
+package io.holitek.finance_company_x;
+
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+public class RateSeriesTest {
+
+    @Test
+    @DisplayName("checks that every point round trips through compression across block boundaries")
+    public void testRoundTrip() {
+        Random random = new Random(42);
+        RateSeries rateSeries = new RateSeries();
+        List<RatePoint> expected = new ArrayList<>();
+
+        // regular, slightly irregular, very irregular and huge gaps, with repeated, nearby and unrelated rates, so
+        //   every timestamp bucket and every rate encoding gets used
+        long epochSecond = 1_602_288_000L;
+        double rate = 0.98;
+        for (int i = 0; i < RateSeries.POINTS_PER_BLOCK * 3 + 17; i++) {
+            long[] gaps = {60, 60, 60 + random.nextInt(100), 60 + random.nextInt(2000), 1 + random.nextInt(1 << 30)};
+            epochSecond += gaps[random.nextInt(gaps.length)];
+
+            int change = random.nextInt(4);
+            rate = change == 0 ? rate : change == 1 ? rate + 0.0001 : change == 2 ? random.nextDouble() : -rate;
+
+            Assertions.assertTrue(rateSeries.append(epochSecond, rate));
+            expected.add(new RatePoint(epochSecond, rate));
+        }
+
+        List<RatePoint> actual = new ArrayList<>();
+        rateSeries.forEach(Long.MIN_VALUE, Long.MAX_VALUE, actual::add);
+        Assertions.assertEquals(expected, actual);
+        Assertions.assertEquals(expected.size(), rateSeries.size());
+
+        for (RatePoint ratePoint : expected) {
+            Assertions.assertEquals(ratePoint.getRate(), rateSeries.getRateAt(ratePoint.getEpochSecond()));
+        }
+    }
+
+    @Test
+    @DisplayName("checks that lookups between points get the rate as of the earlier point")
+    public void testGetRateAt() {
+        RateSeries rateSeries = new RateSeries();
+        for (int i = 0; i < RateSeries.POINTS_PER_BLOCK + 10; i++) {
+            rateSeries.append(1000 + i * 60, i);
+        }
+
+        Assertions.assertTrue(Double.isNaN(rateSeries.getRateAt(999)));
+        Assertions.assertEquals(0, rateSeries.getRateAt(1000));
+        Assertions.assertEquals(0, rateSeries.getRateAt(1059));
+        Assertions.assertEquals(
+                RateSeries.POINTS_PER_BLOCK - 1,
+                rateSeries.getRateAt(1000 + RateSeries.POINTS_PER_BLOCK * 60 - 1)
+        );
+        Assertions.assertEquals(RateSeries.POINTS_PER_BLOCK + 9, rateSeries.getRateAt(Long.MAX_VALUE));
+    }
+
+    @Test
+    @DisplayName("checks that range scans are inclusive of the start and exclusive of the end")
+    public void testForEachRange() {
+        RateSeries rateSeries = new RateSeries();
+        for (int i = 0; i < RateSeries.POINTS_PER_BLOCK * 2; i++) {
+            rateSeries.append(i * 10, i);
+        }
+
+        List<RatePoint> actual = new ArrayList<>();
+        rateSeries.forEach(2550, 2580, actual::add);
+        Assertions.assertEquals(
+                List.of(new RatePoint(2550, 255), new RatePoint(2560, 256), new RatePoint(2570, 257)),
+                actual
+        );
+    }
+
+    @Test
+    @DisplayName("checks that points have to be appended in time order")
+    public void testAppendOutOfOrder() {
+        RateSeries rateSeries = new RateSeries();
+        Assertions.assertTrue(rateSeries.append(100, 1.0));
+        Assertions.assertFalse(rateSeries.append(100, 2.0));
+        Assertions.assertFalse(rateSeries.append(50, 2.0));
+        Assertions.assertEquals(1, rateSeries.size());
+        Assertions.assertEquals(1.0, rateSeries.getRateAt(100));
+    }
+
+    @Test
+    @DisplayName("checks that a regularly published, slowly changing rate compresses to a few bits a point")
+    public void testCompression() {
+        RateSeries rateSeries = new RateSeries();
+        for (int i = 0; i < 100_000; i++) {
+            rateSeries.append(i * 60L, i % 10 == 0 ? 0.98 + i / 10_000_000.0 : 0.98);
+        }
+
+        // uncompressed, each point would be 16 bytes
+        Assertions.assertTrue(rateSeries.getEstimatedBytes() < 100_000 * 2, "was " + rateSeries.getEstimatedBytes());
+    }
+
+}
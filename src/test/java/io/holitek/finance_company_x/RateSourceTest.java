@@ -0,0 +1,195 @@
+package io.holitek.finance_company_x;
+
+
+import org.apache.camel.Exchange;
+import org.apache.camel.ExtendedExchange;
+import org.apache.camel.builder.NotifyBuilder;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.spi.Synchronization;
+import org.apache.camel.support.DefaultExchange;
+import org.apache.camel.test.junit5.CamelTestSupport;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+
+public class RateSourceTest extends CamelTestSupport {
+
+    private static final String ROUTE_DATA_DIRECTORY = "src/test/resources/route_test_data_files";
+    private static final String DATA_FILE_NAME = "20201010-0000.txt";
+
+    @TempDir
+    Path sourcesDirectory;
+
+    //
+    // test setup and configuration
+
+    @Override
+    public boolean isUseAdviceWith() { return true; }
+
+    // the route decides which sources to poll as it's configured, which is before beforeEach runs
+    @Override
+    protected Properties useOverridePropertiesWithPropertiesComponent() {
+        Properties properties = new Properties();
+        properties.setProperty("sources",
+                               "emea=" + sourcesDirectory.resolve("emea") + "," +
+                               "apac=" + sourcesDirectory.resolve("apac"));
+        properties.setProperty("source_threads", "2");
+        properties.setProperty("consolidation_priority", "apac,nobody");
+        properties.setProperty("watch_enabled", "false");
+        properties.setProperty("state_file", "");
+        properties.setProperty("data_directory", Path.of(ROUTE_DATA_DIRECTORY).toAbsolutePath().toString());
+        return properties;
+    }
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        context().getPropertiesComponent()
+                 .setLocation("classpath:application.test.properties");
+
+        context().getRegistry().bind(ExchangeRateBean.NAMESPACE_KEY, new ExchangeRateBean());
+        context().getRegistry().bind(TimeSeriesStore.NAMESPACE_KEY, new TimeSeriesStore());
+
+        // each source carries the same data file under its own buildID
+        writeSource("emea", "5678");
+        writeSource("apac", "9012");
+
+        context().start();
+    }
+
+    @AfterEach
+    void afterEach() { context().stop(); }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() {
+        return new CurrencyDataPollingConsumerRoute();
+    }
+
+    /**
+     *
+     * @param name
+     * @param buildID
+     * @throws IOException
+     */
+    private void writeSource(String name, String buildID) throws IOException {
+        Path sourceDirectory = Files.createDirectories(sourcesDirectory.resolve(name));
+        Files.copy(Path.of(ROUTE_DATA_DIRECTORY, DATA_FILE_NAME), sourceDirectory.resolve(DATA_FILE_NAME));
+        Files.writeString(
+                sourceDirectory.resolve("buildID.txt"),
+                "{\"buildID\":\"" + buildID + "\",\"FileName\":\"" + DATA_FILE_NAME + "\",\"Version\":\"v1\"}"
+        );
+    }
+
+    /**
+     *
+     * @param name
+     * @return
+     */
+    private ExchangeRateBean lookupBean(String name) {
+        return context().getRegistry().lookupByNameAndType(name, ExchangeRateBean.class);
+    }
+
+
+    //
+    // tests
+
+    @Test
+    @DisplayName("checks that sources are parsed from name=directory pairs and bad or repeated entries are left out")
+    public void testParse() {
+        List<RateSource> rateSources = RateSource.parse(" emea = /data/emea,,apac=/data/apac,=/data/x,bad name=/y," +
+                                                        "nodirectory=,emea=/data/other,latam");
+
+        Assertions.assertEquals(2, rateSources.size());
+        Assertions.assertEquals("emea", rateSources.get(0).getName());
+        Assertions.assertEquals("/data/emea", rateSources.get(0).getDataDirectory());
+        Assertions.assertEquals("exchangeRateBean.emea", rateSources.get(0).getExchangeRateBeanName());
+        Assertions.assertEquals("apac", rateSources.get(1).getName());
+
+        Assertions.assertTrue(RateSource.parse("").isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new RateSource("a/b", "/data"));
+    }
+
+    @Test
+    @DisplayName("checks that a source isn't polled again until the poll already queued or running is done")
+    public void testPollInFlight() {
+        RateSource rateSource = new RateSource("emea", "/data/emea");
+
+        Assertions.assertTrue(rateSource.tryStartPoll());
+        Assertions.assertFalse(rateSource.tryStartPoll(), "second poll should be dropped");
+
+        Exchange exchange = new DefaultExchange(context());
+        rateSource.finishPollOnCompletion(exchange);
+        Assertions.assertTrue(rateSource.isPollInFlight(), "poll should run until its exchange is done");
+
+        for (Synchronization synchronization : exchange.adapt(ExtendedExchange.class).handoverCompletions()) {
+            synchronization.onFailure(exchange);
+        }
+
+        Assertions.assertFalse(rateSource.isPollInFlight(), "a failed poll should still end");
+        Assertions.assertTrue(rateSource.tryStartPoll());
+    }
+
+    @Test
+    @DisplayName("checks that each source is loaded into its own bean alongside the main data directory")
+    public void testSourcesLoadIntoTheirOwnBeans() throws InterruptedException {
+        NotifyBuilder everythingLoaded = new NotifyBuilder(context())
+                .fromRoute(".*" + CurrencyDataPollingConsumerRoute.LOADER_ROUTE_ID_SUFFIX)
+                .whenDone(3)
+                .create();
+
+        template.sendBody("direct:start", "");
+
+        // the main data directory is checked on the timer thread and the sources on the worker pool. all three are
+        //   loaded on the loader pool
+        Assertions.assertTrue(everythingLoaded.matches(10, TimeUnit.SECONDS), "every provider should have been loaded");
+        Assertions.assertEquals("1234", lookupBean(ExchangeRateBean.NAMESPACE_KEY).getBuildID());
+
+        ExchangeRateBean emeaBean = lookupBean("exchangeRateBean.emea");
+        ExchangeRateBean apacBean = lookupBean("exchangeRateBean.apac");
+        Assertions.assertEquals("5678", emeaBean.getBuildID());
+        Assertions.assertEquals("9012", apacBean.getBuildID());
+        Assertions.assertEquals(0.98, emeaBean.getRate("CAD_USD"));
+        Assertions.assertEquals(0.98, apacBean.getRate("CAD_USD"));
+        Assertions.assertNotSame(emeaBean.getSnapshot(), apacBean.getSnapshot());
+
+        TimeSeriesStore emeaStore =
+                context().getRegistry().lookupByNameAndType("timeSeriesStore.emea", TimeSeriesStore.class);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (emeaStore.getFileCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        Assertions.assertEquals(1, emeaStore.getFileCount(), "source should have its own rate history");
+
+        // and every provider's quotes should have made it into the consolidated book
+        ConsolidatedRateBook consolidatedRateBook = context().getRegistry().lookupByNameAndType(
+                ConsolidatedRateBook.NAMESPACE_KEY,
+                ConsolidatedRateBook.class
+        );
+
+        Assertions.assertEquals(List.of("apac", "main", "emea"), consolidatedRateBook.getProviders());
+        Assertions.assertEquals(Map.of("apac", 0.98, "main", 0.98, "emea", 0.98),
+                                consolidatedRateBook.getQuotes("CAD_USD"));
+        Assertions.assertEquals(0.98, consolidatedRateBook.getRate("CAD_USD"));
+
+        // finished polls free their source up for the next one
+        NotifyBuilder sourcesDoneAgain = new NotifyBuilder(context())
+                .fromRoute(CurrencyDataPollingConsumerRoute.NAMESPACE_KEY + ".*")
+                .whenDone(2)
+                .create();
+
+        template.sendBody("direct:start", "");
+        Assertions.assertTrue(sourcesDoneAgain.matches(10, TimeUnit.SECONDS), "both sources should be polled again");
+    }
+
+}
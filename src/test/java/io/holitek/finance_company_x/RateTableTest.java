@@ -0,0 +1,138 @@
+package io.holitek.finance_company_x;
+
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+
+public class RateTableTest {
+
+    @Test
+    @DisplayName("checks that currency pair keys pack into distinct positive ids")
+    public void testPairIdOf() {
+        Set<Integer> pairIds = new HashSet<>();
+        for (String key : new String[] {"CAD_USD", "USD_CAD", "FR_USD", "A_USD", "AA_USD", "AAA_USD", "Z_Z", "ZZZ_ZZZ"}) {
+            int pairId = RateTable.pairIdOf(key);
+            Assertions.assertTrue(pairId > 0, "expected positive pair id for key: " + key);
+            Assertions.assertTrue(pairIds.add(pairId), "pair id collision for key: " + key);
+        }
+    }
+
+    @Test
+    @DisplayName("checks that keys that aren't shaped like currency pairs don't pack")
+    public void testPairIdOfUnpackableKeys() {
+        for (String key : new String[] {null, "", "CADUSD", "_USD", "CAD_", "cad_usd", "CAD_USD_EUR", "EURO_USD"}) {
+            Assertions.assertEquals(
+                    RateTable.NO_PAIR_ID,
+                    RateTable.pairIdOf(key),
+                    "expected key to be rejected: " + key
+            );
+        }
+    }
+
+    @Test
+    @DisplayName("checks that the table reports what went in, overflow keys included")
+    public void testGetRate() {
+        Map<String, Double> exchangeRateMap = new LinkedHashMap<>();
+        exchangeRateMap.put("CAD_USD", 0.98);
+        exchangeRateMap.put("FR_USD", 0.9);
+        exchangeRateMap.put("floopieDonkWagon", 1.5);
+
+        RateTable rateTable = RateTable.of(exchangeRateMap);
+
+        Assertions.assertEquals(3, rateTable.size());
+        Assertions.assertEquals(0.98, rateTable.getRate("CAD_USD"));
+        Assertions.assertEquals(0.9, rateTable.getRate("FR_USD"));
+        Assertions.assertEquals(1.5, rateTable.getRate("floopieDonkWagon"));
+        Assertions.assertEquals(0.98, rateTable.getRate(RateTable.pairIdOf("CAD_USD")));
+        Assertions.assertTrue(rateTable.hasRate("CAD_USD"));
+        Assertions.assertTrue(rateTable.hasRate("floopieDonkWagon"));
+
+        Assertions.assertTrue(Double.isNaN(rateTable.getRate("USD_CAD")), "expected sentinel for missing pair");
+        Assertions.assertTrue(Double.isNaN(rateTable.getRate("nope")), "expected sentinel for missing key");
+        Assertions.assertTrue(Double.isNaN(rateTable.getRate(RateTable.NO_PAIR_ID)));
+        Assertions.assertFalse(rateTable.hasRate("USD_CAD"));
+        Assertions.assertFalse(rateTable.hasRate(RateTable.NO_PAIR_ID));
+    }
+
+    @Test
+    @DisplayName("checks that the table holds up with every three letter code pair against a common quote")
+    public void testGetRateManyKeys() {
+        Map<String, Double> exchangeRateMap = new HashMap<>();
+        for (char a = 'A'; a <= 'Z'; a++) {
+            for (char b = 'A'; b <= 'Z'; b++) {
+                for (char c = 'A'; c <= 'Z'; c += 5) {
+                    exchangeRateMap.put("" + a + b + c + "_USD", (double)(a * 10_000 + b * 100 + c));
+                }
+            }
+        }
+
+        RateTable rateTable = RateTable.of(exchangeRateMap);
+        Assertions.assertEquals(exchangeRateMap.size(), rateTable.size());
+        exchangeRateMap.forEach(
+                (key, rate) -> Assertions.assertEquals(rate, rateTable.getRate(key), "unexpected rate for " + key)
+        );
+    }
+
+    @Test
+    @DisplayName("checks that a patched copy matches a table built from scratch and leaves the original alone")
+    public void testWithChanges() {
+        Map<String, Double> exchangeRateMap = new LinkedHashMap<>();
+        for (char a = 'A'; a <= 'Z'; a++) {
+            for (char b = 'A'; b <= 'Z'; b++) {
+                exchangeRateMap.put("" + a + b + "_USD", (double)(a * 100 + b));
+            }
+        }
+
+        exchangeRateMap.put("floopieDonkWagon", 1.5);
+        RateTable rateTable = RateTable.of(exchangeRateMap);
+
+        // drop every third pair - enough removals to shift plenty of collision chains - move a few and add some more
+        Map<String, Double> upserts = new HashMap<>();
+        Set<String> removals = new HashSet<>();
+        int i = 0;
+        for (String key : exchangeRateMap.keySet()) {
+            if (i++ % 3 == 0) {
+                removals.add(key);
+            }
+        }
+
+        upserts.put("AB_USD", -1.0);
+        upserts.put("floopieDonkWagon", 2.5);
+        for (char a = 'A'; a <= 'Z'; a++) {
+            for (char b = 'A'; b <= 'Z'; b++) {
+                upserts.put("" + a + b + "_EUR", (double)(a * 100 + b));
+            }
+        }
+
+        Map<String, Double> expected = new HashMap<>(exchangeRateMap);
+        expected.keySet().removeAll(removals);
+        expected.putAll(upserts);
+
+        RateTable patched = rateTable.withChanges(upserts, removals);
+        Assertions.assertEquals(expected.size(), patched.size());
+        expected.forEach(
+                (key, rate) -> Assertions.assertEquals(rate, patched.getRate(key), "unexpected rate for " + key)
+        );
+        for (String key : removals) {
+            Assertions.assertFalse(patched.hasRate(key), "expected " + key + " to be removed");
+        }
+
+        Assertions.assertEquals(exchangeRateMap.size(), rateTable.size(), "original should be left as it was");
+        exchangeRateMap.forEach(
+                (key, rate) -> Assertions.assertEquals(rate, rateTable.getRate(key), "unexpected rate for " + key)
+        );
+
+        // removing what isn't there is a no-op
+        RateTable unchanged = rateTable.withChanges(Map.of(), Set.of("nope", "XXX_XXX"));
+        Assertions.assertEquals(rateTable.size(), unchanged.size());
+    }
+
+}
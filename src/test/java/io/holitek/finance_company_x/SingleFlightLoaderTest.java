@@ -0,0 +1,112 @@
+package io.holitek.finance_company_x;
+
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+
+public class SingleFlightLoaderTest {
+
+    // the loader's executor - tasks are only run when the test says so
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    // buildIDs in the order they were loaded
+    private final List<String> loaded = new ArrayList<>();
+
+    /**
+     *
+     */
+    private void runTasks() {
+        while (tasks.isEmpty() == false) {
+            tasks.remove(0).run();
+        }
+    }
+
+
+    @Test
+    @DisplayName("checks that only the newest buildID seen before the loader gets to it is loaded, and only once")
+    public void testCoalesceAndSupersede() {
+        SingleFlightLoader singleFlightLoader = new SingleFlightLoader("test", tasks::add);
+
+        Assertions.assertTrue(singleFlightLoader.submit("1", () -> loaded.add("1")));
+        Assertions.assertFalse(singleFlightLoader.submit("1", () -> loaded.add("1")), "duplicate should coalesce");
+        Assertions.assertTrue(singleFlightLoader.submit("2", () -> loaded.add("2")));
+        Assertions.assertEquals("2", singleFlightLoader.getPendingBuildID());
+        Assertions.assertEquals(1, tasks.size(), "waiting loads should share one run of the loader");
+
+        runTasks();
+
+        Assertions.assertEquals(List.of("2"), loaded);
+        Assertions.assertEquals(3, singleFlightLoader.getRequestCount());
+        Assertions.assertEquals(1, singleFlightLoader.getCoalescedCount());
+        Assertions.assertEquals(1, singleFlightLoader.getSupersededCount());
+        Assertions.assertEquals(1, singleFlightLoader.getLoadCount());
+        Assertions.assertNull(singleFlightLoader.getPendingBuildID());
+        Assertions.assertNull(singleFlightLoader.getLoadingBuildID());
+
+        // idle again, so the next request starts another run
+        Assertions.assertTrue(singleFlightLoader.submit("3", () -> loaded.add("3")));
+        runTasks();
+        Assertions.assertEquals(List.of("2", "3"), loaded);
+    }
+
+    @Test
+    @DisplayName("checks that buildIDs seen while a load runs wait for it and a failed load doesn't stop the next")
+    public void testRequestsDuringLoad() {
+        SingleFlightLoader singleFlightLoader = new SingleFlightLoader("test", tasks::add);
+
+        singleFlightLoader.submit("1", () -> {
+            loaded.add("1");
+            Assertions.assertEquals("1", singleFlightLoader.getLoadingBuildID());
+
+            // the buildID being loaded is already taken care of
+            Assertions.assertFalse(singleFlightLoader.submit("1", () -> loaded.add("1")));
+
+            singleFlightLoader.submit("2", () -> loaded.add("2"));
+            singleFlightLoader.submit("3", () -> {
+                loaded.add("3");
+                throw new IllegalStateException("boom");
+            });
+
+            // seeing the loading buildID again makes it the newest, so nothing else needs loading
+            singleFlightLoader.submit("4", () -> loaded.add("4"));
+            singleFlightLoader.submit("1", () -> loaded.add("1"));
+            Assertions.assertNull(singleFlightLoader.getPendingBuildID());
+            singleFlightLoader.submit("5", () -> loaded.add("5"));
+        });
+
+        runTasks();
+
+        Assertions.assertEquals(List.of("1", "5"), loaded);
+        Assertions.assertEquals(3, singleFlightLoader.getSupersededCount());
+        Assertions.assertEquals(2, singleFlightLoader.getCoalescedCount());
+        Assertions.assertEquals(2, singleFlightLoader.getLoadCount());
+
+        singleFlightLoader.submit("6", () -> {
+            throw new IllegalStateException("boom");
+        });
+        runTasks();
+        singleFlightLoader.submit("7", () -> loaded.add("7"));
+        runTasks();
+        Assertions.assertEquals(List.of("1", "5", "7"), loaded);
+    }
+
+    @Test
+    @DisplayName("checks that a loader whose executor has shut down refuses loads without getting stuck")
+    public void testExecutorShutDown() {
+        SingleFlightLoader singleFlightLoader = new SingleFlightLoader("test", task -> {
+            throw new RejectedExecutionException();
+        });
+
+        Assertions.assertFalse(singleFlightLoader.submit("1", () -> loaded.add("1")));
+        Assertions.assertNull(singleFlightLoader.getPendingBuildID());
+        Assertions.assertFalse(singleFlightLoader.submit("1", () -> loaded.add("1")), "nothing should be left waiting");
+        Assertions.assertTrue(loaded.isEmpty());
+    }
+
+}
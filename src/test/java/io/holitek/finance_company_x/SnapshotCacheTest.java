@@ -0,0 +1,106 @@
+package io.holitek.finance_company_x;
+
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.security.MessageDigest;
+
+import java.time.Instant;
+
+import java.util.Map;
+
+
+public class SnapshotCacheTest {
+
+    @TempDir
+    Path dataDirectory;
+
+    /**
+     *
+     * @param buildID
+     * @return
+     */
+    private static ExchangeRateSnapshot snapshot(String buildID) {
+        return new ExchangeRateSnapshot(buildID, Instant.now(), Map.of("CAD_USD", 0.98));
+    }
+
+
+    @Test
+    @DisplayName("checks that data files hash by their contents alone, whatever they're called")
+    public void testContentHash() throws IOException {
+        String json = "{\"CAD_USD\":0.98,\"FR_USD\":0.9}";
+        Path dataFilePath = Files.writeString(dataDirectory.resolve("20201010-0000.txt"), json);
+        Path republishedPath = Files.writeString(dataDirectory.resolve("20201010-0100.txt"), json);
+        Path changedPath = Files.writeString(dataDirectory.resolve("20201010-0200.txt"), json.replace("0.9", "0.8"));
+
+        String contentHash = SnapshotCache.contentHashOf(dataFilePath);
+        Assertions.assertEquals(64, contentHash.length());
+        Assertions.assertEquals(contentHash, SnapshotCache.contentHashOf(republishedPath));
+        Assertions.assertNotEquals(contentHash, SnapshotCache.contentHashOf(changedPath));
+
+        // longer than the buffer it's hashed through
+        Path largePath = Files.writeString(dataDirectory.resolve("20201010-0300.txt"), json.repeat(10_000));
+        Assertions.assertNotEquals(SnapshotCache.contentHashOf(largePath),
+                                   SnapshotCache.contentHashOf(Files.writeString(largePath, json.repeat(10_001))));
+    }
+
+    @Test
+    @DisplayName("checks that hashing a data file as it's read gives the same hash as hashing it on its own")
+    public void testContentHashWhileReading() throws IOException {
+        // trailing whitespace the parser never needs to look at is hashed all the same
+        String json = "{\"CAD_USD\":0.98,\"FR_USD\":0.9}\n\n";
+        Path jsonPath = Files.writeString(dataDirectory.resolve("20201010-0000.txt"), json + " ".repeat(100_000));
+        MessageDigest contentDigest = SnapshotCache.newContentDigest();
+        Assertions.assertEquals(2, BinaryRateFormat.readDataFile(jsonPath, null, contentDigest).size());
+        Assertions.assertEquals(SnapshotCache.contentHashOf(jsonPath), SnapshotCache.contentHashOf(contentDigest));
+
+        Path binaryPath = Files.write(
+                dataDirectory.resolve("20201010-0100" + BinaryRateFormat.FILE_EXTENSION),
+                BinaryRateFormat.encode(Map.of("CAD_USD", 0.98, "FR_USD", 0.9))
+        );
+
+        contentDigest = SnapshotCache.newContentDigest();
+        Assertions.assertEquals(2, BinaryRateFormat.readDataFile(binaryPath, null, contentDigest).size());
+        Assertions.assertEquals(SnapshotCache.contentHashOf(binaryPath), SnapshotCache.contentHashOf(contentDigest));
+    }
+
+    @Test
+    @DisplayName("checks that the least recently used snapshot is evicted, and hits and misses are counted")
+    public void testLeastRecentlyUsedEviction() {
+        SnapshotCache snapshotCache = new SnapshotCache(2);
+        long metricHits = ExchangeRateMetrics.INSTANCE.getSnapshotCacheHits();
+        long metricMisses = ExchangeRateMetrics.INSTANCE.getSnapshotCacheMisses();
+
+        snapshotCache.put("a", snapshot("1"));
+        snapshotCache.put("b", snapshot("2"));
+
+        // a was used more recently than b, so b is the one to go
+        Assertions.assertEquals("1", snapshotCache.get("a").orElseThrow().getBuildID());
+        snapshotCache.put("c", snapshot("3"));
+
+        Assertions.assertEquals(2, snapshotCache.size());
+        Assertions.assertTrue(snapshotCache.get("b").isEmpty(), "least recently used snapshot should be evicted");
+        Assertions.assertTrue(snapshotCache.get("a").isPresent());
+        Assertions.assertTrue(snapshotCache.get("c").isPresent());
+
+        // the same contents loaded again replace the snapshot they were cached as
+        snapshotCache.put("c", snapshot("4"));
+        Assertions.assertEquals("4", snapshotCache.get("c").orElseThrow().getBuildID());
+        Assertions.assertEquals(2, snapshotCache.size());
+
+        Assertions.assertEquals(4, snapshotCache.getHitCount());
+        Assertions.assertEquals(1, snapshotCache.getMissCount());
+        Assertions.assertEquals(metricHits + 4, ExchangeRateMetrics.INSTANCE.getSnapshotCacheHits());
+        Assertions.assertEquals(metricMisses + 1, ExchangeRateMetrics.INSTANCE.getSnapshotCacheMisses());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SnapshotCache(0));
+    }
+
+}
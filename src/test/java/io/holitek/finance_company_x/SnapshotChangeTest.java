@@ -0,0 +1,101 @@
+package io.holitek.finance_company_x;
+
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+
+public class SnapshotChangeTest {
+
+    /**
+     *
+     * @param buildID
+     * @param exchangeRateMap
+     * @return
+     */
+    private static ExchangeRateSnapshot snapshot(String buildID, Map<String, Double> exchangeRateMap) {
+        return new ExchangeRateSnapshot(buildID, Instant.now(), exchangeRateMap);
+    }
+
+
+    @Test
+    @DisplayName("checks that pairs added, removed and moved between two snapshots are found, with old and new rates")
+    public void testBetween() {
+        ExchangeRateSnapshot previousSnapshot = snapshot("1", Map.of("CAD_USD", 0.98, "FR_USD", 0.9, "GBP_USD", 1.3));
+        ExchangeRateSnapshot snapshot = snapshot("2", Map.of("CAD_USD", 0.97, "FR_USD", 0.9, "JPY_USD", 0.009));
+
+        SnapshotChange snapshotChange = SnapshotChange.between(previousSnapshot, snapshot);
+        Assertions.assertEquals(3, snapshotChange.size());
+        Assertions.assertEquals(Set.of("JPY_USD"), snapshotChange.getAdded().keySet());
+        Assertions.assertEquals(0.009, snapshotChange.getAdded().get("JPY_USD").getNewRate());
+        Assertions.assertTrue(Double.isNaN(snapshotChange.getAdded().get("JPY_USD").getOldRate()));
+        Assertions.assertEquals(Set.of("GBP_USD"), snapshotChange.getRemoved().keySet());
+        Assertions.assertEquals(1.3, snapshotChange.getRemoved().get("GBP_USD").getOldRate());
+        Assertions.assertEquals(Set.of("CAD_USD"), snapshotChange.getChanged().keySet());
+        Assertions.assertEquals(0.98, snapshotChange.getChanged().get("CAD_USD").getOldRate());
+        Assertions.assertEquals(0.97, snapshotChange.getChanged().get("CAD_USD").getNewRate());
+
+        // the same rates under a new buildID
+        Assertions.assertTrue(SnapshotChange.between(snapshot, snapshot.withBuildID("3")).isEmpty());
+    }
+
+    @Test
+    @DisplayName("checks that null rates in a data file are treated as no rate rather than failing the diff")
+    public void testNullRates() {
+        Map<String, Double> previousRateMap = new LinkedHashMap<>();
+        previousRateMap.put("CAD_USD", 0.98);
+        previousRateMap.put("FR_USD", null);
+        previousRateMap.put("GBP_USD", null);
+        Map<String, Double> rateMap = new LinkedHashMap<>();
+        rateMap.put("CAD_USD", null);
+        rateMap.put("FR_USD", 0.9);
+        ExchangeRateSnapshot previousSnapshot = snapshot("1", previousRateMap);
+        ExchangeRateSnapshot snapshot = snapshot("2", rateMap);
+
+        // a null rate that goes away was never a rate to lose
+        SnapshotChange snapshotChange = SnapshotChange.between(previousSnapshot, snapshot);
+        Assertions.assertEquals(Set.of("FR_USD"), snapshotChange.getAdded().keySet());
+        Assertions.assertEquals(Set.of("CAD_USD"), snapshotChange.getRemoved().keySet());
+        Assertions.assertTrue(snapshotChange.getChanged().isEmpty());
+        Assertions.assertTrue(SnapshotChange.between(ExchangeRateSnapshot.EMPTY, previousSnapshot)
+                                            .getAdded()
+                                            .containsKey("FR_USD") == false);
+
+        Map<String, Double> upserts = new LinkedHashMap<>();
+        upserts.put("FR_USD", null);
+        RateDelta rateDelta = new RateDelta(upserts, Set.of());
+        ExchangeRateSnapshot deltaSnapshot = snapshot.withDelta("3", rateDelta, "20201010-0001.delta");
+        snapshotChange = SnapshotChange.of(snapshot, deltaSnapshot, rateDelta);
+        Assertions.assertEquals(Set.of("FR_USD"), snapshotChange.getRemoved().keySet());
+    }
+
+    @Test
+    @DisplayName("checks that a snapshot built from a delta is diffed from the pairs the delta touches")
+    public void testOfDelta() {
+        ExchangeRateSnapshot previousSnapshot = snapshot("1", Map.of("CAD_USD", 0.98, "FR_USD", 0.9));
+        RateDelta rateDelta = new RateDelta(
+                Map.of("CAD_USD", 0.97, "FR_USD", 0.9, "JPY_USD", 0.009),
+                Set.of("GBP_USD")
+        );
+
+        SnapshotChange snapshotChange = SnapshotChange.of(
+                previousSnapshot,
+                previousSnapshot.withDelta("2", rateDelta, "20201010-0001.delta"),
+                rateDelta
+        );
+
+        // FR_USD didn't move and GBP_USD wasn't there to remove
+        Assertions.assertEquals(Set.of("JPY_USD"), snapshotChange.getAdded().keySet());
+        Assertions.assertEquals(Set.of("CAD_USD"), snapshotChange.getChanged().keySet());
+        Assertions.assertTrue(snapshotChange.getRemoved().isEmpty());
+        Assertions.assertEquals("2", snapshotChange.getSnapshot().getBuildID());
+    }
+
+}
@@ -0,0 +1,82 @@
+package io.holitek.finance_company_x;
+
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+
+public class SnapshotHistoryTest {
+
+    private static ExchangeRateSnapshot snapshotOf(String buildID) {
+        return new ExchangeRateSnapshot(buildID, Instant.now(), Map.of("CAD_USD", 0.98));
+    }
+
+    private static List<String> buildIDsOf(SnapshotHistory snapshotHistory) {
+        return snapshotHistory.getSnapshots()
+                              .stream()
+                              .map(ExchangeRateSnapshot::getBuildID)
+                              .collect(Collectors.toList());
+    }
+
+
+    @Test
+    @DisplayName("checks that the oldest snapshot is evicted once the history is full")
+    public void testEviction() {
+        SnapshotHistory snapshotHistory = new SnapshotHistory(2);
+
+        snapshotHistory.record(snapshotOf("1"));
+        snapshotHistory.record(snapshotOf("2"));
+        Assertions.assertEquals(List.of("2", "1"), buildIDsOf(snapshotHistory));
+
+        snapshotHistory.record(snapshotOf("3"));
+        Assertions.assertEquals(List.of("3", "2"), buildIDsOf(snapshotHistory));
+        Assertions.assertTrue(snapshotHistory.get("1").isEmpty());
+        Assertions.assertEquals("2", snapshotHistory.get("2").orElseThrow().getBuildID());
+    }
+
+    @Test
+    @DisplayName("checks that reloading a buildID replaces its entry rather than adding a second one")
+    public void testReload() {
+        SnapshotHistory snapshotHistory = new SnapshotHistory(3);
+        ExchangeRateSnapshot reloaded = snapshotOf("1");
+
+        snapshotHistory.record(snapshotOf("1"));
+        snapshotHistory.record(snapshotOf("2"));
+        snapshotHistory.record(reloaded);
+
+        Assertions.assertEquals(List.of("1", "2"), buildIDsOf(snapshotHistory));
+        Assertions.assertSame(reloaded, snapshotHistory.get("1").orElseThrow());
+    }
+
+    @Test
+    @DisplayName("checks that memory accounting covers every retained snapshot")
+    public void testEstimatedBytes() {
+        SnapshotHistory snapshotHistory = new SnapshotHistory(2);
+        Assertions.assertEquals(0, snapshotHistory.getEstimatedBytes());
+
+        ExchangeRateSnapshot snapshot = snapshotOf("1");
+        snapshotHistory.record(snapshot);
+        snapshotHistory.record(snapshotOf("2"));
+
+        Assertions.assertTrue(snapshot.getEstimatedBytes() > 0);
+        Assertions.assertEquals(2 * snapshot.getEstimatedBytes(), snapshotHistory.getEstimatedBytes());
+
+        snapshotHistory.clear();
+        Assertions.assertEquals(0, snapshotHistory.size());
+        Assertions.assertEquals(0, snapshotHistory.getEstimatedBytes());
+    }
+
+    @Test
+    @DisplayName("checks that a history has to hold at least one snapshot")
+    public void testCapacity() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SnapshotHistory(0));
+    }
+
+}
@@ -0,0 +1,198 @@
+package io.holitek.finance_company_x;
+
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+
+public class SnapshotPublisherTest {
+
+    /**
+     * requests nothing until told to, and keeps what it's sent
+     */
+    private static class RecordingSubscriber implements Flow.Subscriber<SnapshotChange> {
+
+        private final List<SnapshotChange> snapshotChanges = new CopyOnWriteArrayList<>();
+        private final BlockingQueue<SnapshotChange> snapshotChangeQueue = new LinkedBlockingQueue<>();
+        private volatile Flow.Subscription subscription;
+        private volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) { this.subscription = subscription; }
+
+        @Override
+        public void onNext(SnapshotChange snapshotChange) {
+            snapshotChanges.add(snapshotChange);
+            snapshotChangeQueue.add(snapshotChange);
+        }
+
+        @Override
+        public void onError(Throwable throwable) { this.error = throwable; }
+
+        @Override
+        public void onComplete() { }
+
+    }
+
+    /**
+     *
+     * @param buildID
+     * @param exchangeRateMap
+     * @return
+     */
+    private static ExchangeRateSnapshot snapshot(String buildID, Map<String, Double> exchangeRateMap) {
+        return new ExchangeRateSnapshot(buildID, Instant.now(), exchangeRateMap);
+    }
+
+    /**
+     *
+     * @param tasks
+     */
+    private static void runAll(List<Runnable> tasks) {
+        while (tasks.isEmpty() == false) {
+            tasks.remove(0).run();
+        }
+    }
+
+
+    @Test
+    @DisplayName("checks that a subscriber that falls behind gets the changes it missed folded into one")
+    public void testConflation() {
+        // subscribers are called on the publishing thread, so everything below happens in order
+        SnapshotPublisher snapshotPublisher = new SnapshotPublisher(Runnable::run);
+        ExchangeRateSnapshot first = snapshot("1", Map.of("CAD_USD", 0.98));
+        ExchangeRateSnapshot second = snapshot("2", Map.of("CAD_USD", 0.97));
+        ExchangeRateSnapshot third = snapshot("3", Map.of("CAD_USD", 0.96, "FR_USD", 0.9));
+        snapshotPublisher.publish(ExchangeRateSnapshot.EMPTY, first, null);
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        snapshotPublisher.subscribe(subscriber);
+        Assertions.assertEquals(1, snapshotPublisher.getSubscriberCount());
+        Assertions.assertTrue(subscriber.snapshotChanges.isEmpty(), "nothing should be sent before it's requested");
+
+        // starts from the snapshot that was live when it subscribed
+        subscriber.subscription.request(1);
+        Assertions.assertEquals(1, subscriber.snapshotChanges.size());
+        Assertions.assertEquals(Set.of("CAD_USD"), subscriber.snapshotChanges.get(0).getAdded().keySet());
+        Assertions.assertSame(first, subscriber.snapshotChanges.get(0).getSnapshot());
+
+        snapshotPublisher.publish(first, second, null);
+        snapshotPublisher.publish(second, third, null);
+        Assertions.assertEquals(1, subscriber.snapshotChanges.size());
+        Assertions.assertEquals(1, snapshotPublisher.getConflatedCount());
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        Assertions.assertEquals(2, subscriber.snapshotChanges.size());
+        SnapshotChange snapshotChange = subscriber.snapshotChanges.get(1);
+        Assertions.assertSame(first, snapshotChange.getPreviousSnapshot());
+        Assertions.assertSame(third, snapshotChange.getSnapshot());
+        Assertions.assertEquals(0.98, snapshotChange.getChanged().get("CAD_USD").getOldRate());
+        Assertions.assertEquals(0.96, snapshotChange.getChanged().get("CAD_USD").getNewRate());
+        Assertions.assertEquals(Set.of("FR_USD"), snapshotChange.getAdded().keySet());
+
+        // with demand to spare, every change is sent as it comes
+        snapshotPublisher.publish(third, first, null);
+        Assertions.assertEquals(3, subscriber.snapshotChanges.size());
+
+        subscriber.subscription.cancel();
+        snapshotPublisher.publish(first, second, null);
+        Assertions.assertEquals(3, subscriber.snapshotChanges.size());
+        Assertions.assertEquals(0, snapshotPublisher.getSubscriberCount());
+    }
+
+    @Test
+    @DisplayName("checks that changes are worked out on the executor when they're delivered, once for every subscriber")
+    public void testChangesWorkedOutOnDelivery() {
+        // tasks are held until they're run by hand
+        List<Runnable> tasks = new ArrayList<>();
+        SnapshotPublisher snapshotPublisher = new SnapshotPublisher(tasks::add);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        RecordingSubscriber otherSubscriber = new RecordingSubscriber();
+        snapshotPublisher.subscribe(subscriber);
+        snapshotPublisher.subscribe(otherSubscriber);
+        runAll(tasks);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        otherSubscriber.subscription.request(Long.MAX_VALUE);
+
+        ExchangeRateSnapshot first = snapshot("1", Map.of("CAD_USD", 0.98));
+        snapshotPublisher.publish(ExchangeRateSnapshot.EMPTY, first, null);
+        Assertions.assertEquals(2, tasks.size());
+        Assertions.assertTrue(subscriber.snapshotChanges.isEmpty(), "nothing should be sent on the publishing thread");
+
+        runAll(tasks);
+        Assertions.assertEquals(1, subscriber.snapshotChanges.size());
+        Assertions.assertSame(subscriber.snapshotChanges.get(0), otherSubscriber.snapshotChanges.get(0));
+        Assertions.assertEquals(Set.of("CAD_USD"), subscriber.snapshotChanges.get(0).getAdded().keySet());
+    }
+
+    @Test
+    @DisplayName("checks that subscribers that break the request rules or throw are dropped and told why")
+    public void testBadSubscribers() {
+        SnapshotPublisher snapshotPublisher = new SnapshotPublisher(Runnable::run);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        snapshotPublisher.subscribe(subscriber);
+        subscriber.subscription.request(0);
+        Assertions.assertTrue(subscriber.error instanceof IllegalArgumentException);
+        Assertions.assertEquals(0, snapshotPublisher.getSubscriberCount());
+
+        RecordingSubscriber throwingSubscriber = new RecordingSubscriber() {
+            @Override
+            public void onNext(SnapshotChange snapshotChange) { throw new IllegalStateException("boom"); }
+        };
+
+        snapshotPublisher.subscribe(throwingSubscriber);
+        throwingSubscriber.subscription.request(1);
+        snapshotPublisher.publish(ExchangeRateSnapshot.EMPTY, snapshot("1", Map.of("CAD_USD", 0.98)), null);
+        Assertions.assertTrue(throwingSubscriber.error instanceof IllegalStateException);
+        Assertions.assertEquals(0, snapshotPublisher.getSubscriberCount());
+    }
+
+    @Test
+    @DisplayName("checks that the bean pushes its loads, deltas and resets to subscribers")
+    public void testExchangeRateBeanPublishes() throws Exception {
+        ExchangeRateBean exchangeRateBean = new ExchangeRateBean();
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        exchangeRateBean.getSnapshotPublisher().subscribe(subscriber);
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (subscriber.subscription == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        // each is taken before the next is made, so none are conflated
+        exchangeRateBean.setExchangeRates("1", "{\"CAD_USD\":0.98,\"FR_USD\":0.9}");
+        SnapshotChange snapshotChange = subscriber.snapshotChangeQueue.poll(10, TimeUnit.SECONDS);
+        Assertions.assertNotNull(snapshotChange);
+        Assertions.assertEquals(Set.of("CAD_USD", "FR_USD"), snapshotChange.getAdded().keySet());
+
+        RateDelta rateDelta = new RateDelta(Map.of("CAD_USD", 0.97), Set.of("FR_USD"));
+        Assertions.assertTrue(exchangeRateBean.applyDelta("2", "1", rateDelta, "20201010-0001.delta"));
+        snapshotChange = subscriber.snapshotChangeQueue.poll(10, TimeUnit.SECONDS);
+        Assertions.assertNotNull(snapshotChange);
+        Assertions.assertEquals("2", snapshotChange.getSnapshot().getBuildID());
+        Assertions.assertEquals(Set.of("CAD_USD"), snapshotChange.getChanged().keySet());
+        Assertions.assertEquals(Set.of("FR_USD"), snapshotChange.getRemoved().keySet());
+
+        exchangeRateBean.resetBean();
+        snapshotChange = subscriber.snapshotChangeQueue.poll(10, TimeUnit.SECONDS);
+        Assertions.assertNotNull(snapshotChange);
+        Assertions.assertSame(ExchangeRateSnapshot.EMPTY, snapshotChange.getSnapshot());
+        Assertions.assertEquals(Set.of("CAD_USD"), snapshotChange.getRemoved().keySet());
+    }
+
+}
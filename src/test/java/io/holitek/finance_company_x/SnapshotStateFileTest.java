@@ -0,0 +1,127 @@
+package io.holitek.finance_company_x;
+
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.time.Instant;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+
+public class SnapshotStateFileTest {
+
+    private static final Instant LOADED_AT = Instant.parse("2020-10-10T00:01:02.003Z");
+    private static final Map<String, Double> EXCHANGE_RATE_MAP = Map.of("CAD_USD", 0.98, "FR_USD", 0.9);
+
+    @TempDir
+    Path stateDirectory;
+
+
+    @Test
+    @DisplayName("checks that a saved snapshot loads back with the same buildID, load time and rates")
+    public void testRoundTrip() throws IOException {
+        SnapshotStateFile snapshotStateFile = new SnapshotStateFile(stateDirectory.resolve("state/snapshot.fcxs"));
+        for (String buildID : new String[] {"1", "1234", "12345678"}) {
+            snapshotStateFile.save(new ExchangeRateSnapshot(buildID, LOADED_AT, EXCHANGE_RATE_MAP));
+
+            ExchangeRateSnapshot snapshot = snapshotStateFile.load().orElseThrow();
+            Assertions.assertEquals(buildID, snapshot.getBuildID());
+            Assertions.assertEquals(LOADED_AT, snapshot.getLoadedAt());
+            Assertions.assertEquals(EXCHANGE_RATE_MAP, snapshot.getExchangeRateMap());
+            Assertions.assertEquals(0.98 / 0.9, snapshot.convert("CAD", "FR"), 1e-12);
+        }
+
+        // nothing is left behind from staging the file
+        try (Stream<Path> directoryStream = Files.list(stateDirectory.resolve("state"))) {
+            Assertions.assertEquals(1, directoryStream.count());
+        }
+    }
+
+    @Test
+    @DisplayName("checks that a missing or malformed state file loads as nothing rather than failing")
+    public void testMissingOrMalformed() throws IOException {
+        Path stateFilePath = stateDirectory.resolve("snapshot.fcxs");
+        SnapshotStateFile snapshotStateFile = new SnapshotStateFile(stateFilePath);
+        Assertions.assertTrue(snapshotStateFile.load().isEmpty());
+
+        snapshotStateFile.save(new ExchangeRateSnapshot("1234", LOADED_AT, EXCHANGE_RATE_MAP));
+        byte[] saved = Files.readAllBytes(stateFilePath);
+
+        byte[] badMagic = saved.clone();
+        badMagic[3] = 'R';
+
+        byte[][] malformed = {
+                new byte[0],
+                badMagic,
+                Arrays.copyOf(saved, 20),
+                Arrays.copyOf(saved, saved.length - 1),
+                BinaryRateFormat.encode(EXCHANGE_RATE_MAP)
+        };
+
+        for (byte[] bytes : malformed) {
+            Files.write(stateFilePath, bytes);
+            Assertions.assertTrue(snapshotStateFile.load().isEmpty());
+            Assertions.assertThrows(IOException.class, () -> SnapshotStateFile.decode(ByteBuffer.wrap(bytes), ""));
+        }
+    }
+
+    @Test
+    @DisplayName("checks that the bean saves what it loads and restores it, but never over data it already has")
+    public void testBeanRestore() {
+        SnapshotStateFile snapshotStateFile = new SnapshotStateFile(stateDirectory.resolve("snapshot.fcxs"));
+
+        // saves run on the calling thread
+        ExchangeRateBean exchangeRateBean =
+                new ExchangeRateBean(ExchangeRateBean.DEFAULT_HISTORY_SIZE, snapshotStateFile, Runnable::run);
+        Assertions.assertFalse(exchangeRateBean.restoreSnapshot());
+        Assertions.assertTrue(exchangeRateBean.setExchangeRates("1234", EXCHANGE_RATE_MAP));
+
+        ExchangeRateBean restartedBean =
+                new ExchangeRateBean(ExchangeRateBean.DEFAULT_HISTORY_SIZE, snapshotStateFile);
+        Assertions.assertTrue(restartedBean.restoreSnapshot());
+        Assertions.assertEquals("1234", restartedBean.getBuildID());
+        Assertions.assertEquals(EXCHANGE_RATE_MAP, restartedBean.getExchangeRateMap());
+        Assertions.assertTrue(restartedBean.getSnapshot("1234").isPresent());
+
+        Assertions.assertTrue(restartedBean.setExchangeRates("5678", Map.of("CAD_USD", 0.97)));
+        Assertions.assertFalse(restartedBean.restoreSnapshot());
+        Assertions.assertEquals("5678", restartedBean.getBuildID());
+
+        Assertions.assertFalse(new ExchangeRateBean().restoreSnapshot());
+    }
+
+    @Test
+    @DisplayName("checks that the bean saves off the loading thread, and only the newest of the snapshots still waiting")
+    public void testBeanSaveCoalesced() {
+        SnapshotStateFile snapshotStateFile = new SnapshotStateFile(stateDirectory.resolve("snapshot.fcxs"));
+        List<Runnable> queuedSaves = new ArrayList<>();
+        ExchangeRateBean exchangeRateBean =
+                new ExchangeRateBean(ExchangeRateBean.DEFAULT_HISTORY_SIZE, snapshotStateFile, queuedSaves::add);
+
+        Assertions.assertTrue(exchangeRateBean.setExchangeRates("1234", EXCHANGE_RATE_MAP));
+        Assertions.assertTrue(exchangeRateBean.setExchangeRates("1235", Map.of("CAD_USD", 0.97)));
+        Assertions.assertTrue(exchangeRateBean.setExchangeRates("1236", Map.of("CAD_USD", 0.96)));
+        Assertions.assertFalse(Files.exists(snapshotStateFile.getPath()), "nothing should be saved on the loader");
+        Assertions.assertEquals(1, queuedSaves.size(), "a save already waiting should pick up newer snapshots");
+
+        queuedSaves.remove(0).run();
+        Assertions.assertEquals("1236", snapshotStateFile.load().map(ExchangeRateSnapshot::getBuildID).orElse(""));
+
+        Assertions.assertTrue(exchangeRateBean.setExchangeRates("1237", Map.of("CAD_USD", 0.95)));
+        Assertions.assertEquals(1, queuedSaves.size(), "a save should be queued again once the last one started");
+    }
+
+}
@@ -0,0 +1,141 @@
+package io.holitek.finance_company_x;
+
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+
+public class TimeSeriesStoreTest {
+
+    private static final Instant START = Instant.parse("2020-10-10T00:00:00Z");
+
+    @TempDir
+    Path dataDirectory;
+
+    /**
+     * one data file per minute from START, with CAD_USD going up by a thousandth each minute
+     */
+    private void writeDataFiles(int first, int count) throws IOException {
+        for (int i = first; i < first + count; i++) {
+            String dataFileName = String.format("20201010-%02d%02d.txt", i / 60, i % 60);
+            Files.writeString(
+                    dataDirectory.resolve(dataFileName),
+                    "{\"CAD_USD\":" + (1 + i / 1000.0) + ",\"FR_USD\":0.9}"
+            );
+        }
+    }
+
+
+    @Test
+    @DisplayName("checks that data file names are read as UTC timestamps")
+    public void testTimestampOf() {
+        Assertions.assertEquals(Optional.of(START), TimeSeriesStore.timestampOf("20201010-0000.txt"));
+        Assertions.assertEquals(
+                Optional.of(Instant.parse("2020-10-10T23:59:00Z")),
+                TimeSeriesStore.timestampOf("20201010-2359.txt")
+        );
+
+        for (String notTimestamped : new String[] {"buildID.txt", "20201010-0000.json", "20201310-0000.txt", ".txt"}) {
+            Assertions.assertTrue(TimeSeriesStore.timestampOf(notTimestamped).isEmpty(), notTimestamped);
+        }
+    }
+
+    @Test
+    @DisplayName("checks that a directory is backfilled in parallel and queried by time")
+    public void testBackfill() throws IOException {
+        writeDataFiles(0, 500);
+        Files.writeString(dataDirectory.resolve("buildID.txt"), "{\"buildID\":\"1234\"}");
+
+        TimeSeriesStore timeSeriesStore = new TimeSeriesStore(4);
+        Assertions.assertEquals(500, timeSeriesStore.ingestNewFiles(dataDirectory.toString()));
+        Assertions.assertEquals(500, timeSeriesStore.getFileCount());
+        Assertions.assertEquals(Optional.of(START.plus(Duration.ofMinutes(499))), timeSeriesStore.getLatestTimestamp());
+        Assertions.assertEquals(Set.of("CAD_USD", "FR_USD"), timeSeriesStore.getPairs());
+
+        Assertions.assertEquals(1.0, timeSeriesStore.getRateAt("CAD_USD", START));
+        Assertions.assertEquals(1.3, timeSeriesStore.getRateAt("CAD_USD", START.plusSeconds(300 * 60 + 59)));
+        Assertions.assertEquals(1.499, timeSeriesStore.getRateAt("CAD_USD", Instant.MAX));
+        Assertions.assertTrue(Double.isNaN(timeSeriesStore.getRateAt("CAD_USD", START.minusSeconds(1))));
+        Assertions.assertTrue(Double.isNaN(timeSeriesStore.getRateAt("XXX_USD", START)));
+
+        List<RatePoint> ratePoints = timeSeriesStore.getRates(
+                "CAD_USD",
+                START.plus(Duration.ofMinutes(10)),
+                START.plus(Duration.ofMinutes(13))
+        );
+
+        Assertions.assertEquals(
+                List.of(
+                        new RatePoint(START.plus(Duration.ofMinutes(10)).getEpochSecond(), 1.01),
+                        new RatePoint(START.plus(Duration.ofMinutes(11)).getEpochSecond(), 1.011),
+                        new RatePoint(START.plus(Duration.ofMinutes(12)).getEpochSecond(), 1.012)
+                ),
+                ratePoints
+        );
+    }
+
+    @Test
+    @DisplayName("checks that later calls only ingest files newer than those already ingested")
+    public void testIngestNewFiles() throws IOException {
+        TimeSeriesStore timeSeriesStore = new TimeSeriesStore(2);
+
+        writeDataFiles(10, 5);
+        Assertions.assertEquals(5, timeSeriesStore.ingestNewFiles(dataDirectory.toString()));
+        Assertions.assertEquals(0, timeSeriesStore.ingestNewFiles(dataDirectory.toString()));
+
+        // one new file, and one that landed late with a timestamp older than what's already been ingested
+        writeDataFiles(15, 1);
+        writeDataFiles(0, 1);
+        Assertions.assertEquals(1, timeSeriesStore.ingestNewFiles(dataDirectory.toString()));
+        Assertions.assertEquals(6, timeSeriesStore.getFileCount());
+        Assertions.assertTrue(Double.isNaN(timeSeriesStore.getRateAt("CAD_USD", START)));
+    }
+
+    @Test
+    @DisplayName("checks that a malformed data file is skipped without stopping the backfill")
+    public void testMalformedDataFile() throws IOException {
+        writeDataFiles(0, 20);
+        Files.writeString(dataDirectory.resolve("20201010-0005.txt"), "turbo-yogurt-wagon");
+
+        TimeSeriesStore timeSeriesStore = new TimeSeriesStore(4);
+        Assertions.assertEquals(19, timeSeriesStore.ingestNewFiles(dataDirectory.toString()));
+        Assertions.assertEquals(1.004, timeSeriesStore.getRateAt("CAD_USD", START.plus(Duration.ofMinutes(5))));
+    }
+
+    @Test
+    @DisplayName("checks that binary data files are ingested and win over a json file with the same timestamp")
+    public void testBinaryDataFiles() throws IOException {
+        writeDataFiles(0, 3);
+        DataFileConverter.convert(dataDirectory.resolve("20201010-0001.txt"));
+        Files.write(
+                dataDirectory.resolve("20201010-0001" + BinaryRateFormat.FILE_EXTENSION),
+                BinaryRateFormat.encode(Map.of("CAD_USD", 2.0))
+        );
+        Files.write(
+                dataDirectory.resolve("20201010-0003" + BinaryRateFormat.FILE_EXTENSION),
+                BinaryRateFormat.encode(Map.of("CAD_USD", 3.0))
+        );
+
+        TimeSeriesStore timeSeriesStore = new TimeSeriesStore(1);
+        Assertions.assertEquals(4, timeSeriesStore.ingestNewFiles(dataDirectory.toString()));
+        Assertions.assertEquals(2.0, timeSeriesStore.getRateAt("CAD_USD", START.plus(Duration.ofMinutes(1))));
+        Assertions.assertEquals(1.002, timeSeriesStore.getRateAt("CAD_USD", START.plus(Duration.ofMinutes(2))));
+        Assertions.assertEquals(3.0, timeSeriesStore.getRateAt("CAD_USD", START.plus(Duration.ofMinutes(3))));
+    }
+
+}